@@ -0,0 +1,145 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+package org.elasticsearch.benchmark.index.engine;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.elasticsearch.common.UUIDs;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.common.lucene.uid.IdFilterCache;
+import org.elasticsearch.common.lucene.uid.VersionsAndSeqNoResolver;
+import org.elasticsearch.index.mapper.IdFieldMapper;
+import org.elasticsearch.index.mapper.SeqNoFieldMapper;
+import org.elasticsearch.index.mapper.Uid;
+import org.elasticsearch.index.mapper.VersionFieldMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the version lookups of indexing with random UUIDs as ids, which look up ids that mostly don't exist yet in every segment of
+ * the shard, with and without the per-segment filters over the ids of the {@link IdFilterCache}.
+ */
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@SuppressWarnings("unused") // invoked by benchmarking framework
+public class IdLookupBenchmark {
+
+    @Param({ "none", "id_filter" })
+    private String filter;
+
+    @Param({ "10", "50" })
+    private int numSegments;
+
+    @Param({ "100000" })
+    private int docsPerSegment;
+
+    private Directory directory;
+    private DirectoryReader reader;
+    private IdFilterCache idFilterCache;
+    private Term[] existingIds;
+    private Term[] missingIds;
+    private int nextId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final Random random = new Random(42);
+        directory = new ByteBuffersDirectory();
+        existingIds = new Term[numSegments * docsPerSegment];
+        try (
+            IndexWriter writer = new IndexWriter(
+                directory,
+                new IndexWriterConfig(Lucene.STANDARD_ANALYZER).setMergePolicy(NoMergePolicy.INSTANCE)
+                    .setRAMBufferSizeMB(IndexWriterConfig.DISABLE_AUTO_FLUSH)
+                    .setMaxBufferedDocs(IndexWriterConfig.DISABLE_AUTO_FLUSH)
+            )
+        ) {
+            long seqNo = 0;
+            for (int segment = 0; segment < numSegments; segment++) {
+                for (int i = 0; i < docsPerSegment; i++) {
+                    final Term id = new Term(IdFieldMapper.NAME, Uid.encodeId(UUIDs.randomBase64UUID(random)));
+                    existingIds[(int) seqNo] = id;
+                    final Document doc = new Document();
+                    doc.add(new StringField(IdFieldMapper.NAME, id.bytes(), Field.Store.YES));
+                    doc.add(new NumericDocValuesField(VersionFieldMapper.NAME, 1));
+                    doc.add(new NumericDocValuesField(SeqNoFieldMapper.NAME, seqNo++));
+                    doc.add(new NumericDocValuesField(SeqNoFieldMapper.PRIMARY_TERM_NAME, 1));
+                    writer.addDocument(doc);
+                }
+                writer.flush();
+            }
+            writer.commit();
+        }
+        reader = DirectoryReader.open(directory);
+        idFilterCache = switch (filter) {
+            case "none" -> null;
+            case "id_filter" -> new IdFilterCache(IdFieldMapper.NAME, new NoopCircuitBreaker("benchmark"));
+            default -> throw new IllegalArgumentException("unknown filter [" + filter + "]");
+        };
+        if (idFilterCache != null) {
+            idFilterCache.buildFilters(reader);
+        }
+        missingIds = new Term[1 << 16];
+        for (int i = 0; i < missingIds.length; i++) {
+            missingIds[i] = new Term(IdFieldMapper.NAME, Uid.encodeId(UUIDs.randomBase64UUID(random)));
+        }
+        // look up the existing ids in a random order
+        for (int i = existingIds.length - 1; i > 0; i--) {
+            final int j = random.nextInt(i + 1);
+            final Term id = existingIds[i];
+            existingIds[i] = existingIds[j];
+            existingIds[j] = id;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+        directory.close();
+    }
+
+    @Benchmark
+    public VersionsAndSeqNoResolver.DocIdAndSeqNo lookupMissingId() throws IOException {
+        final Term id = missingIds[nextId++ & (missingIds.length - 1)];
+        return VersionsAndSeqNoResolver.loadDocIdAndSeqNo(reader, id, idFilterCache);
+    }
+
+    @Benchmark
+    public VersionsAndSeqNoResolver.DocIdAndSeqNo lookupExistingId() throws IOException {
+        final Term id = existingIds[Math.floorMod(nextId++, existingIds.length)];
+        return VersionsAndSeqNoResolver.loadDocIdAndSeqNo(reader, id, idFilterCache);
+    }
+}
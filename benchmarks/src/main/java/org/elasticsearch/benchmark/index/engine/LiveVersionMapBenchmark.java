@@ -0,0 +1,112 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+package org.elasticsearch.benchmark.index.engine;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.core.Releasable;
+import org.elasticsearch.index.engine.IndexVersionValue;
+import org.elasticsearch.index.engine.LiveVersionMap;
+import org.elasticsearch.index.engine.LiveVersionMapArchive;
+import org.elasticsearch.index.engine.VersionValue;
+import org.elasticsearch.index.mapper.Uid;
+import org.elasticsearch.index.translog.Translog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the throughput of updates to existing documents through the {@link LiveVersionMap}, keeping the version values on heap or in
+ * paged arrays. Every update looks up the current version of a random id under its lock and records the new version, and every
+ * {@code refreshInterval} updates the map is refreshed. Run with {@code -prof gc} to compare the allocation rate and the time spent in GC.
+ */
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Threads(8)
+@SuppressWarnings("unused") // invoked by benchmarking framework
+public class LiveVersionMapBenchmark {
+
+    @Param({ "heap", "paged" })
+    private String type;
+
+    @Param({ "100000", "1000000" })
+    private int numIds;
+
+    @Param({ "1000000" })
+    private int refreshInterval;
+
+    private final AtomicLong seqNo = new AtomicLong();
+    private final Object refreshMutex = new Object();
+    private LiveVersionMap versionMap;
+    private BytesRef[] uids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        versionMap = new LiveVersionMap(
+            LiveVersionMapArchive.NOOP_ARCHIVE,
+            switch (type) {
+                case "heap" -> null;
+                case "paged" -> BigArrays.NON_RECYCLING_INSTANCE;
+                default -> throw new IllegalArgumentException("unknown type [" + type + "]");
+            }
+        );
+        uids = new BytesRef[numIds];
+        for (int i = 0; i < numIds; i++) {
+            uids[i] = Uid.encodeId(Integer.toString(i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        synchronized (refreshMutex) {
+            versionMap.beforeRefresh();
+            versionMap.afterRefresh(true);
+            versionMap.beforeRefresh();
+            versionMap.afterRefresh(true);
+        }
+    }
+
+    @Benchmark
+    public VersionValue update() throws IOException {
+        final BytesRef uid = uids[ThreadLocalRandom.current().nextInt(numIds)];
+        final long opSeqNo = seqNo.incrementAndGet();
+        final VersionValue current;
+        try (Releasable ignored = versionMap.acquireLock(uid)) {
+            current = versionMap.getUnderLock(uid);
+            versionMap.putIndexUnderLock(uid, new IndexVersionValue(new Translog.Location(1, opSeqNo * 100, 100), opSeqNo, opSeqNo, 1));
+        }
+        if (opSeqNo % refreshInterval == 0) {
+            // like the reader manager, serialize refreshes but let updates go on concurrently
+            synchronized (refreshMutex) {
+                versionMap.beforeRefresh();
+                versionMap.afterRefresh(true);
+            }
+        }
+        return current;
+    }
+}
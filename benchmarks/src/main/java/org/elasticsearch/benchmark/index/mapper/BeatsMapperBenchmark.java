@@ -13,10 +13,13 @@ import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.index.mapper.LuceneDocument;
 import org.elasticsearch.index.mapper.MapperService;
 import org.elasticsearch.index.mapper.SourceToParse;
+import org.elasticsearch.monitor.jvm.SunThreadInfo;
 import org.elasticsearch.xcontent.XContentType;
+import org.openjdk.jmh.annotations.AuxCounters;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
@@ -34,6 +37,10 @@ import java.util.zip.GZIPInputStream;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+/**
+ * Measures the time it takes to parse a filebeat log document into Lucene documents. {@link #benchmarkParseKeywordFieldsAllocations}
+ * additionally reports the bytes allocated per parsed document as the {@code allocatedBytesPerDocument} secondary result.
+ */
 @Fork(value = 1)
 @Warmup(iterations = 5)
 @Measurement(iterations = 5)
@@ -133,4 +140,31 @@ public class BeatsMapperBenchmark {
     public List<LuceneDocument> benchmarkParseKeywordFields() {
         return mapperService.documentMapper().parse(randomFrom(sources)).docs();
     }
+
+    @Benchmark
+    public List<LuceneDocument> benchmarkParseKeywordFieldsAllocations(Allocations allocations) {
+        final long threadId = Thread.currentThread().getId();
+        final long allocatedBefore = SunThreadInfo.INSTANCE.getThreadAllocatedBytes(threadId);
+        final List<LuceneDocument> docs = mapperService.documentMapper().parse(randomFrom(sources)).docs();
+        allocations.allocatedBytes += SunThreadInfo.INSTANCE.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        allocations.documents++;
+        return docs;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Allocations {
+        private long allocatedBytes;
+        private long documents;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            allocatedBytes = 0;
+            documents = 0;
+        }
+
+        public long allocatedBytesPerDocument() {
+            return documents == 0 ? 0 : allocatedBytes / documents;
+        }
+    }
 }
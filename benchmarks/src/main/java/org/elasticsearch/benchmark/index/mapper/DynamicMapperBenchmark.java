@@ -8,8 +8,10 @@
 
 package org.elasticsearch.benchmark.index.mapper;
 
+import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.UUIDs;
 import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.compress.CompressedXContent;
 import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.index.mapper.DocumentMapper;
@@ -18,6 +20,8 @@ import org.elasticsearch.index.mapper.MapperService;
 import org.elasticsearch.index.mapper.Mapping;
 import org.elasticsearch.index.mapper.ParsedDocument;
 import org.elasticsearch.index.mapper.SourceToParse;
+import org.elasticsearch.xcontent.XContentBuilder;
+import org.elasticsearch.xcontent.XContentFactory;
 import org.elasticsearch.xcontent.XContentType;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
@@ -31,6 +35,7 @@ import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.Warmup;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
@@ -203,4 +208,61 @@ public class DynamicMapperBenchmark {
         }
         return mapperService.documentMapper().parse(randomFrom(sources)).docs();
     }
+
+    /**
+     * An index with a large mapping that receives a dynamic mapping update which only adds a couple of fields.
+     */
+    @State(Scope.Benchmark)
+    public static class LargeMapping {
+
+        @Param({ "1000", "10000", "50000" })
+        private int numFields;
+
+        private MapperService mapperService;
+        private CompressedXContent dynamicMappingsUpdate;
+
+        @Setup
+        public void setUp() throws IOException {
+            int fieldsPerObject = 100;
+            XContentBuilder mapping = XContentFactory.jsonBuilder().startObject().startObject("_doc").startObject("properties");
+            for (int i = 0; i < numFields / fieldsPerObject; i++) {
+                mapping.startObject("obj_" + i).startObject("properties");
+                for (int j = 0; j < fieldsPerObject; j++) {
+                    mapping.startObject("field_" + j).field("type", fieldType(j)).endObject();
+                }
+                mapping.endObject().endObject();
+            }
+            mapping.endObject().endObject().endObject();
+            this.mapperService = MapperServiceFactory.create(Strings.toString(mapping));
+
+            XContentBuilder update = XContentFactory.jsonBuilder().startObject().startObject("_doc").startObject("properties");
+            update.startObject("new_field").field("type", "keyword").endObject();
+            update.startObject("obj_0").startObject("properties");
+            update.startObject("new_field").field("type", "long").endObject();
+            update.endObject().endObject();
+            update.endObject().endObject().endObject();
+            this.dynamicMappingsUpdate = new CompressedXContent(BytesReference.bytes(update));
+        }
+
+        private static String fieldType(int field) {
+            return switch (field % 3) {
+                case 0 -> "keyword";
+                case 1 -> "long";
+                default -> "text";
+            };
+        }
+    }
+
+    /**
+     * Merges a dynamic mapping update that adds a couple of fields into a large mapping. The update is merged as a preflight check so
+     * that the mapping doesn't grow across invocations, which builds the same document mapper as the actual merge.
+     */
+    @Benchmark
+    public DocumentMapper benchmarkMergeDynamicUpdateIntoLargeMapping(LargeMapping largeMapping) {
+        return largeMapping.mapperService.merge(
+            "_doc",
+            largeMapping.dynamicMappingsUpdate,
+            MapperService.MergeReason.MAPPING_AUTO_UPDATE_PREFLIGHT
+        );
+    }
 }
@@ -0,0 +1,218 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+package org.elasticsearch.benchmark.index.translog;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.core.IOUtils;
+import org.elasticsearch.index.translog.Translog;
+import org.elasticsearch.indices.TranslogGroupCommitService;
+import org.elasticsearch.indices.TranslogGroupCommitStats;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Measures the throughput of durable writes to many small translog-like files, either syncing every file on the writing thread, like the
+ * translog does by default, or through the {@link TranslogGroupCommitService}. The files are created in {@code java.io.tmpdir}, so run
+ * with {@code -Djava.io.tmpdir=...} pointing at a local disk for realistic fsync costs, or at a tmpfs to measure the overhead of the
+ * batching itself. With group commit, the statistics of the service over each iteration are reported as auxiliary counters.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Threads(32)
+@SuppressWarnings("unused") // invoked by benchmarking framework
+public class TranslogGroupCommitBenchmark {
+
+    private static final int OPERATION_SIZE = 128;
+
+    @Param({ "50", "400" })
+    private int numShards;
+
+    @Param({ "direct", "group_commit" })
+    private String mode;
+
+    @Param({ "4" })
+    private int concurrency;
+
+    private Path directory;
+    private Shard[] shards;
+    private TranslogGroupCommitService service;
+    private final AtomicReference<GroupCommitCounters> reportingCounters = new AtomicReference<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("translog-group-commit");
+        shards = new Shard[numShards];
+        for (int i = 0; i < numShards; i++) {
+            final Path file = directory.resolve("translog-" + i);
+            shards[i] = new Shard(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE));
+        }
+        if (mode.equals("group_commit")) {
+            service = new TranslogGroupCommitService("benchmark", concurrency, new ThreadContext(Settings.EMPTY));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (service != null) {
+            service.close();
+        }
+        for (Shard shard : shards) {
+            shard.channel.close();
+        }
+        IOUtils.rm(directory);
+    }
+
+    @Benchmark
+    public void durableWrite(GroupCommitCounters counters) throws Exception {
+        final Shard shard = shards[ThreadLocalRandom.current().nextInt(numShards)];
+        final Translog.Location location = shard.write();
+        if (service == null) {
+            shard.syncUpTo(location);
+        } else {
+            final CountDownLatch synced = new CountDownLatch(1);
+            final AtomicReference<Exception> failure = new AtomicReference<>();
+            service.sync(directory, shard, (syncLocation, listener) -> {
+                try {
+                    shard.syncUpTo(syncLocation);
+                    listener.accept(null);
+                } catch (IOException e) {
+                    listener.accept(e);
+                }
+            }, location, e -> {
+                failure.set(e);
+                synced.countDown();
+            });
+            synced.await();
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+        }
+    }
+
+    /**
+     * Reports the statistics of the {@link TranslogGroupCommitService} over an iteration. JMH sums auxiliary counters across the threads,
+     * but the statistics cover all threads, so only the counters of one thread report them.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class GroupCommitCounters {
+        private TranslogGroupCommitBenchmark benchmark;
+        private boolean reporting;
+        private TranslogGroupCommitStats start;
+
+        @Setup(Level.Iteration)
+        public void reset(TranslogGroupCommitBenchmark benchmark) {
+            this.benchmark = benchmark;
+            reporting = benchmark.service != null
+                && (benchmark.reportingCounters.compareAndSet(null, this) || benchmark.reportingCounters.get() == this);
+            start = reporting ? benchmark.service.stats() : null;
+        }
+
+        private TranslogGroupCommitStats iterationStats() {
+            if (reporting == false) {
+                return new TranslogGroupCommitStats(0, 0, 0, 0, 0, 0);
+            }
+            final TranslogGroupCommitStats end = benchmark.service.stats();
+            return new TranslogGroupCommitStats(
+                end.rounds() - start.rounds(),
+                end.syncRequests() - start.syncRequests(),
+                end.translogSyncs() - start.translogSyncs(),
+                end.directSyncs() - start.directSyncs(),
+                end.maxBatchSize(),
+                end.totalRoundTimeInMillis() - start.totalRoundTimeInMillis()
+            );
+        }
+
+        public long rounds() {
+            return iterationStats().rounds();
+        }
+
+        public long translogSyncs() {
+            return iterationStats().translogSyncs();
+        }
+
+        public double averageBatchSize() {
+            return iterationStats().averageBatchSize();
+        }
+
+        public long averageRoundTimeInMillis() {
+            return iterationStats().averageRoundTimeInMillis();
+        }
+    }
+
+    /**
+     * A file that is appended to and synced like a translog, skipping the sync if another thread already synced past the location.
+     */
+    private static final class Shard {
+        private final FileChannel channel;
+        private final Object syncLock = new Object();
+        private long writtenOffset;
+        private volatile long syncedOffset;
+
+        Shard(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        synchronized Translog.Location write() {
+            try {
+                channel.write(ByteBuffer.allocate(OPERATION_SIZE));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            final Translog.Location location = new Translog.Location(1, writtenOffset, OPERATION_SIZE);
+            writtenOffset += OPERATION_SIZE;
+            return location;
+        }
+
+        void syncUpTo(Translog.Location location) throws IOException {
+            final long offset = location.translogLocation + location.size;
+            if (syncedOffset < offset) {
+                synchronized (syncLock) {
+                    if (syncedOffset < offset) {
+                        final long offsetToSync;
+                        synchronized (this) {
+                            offsetToSync = writtenOffset;
+                        }
+                        channel.force(false);
+                        syncedOffset = offsetToSync;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+package org.elasticsearch.benchmark.myprofiler;
+
+import org.elasticsearch.myprofiler.ProfilerCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of {@link ProfilerCounters#increment} as the number of threads recording searches grows. With per-thread cells
+ * the throughput per thread should stay flat rather than degrade with the thread count.
+ */
+@Fork(3)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@SuppressWarnings("unused") // invoked by benchmarking framework
+public class ProfilerCountersBenchmark {
+
+    @Param({ "1", "16", "1024" })
+    private int numIndices;
+
+    private ProfilerCounters counters;
+    private String[] indices;
+
+    @Setup
+    public void setUp() {
+        counters = new ProfilerCounters();
+        indices = new String[numIndices];
+        for (int i = 0; i < numIndices; i++) {
+            indices[i] = "index-" + i;
+        }
+    }
+
+    private void increment() {
+        counters.increment(indices[ThreadLocalRandom.current().nextInt(numIndices)], ProfilerCounters.Operation.SEARCH_QUERY);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void increment_01() {
+        increment();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void increment_02() {
+        increment();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void increment_04() {
+        increment();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void increment_08() {
+        increment();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void increment_16() {
+        increment();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void increment_32() {
+        increment();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void increment_64() {
+        increment();
+    }
+}
@@ -9,6 +9,7 @@ package org.elasticsearch.benchmark.routing.allocation;
 
 import org.elasticsearch.TransportVersion;
 import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.cluster.ClusterInfo;
 import org.elasticsearch.cluster.ClusterName;
 import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.cluster.metadata.IndexMetadata;
@@ -17,12 +18,22 @@ import org.elasticsearch.cluster.node.DiscoveryNodes;
 import org.elasticsearch.cluster.routing.RoutingTable;
 import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.cluster.routing.allocation.AllocationService;
+import org.elasticsearch.cluster.routing.allocation.RoutingAllocation;
+import org.elasticsearch.cluster.routing.allocation.allocator.BalancedShardsAllocator;
+import org.elasticsearch.cluster.routing.allocation.allocator.DesiredBalance;
+import org.elasticsearch.cluster.routing.allocation.allocator.DesiredBalanceComputer;
+import org.elasticsearch.cluster.routing.allocation.allocator.DesiredBalanceInput;
 import org.elasticsearch.cluster.version.CompatibilityVersions;
+import org.elasticsearch.common.settings.ClusterSettings;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.index.IndexVersion;
+import org.elasticsearch.snapshots.SnapshotShardSizeInfo;
+import org.elasticsearch.telemetry.metric.MeterRegistry;
+import org.elasticsearch.threadpool.ThreadPool;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
@@ -30,10 +41,12 @@ import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.annotations.Warmup;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -103,12 +116,18 @@ public class AllocationBenchmark {
             "       10|     10|        2|    50",
             "      100|      1|        2|    50",
             "      100|      3|        2|    50",
-            "      100|     10|        2|    50" }
+            "      100|     10|        2|    50",
+
+            "     1000|      1|        1|    50",
+            "     1000|      3|        1|    50" }
     )
     public String indicesShardsReplicasNodes = "10|1|0|1";
 
     public int numTags = 2;
 
+    private Settings settings;
+    private int numShards;
+    private int numReplicas;
     private AllocationService strategy;
     private ClusterState initialClusterState;
 
@@ -117,13 +136,12 @@ public class AllocationBenchmark {
         final String[] params = indicesShardsReplicasNodes.split("\\|");
 
         int numIndices = toInt(params[0]);
-        int numShards = toInt(params[1]);
-        int numReplicas = toInt(params[2]);
+        numShards = toInt(params[1]);
+        numReplicas = toInt(params[2]);
         int numNodes = toInt(params[3]);
 
-        strategy = Allocators.createAllocationService(
-            Settings.builder().put("cluster.routing.allocation.awareness.attributes", "tag").build()
-        );
+        settings = Settings.builder().put("cluster.routing.allocation.awareness.attributes", "tag").build();
+        strategy = Allocators.createAllocationService(settings);
 
         Metadata.Builder mb = Metadata.builder();
         for (int i = 1; i <= numIndices; i++) {
@@ -179,4 +197,98 @@ public class AllocationBenchmark {
         }
         return clusterState;
     }
+
+    /**
+     * Measures the computation of the desired balance after creating a single index in a cluster whose desired balance has converged, to
+     * show how the time for such a small change grows with the size of the cluster with and without incremental computation.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public DesiredBalance measureDesiredBalanceComputationAfterIndexCreation(DesiredBalanceComputation computation) {
+        return computation.computeAfterIndexCreation();
+    }
+
+    @State(Scope.Benchmark)
+    public static class DesiredBalanceComputation {
+
+        @Param({ "false", "true" })
+        public boolean incrementalComputation;
+
+        private ThreadPool threadPool;
+        private ClusterSettings clusterSettings;
+        private BalancedShardsAllocator shardsAllocator;
+        private RoutingAllocation initialAllocation;
+        private RoutingAllocation allocationAfterIndexCreation;
+
+        private DesiredBalanceComputer desiredBalanceComputer;
+        private DesiredBalance convergedDesiredBalance;
+
+        @Setup(Level.Trial)
+        public void setUp(AllocationBenchmark benchmark) {
+            threadPool = new ThreadPool(
+                Settings.builder().put("node.name", AllocationBenchmark.class.getSimpleName()).build(),
+                MeterRegistry.NOOP
+            );
+            clusterSettings = new ClusterSettings(
+                Settings.builder()
+                    .put(DesiredBalanceComputer.INCREMENTAL_COMPUTATION_ENABLED_SETTING.getKey(), incrementalComputation)
+                    .build(),
+                ClusterSettings.BUILT_IN_CLUSTER_SETTINGS
+            );
+            shardsAllocator = new BalancedShardsAllocator(benchmark.settings);
+
+            // start from a cluster in which all shards are assigned, as they would be once the previous balance was reconciled
+            final ClusterState clusterState = benchmark.measureAllocation();
+            final IndexMetadata newIndex = IndexMetadata.builder("new_index")
+                .settings(Settings.builder().put(IndexMetadata.SETTING_VERSION_CREATED, IndexVersion.current()))
+                .numberOfShards(benchmark.numShards)
+                .numberOfReplicas(benchmark.numReplicas)
+                .build();
+            final ClusterState clusterStateAfterIndexCreation = ClusterState.builder(clusterState)
+                .metadata(Metadata.builder(clusterState.metadata()).put(newIndex, false))
+                .routingTable(
+                    RoutingTable.builder(TestShardRoutingRoleStrategies.DEFAULT_ROLE_ONLY, clusterState.routingTable()).addAsNew(newIndex)
+                )
+                .build();
+
+            final var deciders = Allocators.defaultAllocationDeciders(benchmark.settings, clusterSettings);
+            initialAllocation = new RoutingAllocation(deciders, clusterState, ClusterInfo.EMPTY, SnapshotShardSizeInfo.EMPTY, 0L);
+            allocationAfterIndexCreation = new RoutingAllocation(
+                deciders,
+                clusterStateAfterIndexCreation,
+                ClusterInfo.EMPTY,
+                SnapshotShardSizeInfo.EMPTY,
+                0L
+            );
+        }
+
+        /**
+         * Each measurement computes the balance after one index creation, so the computer and its converged balance are reset before
+         * each iteration, which is why this benchmark measures single shots.
+         */
+        @Setup(Level.Iteration)
+        public void computeConvergedDesiredBalance() {
+            desiredBalanceComputer = new DesiredBalanceComputer(clusterSettings, threadPool, shardsAllocator);
+            convergedDesiredBalance = desiredBalanceComputer.compute(
+                DesiredBalance.INITIAL,
+                DesiredBalanceInput.create(1, initialAllocation),
+                new LinkedList<>(),
+                input -> true
+            );
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            ThreadPool.terminate(threadPool, 10, TimeUnit.SECONDS);
+        }
+
+        DesiredBalance computeAfterIndexCreation() {
+            return desiredBalanceComputer.compute(
+                convergedDesiredBalance,
+                DesiredBalanceInput.create(2, allocationAfterIndexCreation),
+                new LinkedList<>(),
+                input -> true
+            );
+        }
+    }
 }
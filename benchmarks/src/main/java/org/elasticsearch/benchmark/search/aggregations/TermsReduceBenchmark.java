@@ -89,7 +89,7 @@ public class TermsReduceBenchmark {
         @Param({ "1600172297" })
         long seed;
 
-        @Param({ "64", "128", "512" })
+        @Param({ "64", "128", "512", "1536" })
         int numShards;
 
         @Param({ "100" })
@@ -161,6 +161,12 @@ public class TermsReduceBenchmark {
     @Param({ "32", "512" })
     private int bufferSize;
 
+    /**
+     * The number of partial reduces that may run concurrently, which is also the number of threads of the reduce executor.
+     */
+    @Param({ "1", "2", "4", "8" })
+    private int maxConcurrentMerges;
+
     @Benchmark
     public SearchPhaseController.ReducedQueryPhase reduceAggs(TermsList candidateList) throws Exception {
         List<QuerySearchResult> shards = new ArrayList<>();
@@ -183,7 +189,7 @@ public class TermsReduceBenchmark {
         SearchRequest request = new SearchRequest();
         request.source(new SearchSourceBuilder().size(0).aggregation(AggregationBuilders.terms("test")));
         request.setBatchedReduceSize(bufferSize);
-        ExecutorService executor = Executors.newFixedThreadPool(1);
+        ExecutorService executor = Executors.newFixedThreadPool(maxConcurrentMerges);
         AtomicBoolean isCanceled = new AtomicBoolean();
         QueryPhaseResultConsumer consumer = new QueryPhaseResultConsumer(
             request,
@@ -193,7 +199,8 @@ public class TermsReduceBenchmark {
             isCanceled::get,
             SearchProgressListener.NOOP,
             shards.size(),
-            exc -> {}
+            exc -> {},
+            maxConcurrentMerges
         );
         CountDownLatch latch = new CountDownLatch(shards.size());
         for (int i = 0; i < shards.size(); i++) {
@@ -0,0 +1,244 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+package org.elasticsearch.benchmark.transport;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
+import org.elasticsearch.common.compress.CompressorFactory;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.core.Streams;
+import org.elasticsearch.transport.BytesRefRecycler;
+import org.elasticsearch.transport.Compression;
+import org.elasticsearch.transport.DeflateTransportDecompressor;
+import org.elasticsearch.transport.Lz4TransportDecompressor;
+import org.elasticsearch.transport.TransportDecompressor;
+import org.elasticsearch.transport.ZstdTransportDecompressor;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the transport compression schemes on the payloads that dominate the traffic between nodes: the source of bulk requests on
+ * their way to the replicas or a follower cluster, and the file chunks of peer recoveries. Reports the time to compress and to decompress
+ * a payload, and the compression ratio as an auxiliary counter.
+ */
+@Fork(value = 1, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@SuppressWarnings("unused") // invoked by benchmarking framework
+public class TransportCompressionBenchmark {
+
+    private static final String[] LEVELS = { "INFO", "INFO", "INFO", "WARN", "DEBUG", "ERROR" };
+    private static final String[] SERVICES = { "checkout", "cart", "payment", "search", "auth", "inventory", "shipping" };
+    private static final String[] MESSAGES = {
+        "request completed",
+        "upstream connection reset by peer",
+        "cache miss for key",
+        "slow query detected",
+        "user session refreshed",
+        "retrying request after timeout" };
+
+    @Param({ "lz4", "deflate", "zstd" })
+    private String scheme;
+
+    @Param({ "bulk", "recovery" })
+    private String payload;
+
+    @Param({ "1048576" })
+    private int payloadSize;
+
+    private Compression.Scheme compressionScheme;
+    private byte[] uncompressed;
+    private BytesReference compressed;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        compressionScheme = Compression.Scheme.valueOf(scheme.toUpperCase(Locale.ROOT));
+        if (compressionScheme == Compression.Scheme.ZSTD && Compression.Scheme.isZstdAvailable() == false) {
+            throw new IllegalStateException("zstd requires native access, check java.library.path");
+        }
+        final Random random = new Random(42);
+        uncompressed = switch (payload) {
+            case "bulk" -> bulkPayload(random, payloadSize);
+            case "recovery" -> recoveryPayload(random, payloadSize);
+            default -> throw new IllegalArgumentException("unknown payload [" + payload + "]");
+        };
+        compressed = compress();
+    }
+
+    @Benchmark
+    public BytesReference compress(CompressionRatio ratio) throws IOException {
+        final BytesReference bytes = compress();
+        ratio.uncompressedBytes += uncompressed.length;
+        ratio.compressedBytes += bytes.length();
+        return bytes;
+    }
+
+    @Benchmark
+    public long decompress() throws IOException {
+        long length = 0;
+        try (TransportDecompressor decompressor = decompressor()) {
+            final int consumed = decompressor.decompress(compressed);
+            assert consumed == compressed.length();
+            ReleasableBytesReference page;
+            while ((page = decompressor.pollDecompressedPage(true)) != null) {
+                length += page.length();
+                page.close();
+            }
+        }
+        return length;
+    }
+
+    private BytesReference compress() throws IOException {
+        try (BytesStreamOutput out = new BytesStreamOutput(uncompressed.length)) {
+            try (OutputStream compressing = outputStream(Streams.noCloseStream(out))) {
+                compressing.write(uncompressed);
+            }
+            return out.bytes();
+        }
+    }
+
+    private OutputStream outputStream(OutputStream out) throws IOException {
+        return switch (compressionScheme) {
+            case LZ4 -> Compression.Scheme.lz4OutputStream(out);
+            case DEFLATE -> CompressorFactory.COMPRESSOR.threadLocalOutputStream(out);
+            case ZSTD -> Compression.Scheme.zstdOutputStream(out);
+        };
+    }
+
+    private TransportDecompressor decompressor() {
+        return switch (compressionScheme) {
+            case LZ4 -> new Lz4TransportDecompressor(BytesRefRecycler.NON_RECYCLING_INSTANCE);
+            case DEFLATE -> new DeflateTransportDecompressor(BytesRefRecycler.NON_RECYCLING_INSTANCE);
+            case ZSTD -> new ZstdTransportDecompressor(BytesRefRecycler.NON_RECYCLING_INSTANCE);
+        };
+    }
+
+    /**
+     * The source of a bulk request of log documents as it's sent to the replicas.
+     */
+    private static byte[] bulkPayload(Random random, int size) {
+        final StringBuilder sb = new StringBuilder(size + 1024);
+        long timestamp = 1_700_000_000_000L;
+        while (sb.length() < size) {
+            timestamp += random.nextInt(1000);
+            sb.append("{\"index\":{\"_index\":\"logs-app-default\"}}\n");
+            sb.append(logDocument(random, timestamp)).append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String logDocument(Random random, long timestamp) {
+        return String.format(
+            Locale.ROOT,
+            "{\"@timestamp\":%d,\"log.level\":\"%s\",\"service.name\":\"%s\",\"host.name\":\"host-%02d\","
+                + "\"trace.id\":\"%016x%016x\",\"http.response.status_code\":%d,\"event.duration\":%d,\"message\":\"%s %d\"}",
+            timestamp,
+            LEVELS[random.nextInt(LEVELS.length)],
+            SERVICES[random.nextInt(SERVICES.length)],
+            random.nextInt(32),
+            random.nextLong(),
+            random.nextLong(),
+            random.nextInt(10) == 0 ? 500 : 200,
+            random.nextInt(5_000_000),
+            MESSAGES[random.nextInt(MESSAGES.length)],
+            random.nextInt(100_000)
+        );
+    }
+
+    /**
+     * The files of a Lucene index of log documents as they're sent in the file chunks of a peer recovery.
+     */
+    private static byte[] recoveryPayload(Random random, int size) throws IOException {
+        try (Directory directory = new ByteBuffersDirectory()) {
+            try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(Lucene.STANDARD_ANALYZER))) {
+                long timestamp = 1_700_000_000_000L;
+                // the index is smaller than the source, so index more documents than fit into the payload
+                for (int bytes = 0; bytes < size * 4;) {
+                    timestamp += random.nextInt(1000);
+                    final String source = logDocument(random, timestamp);
+                    final Document doc = new Document();
+                    doc.add(new StringField("service.name", SERVICES[random.nextInt(SERVICES.length)], Field.Store.NO));
+                    doc.add(new TextField("message", MESSAGES[random.nextInt(MESSAGES.length)], Field.Store.NO));
+                    doc.add(new LongPoint("@timestamp", timestamp));
+                    doc.add(new SortedNumericDocValuesField("@timestamp", timestamp));
+                    doc.add(new StoredField("_source", new BytesArray(source).toBytesRef()));
+                    writer.addDocument(doc);
+                    bytes += source.length();
+                }
+                writer.commit();
+            }
+            final BytesStreamOutput out = new BytesStreamOutput(size);
+            final byte[] buffer = new byte[8192];
+            for (String file : directory.listAll()) {
+                try (IndexInput in = directory.openInput(file, IOContext.READONCE)) {
+                    long remaining = in.length();
+                    while (remaining > 0 && out.size() < size) {
+                        final int len = (int) Math.min(Math.min(buffer.length, remaining), size - out.size());
+                        in.readBytes(buffer, 0, len);
+                        out.write(buffer, 0, len);
+                        remaining -= len;
+                    }
+                }
+            }
+            return BytesReference.toBytes(out.bytes());
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class CompressionRatio {
+        private long uncompressedBytes;
+        private long compressedBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            uncompressedBytes = 0;
+            compressedBytes = 0;
+        }
+
+        public double compressionRatio() {
+            return compressedBytes == 0 ? 0 : (double) uncompressedBytes / compressedBytes;
+        }
+    }
+}
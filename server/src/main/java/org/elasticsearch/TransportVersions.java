@@ -181,6 +181,13 @@ public class TransportVersions {
     public static final TransportVersion ML_INFERENCE_GOOGLE_AI_STUDIO_COMPLETION_ADDED = def(8_672_00_0);
     public static final TransportVersion WATCHER_REQUEST_TIMEOUTS = def(8_673_00_0);
     public static final TransportVersion ML_INFERENCE_ENHANCE_DELETE_ENDPOINT = def(8_674_00_0);
+    public static final TransportVersion INDEXING_PRESSURE_ADAPTIVE_SHARD_STATS = def(8_675_00_0);
+    public static final TransportVersion SEGMENTS_STATS_ID_FILTER = def(8_676_00_0);
+    public static final TransportVersion MERGE_STATS_QUEUED = def(8_677_00_0);
+    public static final TransportVersion TRANSPORT_COMPRESSION_ZSTD = def(8_678_00_0);
+    public static final TransportVersion PUBLICATION_COMPRESSION_DICTIONARY = def(8_679_00_0);
+    public static final TransportVersion TRANSLOG_GROUP_COMMIT_STATS = def(8_680_00_0);
+    public static final TransportVersion INDEXING_PRESSURE_ADAPTIVE_SHARD_LIMITS = def(8_681_00_0);
 
     /*
      * STOP! READ THIS FIRST! No, really,
@@ -705,6 +705,7 @@ public class ActionModule extends AbstractModule {
 
         actions.register(TransportStartProfilerAction.ACTION_TYPE,TransportStartProfilerAction.class);
         actions.register(TransportStopProfilerAction.ACTION_TYPE,TransportStopProfilerAction.class);
+        actions.register(TransportProfilerStatsAction.ACTION_TYPE, TransportProfilerStatsAction.class);
         actions.register(TransportIndexAction.TYPE, TransportIndexAction.class);
         actions.register(TransportGetAction.TYPE, TransportGetAction.class);
         actions.register(TermVectorsAction.INSTANCE, TransportTermVectorsAction.class);
@@ -0,0 +1,301 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.action;
+
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.action.support.nodes.BaseNodesRequest;
+import org.elasticsearch.action.support.nodes.BaseNodesResponse;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.myprofiler.ProfilerCounters;
+import org.elasticsearch.myprofiler.ProfilerLatencies;
+import org.elasticsearch.myprofiler.ProfilerState;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.tdigest.TDigest;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportRequest;
+import org.elasticsearch.transport.TransportService;
+import org.elasticsearch.xcontent.ToXContentFragment;
+import org.elasticsearch.xcontent.ToXContentObject;
+import org.elasticsearch.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Collects the live profiler counters and latency histograms of every node and merges them into a cluster-wide list of the hottest
+ * indices, ranked by the total number of requests they received since the profiler last published its stats.
+ */
+public class TransportProfilerStatsAction extends TransportNodesAction<
+    TransportProfilerStatsAction.Request,
+    TransportProfilerStatsAction.Response,
+    TransportProfilerStatsAction.NodeRequest,
+    TransportProfilerStatsAction.NodeResponse> {
+
+    public static final ActionType<Response> ACTION_TYPE = new ActionType<>("cluster:monitor/profiler/stats");
+
+    @Inject
+    public TransportProfilerStatsAction(
+        ThreadPool threadPool,
+        ClusterService clusterService,
+        TransportService transportService,
+        ActionFilters actionFilters
+    ) {
+        super(
+            ACTION_TYPE.name(),
+            clusterService,
+            transportService,
+            actionFilters,
+            NodeRequest::new,
+            threadPool.executor(ThreadPool.Names.MANAGEMENT)
+        );
+    }
+
+    @Override
+    protected Response newResponse(Request request, List<NodeResponse> responses, List<FailedNodeException> failures) {
+        return new Response(clusterService.getClusterName(), responses, failures, request.size());
+    }
+
+    @Override
+    protected NodeRequest newNodeRequest(Request request) {
+        return new NodeRequest();
+    }
+
+    @Override
+    protected NodeResponse newNodeResponse(StreamInput in, DiscoveryNode node) throws IOException {
+        return new NodeResponse(in);
+    }
+
+    @Override
+    protected NodeResponse nodeOperation(NodeRequest request, Task task) {
+        ProfilerState profilerState = ProfilerState.getInstance();
+        return new NodeResponse(
+            clusterService.localNode(),
+            profilerState.getCounters().peek(),
+            profilerState.getLatencies().peek()
+        );
+    }
+
+    public static class Request extends BaseNodesRequest<Request> {
+
+        public static final int DEFAULT_SIZE = 10;
+
+        private int size = DEFAULT_SIZE;
+
+        public Request(String... nodesIds) {
+            super(nodesIds);
+        }
+
+        /**
+         * The number of hottest indices to return.
+         */
+        public Request size(int size) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("size must be positive but was [" + size + "]");
+            }
+            this.size = size;
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+
+    public static class Response extends BaseNodesResponse<NodeResponse> implements ToXContentFragment {
+
+        private final int size;
+        private final List<HotIndex> hotIndices;
+
+        public Response(StreamInput in) throws IOException {
+            super(in);
+            this.size = in.readVInt();
+            this.hotIndices = merge(getNodes(), size);
+        }
+
+        public Response(ClusterName clusterName, List<NodeResponse> nodeResponses, List<FailedNodeException> failures, int size) {
+            super(clusterName, nodeResponses, failures);
+            this.size = size;
+            this.hotIndices = merge(nodeResponses, size);
+        }
+
+        public List<HotIndex> getHotIndices() {
+            return hotIndices;
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeVInt(size);
+        }
+
+        @Override
+        protected List<NodeResponse> readNodesFrom(StreamInput in) throws IOException {
+            return in.readCollectionAsList(NodeResponse::new);
+        }
+
+        @Override
+        protected void writeNodesTo(StreamOutput out, List<NodeResponse> nodes) throws IOException {
+            out.writeCollection(nodes);
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startArray("hot_indices");
+            for (HotIndex hotIndex : hotIndices) {
+                hotIndex.toXContent(builder, params);
+            }
+            builder.endArray();
+            return builder;
+        }
+
+        /**
+         * Sums up the counters and merges the latency histograms of all nodes per index, and returns the {@code size} indices that
+         * received the most requests.
+         */
+        static List<HotIndex> merge(List<NodeResponse> nodeResponses, int size) {
+            final int numOperations = ProfilerCounters.Operation.values().length;
+            final int numPhases = ProfilerLatencies.Phase.values().length;
+            final Map<String, long[]> counts = new HashMap<>();
+            final Map<String, TDigest[]> digests = new HashMap<>();
+            for (NodeResponse nodeResponse : nodeResponses) {
+                for (ProfilerCounters.IndexCounts indexCounts : nodeResponse.getCounts()) {
+                    final long[] merged = counts.computeIfAbsent(indexCounts.index(), k -> new long[numOperations]);
+                    for (ProfilerCounters.Operation operation : ProfilerCounters.Operation.values()) {
+                        merged[operation.ordinal()] += indexCounts.count(operation);
+                    }
+                }
+                for (ProfilerLatencies.PhaseLatencies phaseLatencies : nodeResponse.getLatencies()) {
+                    final TDigest[] merged = digests.computeIfAbsent(phaseLatencies.index(), k -> new TDigest[numPhases]);
+                    final int phase = phaseLatencies.phase().ordinal();
+                    if (merged[phase] == null) {
+                        merged[phase] = ProfilerLatencies.newDigest();
+                    }
+                    merged[phase].add(phaseLatencies.digest());
+                }
+            }
+
+            final TreeSet<String> indices = new TreeSet<>(counts.keySet());
+            indices.addAll(digests.keySet());
+            final List<HotIndex> hotIndices = new ArrayList<>(indices.size());
+            for (String index : indices) {
+                final long[] indexCounts = counts.getOrDefault(index, new long[numOperations]);
+                final List<ProfilerLatencies.PhaseLatencies> indexLatencies = new ArrayList<>();
+                final TDigest[] indexDigests = digests.get(index);
+                if (indexDigests != null) {
+                    for (ProfilerLatencies.Phase phase : ProfilerLatencies.Phase.values()) {
+                        if (indexDigests[phase.ordinal()] != null) {
+                            indexLatencies.add(new ProfilerLatencies.PhaseLatencies(index, phase, indexDigests[phase.ordinal()]));
+                        }
+                    }
+                }
+                hotIndices.add(
+                    new HotIndex(
+                        new ProfilerCounters.IndexCounts(
+                            index,
+                            indexCounts[ProfilerCounters.Operation.SEARCH_QUERY.ordinal()],
+                            indexCounts[ProfilerCounters.Operation.INDEX_REQUEST.ordinal()],
+                            indexCounts[ProfilerCounters.Operation.GET_REQUEST.ordinal()]
+                        ),
+                        indexLatencies
+                    )
+                );
+            }
+            // indices are visited in name order, and the sort is stable, so ties are broken by index name
+            hotIndices.sort(Comparator.comparingLong((HotIndex hotIndex) -> hotIndex.counts().totalCount()).reversed());
+            return hotIndices.size() > size ? List.copyOf(hotIndices.subList(0, size)) : hotIndices;
+        }
+    }
+
+    /**
+     * The cluster-wide counters and latencies of a single index.
+     */
+    public record HotIndex(ProfilerCounters.IndexCounts counts, List<ProfilerLatencies.PhaseLatencies> latencies)
+        implements
+            ToXContentObject {
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject();
+            builder.field("index", counts.index());
+            builder.field("total_count", counts.totalCount());
+            for (ProfilerCounters.Operation operation : ProfilerCounters.Operation.values()) {
+                builder.field(operation.fieldName(), counts.count(operation));
+            }
+            builder.startObject("latencies");
+            for (ProfilerLatencies.PhaseLatencies phaseLatencies : latencies) {
+                builder.startObject(phaseLatencies.phase().fieldName());
+                builder.field("count", phaseLatencies.count());
+                builder.field("p50_in_millis", phaseLatencies.quantile(0.5));
+                builder.field("p99_in_millis", phaseLatencies.quantile(0.99));
+                builder.field("p999_in_millis", phaseLatencies.quantile(0.999));
+                builder.endObject();
+            }
+            builder.endObject();
+            return builder.endObject();
+        }
+    }
+
+    public static class NodeRequest extends TransportRequest {
+
+        public NodeRequest(StreamInput in) throws IOException {
+            super(in);
+        }
+
+        NodeRequest() {}
+    }
+
+    public static class NodeResponse extends BaseNodeResponse {
+
+        private final List<ProfilerCounters.IndexCounts> counts;
+        private final List<ProfilerLatencies.PhaseLatencies> latencies;
+
+        public NodeResponse(StreamInput in) throws IOException {
+            super(in);
+            this.counts = in.readCollectionAsList(ProfilerCounters.IndexCounts::new);
+            this.latencies = in.readCollectionAsList(ProfilerLatencies.PhaseLatencies::new);
+        }
+
+        public NodeResponse(
+            DiscoveryNode node,
+            List<ProfilerCounters.IndexCounts> counts,
+            List<ProfilerLatencies.PhaseLatencies> latencies
+        ) {
+            super(node);
+            this.counts = counts;
+            this.latencies = latencies;
+        }
+
+        public List<ProfilerCounters.IndexCounts> getCounts() {
+            return counts;
+        }
+
+        public List<ProfilerLatencies.PhaseLatencies> getLatencies() {
+            return latencies;
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeCollection(counts);
+            out.writeCollection(latencies);
+        }
+    }
+}
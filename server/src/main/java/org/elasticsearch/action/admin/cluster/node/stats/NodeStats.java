@@ -23,6 +23,7 @@ import org.elasticsearch.discovery.DiscoveryStats;
 import org.elasticsearch.http.HttpStats;
 import org.elasticsearch.index.stats.IndexingPressureStats;
 import org.elasticsearch.indices.NodeIndicesStats;
+import org.elasticsearch.indices.TranslogGroupCommitStats;
 import org.elasticsearch.indices.breaker.AllCircuitBreakerStats;
 import org.elasticsearch.ingest.IngestStats;
 import org.elasticsearch.monitor.fs.FsInfo;
@@ -102,6 +103,9 @@ public class NodeStats extends BaseNodeResponse implements ChunkedToXContent {
     @Nullable
     private final NodeAllocationStats nodeAllocationStats;
 
+    @Nullable
+    private final TranslogGroupCommitStats translogGroupCommitStats;
+
     public NodeStats(StreamInput in) throws IOException {
         super(in);
         timestamp = in.readVLong();
@@ -128,6 +132,9 @@ public class NodeStats extends BaseNodeResponse implements ChunkedToXContent {
         nodeAllocationStats = in.getTransportVersion().onOrAfter(TransportVersions.ALLOCATION_STATS)
             ? in.readOptionalWriteable(NodeAllocationStats::new)
             : null;
+        translogGroupCommitStats = in.getTransportVersion().onOrAfter(TransportVersions.TRANSLOG_GROUP_COMMIT_STATS)
+            ? in.readOptionalWriteable(TranslogGroupCommitStats::new)
+            : null;
     }
 
     public NodeStats(
@@ -149,7 +156,8 @@ public class NodeStats extends BaseNodeResponse implements ChunkedToXContent {
         @Nullable ScriptCacheStats scriptCacheStats,
         @Nullable IndexingPressureStats indexingPressureStats,
         @Nullable RepositoriesStats repositoriesStats,
-        @Nullable NodeAllocationStats nodeAllocationStats
+        @Nullable NodeAllocationStats nodeAllocationStats,
+        @Nullable TranslogGroupCommitStats translogGroupCommitStats
     ) {
         super(node);
         this.timestamp = timestamp;
@@ -170,6 +178,7 @@ public class NodeStats extends BaseNodeResponse implements ChunkedToXContent {
         this.indexingPressureStats = indexingPressureStats;
         this.repositoriesStats = repositoriesStats;
         this.nodeAllocationStats = nodeAllocationStats;
+        this.translogGroupCommitStats = translogGroupCommitStats;
     }
 
     public NodeStats withNodeAllocationStats(
@@ -195,7 +204,8 @@ public class NodeStats extends BaseNodeResponse implements ChunkedToXContent {
             scriptCacheStats,
             indexingPressureStats,
             repositoriesStats,
-            nodeAllocationStats
+            nodeAllocationStats,
+            translogGroupCommitStats
         );
     }
 
@@ -311,6 +321,11 @@ public class NodeStats extends BaseNodeResponse implements ChunkedToXContent {
         return nodeAllocationStats;
     }
 
+    @Nullable
+    public TranslogGroupCommitStats getTranslogGroupCommitStats() {
+        return translogGroupCommitStats;
+    }
+
     @Override
     public void writeTo(StreamOutput out) throws IOException {
         super.writeTo(out);
@@ -340,6 +355,9 @@ public class NodeStats extends BaseNodeResponse implements ChunkedToXContent {
         if (out.getTransportVersion().onOrAfter(TransportVersions.ALLOCATION_STATS)) {
             out.writeOptionalWriteable(nodeAllocationStats);
         }
+        if (out.getTransportVersion().onOrAfter(TransportVersions.TRANSLOG_GROUP_COMMIT_STATS)) {
+            out.writeOptionalWriteable(translogGroupCommitStats);
+        }
     }
 
     @Override
@@ -390,6 +408,7 @@ public class NodeStats extends BaseNodeResponse implements ChunkedToXContent {
                 (builder, p) -> builder.value(ifPresent(getIndexingPressureStats()), p)
                     .value(ifPresent(getRepositoriesStats()), p)
                     .value(ifPresent(getNodeAllocationStats()), p)
+                    .value(ifPresent(getTranslogGroupCommitStats()), p)
             )
         );
     }
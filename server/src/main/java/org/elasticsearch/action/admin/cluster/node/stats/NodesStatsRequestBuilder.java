@@ -163,6 +163,11 @@ public class NodesStatsRequestBuilder extends NodesOperationRequestBuilder<
         return this;
     }
 
+    public NodesStatsRequestBuilder setTranslogGroupCommit(boolean translogGroupCommit) {
+        addOrRemoveMetric(translogGroupCommit, NodesStatsRequestParameters.Metric.TRANSLOG_GROUP_COMMIT);
+        return this;
+    }
+
     /**
      * Helper method for adding metrics to a request
      */
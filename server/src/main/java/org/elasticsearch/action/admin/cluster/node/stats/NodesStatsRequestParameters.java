@@ -90,7 +90,8 @@ public class NodesStatsRequestParameters implements Writeable {
         SCRIPT_CACHE("script_cache"),
         INDEXING_PRESSURE("indexing_pressure"),
         REPOSITORIES("repositories"),
-        ALLOCATIONS("allocations");
+        ALLOCATIONS("allocations"),
+        TRANSLOG_GROUP_COMMIT("translog_group_commit");
 
         private String metricName;
 
@@ -792,6 +792,10 @@ public class ClusterStatsNodes implements ToXContentFragment {
             long currentCoordinatingOps = 0;
             long currentPrimaryOps = 0;
             long currentReplicaOps = 0;
+            long trackedShards = 0;
+            long throttledShards = 0;
+            long shardLimitDecreases = 0;
+            long shardRejections = 0;
             for (NodeStats nodeStat : nodeStats) {
                 IndexingPressureStats nodeStatIndexingPressureStats = nodeStat.getIndexingPressureStats();
                 if (nodeStatIndexingPressureStats != null) {
@@ -815,6 +819,10 @@ public class ClusterStatsNodes implements ToXContentFragment {
                     currentReplicaOps += nodeStatIndexingPressureStats.getCurrentReplicaOps();
                     primaryDocumentRejections += nodeStatIndexingPressureStats.getPrimaryDocumentRejections();
                     totalCoordinatingRequests += nodeStatIndexingPressureStats.getTotalCoordinatingRequests();
+                    trackedShards += nodeStatIndexingPressureStats.getTrackedShards();
+                    throttledShards += nodeStatIndexingPressureStats.getThrottledShards();
+                    shardLimitDecreases += nodeStatIndexingPressureStats.getShardLimitDecreases();
+                    shardRejections += nodeStatIndexingPressureStats.getShardRejections();
                 }
             }
             indexingPressureStats = new IndexingPressureStats(
@@ -837,7 +845,12 @@ public class ClusterStatsNodes implements ToXContentFragment {
                 currentPrimaryOps,
                 currentReplicaOps,
                 primaryDocumentRejections,
-                totalCoordinatingRequests
+                totalCoordinatingRequests,
+                trackedShards,
+                throttledShards,
+                shardLimitDecreases,
+                shardRejections,
+                List.of()
             );
         }
 
@@ -0,0 +1,226 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.action.bulk;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
+import org.elasticsearch.core.Nullable;
+import org.elasticsearch.index.mapper.SourceToParse;
+import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.plugins.internal.DocumentParsingProvider;
+import org.elasticsearch.plugins.internal.DocumentSizeObserver;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static org.elasticsearch.core.Strings.format;
+
+/**
+ * Parses the documents of the index requests of a shard bulk request on helper threads ahead of the thread that executes the items, so
+ * that parsing, which is usually the most expensive part of indexing a document, uses more than one core per shard bulk request. The items
+ * are still applied to the engine one after the other in the order of the request by the executing thread, which takes the parsed document
+ * of each item as it gets to it. If a helper hasn't finished parsing an item by then, the executing thread parses it itself, so helpers
+ * that are queued behind other work or slow to parse a document never hold up the request.
+ * <p>
+ * Helpers only parse items up to a fixed number of items ahead of the item that is being executed, which bounds the memory that parsed
+ * documents hold on to. Helpers stop when they reach the end of that window and are forked again once the executing thread has taken
+ * half of it.
+ */
+final class BulkItemPreParser {
+
+    private static final Logger logger = LogManager.getLogger(BulkItemPreParser.class);
+
+    /**
+     * The maximum number of items that helpers parse ahead of the item that is being executed.
+     */
+    static final int MAX_ITEMS_AHEAD = 64;
+
+    // the item is being parsed by a helper
+    private static final Object PARSING = new Object();
+    // the item was taken by the executing thread, or there is no parsed document for it
+    private static final Object DONE = new Object();
+
+    private final BulkItemRequest[] items;
+    private final IndexShard primary;
+    private final DocumentParsingProvider documentParsingProvider;
+    private final int maxItemsAhead;
+    private final AtomicReferenceArray<Object> parsedItems;
+    private final AtomicInteger nextItem = new AtomicInteger();
+    private final AtomicInteger runningHelpers = new AtomicInteger();
+    private volatile int lastTakenItem = -1;
+    private volatile boolean cancelled;
+
+    // only accessed by the thread that executes the items, which also is the only thread that forks helpers
+    private Executor executor;
+    private int maxHelpers;
+
+    BulkItemPreParser(BulkShardRequest request, IndexShard primary, DocumentParsingProvider documentParsingProvider) {
+        this(request, primary, documentParsingProvider, MAX_ITEMS_AHEAD);
+    }
+
+    BulkItemPreParser(BulkShardRequest request, IndexShard primary, DocumentParsingProvider documentParsingProvider, int maxItemsAhead) {
+        assert maxItemsAhead > 0 : maxItemsAhead;
+        this.items = request.items();
+        this.primary = primary;
+        this.documentParsingProvider = documentParsingProvider;
+        this.maxItemsAhead = maxItemsAhead;
+        this.parsedItems = new AtomicReferenceArray<>(items.length);
+    }
+
+    /**
+     * @return the number of items of the request whose document can be parsed ahead of time
+     */
+    static int countParseableItems(BulkShardRequest request) {
+        int count = 0;
+        for (BulkItemRequest item : request.items()) {
+            if (isParseable(item)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isParseable(BulkItemRequest item) {
+        return item != null && item.getPrimaryResponse() == null && item.request() instanceof IndexRequest;
+    }
+
+    /**
+     * Forks up to the given number of helpers on the given executor that parse the items of the request ahead of the executing thread.
+     * Must be called by the executing thread, which forks the helpers again as it takes the items.
+     */
+    void forkHelpers(Executor executor, int helpers) {
+        this.executor = executor;
+        this.maxHelpers = helpers;
+        forkMissingHelpers();
+    }
+
+    /**
+     * Stops the helpers from parsing any further items, e.g. because the request completed or failed.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    private void forkMissingHelpers() {
+        if (hasItemsToParse() == false) {
+            return;
+        }
+        final int missingHelpers = maxHelpers - runningHelpers.get();
+        for (int i = 0; i < missingHelpers; i++) {
+            runningHelpers.incrementAndGet();
+            executor.execute(new AbstractRunnable() {
+                @Override
+                protected void doRun() {
+                    parseItemsAhead();
+                }
+
+                @Override
+                public void onRejection(Exception e) {
+                    // the executing thread parses the items itself
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    assert false : e;
+                    logger.warn(() -> format("%s failed to parse bulk items ahead of time", primary.shardId()), e);
+                }
+
+                @Override
+                public void onAfter() {
+                    runningHelpers.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    private boolean hasItemsToParse() {
+        // only fork helpers again once at least half of the window is free, so that they aren't forked for each item
+        final int next = nextItem.get();
+        return cancelled == false && next < items.length && next <= lastTakenItem + Math.max(1, maxItemsAhead / 2);
+    }
+
+    private void parseItemsAhead() {
+        int index;
+        while ((index = claimNextItem()) >= 0) {
+            if (isParseable(items[index]) && parsedItems.compareAndSet(index, null, PARSING)) {
+                final ParsedItem parsedItem = parse((IndexRequest) items[index].request());
+                // if the executing thread already took the item then it parsed the document itself and we drop ours
+                parsedItems.compareAndSet(index, PARSING, parsedItem == null ? DONE : parsedItem);
+            }
+        }
+    }
+
+    /**
+     * @return the index of the next item to parse, or {@code -1} if there is none within the window or the helpers were cancelled
+     */
+    private int claimNextItem() {
+        while (cancelled == false) {
+            final int index = nextItem.get();
+            if (index >= items.length || index > lastTakenItem + maxItemsAhead) {
+                return -1;
+            }
+            if (nextItem.compareAndSet(index, index + 1)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    @Nullable
+    private ParsedItem parse(IndexRequest request) {
+        final DocumentSizeObserver documentSizeObserver = TransportShardBulkAction.getDocumentSizeObserver(
+            documentParsingProvider,
+            request
+        );
+        final SourceToParse sourceToParse = new SourceToParse(
+            request.id(),
+            request.source(),
+            request.getContentType(),
+            request.routing(),
+            request.getDynamicTemplates(),
+            documentSizeObserver
+        );
+        final IndexShard.PreParsedDocument document;
+        try {
+            document = primary.preParseDocument(sourceToParse);
+        } catch (Exception e) {
+            // the executing thread parses the document again and reports the failure
+            logger.trace(() -> format("%s failed to parse document [%s] ahead of time", primary.shardId(), request.id()), e);
+            return null;
+        }
+        return document == null ? null : new ParsedItem(sourceToParse, documentSizeObserver, document);
+    }
+
+    /**
+     * Takes the parsed document of the item at the given index, if a helper finished parsing it, and moves the window of items that the
+     * helpers parse ahead accordingly. Each item can only be taken once, so retries of the item after a mapping update parse the document
+     * again. Must be called by the executing thread.
+     *
+     * @return the parsed item, or {@code null} if the document of the item wasn't parsed ahead of time and must be parsed by the caller
+     */
+    @Nullable
+    ParsedItem take(int index) {
+        final Object parsedItem = parsedItems.getAndSet(index, DONE);
+        if (index > lastTakenItem) {
+            lastTakenItem = index;
+            forkMissingHelpers();
+        }
+        return parsedItem instanceof ParsedItem item ? item : null;
+    }
+
+    /**
+     * @param sourceToParse        the source the document was parsed from
+     * @param documentSizeObserver the observer that was notified while parsing the source
+     * @param document             the parsed document
+     */
+    record ParsedItem(SourceToParse sourceToParse, DocumentSizeObserver documentSizeObserver, IndexShard.PreParsedDocument document) {}
+}
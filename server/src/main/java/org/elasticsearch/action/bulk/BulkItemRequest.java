@@ -30,8 +30,12 @@ public class BulkItemRequest implements Writeable, Accountable {
     private volatile BulkItemResponse primaryResponse;
 
     BulkItemRequest(@Nullable ShardId shardId, StreamInput in) throws IOException {
+        this(shardId, in, false);
+    }
+
+    BulkItemRequest(@Nullable ShardId shardId, StreamInput in, boolean retainSource) throws IOException {
         id = in.readVInt();
-        request = DocWriteRequest.readDocumentRequest(shardId, in);
+        request = DocWriteRequest.readDocumentRequest(shardId, in, retainSource);
         if (in.readBoolean()) {
             if (shardId == null) {
                 primaryResponse = new BulkItemResponse(in);
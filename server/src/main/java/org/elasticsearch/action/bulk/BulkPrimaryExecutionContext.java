@@ -15,6 +15,7 @@ import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.support.replication.ReplicationResponse;
 import org.elasticsearch.action.support.replication.TransportWriteAction;
+import org.elasticsearch.core.Nullable;
 import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.translog.Translog;
@@ -64,6 +65,8 @@ class BulkPrimaryExecutionContext {
     private int updateRetryCounter;
     private long noopMappingUpdateRetryForMappingVersion;
     private DocumentSizeObserver documentSizeObserver = DocumentSizeObserver.EMPTY_INSTANCE;
+    @Nullable
+    private BulkItemPreParser preParser;
 
     BulkPrimaryExecutionContext(BulkShardRequest request, IndexShard primary) {
         this.request = request;
@@ -370,6 +373,22 @@ class BulkPrimaryExecutionContext {
         return true;
     }
 
+    void setPreParser(BulkItemPreParser preParser) {
+        this.preParser = preParser;
+    }
+
+    /**
+     * @return the document of the current item if it was parsed ahead of time and the item wasn't translated into another request
+     */
+    @Nullable
+    BulkItemPreParser.ParsedItem takePreParsedItem() {
+        assert assertInvariants(ItemProcessingState.TRANSLATED);
+        if (preParser == null || requestToExecute != getCurrent()) {
+            return null;
+        }
+        return preParser.take(currentIndex);
+    }
+
     public void setDocumentSizeObserver(DocumentSizeObserver documentSizeObserver) {
         this.documentSizeObserver = documentSizeObserver;
     }
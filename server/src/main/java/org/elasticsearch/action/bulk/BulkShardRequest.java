@@ -17,13 +17,20 @@ import org.elasticsearch.action.support.replication.ReplicatedWriteRequest;
 import org.elasticsearch.action.support.replication.ReplicationRequest;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.cluster.metadata.InferenceFieldMetadata;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.util.set.Sets;
+import org.elasticsearch.core.AbstractRefCounted;
+import org.elasticsearch.core.RefCounted;
+import org.elasticsearch.core.Releasables;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.transport.LeakTracker;
 import org.elasticsearch.transport.RawIndexingDataTransportRequest;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -37,16 +44,43 @@ public final class BulkShardRequest extends ReplicatedWriteRequest<BulkShardRequ
     private final BulkItemRequest[] items;
     private final boolean isSimulated;
 
+    /**
+     * Releases the sources of the index requests that were read without copying them out of the buffer this request was received in.
+     * {@link RefCounted#ALWAYS_REFERENCED} for requests that were created locally.
+     */
+    private final RefCounted refCounted;
+
     private transient Map<String, InferenceFieldMetadata> inferenceFieldMap = null;
 
+    /**
+     * Reads a bulk shard request. If the stream can hand out retained slices of the buffer it reads from, as it does for requests received
+     * over the network, the sources of the index requests are sliced from that buffer rather than copied, and the buffer is retained until
+     * the last reference to this request is released.
+     */
     public BulkShardRequest(StreamInput in) throws IOException {
         super(in);
-        items = in.readArray(i -> i.readOptionalWriteable(inpt -> new BulkItemRequest(shardId, inpt)), BulkItemRequest[]::new);
-        if (in.getTransportVersion().onOrAfter(TransportVersions.SIMULATE_VALIDATES_MAPPINGS)) {
-            isSimulated = in.readBoolean();
-        } else {
-            isSimulated = false;
+        final boolean retainSources = in.supportReadAllToReleasableBytesReference();
+        items = new BulkItemRequest[in.readArraySize()];
+        boolean success = false;
+        try {
+            for (int i = 0; i < items.length; i++) {
+                items[i] = in.readBoolean() ? new BulkItemRequest(shardId, in, retainSources) : null;
+            }
+            if (in.getTransportVersion().onOrAfter(TransportVersions.SIMULATE_VALIDATES_MAPPINGS)) {
+                isSimulated = in.readBoolean();
+            } else {
+                isSimulated = false;
+            }
+            success = true;
+        } finally {
+            if (success == false) {
+                Releasables.close(retainedSources(items));
+            }
         }
+        final List<ReleasableBytesReference> retainedSources = retainedSources(items);
+        refCounted = retainedSources.isEmpty()
+            ? RefCounted.ALWAYS_REFERENCED
+            : LeakTracker.wrap(AbstractRefCounted.of(() -> Releasables.close(retainedSources)));
     }
 
     public BulkShardRequest(ShardId shardId, RefreshPolicy refreshPolicy, BulkItemRequest[] items) {
@@ -58,6 +92,7 @@ public final class BulkShardRequest extends ReplicatedWriteRequest<BulkShardRequ
         this.items = items;
         setRefreshPolicy(refreshPolicy);
         this.isSimulated = isSimulated;
+        this.refCounted = RefCounted.ALWAYS_REFERENCED;
     }
 
     /**
@@ -102,6 +137,18 @@ public final class BulkShardRequest extends ReplicatedWriteRequest<BulkShardRequ
         return totalSizeInBytes;
     }
 
+    private static List<ReleasableBytesReference> retainedSources(BulkItemRequest[] items) {
+        final List<ReleasableBytesReference> retainedSources = new ArrayList<>();
+        for (BulkItemRequest item : items) {
+            if (item != null
+                && item.request() instanceof IndexRequest indexRequest
+                && indexRequest.source() instanceof ReleasableBytesReference source) {
+                retainedSources.add(source);
+            }
+        }
+        return retainedSources;
+    }
+
     public BulkItemRequest[] items() {
         return items;
     }
@@ -208,4 +255,24 @@ public final class BulkShardRequest extends ReplicatedWriteRequest<BulkShardRequ
     public boolean isSimulated() {
         return isSimulated;
     }
+
+    @Override
+    public void incRef() {
+        refCounted.incRef();
+    }
+
+    @Override
+    public boolean tryIncRef() {
+        return refCounted.tryIncRef();
+    }
+
+    @Override
+    public boolean decRef() {
+        return refCounted.decRef();
+    }
+
+    @Override
+    public boolean hasReferences() {
+        return refCounted.hasReferences();
+    }
 }
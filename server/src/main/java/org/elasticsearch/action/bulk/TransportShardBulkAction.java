@@ -22,7 +22,10 @@ import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.ActiveShardCount;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
 import org.elasticsearch.action.support.replication.PostWriteRefresh;
+import org.elasticsearch.action.support.replication.ReplicationResponse;
 import org.elasticsearch.action.support.replication.TransportReplicationAction;
 import org.elasticsearch.action.support.replication.TransportWriteAction;
 import org.elasticsearch.action.update.UpdateHelper;
@@ -37,7 +40,9 @@ import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.compress.CompressedXContent;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.core.Nullable;
 import org.elasticsearch.core.Strings;
@@ -66,6 +71,9 @@ import org.elasticsearch.transport.TransportService;
 import org.elasticsearch.xcontent.XContentType;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.Executor;
@@ -82,11 +90,38 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
 
     private static final Logger logger = LogManager.getLogger(TransportShardBulkAction.class);
 
+    /**
+     * Shard bulk requests that are larger than this are split into chunks of about this size on the primary, and each chunk is replicated
+     * while the next one executes on the primary. Only applies to requests that don't refresh. {@code 0} disables splitting.
+     */
+    public static final Setting<ByteSizeValue> PIPELINED_REPLICATION_CHUNK_SIZE = Setting.byteSizeSetting(
+        "indices.replication.bulk.pipelined_chunk_size",
+        ByteSizeValue.ZERO,
+        ByteSizeValue.ZERO,
+        ByteSizeValue.ofBytes(Long.MAX_VALUE),
+        Setting.Property.NodeScope,
+        Setting.Property.Dynamic
+    );
+
+    /**
+     * The number of helpers that parse the documents of a shard bulk request on other write threads ahead of the thread that executes the
+     * request. {@code 0} disables parsing ahead of time.
+     */
+    public static final Setting<Integer> PARALLEL_PARSING_HELPERS = Setting.intSetting(
+        "indices.bulk.parallel_parsing_helpers",
+        0,
+        0,
+        Setting.Property.NodeScope,
+        Setting.Property.Dynamic
+    );
+
     private final UpdateHelper updateHelper;
     private final MappingUpdatedAction mappingUpdatedAction;
     private final Consumer<Runnable> postWriteAction;
 
     private final DocumentParsingProvider documentParsingProvider;
+    private volatile long pipelinedReplicationChunkSize;
+    private volatile int parallelParsingHelpers;
 
     @Inject
     public TransportShardBulkAction(
@@ -123,6 +158,9 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
         this.mappingUpdatedAction = mappingUpdatedAction;
         this.postWriteAction = WriteAckDelay.create(settings, threadPool);
         this.documentParsingProvider = documentParsingProvider;
+        clusterService.getClusterSettings()
+            .initializeAndWatch(PIPELINED_REPLICATION_CHUNK_SIZE, value -> this.pipelinedReplicationChunkSize = value.getBytes());
+        clusterService.getClusterSettings().initializeAndWatch(PARALLEL_PARSING_HELPERS, value -> this.parallelParsingHelpers = value);
     }
 
     private static final TransportRequestOptions TRANSPORT_REQUEST_OPTIONS = TransportRequestOptions.of(
@@ -166,7 +204,106 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
             public void onTimeout(TimeValue timeout) {
                 mappingUpdateListener.onFailure(new MapperException("timed out while waiting for a dynamic mapping update"));
             }
-        }), listener, executor(primary), postWriteRefresh, postWriteAction, documentParsingProvider);
+        }), listener, executor(primary), postWriteRefresh, postWriteAction, documentParsingProvider, parallelParsingHelpers);
+    }
+
+    @Override
+    @Nullable
+    protected PrimaryRequestChunks<BulkShardRequest, BulkShardResponse> splitPrimaryRequest(BulkShardRequest request) {
+        final List<BulkShardRequest> chunks = splitPrimaryRequest(request, pipelinedReplicationChunkSize);
+        return chunks.size() == 1
+            ? null
+            : new PrimaryRequestChunks<>(chunks, (responses, failure) -> combineChunkResponses(request, chunks, responses, failure));
+    }
+
+    static List<BulkShardRequest> splitPrimaryRequest(BulkShardRequest request, long chunkSize) {
+        // refreshing or waiting for a refresh after every chunk would be wasteful, and waiting for a refresh after the last one only does
+        // not guarantee that the chunks before it are visible on the replicas, since they may be applied out of order there
+        if (chunkSize <= 0 || request.getRefreshPolicy() != RefreshPolicy.NONE || request.isSimulated()) {
+            return List.of(request);
+        }
+        final BulkItemRequest[] items = request.items();
+        final List<BulkShardRequest> chunks = new ArrayList<>();
+        int chunkStart = 0;
+        long bytes = 0;
+        for (int i = 0; i < items.length - 1; i++) {
+            bytes += items[i] == null ? 0 : items[i].ramBytesUsed();
+            if (bytes >= chunkSize) {
+                chunks.add(chunk(request, chunkStart, i + 1, chunks.isEmpty()));
+                chunkStart = i + 1;
+                bytes = 0;
+            }
+        }
+        if (chunks.isEmpty()) {
+            return List.of(request);
+        }
+        chunks.add(chunk(request, chunkStart, items.length, false));
+        return chunks;
+    }
+
+    private static BulkShardRequest chunk(BulkShardRequest request, int from, int to, boolean firstChunk) {
+        final BulkShardRequest chunk = new BulkShardRequest(
+            request.shardId(),
+            request.getRefreshPolicy(),
+            Arrays.copyOfRange(request.items(), from, to),
+            request.isSimulated()
+        );
+        chunk.timeout(request.timeout());
+        // once the first chunk has been applied the later ones must not fail for lack of active shards, see PrimaryRequestChunks
+        chunk.waitForActiveShards(firstChunk ? request.waitForActiveShards() : ActiveShardCount.NONE);
+        chunk.setParentTask(request.getParentTask());
+        return chunk;
+    }
+
+    static BulkShardResponse combineChunkResponses(
+        BulkShardRequest request,
+        List<BulkShardRequest> chunks,
+        List<BulkShardResponse> responses,
+        @Nullable Exception failure
+    ) {
+        assert chunks.size() == responses.size() : chunks.size() + " chunks but " + responses.size() + " responses";
+        final BulkItemResponse[] itemResponses = new BulkItemResponse[request.items().length];
+        int total = 0;
+        int successful = Integer.MAX_VALUE;
+        final List<ReplicationResponse.ShardInfo.Failure> failures = new ArrayList<>();
+        int offset = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            final BulkShardResponse response = responses.get(i);
+            if (response == null) {
+                // the chunk failed or did not run after an earlier chunk failed, but earlier chunks were applied so only its items fail
+                assert failure != null : "chunk [" + i + "] has no response but no chunk failed";
+                for (BulkItemRequest item : chunks.get(i).items()) {
+                    itemResponses[offset++] = BulkItemResponse.failure(
+                        item.id(),
+                        item.request().opType(),
+                        new BulkItemResponse.Failure(item.index(), item.request().id(), failure)
+                    );
+                }
+                continue;
+            }
+            System.arraycopy(response.getResponses(), 0, itemResponses, offset, response.getResponses().length);
+            offset += response.getResponses().length;
+            // a copy that failed while replicating a chunk is removed from the replication group of the chunks that follow
+            final ReplicationResponse.ShardInfo shardInfo = response.getShardInfo();
+            total = Math.max(total, shardInfo.getTotal());
+            successful = Math.min(successful, shardInfo.getSuccessful());
+            failures.addAll(Arrays.asList(shardInfo.getFailures()));
+        }
+        assert offset == itemResponses.length : offset + " item responses for " + itemResponses.length + " items";
+        final BulkShardResponse response = new BulkShardResponse(request.shardId(), itemResponses);
+        response.setShardInfo(
+            ReplicationResponse.ShardInfo.of(
+                total,
+                total == 0 ? 0 : successful,
+                failures.toArray(new ReplicationResponse.ShardInfo.Failure[0])
+            )
+        );
+        return response;
+    }
+
+    @Override
+    protected void onPrimaryOperationDispatched(BulkShardRequest request, long queueLatencyInNanos) {
+        indexingPressure.onPrimaryOperationDequeued(request.shardId(), primaryOperationSize(request), queueLatencyInNanos);
     }
 
     @Override
@@ -217,9 +354,55 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
         @Nullable Consumer<Runnable> postWriteAction,
         DocumentParsingProvider documentParsingProvider
     ) {
-        new ActionRunnable<>(listener) {
+        performOnPrimary(
+            request,
+            primary,
+            updateHelper,
+            nowInMillisSupplier,
+            mappingUpdater,
+            waitForMappingUpdate,
+            listener,
+            executor,
+            postWriteRefresh,
+            postWriteAction,
+            documentParsingProvider,
+            0
+        );
+    }
 
-            private final BulkPrimaryExecutionContext context = new BulkPrimaryExecutionContext(request, primary);
+    /**
+     * @param parallelParsingHelpers the number of helpers to fork on the executor that parse the documents of the request ahead of the
+     *                               thread that executes its items, see {@link #PARALLEL_PARSING_HELPERS}
+     */
+    public static void performOnPrimary(
+        BulkShardRequest request,
+        IndexShard primary,
+        UpdateHelper updateHelper,
+        LongSupplier nowInMillisSupplier,
+        MappingUpdatePerformer mappingUpdater,
+        Consumer<ActionListener<Void>> waitForMappingUpdate,
+        ActionListener<PrimaryResult<BulkShardRequest, BulkShardResponse>> listener,
+        Executor executor,
+        @Nullable PostWriteRefresh postWriteRefresh,
+        @Nullable Consumer<Runnable> postWriteAction,
+        DocumentParsingProvider documentParsingProvider,
+        int parallelParsingHelpers
+    ) {
+        final BulkPrimaryExecutionContext context = new BulkPrimaryExecutionContext(request, primary);
+        // the executing thread parses items too, so there is no point in more helpers than there are items minus one
+        final int helpers = parallelParsingHelpers > 0
+            ? Math.min(parallelParsingHelpers, BulkItemPreParser.countParseableItems(request) - 1)
+            : 0;
+        final BulkItemPreParser preParser = helpers > 0 ? new BulkItemPreParser(request, primary, documentParsingProvider) : null;
+        // stop the helpers once the request completes, it may have failed before all items were taken
+        final ActionListener<PrimaryResult<BulkShardRequest, BulkShardResponse>> requestListener = preParser == null
+            ? listener
+            : ActionListener.runBefore(listener, preParser::cancel);
+        if (preParser != null) {
+            context.setPreParser(preParser);
+            preParser.forkHelpers(executor, helpers);
+        }
+        new ActionRunnable<>(requestListener) {
 
             final long startBulkTime = System.nanoTime();
 
@@ -251,7 +434,7 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
             public void onRejection(Exception e) {
                 // We must finish the outstanding request. Finishing the outstanding request can include
                 // refreshing and fsyncing. Therefore, we must force execution on the WRITE thread.
-                executor.execute(new ActionRunnable<>(listener) {
+                executor.execute(new ActionRunnable<>(requestListener) {
 
                     @Override
                     protected void doRun() {
@@ -283,7 +466,7 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
 
             private void finishRequest() {
                 ActionListener.completeWith(
-                    listener,
+                    requestListener,
                     () -> new WritePrimaryResult<>(
                         context.getBulkShardRequest(),
                         context.buildShardResponse(),
@@ -358,17 +541,24 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
             );
         } else {
             final IndexRequest request = context.getRequestToExecute();
-            DocumentSizeObserver documentSizeObserver = getDocumentSizeObserver(documentParsingProvider, request);
-
-            context.setDocumentSizeObserver(documentSizeObserver);
-            final SourceToParse sourceToParse = new SourceToParse(
-                request.id(),
-                request.source(),
-                request.getContentType(),
-                request.routing(),
-                request.getDynamicTemplates(),
-                documentSizeObserver
-            );
+            final BulkItemPreParser.ParsedItem preParsedItem = context.takePreParsedItem();
+            final SourceToParse sourceToParse;
+            if (preParsedItem != null) {
+                context.setDocumentSizeObserver(preParsedItem.documentSizeObserver());
+                sourceToParse = preParsedItem.sourceToParse();
+            } else {
+                DocumentSizeObserver documentSizeObserver = getDocumentSizeObserver(documentParsingProvider, request);
+
+                context.setDocumentSizeObserver(documentSizeObserver);
+                sourceToParse = new SourceToParse(
+                    request.id(),
+                    request.source(),
+                    request.getContentType(),
+                    request.routing(),
+                    request.getDynamicTemplates(),
+                    documentSizeObserver
+                );
+            }
             result = primary.applyIndexOperationOnPrimary(
                 version,
                 request.versionType(),
@@ -376,7 +566,8 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
                 request.ifSeqNo(),
                 request.ifPrimaryTerm(),
                 request.getAutoGeneratedTimestamp(),
-                request.isRetry()
+                request.isRetry(),
+                preParsedItem == null ? null : preParsedItem.document()
             );
 
         }
@@ -448,7 +639,7 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
      * or a noop instance if parsed bytes in IngestService/UpdateHelper was 0 (like when empty doc or script in update)
      * or return a new DocumentSizeObserver that will be used when parsing.
      */
-    private static DocumentSizeObserver getDocumentSizeObserver(DocumentParsingProvider documentParsingProvider, IndexRequest request) {
+    static DocumentSizeObserver getDocumentSizeObserver(DocumentParsingProvider documentParsingProvider, IndexRequest request) {
         if (request.getNormalisedBytesParsed() > 0) {
             return documentParsingProvider.newFixedSizeDocumentObserver(request.getNormalisedBytesParsed());
         } else if (request.getNormalisedBytesParsed() == 0) {
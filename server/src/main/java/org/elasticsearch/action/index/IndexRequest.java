@@ -153,6 +153,14 @@ public class IndexRequest extends ReplicatedWriteRequest<IndexRequest> implement
     }
 
     public IndexRequest(@Nullable ShardId shardId, StreamInput in) throws IOException {
+        this(shardId, in, false);
+    }
+
+    /**
+     * @param retainSource whether to read the source as a {@link org.elasticsearch.common.bytes.ReleasableBytesReference} that retains
+     *                     the buffer it was read from rather than copying it, in which case the caller is responsible for releasing it
+     */
+    public IndexRequest(@Nullable ShardId shardId, StreamInput in, boolean retainSource) throws IOException {
         super(shardId, in);
         if (in.getTransportVersion().before(TransportVersions.V_8_0_0)) {
             String type = in.readOptionalString();
@@ -160,7 +168,7 @@ public class IndexRequest extends ReplicatedWriteRequest<IndexRequest> implement
         }
         id = in.readOptionalString();
         routing = in.readOptionalString();
-        source = in.readBytesReference();
+        source = retainSource ? in.readReleasableBytesReference() : in.readBytesReference();
         opType = OpType.fromId(in.readByte());
         version = in.readLong();
         versionType = VersionType.fromValue(in.readByte());
@@ -0,0 +1,168 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.action.search;
+
+import org.apache.lucene.search.FieldComparator;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.Pruning;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.search.TotalHits;
+import org.elasticsearch.lucene.grouping.TopFieldGroups;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the top {@code topN} hits of the shard results that were added so far in a bounded priority queue, so that the top docs of
+ * each shard can be folded in and released as soon as the shard result arrives. Hits are ordered the same way as
+ * {@link SearchPhaseController#mergeTopDocs}: by sort values or score, then by shard index and finally by doc id. Since the hits of
+ * a shard are sorted, adding a shard stops at its first hit that doesn't make it into the queue.
+ * <p>
+ * Collapsed hits ({@link TopFieldGroups}) can only be merged once the hits of the same group have been deduplicated, so they are
+ * buffered and merged with {@link SearchPhaseController#mergeTopDocs} whenever {@code topN} new hits have been added, which keeps
+ * the number of buffered hits bounded and merges every hit a constant number of times.
+ * <p>
+ * This class is not thread-safe.
+ */
+final class BoundedTopDocsQueue {
+
+    private final int topN;
+    private final PriorityQueue<ScoreDoc> queue;
+
+    private long totalHits;
+    private TotalHits.Relation totalHitsRelation = TotalHits.Relation.EQUAL_TO;
+    private boolean hasResults;
+
+    // set by the first shard that was sorted by field, and replaced by the first shard with hits, like mergeTopDocs does
+    private TopFieldDocs firstFieldDocs;
+    private boolean hasFieldDocsWithHits;
+    private FieldComparator<?>[] comparators;
+    private int[] reverseMul;
+
+    // collapsed hits that have not been merged yet
+    private final List<TopDocs> pendingGroups = new ArrayList<>();
+    private int pendingGroupHits;
+    private TopDocs mergedGroups;
+
+    BoundedTopDocsQueue(int topN) {
+        this.topN = topN;
+        // the worst hit is at the head of the queue, so that it can be replaced by a better one
+        this.queue = new PriorityQueue<>((a, b) -> compare(b, a));
+    }
+
+    /**
+     * Adds the hits of a shard, whose {@link ScoreDoc#shardIndex} must already be set.
+     */
+    void add(TopDocs topDocs) {
+        hasResults = true;
+        if (topDocs instanceof TopFieldGroups) {
+            addGroups(topDocs);
+            return;
+        }
+        totalHits += topDocs.totalHits.value;
+        if (topDocs.totalHits.relation == TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO) {
+            totalHitsRelation = TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO;
+        }
+        if (topDocs instanceof TopFieldDocs fieldDocs) {
+            addSortFields(fieldDocs);
+        }
+        for (ScoreDoc hit : topDocs.scoreDocs) {
+            if (queue.size() < topN) {
+                queue.add(hit);
+            } else if (topN > 0 && compare(hit, queue.peek()) < 0) {
+                queue.poll();
+                queue.add(hit);
+            } else {
+                // the remaining hits of the shard sort after this one
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the top hits of all the shards that were added, or {@code null} if no shard was added. The hits are removed from the
+     * queue, so this must only be called once all shards have been added.
+     */
+    TopDocs pollTopDocs() {
+        if (hasResults == false) {
+            return null;
+        }
+        if (mergedGroups != null || pendingGroups.isEmpty() == false) {
+            mergePendingGroups();
+            return mergedGroups;
+        }
+        final ScoreDoc[] hits = new ScoreDoc[queue.size()];
+        for (int i = hits.length - 1; i >= 0; i--) {
+            hits[i] = queue.poll();
+        }
+        final TotalHits mergedTotalHits = new TotalHits(totalHits, totalHitsRelation);
+        return firstFieldDocs == null ? new TopDocs(mergedTotalHits, hits) : new TopFieldDocs(mergedTotalHits, hits, firstFieldDocs.fields);
+    }
+
+    private void addSortFields(TopFieldDocs fieldDocs) {
+        if (firstFieldDocs == null || (hasFieldDocsWithHits == false && fieldDocs.scoreDocs.length > 0)) {
+            firstFieldDocs = fieldDocs;
+            hasFieldDocsWithHits = fieldDocs.scoreDocs.length > 0;
+            final SortField[] sortFields = fieldDocs.fields;
+            comparators = new FieldComparator<?>[sortFields.length];
+            reverseMul = new int[sortFields.length];
+            for (int i = 0; i < sortFields.length; i++) {
+                comparators[i] = sortFields[i].getComparator(1, Pruning.NONE);
+                reverseMul[i] = sortFields[i].getReverse() ? -1 : 1;
+            }
+        } else if (fieldDocs.scoreDocs.length > 0) {
+            SearchPhaseController.checkSameSortTypes(List.of(firstFieldDocs, fieldDocs), firstFieldDocs.fields);
+        }
+    }
+
+    private void addGroups(TopDocs topDocs) {
+        pendingGroups.add(topDocs);
+        pendingGroupHits += topDocs.scoreDocs.length;
+        if (pendingGroupHits >= topN) {
+            mergePendingGroups();
+        }
+    }
+
+    private void mergePendingGroups() {
+        if (mergedGroups != null) {
+            pendingGroups.add(0, mergedGroups);
+        }
+        mergedGroups = SearchPhaseController.mergeTopDocs(pendingGroups, topN, 0);
+        pendingGroups.clear();
+        pendingGroupHits = 0;
+    }
+
+    /**
+     * Returns a negative value if the first hit sorts before the second one.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private int compare(ScoreDoc first, ScoreDoc second) {
+        if (comparators != null) {
+            final FieldDoc firstFieldDoc = (FieldDoc) first;
+            final FieldDoc secondFieldDoc = (FieldDoc) second;
+            for (int i = 0; i < comparators.length; i++) {
+                final FieldComparator comparator = comparators[i];
+                final int cmp = reverseMul[i] * comparator.compareValues(firstFieldDoc.fields[i], secondFieldDoc.fields[i]);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+        } else if (first.score > second.score) {
+            return -1;
+        } else if (first.score < second.score) {
+            return 1;
+        }
+        final int cmp = Integer.compare(first.shardIndex, second.shardIndex);
+        return cmp != 0 ? cmp : Integer.compare(first.doc, second.doc);
+    }
+}
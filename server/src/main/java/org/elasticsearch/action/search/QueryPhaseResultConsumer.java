@@ -11,6 +11,7 @@ package org.elasticsearch.action.search;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
 import org.elasticsearch.action.search.SearchPhaseController.TopDocsStats;
 import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.breaker.CircuitBreakingException;
@@ -19,6 +20,8 @@ import org.elasticsearch.common.lucene.search.TopDocsAndMaxScore;
 import org.elasticsearch.common.util.concurrent.AbstractRunnable;
 import org.elasticsearch.core.Releasable;
 import org.elasticsearch.core.Releasables;
+import org.elasticsearch.myprofiler.ProfilerLatencies;
+import org.elasticsearch.myprofiler.ProfilerState;
 import org.elasticsearch.search.SearchPhaseResult;
 import org.elasticsearch.search.SearchService;
 import org.elasticsearch.search.SearchShardTarget;
@@ -33,14 +36,15 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import static org.elasticsearch.action.search.SearchPhaseController.getTopDocsSize;
-import static org.elasticsearch.action.search.SearchPhaseController.mergeTopDocs;
 import static org.elasticsearch.action.search.SearchPhaseController.setShardIndex;
 
 /**
@@ -50,6 +54,15 @@ import static org.elasticsearch.action.search.SearchPhaseController.setShardInde
  * in the {@link CircuitBreaker#REQUEST} circuit breaker. Before any partial or final reduce, the memory
  * needed to reduce the aggregations is estimated and a {@link CircuitBreakingException} is thrown if it
  * exceeds the maximum memory allowed in this breaker.
+ * <p>
+ * Partial reduces can run concurrently on the provided executor, up to {@code maxConcurrentMerges} at a time. Each partial
+ * reduce folds in the results of the partial reduces that completed before it started, so the merges form a tree whose leaves
+ * are batches of shard results. Every merge accounts for its own estimated memory usage in the circuit breaker before it
+ * runs and replaces that estimate with the serialized size of its output once it completes.
+ * <p>
+ * Top docs are not buffered until the next partial reduce: the hits of each shard are added to a {@link BoundedTopDocsQueue}
+ * that keeps the top {@code from + size} hits seen so far as soon as the shard result is consumed, and are released from the
+ * shard result right away.
  */
 public class QueryPhaseResultConsumer extends ArraySearchPhaseResults<SearchPhaseResult> {
     private static final Logger logger = LogManager.getLogger(QueryPhaseResultConsumer.class);
@@ -64,13 +77,14 @@ public class QueryPhaseResultConsumer extends ArraySearchPhaseResults<SearchPhas
     private final boolean hasTopDocs;
     private final boolean hasAggs;
     private final boolean performFinalReduce;
+    private final int maxConcurrentMerges;
 
     private final PendingMerges pendingMerges;
     private final Consumer<Exception> onPartialMergeFailure;
 
     /**
      * Creates a {@link QueryPhaseResultConsumer} that incrementally reduces aggregation results
-     * as shard results are consumed.
+     * as shard results are consumed, one partial reduce at a time.
      */
     public QueryPhaseResultConsumer(
         SearchRequest request,
@@ -81,14 +95,38 @@ public class QueryPhaseResultConsumer extends ArraySearchPhaseResults<SearchPhas
         SearchProgressListener progressListener,
         int expectedResultSize,
         Consumer<Exception> onPartialMergeFailure
+    ) {
+        this(request, executor, circuitBreaker, controller, isCanceled, progressListener, expectedResultSize, onPartialMergeFailure, 1);
+    }
+
+    /**
+     * Creates a {@link QueryPhaseResultConsumer} that incrementally reduces aggregation results
+     * as shard results are consumed, running up to {@code maxConcurrentMerges} partial reduces concurrently.
+     * Partial reduces are always executed one at a time if a {@link SearchProgressListener} is provided,
+     * since the listener expects every partial reduce to cover all the shards that were reduced before it.
+     */
+    public QueryPhaseResultConsumer(
+        SearchRequest request,
+        Executor executor,
+        CircuitBreaker circuitBreaker,
+        SearchPhaseController controller,
+        Supplier<Boolean> isCanceled,
+        SearchProgressListener progressListener,
+        int expectedResultSize,
+        Consumer<Exception> onPartialMergeFailure,
+        int maxConcurrentMerges
     ) {
         super(expectedResultSize);
+        if (maxConcurrentMerges < 1) {
+            throw new IllegalArgumentException("maxConcurrentMerges must be at least 1 but was [" + maxConcurrentMerges + "]");
+        }
         this.executor = executor;
         this.circuitBreaker = circuitBreaker;
         this.progressListener = progressListener;
         this.topNSize = getTopDocsSize(request);
         this.performFinalReduce = request.isFinalReduce();
         this.onPartialMergeFailure = onPartialMergeFailure;
+        this.maxConcurrentMerges = progressListener == SearchProgressListener.NOOP ? maxConcurrentMerges : 1;
 
         SearchSourceBuilder source = request.source();
         int size = source == null || source.size() == -1 ? SearchService.DEFAULT_SIZE : source.size();
@@ -124,6 +162,7 @@ public class QueryPhaseResultConsumer extends ArraySearchPhaseResults<SearchPhas
             throw pendingMerges.getFailure();
         }
 
+        final long reduceStartTime = System.nanoTime();
         // ensure consistent ordering
         pendingMerges.sortBuffer();
         final TopDocsStats topDocsStats = pendingMerges.consumeTopDocsStats();
@@ -167,52 +206,45 @@ public class QueryPhaseResultConsumer extends ArraySearchPhaseResults<SearchPhas
                 reducePhase.numReducePhases()
             );
         }
+        recordReduceLatency(System.nanoTime() - reduceStartTime);
         return reducePhase;
     }
 
+    /**
+     * Records the time spent in the final reduce against every index that contributed a shard result.
+     */
+    private void recordReduceLatency(long tookInNanos) {
+        final ProfilerState profilerState = ProfilerState.getInstance();
+        if (profilerState.isProfiling() == false) {
+            return;
+        }
+        final Set<String> indices = new HashSet<>();
+        for (SearchPhaseResult result : results.asList()) {
+            final SearchShardTarget target = result.getSearchShardTarget();
+            if (target != null && indices.add(target.getIndex())) {
+                profilerState.recordLatency(target.getIndex(), ProfilerLatencies.Phase.COORDINATOR_REDUCE, tookInNanos);
+            }
+        }
+    }
+
     private static final Comparator<QuerySearchResult> RESULT_COMPARATOR = Comparator.comparingInt(QuerySearchResult::getShardIndex);
 
     private MergeResult partialReduce(
         QuerySearchResult[] toConsume,
         List<SearchShard> emptyResults,
         TopDocsStats topDocsStats,
-        MergeResult lastMerge,
+        List<MergeResult> previousMerges,
         int numReducePhases
     ) {
         // ensure consistent ordering
         Arrays.sort(toConsume, RESULT_COMPARATOR);
 
-        for (QuerySearchResult result : toConsume) {
-            topDocsStats.add(result.topDocs(), result.searchTimedOut(), result.terminatedEarly());
-        }
-
-        final TopDocs newTopDocs;
-        if (hasTopDocs) {
-            List<TopDocs> topDocsList = new ArrayList<>();
-            if (lastMerge != null) {
-                topDocsList.add(lastMerge.reducedTopDocs);
-            }
-            for (QuerySearchResult result : toConsume) {
-                TopDocsAndMaxScore topDocs = result.consumeTopDocs();
-                setShardIndex(topDocs.topDocs, result.getShardIndex());
-                topDocsList.add(topDocs.topDocs);
-            }
-            newTopDocs = mergeTopDocs(
-                topDocsList,
-                // we have to merge here in the same way we collect on a shard
-                topNSize,
-                0
-            );
-        } else {
-            newTopDocs = null;
-        }
-
         final InternalAggregations newAggs;
         if (hasAggs) {
             try {
                 final List<DelayableWriteable<InternalAggregations>> aggsList = new ArrayList<>();
-                if (lastMerge != null) {
-                    aggsList.add(DelayableWriteable.referencing(lastMerge.reducedAggs));
+                for (MergeResult previousMerge : previousMerges) {
+                    aggsList.add(DelayableWriteable.referencing(previousMerge.reducedAggs));
                 }
                 for (QuerySearchResult result : toConsume) {
                     aggsList.add(result.getAggs());
@@ -227,20 +259,24 @@ public class QueryPhaseResultConsumer extends ArraySearchPhaseResults<SearchPhas
             newAggs = null;
         }
         List<SearchShard> processedShards = new ArrayList<>(emptyResults);
-        if (lastMerge != null) {
-            processedShards.addAll(lastMerge.processedShards);
+        for (MergeResult previousMerge : previousMerges) {
+            processedShards.addAll(previousMerge.processedShards);
         }
         for (QuerySearchResult result : toConsume) {
             SearchShardTarget target = result.getSearchShardTarget();
             processedShards.add(new SearchShard(target.getClusterAlias(), target.getShardId()));
         }
         if (progressListener != SearchProgressListener.NOOP) {
-            progressListener.notifyPartialReduce(processedShards, topDocsStats.getTotalHits(), newAggs, numReducePhases);
+            final TotalHits totalHits;
+            synchronized (topDocsStats) {
+                totalHits = topDocsStats.getTotalHits();
+            }
+            progressListener.notifyPartialReduce(processedShards, totalHits, newAggs, numReducePhases);
         }
         // we leave the results un-serialized because serializing is slow but we compute the serialized
         // size as an estimate of the memory used by the newly reduced aggregations.
         long serializedSize = hasAggs ? DelayableWriteable.getSerializedSize(newAggs) : 0;
-        return new MergeResult(processedShards, newTopDocs, newAggs, hasAggs ? serializedSize : 0);
+        return new MergeResult(processedShards, newAggs, hasAggs ? serializedSize : 0);
     }
 
     public int getNumReducePhases() {
@@ -258,17 +294,21 @@ public class QueryPhaseResultConsumer extends ArraySearchPhaseResults<SearchPhas
         private volatile long maxAggsCurrentBufferSize = 0;
 
         private final ArrayDeque<MergeTask> queue = new ArrayDeque<>();
-        private final AtomicReference<MergeTask> runningTask = new AtomicReference<>();
+        private final Set<MergeTask> runningTasks = new HashSet<>();
         private final AtomicReference<Exception> failure = new AtomicReference<>();
 
+        // guarded by topDocsStats, since shard results are consumed concurrently
         private final TopDocsStats topDocsStats;
-        private volatile MergeResult mergeResult;
+        private final BoundedTopDocsQueue topDocsQueue;
+        // the results of the completed partial reduces that have not been folded into another reduce yet
+        private final List<MergeResult> mergeResults = new ArrayList<>();
         private volatile boolean hasPartialReduce;
         private volatile int numReducePhases;
 
         PendingMerges(int batchReduceSize, int trackTotalHitsUpTo) {
             this.batchReduceSize = batchReduceSize;
             this.topDocsStats = new TopDocsStats(trackTotalHitsUpTo);
+            this.topDocsQueue = hasTopDocs ? new BoundedTopDocsQueue(topNSize) : null;
         }
 
         @Override
@@ -297,8 +337,8 @@ public class QueryPhaseResultConsumer extends ArraySearchPhaseResults<SearchPhas
             return failure.get() != null;
         }
 
-        boolean hasPendingMerges() {
-            return queue.isEmpty() == false || runningTask.get() != null;
+        synchronized boolean hasPendingMerges() {
+            return queue.isEmpty() == false || runningTasks.isEmpty() == false;
         }
 
         void sortBuffer() {
@@ -341,6 +381,19 @@ public class QueryPhaseResultConsumer extends ArraySearchPhaseResults<SearchPhas
         }
 
         public void consume(QuerySearchResult result, Runnable next) {
+            if (result.isNull() == false && hasFailure() == false) {
+                try {
+                    foldTopDocs(result);
+                } catch (Exception exc) {
+                    result.releaseAggs();
+                    synchronized (this) {
+                        releaseBuffer();
+                    }
+                    onMergeFailure(exc);
+                    next.run();
+                    return;
+                }
+            }
             boolean executeNextImmediately = true;
             synchronized (this) {
                 if (hasFailure() || result.isNull()) {
@@ -384,6 +437,21 @@ public class QueryPhaseResultConsumer extends ArraySearchPhaseResults<SearchPhas
             }
         }
 
+        /**
+         * Adds the hits of the provided shard result to the top hits seen so far, bounded to the number of hits that the
+         * request needs, and releases them from the shard result.
+         */
+        private void foldTopDocs(QuerySearchResult result) {
+            synchronized (topDocsStats) {
+                topDocsStats.add(result.topDocs(), result.searchTimedOut(), result.terminatedEarly());
+                if (hasTopDocs) {
+                    TopDocsAndMaxScore topDocs = result.consumeTopDocs();
+                    setShardIndex(topDocs.topDocs, result.getShardIndex());
+                    topDocsQueue.add(topDocs.topDocs);
+                }
+            }
+        }
+
         private void releaseBuffer() {
             buffer.forEach(QuerySearchResult::releaseAggs);
             buffer.clear();
@@ -403,15 +471,15 @@ public class QueryPhaseResultConsumer extends ArraySearchPhaseResults<SearchPhas
             failure.compareAndSet(null, exc);
             final List<Releasable> toCancels = new ArrayList<>();
             toCancels.add(() -> onPartialMergeFailure.accept(exc));
-            final MergeTask task = runningTask.getAndSet(null);
-            if (task != null) {
+            for (MergeTask task : runningTasks) {
                 toCancels.add(task::cancel);
             }
+            runningTasks.clear();
             MergeTask mergeTask;
             while ((mergeTask = queue.pollFirst()) != null) {
                 toCancels.add(mergeTask::cancel);
             }
-            mergeResult = null;
+            mergeResults.clear();
             Releasables.close(toCancels);
         }
 
@@ -420,17 +488,17 @@ public class QueryPhaseResultConsumer extends ArraySearchPhaseResults<SearchPhas
                 if (hasFailure()) {
                     return;
                 }
-                runningTask.compareAndSet(task, null);
-                mergeResult = newResult;
+                runningTasks.remove(task);
+                mergeResults.add(newResult);
                 if (hasAggs) {
                     // Update the circuit breaker to remove the size of the source aggregations
                     // and replace the estimation with the serialized size of the newly reduced result.
-                    long newSize = mergeResult.estimatedSize - estimatedSize;
+                    long newSize = newResult.estimatedSize - estimatedSize;
                     addWithoutBreaking(newSize);
                     logger.trace(
                         "aggs partial reduction [{}->{}] max [{}]",
                         estimatedSize,
-                        mergeResult.estimatedSize,
+                        newResult.estimatedSize,
                         maxAggsCurrentBufferSize
                     );
                 }
@@ -439,31 +507,51 @@ public class QueryPhaseResultConsumer extends ArraySearchPhaseResults<SearchPhas
         }
 
         private void tryExecuteNext() {
-            final MergeTask task;
+            final List<MergeTask> tasks = new ArrayList<>();
             synchronized (this) {
-                if (queue.isEmpty() || hasFailure() || runningTask.get() != null) {
-                    return;
+                while (queue.isEmpty() == false && hasFailure() == false && runningTasks.size() < maxConcurrentMerges) {
+                    final MergeTask task = queue.poll();
+                    runningTasks.add(task);
+                    tasks.add(task);
                 }
-                task = queue.poll();
-                runningTask.compareAndSet(null, task);
             }
+            for (MergeTask task : tasks) {
+                execute(task);
+            }
+        }
 
+        private void execute(MergeTask task) {
             executor.execute(new AbstractRunnable() {
                 @Override
                 protected void doRun() {
-                    final MergeResult thisMergeResult = mergeResult;
-                    long estimatedTotalSize = (thisMergeResult != null ? thisMergeResult.estimatedSize : 0) + task.aggsBufferSize;
-                    final MergeResult newMerge;
                     final QuerySearchResult[] toConsume = task.consumeBuffer();
                     if (toConsume == null) {
                         return;
                     }
+                    // fold in the results of all the partial reduces that completed so far
+                    final List<MergeResult> previousMerges;
+                    final int phase;
+                    synchronized (PendingMerges.this) {
+                        if (hasFailure()) {
+                            for (QuerySearchResult result : toConsume) {
+                                result.releaseAggs();
+                            }
+                            return;
+                        }
+                        previousMerges = new ArrayList<>(mergeResults);
+                        mergeResults.clear();
+                        phase = ++numReducePhases;
+                    }
+                    long estimatedTotalSize = task.aggsBufferSize;
+                    for (MergeResult previousMerge : previousMerges) {
+                        estimatedTotalSize += previousMerge.estimatedSize;
+                    }
+                    final MergeResult newMerge;
                     try {
                         long estimatedMergeSize = estimateRamBytesUsedForReduce(estimatedTotalSize);
                         addEstimateAndMaybeBreak(estimatedMergeSize);
                         estimatedTotalSize += estimatedMergeSize;
-                        ++numReducePhases;
-                        newMerge = partialReduce(toConsume, task.emptyResults, topDocsStats, thisMergeResult, numReducePhases);
+                        newMerge = partialReduce(toConsume, task.emptyResults, topDocsStats, previousMerges, phase);
                     } catch (Exception t) {
                         for (QuerySearchResult result : toConsume) {
                             result.releaseAggs();
@@ -482,27 +570,18 @@ public class QueryPhaseResultConsumer extends ArraySearchPhaseResults<SearchPhas
             });
         }
 
-        public synchronized TopDocsStats consumeTopDocsStats() {
-            for (QuerySearchResult result : buffer) {
-                topDocsStats.add(result.topDocs(), result.searchTimedOut(), result.terminatedEarly());
-            }
+        public TopDocsStats consumeTopDocsStats() {
             return topDocsStats;
         }
 
-        public synchronized List<TopDocs> consumeTopDocs() {
+        public List<TopDocs> consumeTopDocs() {
             if (hasTopDocs == false) {
                 return Collections.emptyList();
             }
-            List<TopDocs> topDocsList = new ArrayList<>();
-            if (mergeResult != null) {
-                topDocsList.add(mergeResult.reducedTopDocs);
-            }
-            for (QuerySearchResult result : buffer) {
-                TopDocsAndMaxScore topDocs = result.consumeTopDocs();
-                setShardIndex(topDocs.topDocs, result.getShardIndex());
-                topDocsList.add(topDocs.topDocs);
+            synchronized (topDocsStats) {
+                final TopDocs topDocs = topDocsQueue.pollTopDocs();
+                return topDocs == null ? Collections.emptyList() : Collections.singletonList(topDocs);
             }
-            return topDocsList;
         }
 
         public synchronized List<DelayableWriteable<InternalAggregations>> getAggs() {
@@ -510,7 +589,7 @@ public class QueryPhaseResultConsumer extends ArraySearchPhaseResults<SearchPhas
                 return Collections.emptyList();
             }
             List<DelayableWriteable<InternalAggregations>> aggsList = new ArrayList<>();
-            if (mergeResult != null) {
+            for (MergeResult mergeResult : mergeResults) {
                 aggsList.add(DelayableWriteable.referencing(mergeResult.reducedAggs));
             }
             for (QuerySearchResult result : buffer) {
@@ -528,12 +607,7 @@ public class QueryPhaseResultConsumer extends ArraySearchPhaseResults<SearchPhas
         }
     }
 
-    private record MergeResult(
-        List<SearchShard> processedShards,
-        TopDocs reducedTopDocs,
-        InternalAggregations reducedAggs,
-        long estimatedSize
-    ) {}
+    private record MergeResult(List<SearchShard> processedShards, InternalAggregations reducedAggs, long estimatedSize) {}
 
     private static class MergeTask {
         private final List<SearchShard> emptyResults;
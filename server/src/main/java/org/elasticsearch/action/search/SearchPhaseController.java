@@ -253,7 +253,7 @@ public final class SearchPhaseController {
         return mergedTopDocs;
     }
 
-    private static Sort checkSameSortTypes(Collection<TopDocs> results, SortField[] firstSortFields) {
+    static Sort checkSameSortTypes(Collection<TopDocs> results, SortField[] firstSortFields) {
         Sort sort = new Sort(firstSortFields);
         if (results.size() < 2) return sort;
 
@@ -806,6 +806,23 @@ public final class SearchPhaseController {
         SearchRequest request,
         int numShards,
         Consumer<Exception> onPartialMergeFailure
+    ) {
+        return newSearchPhaseResults(executor, circuitBreaker, isCanceled, listener, request, numShards, onPartialMergeFailure, 1);
+    }
+
+    /**
+     * Returns a new {@link QueryPhaseResultConsumer} instance that reduces search responses incrementally, running up to
+     * {@code maxConcurrentMerges} partial reduces concurrently.
+     */
+    SearchPhaseResults<SearchPhaseResult> newSearchPhaseResults(
+        Executor executor,
+        CircuitBreaker circuitBreaker,
+        Supplier<Boolean> isCanceled,
+        SearchProgressListener listener,
+        SearchRequest request,
+        int numShards,
+        Consumer<Exception> onPartialMergeFailure,
+        int maxConcurrentMerges
     ) {
         final int size = request.source() == null || request.source().size() == -1 ? SearchService.DEFAULT_SIZE : request.source().size();
         // Use CountOnlyQueryPhaseResultConsumer for requests without aggs, suggest, etc. things only wanting a total count and
@@ -828,7 +845,8 @@ public final class SearchPhaseController {
             isCanceled,
             listener,
             numShards,
-            onPartialMergeFailure
+            onPartialMergeFailure,
+            maxConcurrentMerges
         );
     }
 
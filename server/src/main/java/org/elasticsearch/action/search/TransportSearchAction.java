@@ -129,6 +129,18 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
         Property.NodeScope
     );
 
+    /**
+     * The maximum number of partial reduces of shard results that a single search request runs concurrently on the thread pool that
+     * executes its query phase.
+     */
+    public static final Setting<Integer> MAX_CONCURRENT_PARTIAL_REDUCES_SETTING = Setting.intSetting(
+        "action.search.max_concurrent_partial_reduces",
+        4,
+        1,
+        Property.Dynamic,
+        Property.NodeScope
+    );
+
     public static final Setting<Integer> DEFAULT_PRE_FILTER_SHARD_SIZE = Setting.intSetting(
         "action.search.pre_filter_shard_size.default",
         SearchRequest.DEFAULT_PRE_FILTER_SHARD_SIZE,
@@ -150,6 +162,7 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
     private final int defaultPreFilterShardSize;
     private final boolean ccsCheckCompatibility;
     private final SearchResponseMetrics searchResponseMetrics;
+    private volatile int maxConcurrentPartialReduces;
 
     @Inject
     public TransportSearchAction(
@@ -183,6 +196,8 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
         this.defaultPreFilterShardSize = DEFAULT_PRE_FILTER_SHARD_SIZE.get(clusterService.getSettings());
         this.ccsCheckCompatibility = SearchService.CCS_VERSION_CHECK_SETTING.get(clusterService.getSettings());
         this.searchResponseMetrics = searchResponseMetrics;
+        clusterService.getClusterSettings()
+            .initializeAndWatch(MAX_CONCURRENT_PARTIAL_REDUCES_SETTING, value -> this.maxConcurrentPartialReduces = value);
     }
 
     private Map<String, OriginalIndices> buildPerIndexOriginalIndices(
@@ -1336,7 +1351,8 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
                 task.getProgressListener(),
                 searchRequest,
                 shardIterators.size(),
-                exc -> searchTransportService.cancelSearchTask(task, "failed to merge result [" + exc.getMessage() + "]")
+                exc -> searchTransportService.cancelSearchTask(task, "failed to merge result [" + exc.getMessage() + "]"),
+                maxConcurrentPartialReduces
             );
             boolean success = false;
             try {
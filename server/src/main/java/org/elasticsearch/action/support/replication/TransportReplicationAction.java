@@ -18,6 +18,7 @@ import org.elasticsearch.action.UnavailableShardsException;
 import org.elasticsearch.action.support.ActionFilters;
 import org.elasticsearch.action.support.ActiveShardCount;
 import org.elasticsearch.action.support.ChannelActionListener;
+import org.elasticsearch.action.support.RefCountingListener;
 import org.elasticsearch.action.support.TransportAction;
 import org.elasticsearch.action.support.TransportActions;
 import org.elasticsearch.client.internal.transport.NoNodeAvailableException;
@@ -69,10 +70,15 @@ import org.elasticsearch.transport.TransportResponseHandler;
 import org.elasticsearch.transport.TransportService;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiFunction;
 
 import static org.elasticsearch.core.Strings.format;
 
@@ -337,7 +343,12 @@ public abstract class TransportReplicationAction<
 
     private void handleOperationRequest(final Request request, final TransportChannel channel, Task task) {
         Releasable releasable = checkOperationLimits(request);
-        ActionListener<Response> listener = ActionListener.runBefore(new ChannelActionListener<>(channel), releasable::close);
+        // the request may retain the buffer it was received in, keep it alive until the operation completes
+        request.mustIncRef();
+        ActionListener<Response> listener = ActionListener.runBefore(
+            new ChannelActionListener<>(channel),
+            Releasables.wrap(releasable, request::decRef)::close
+        );
         runReroutePhase(task, request, listener, false);
     }
 
@@ -351,7 +362,11 @@ public abstract class TransportReplicationAction<
             request.sentFromLocalReroute(),
             request.localRerouteInitiatedByNodeClient()
         );
-        ActionListener<Response> listener = ActionListener.runBefore(new ChannelActionListener<>(channel), releasable::close);
+        request.mustIncRef();
+        ActionListener<Response> listener = ActionListener.runBefore(
+            new ChannelActionListener<>(channel),
+            Releasables.wrap(releasable, request::decRef)::close
+        );
 
         try {
             new AsyncPrimaryAction(request, listener, (ReplicationTask) task).run();
@@ -497,18 +512,29 @@ public abstract class TransportReplicationAction<
                         onCompletionListener.onResponse(response);
                     }, e -> handleException(primaryShardReference, e));
 
-                    new ReplicationOperation<>(
-                        primaryRequest.getRequest(),
-                        primaryShardReference,
-                        responseListener.map(result -> result.replicationResponse),
-                        newReplicasProxy(),
-                        logger,
-                        threadPool,
-                        actionName,
-                        primaryRequest.getPrimaryTerm(),
-                        initialRetryBackoffBound,
-                        retryTimeout
-                    ).execute();
+                    final PrimaryRequestChunks<Request, Response> chunks = splitPrimaryRequest(primaryRequest.getRequest());
+                    if (chunks == null) {
+                        new ReplicationOperation<>(
+                            primaryRequest.getRequest(),
+                            primaryShardReference,
+                            responseListener.map(result -> result.replicationResponse),
+                            newReplicasProxy(),
+                            logger,
+                            threadPool,
+                            actionName,
+                            primaryRequest.getPrimaryTerm(),
+                            initialRetryBackoffBound,
+                            retryTimeout
+                        ).execute();
+                    } else {
+                        new PipelinedPrimaryOperation(
+                            primaryRequest.getRequest(),
+                            chunks,
+                            primaryShardReference.indexShard,
+                            primaryRequest.getPrimaryTerm(),
+                            responseListener
+                        ).executeChunk(0);
+                    }
                 }
             } catch (Exception e) {
                 handleException(primaryShardReference, e);
@@ -528,6 +554,150 @@ public abstract class TransportReplicationAction<
 
     }
 
+    /**
+     * Executes the chunks of a primary request one after the other on the primary, starting the replication of each chunk as soon as it
+     * has been executed on the primary rather than once all chunks have. Every chunk is replicated by its own {@link ReplicationOperation},
+     * so it is only acknowledged once all in-sync copies have acknowledged it, and the response of the request is only sent once all
+     * chunks have been acknowledged. Chunks that follow a chunk that failed are not executed.
+     * <p>
+     * The request as a whole only fails, and may then be retried, if none of its chunks was executed on the primary. Once a chunk has
+     * been executed a failure must not cause the request to be retried, since that would execute its operations again, so the failure is
+     * passed to {@link PrimaryRequestChunks#combiner()} instead, which reports it for the chunks that did not complete.
+     */
+    private final class PipelinedPrimaryOperation {
+        private final Request request;
+        private final List<Request> chunks;
+        private final IndexShard indexShard;
+        private final long primaryTerm;
+        private final AtomicReferenceArray<Response> responses;
+        private final AtomicReference<Exception> failure = new AtomicReference<>();
+        private final AtomicBoolean executedOnPrimary = new AtomicBoolean();
+        private final AtomicBoolean allChunksStarted = new AtomicBoolean();
+        private final RefCountingListener chunkListeners;
+
+        PipelinedPrimaryOperation(
+            Request request,
+            PrimaryRequestChunks<Request, Response> requestChunks,
+            IndexShard indexShard,
+            long primaryTerm,
+            ActionListener<Response> listener
+        ) {
+            this.request = request;
+            this.chunks = requestChunks.chunks();
+            this.indexShard = indexShard;
+            this.primaryTerm = primaryTerm;
+            this.responses = new AtomicReferenceArray<>(chunks.size());
+            this.chunkListeners = new RefCountingListener(listener.delegateFailureAndWrap((l, ignored) -> {
+                final Exception e = failure.get();
+                if (e != null && executedOnPrimary.get() == false) {
+                    l.onFailure(e);
+                    return;
+                }
+                final List<Response> chunkResponses = new ArrayList<>(chunks.size());
+                for (int i = 0; i < chunks.size(); i++) {
+                    chunkResponses.add(responses.get(i));
+                }
+                l.onResponse(requestChunks.combiner().apply(chunkResponses, e));
+            }));
+        }
+
+        void executeChunk(int index) {
+            final boolean lastChunk = index == chunks.size() - 1;
+            final AtomicBoolean nextChunkStarted = new AtomicBoolean();
+            final ActionListener<Void> chunkRef = chunkListeners.acquire();
+            final ActionListener<Response> chunkListener = ActionListener.runAfter(
+                ActionListener.wrap(response -> responses.set(index, response), this::onChunkFailure),
+                () -> {
+                    if (nextChunkStarted.get() == false) {
+                        // the chunk failed before it was executed on the primary, no further chunks will be started
+                        onAllChunksStarted();
+                    }
+                    chunkRef.onResponse(null);
+                }
+            );
+            if (lastChunk) {
+                onAllChunksStarted();
+            }
+            final Request chunk = chunks.get(index);
+            // the primary operation permit is held by the whole request and released once all chunks have completed
+            final PrimaryShardReference chunkPrimary = new PrimaryShardReference(indexShard, () -> {}) {
+                @Override
+                public void perform(Request chunkRequest, ActionListener<PrimaryResult<ReplicaRequest, Response>> listener) {
+                    super.perform(chunkRequest, listener.delegateFailureAndWrap((l, result) -> {
+                        executedOnPrimary.set(true);
+                        if (lastChunk == false && failure.get() == null) {
+                            nextChunkStarted.set(true);
+                            executeChunk(index + 1);
+                        }
+                        l.onResponse(result);
+                    }));
+                }
+            };
+            logger.trace("{} executing chunk [{}/{}] of [{}]", request.shardId(), index + 1, chunks.size(), request);
+            ActionListener.run(
+                chunkListener.<PrimaryResult<ReplicaRequest, Response>>map(result -> result.replicationResponse),
+                l -> new ReplicationOperation<>(
+                    chunk,
+                    chunkPrimary,
+                    l,
+                    newReplicasProxy(),
+                    logger,
+                    threadPool,
+                    actionName,
+                    primaryTerm,
+                    initialRetryBackoffBound,
+                    retryTimeout
+                ).execute()
+            );
+        }
+
+        private void onChunkFailure(Exception e) {
+            if (failure.compareAndSet(null, e) == false) {
+                synchronized (failure) {
+                    failure.get().addSuppressed(e);
+                }
+            }
+        }
+
+        private void onAllChunksStarted() {
+            if (allChunksStarted.compareAndSet(false, true)) {
+                chunkListeners.close();
+            }
+        }
+    }
+
+    /**
+     * Splits a request into chunks that are executed on the primary one after the other, each chunk being replicated while the next one
+     * executes on the primary. By default requests are not split.
+     *
+     * @return the chunks of the request along with how to combine their responses, or {@code null} if the request should not be split
+     */
+    @Nullable
+    protected PrimaryRequestChunks<Request, Response> splitPrimaryRequest(Request request) {
+        return null;
+    }
+
+    /**
+     * The chunks that {@link #splitPrimaryRequest} split a request into.
+     *
+     * The first chunk is the only one that waits for the active shards that the request waits for, so that a chunk cannot fail for lack of
+     * active shards once earlier chunks have been applied.
+     *
+     * @param chunks   the chunks, in the order in which they execute on the primary
+     * @param combiner combines the responses of the chunks, in the order of the chunks, into the response of the request. Chunks that
+     *                 failed or were not executed because an earlier chunk failed have a {@code null} response, in which case the failure
+     *                 is passed too and the combined response must report it for the operations of these chunks. It is only called with a
+     *                 failure if at least one chunk has been executed on the primary.
+     */
+    protected record PrimaryRequestChunks<Request, Response>(
+        List<Request> chunks,
+        BiFunction<List<Response>, Exception, Response> combiner
+    ) {
+        public PrimaryRequestChunks {
+            assert chunks.size() > 1 : "a request that is not split has no chunks";
+        }
+    }
+
     // allows subclasses to adapt the response
     protected void adaptResponse(Response response, IndexShard indexShard) {
 
@@ -592,7 +762,11 @@ public abstract class TransportReplicationAction<
         final Task task
     ) {
         Releasable releasable = checkReplicaLimits(replicaRequest.getRequest());
-        ActionListener<ReplicaResponse> listener = ActionListener.runBefore(new ChannelActionListener<>(channel), releasable::close);
+        replicaRequest.mustIncRef();
+        ActionListener<ReplicaResponse> listener = ActionListener.runBefore(
+            new ChannelActionListener<>(channel),
+            Releasables.wrap(releasable, replicaRequest::decRef)::close
+        );
 
         try {
             new AsyncReplicaAction(replicaRequest, listener, (ReplicationTask) task).run();
@@ -1406,6 +1580,26 @@ public abstract class TransportReplicationAction<
             return primaryTerm;
         }
 
+        @Override
+        public void incRef() {
+            request.incRef();
+        }
+
+        @Override
+        public boolean tryIncRef() {
+            return request.tryIncRef();
+        }
+
+        @Override
+        public boolean decRef() {
+            return request.decRef();
+        }
+
+        @Override
+        public boolean hasReferences() {
+            return request.hasReferences();
+        }
+
         @Override
         public boolean isRawIndexingData() {
             if (request instanceof RawIndexingDataTransportRequest) {
@@ -129,8 +129,10 @@ public abstract class TransportWriteAction<
             // must mark a new primary operation local to the coordinating node.
             if (localRerouteInitiatedByNodeClient) {
                 return indexingPressure.markPrimaryOperationLocalToCoordinatingNodeStarted(
+                    request.shardId(),
                     primaryOperationCount(request),
-                    primaryOperationSize(request)
+                    primaryOperationSize(request),
+                    force(request)
                 );
             } else {
                 return () -> {};
@@ -140,6 +142,7 @@ public abstract class TransportWriteAction<
             // operation. This happens if the write action skips the reroute step (ex: rsync) or during
             // primary delegation, after the primary relocation hand-off.
             return indexingPressure.markPrimaryOperationStarted(
+                request.shardId(),
                 primaryOperationCount(request),
                 primaryOperationSize(request),
                 force(request)
@@ -211,9 +214,11 @@ public abstract class TransportWriteAction<
         IndexShard primary,
         ActionListener<PrimaryResult<ReplicaRequest, Response>> listener
     ) {
+        final long enqueuedNanos = System.nanoTime();
         executorFunction.apply(executorSelector, primary).execute(new ActionRunnable<>(listener) {
             @Override
             protected void doRun() {
+                onPrimaryOperationDispatched(request, System.nanoTime() - enqueuedNanos);
                 dispatchedShardOperationOnPrimary(request, primary, listener);
             }
 
@@ -224,6 +229,13 @@ public abstract class TransportWriteAction<
         });
     }
 
+    /**
+     * Called on the thread that executes the primary operation, right before {@link #dispatchedShardOperationOnPrimary}.
+     *
+     * @param queueLatencyInNanos the time the operation was queued for that thread
+     */
+    protected void onPrimaryOperationDispatched(Request request, long queueLatencyInNanos) {}
+
     protected abstract void dispatchedShardOperationOnPrimary(
         Request request,
         IndexShard primary,
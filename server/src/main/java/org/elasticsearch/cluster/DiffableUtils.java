@@ -10,6 +10,7 @@ package org.elasticsearch.cluster;
 
 import org.elasticsearch.TransportVersion;
 import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.io.stream.ParallelWritingStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable.Reader;
@@ -373,33 +374,30 @@ public final class DiffableUtils {
             out.writeCollection(deletes, (o, v) -> keySerializer.writeKey(v, o));
             TransportVersion version = out.getTransportVersion();
             // filter out custom states not supported by the other node
-            int diffCount = 0;
+            final List<Map.Entry<K, Diff<T>>> supportedDiffs = new ArrayList<>(diffs.size());
             for (Map.Entry<K, Diff<T>> diff : diffs) {
                 if (valueSerializer.supportsVersion(diff.getValue(), version)) {
-                    diffCount++;
-                }
-            }
-            out.writeVInt(diffCount);
-            for (Map.Entry<K, Diff<T>> entry : diffs) {
-                if (valueSerializer.supportsVersion(entry.getValue(), version)) {
-                    keySerializer.writeKey(entry.getKey(), out);
-                    valueSerializer.writeDiff(entry.getValue(), out);
+                    supportedDiffs.add(diff);
                 }
             }
+            out.writeVInt(supportedDiffs.size());
+            // there's a diff for every changed index, which is worth serializing in parallel if there are many of them
+            ParallelWritingStreamOutput.writeAll(out, supportedDiffs, (o, entry) -> {
+                keySerializer.writeKey(entry.getKey(), o);
+                valueSerializer.writeDiff(entry.getValue(), o);
+            });
             // filter out custom states not supported by the other node
-            int upsertsCount = 0;
+            final List<Map.Entry<K, T>> supportedUpserts = new ArrayList<>(upserts.size());
             for (Map.Entry<K, T> upsert : upserts) {
                 if (valueSerializer.supportsVersion(upsert.getValue(), version)) {
-                    upsertsCount++;
-                }
-            }
-            out.writeVInt(upsertsCount);
-            for (Map.Entry<K, T> entry : upserts) {
-                if (valueSerializer.supportsVersion(entry.getValue(), version)) {
-                    keySerializer.writeKey(entry.getKey(), out);
-                    valueSerializer.write(entry.getValue(), out);
+                    supportedUpserts.add(upsert);
                 }
             }
+            out.writeVInt(supportedUpserts.size());
+            ParallelWritingStreamOutput.writeAll(out, supportedUpserts, (o, entry) -> {
+                keySerializer.writeKey(entry.getKey(), o);
+                valueSerializer.write(entry.getValue(), o);
+            });
         }
     }
 
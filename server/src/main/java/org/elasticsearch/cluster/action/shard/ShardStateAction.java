@@ -23,6 +23,7 @@ import org.elasticsearch.cluster.NotMasterException;
 import org.elasticsearch.cluster.coordination.FailedToCommitClusterStateException;
 import org.elasticsearch.cluster.metadata.IndexMetadata;
 import org.elasticsearch.cluster.metadata.Metadata;
+import org.elasticsearch.cluster.metadata.ShardTimestampRanges;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.routing.IndexRoutingTable;
 import org.elasticsearch.cluster.routing.RerouteService;
@@ -67,6 +68,7 @@ import java.util.Set;
 
 import static org.apache.logging.log4j.Level.DEBUG;
 import static org.apache.logging.log4j.Level.ERROR;
+import static org.elasticsearch.cluster.metadata.ShardTimestampRanges.isWriteBlocked;
 import static org.elasticsearch.cluster.service.MasterService.isPublishFailureException;
 import static org.elasticsearch.core.Strings.format;
 
@@ -76,6 +78,7 @@ public class ShardStateAction {
 
     public static final String SHARD_STARTED_ACTION_NAME = "internal:cluster/shard/started";
     public static final String SHARD_FAILED_ACTION_NAME = "internal:cluster/shard/failure";
+    public static final String SHARD_TIMESTAMP_RANGE_ACTION_NAME = "internal:cluster/shard/timestamp_range";
 
     private final TransportService transportService;
     private final ClusterService clusterService;
@@ -109,6 +112,12 @@ public class ShardStateAction {
             FailedShardEntry::new,
             new ShardFailedTransportHandler(clusterService, new ShardFailedClusterStateTaskExecutor(allocationService, rerouteService))
         );
+        transportService.registerRequestHandler(
+            SHARD_TIMESTAMP_RANGE_ACTION_NAME,
+            EsExecutors.DIRECT_EXECUTOR_SERVICE,
+            ShardTimestampRangeEntry::new,
+            new ShardTimestampRangeTransportHandler(clusterService, new ShardTimestampRangeClusterStateTaskExecutor())
+        );
     }
 
     private void sendShardAction(
@@ -277,7 +286,7 @@ public class ShardStateAction {
             ClusterService clusterService,
             ShardFailedClusterStateTaskExecutor shardFailedClusterStateTaskExecutor
         ) {
-            taskQueue = clusterService.createTaskQueue(TASK_SOURCE, Priority.HIGH, shardFailedClusterStateTaskExecutor);
+            taskQueue = clusterService.createTaskQueue(TASK_SOURCE, Priority.HIGH, shardFailedClusterStateTaskExecutor, true);
         }
 
         private static final String TASK_SOURCE = "shard-failed";
@@ -571,7 +580,7 @@ public class ShardStateAction {
             ClusterService clusterService,
             ShardStartedClusterStateTaskExecutor shardStartedClusterStateTaskExecutor
         ) {
-            taskQueue = clusterService.createTaskQueue("shard-started", Priority.URGENT, shardStartedClusterStateTaskExecutor);
+            taskQueue = clusterService.createTaskQueue("shard-started", Priority.URGENT, shardStartedClusterStateTaskExecutor, true);
         }
 
         @Override
@@ -839,6 +848,188 @@ public class ShardStateAction {
         }
     }
 
+    /**
+     * Reports the timestamp range of a started primary of a write-blocked index to the master, which records it in the
+     * {@link ShardTimestampRanges} of the index so that coordinating nodes can skip the shard for searches that cannot match it.
+     */
+    public void shardTimestampRangeUpdated(
+        final ShardRouting shardRouting,
+        final long primaryTerm,
+        final long settingsVersion,
+        final ShardLongFieldRange timestampRange,
+        final ActionListener<Void> listener
+    ) {
+        assert shardRouting.primary() : shardRouting;
+        remoteShardStateUpdateDeduplicator.executeOnce(
+            new ShardTimestampRangeEntry(
+                shardRouting.shardId(),
+                shardRouting.allocationId().getId(),
+                primaryTerm,
+                settingsVersion,
+                timestampRange
+            ),
+            listener,
+            (req, l) -> sendShardAction(SHARD_TIMESTAMP_RANGE_ACTION_NAME, clusterService.state(), req, l)
+        );
+    }
+
+    private static class ShardTimestampRangeTransportHandler implements TransportRequestHandler<ShardTimestampRangeEntry> {
+        private final MasterServiceTaskQueue<ShardTimestampRangeUpdateTask> taskQueue;
+
+        ShardTimestampRangeTransportHandler(ClusterService clusterService, ShardTimestampRangeClusterStateTaskExecutor executor) {
+            taskQueue = clusterService.createTaskQueue("shard-timestamp-range", Priority.LOW, executor);
+        }
+
+        @Override
+        public void messageReceived(ShardTimestampRangeEntry request, TransportChannel channel, Task task) {
+            logger.debug("{} received shard timestamp range for [{}]", request.shardId, request);
+            taskQueue.submitTask(
+                "shard-timestamp-range " + request,
+                new ShardTimestampRangeUpdateTask(
+                    request,
+                    new ChannelActionListener<>(channel).map(ignored -> TransportResponse.Empty.INSTANCE)
+                ),
+                null
+            );
+        }
+    }
+
+    public static class ShardTimestampRangeClusterStateTaskExecutor implements ClusterStateTaskExecutor<ShardTimestampRangeUpdateTask> {
+
+        @Override
+        public ClusterState execute(BatchExecutionContext<ShardTimestampRangeUpdateTask> batchExecutionContext) {
+            final ClusterState initialState = batchExecutionContext.initialState();
+            final Map<Index, IndexMetadata> updatedIndices = new HashMap<>();
+            for (var taskContext : batchExecutionContext.taskContexts()) {
+                final var task = taskContext.getTask();
+                final ShardTimestampRangeEntry entry = task.entry();
+                // as with shard started tasks, stale reports are acknowledged but ignored, the primary reports again on its next run
+                final Index index = entry.shardId.getIndex();
+                final IndexMetadata indexMetadata = updatedIndices.getOrDefault(index, initialState.metadata().index(index));
+                final ShardRouting matched = initialState.getRoutingTable().getByAllocationId(entry.shardId, entry.allocationId);
+                if (indexMetadata == null || matched == null || matched.primary() == false || matched.active() == false) {
+                    logger.debug("{} ignoring shard timestamp range task [{}] (not an active primary)", entry.shardId, entry);
+                } else if (indexMetadata.primaryTerm(entry.shardId.id()) != entry.primaryTerm) {
+                    logger.debug("{} ignoring shard timestamp range task [{}] (primary term mismatch)", entry.shardId, entry);
+                } else if (indexMetadata.getSettingsVersion() != entry.settingsVersion || isWriteBlocked(indexMetadata) == false) {
+                    logger.debug("{} ignoring shard timestamp range task [{}] (index blocks changed)", entry.shardId, entry);
+                } else {
+                    final ShardTimestampRanges current = ShardTimestampRanges.fromIndexMetadata(indexMetadata);
+                    if (current == null || entry.timestampRange.equals(current.getShardRange(entry.shardId.id())) == false) {
+                        final ShardTimestampRanges updated = ShardTimestampRanges.withShardRange(
+                            indexMetadata,
+                            entry.shardId.id(),
+                            entry.timestampRange
+                        );
+                        updatedIndices.put(
+                            index,
+                            IndexMetadata.builder(indexMetadata).putCustom(ShardTimestampRanges.CUSTOM_KEY, updated.toCustomData()).build()
+                        );
+                    }
+                }
+                taskContext.success(task::onSuccess);
+            }
+            if (updatedIndices.isEmpty()) {
+                return initialState;
+            }
+            final Metadata.Builder metadataBuilder = Metadata.builder(initialState.metadata());
+            for (IndexMetadata indexMetadata : updatedIndices.values()) {
+                metadataBuilder.put(indexMetadata, true);
+            }
+            return ClusterState.builder(initialState).metadata(metadataBuilder).build();
+        }
+    }
+
+    public static class ShardTimestampRangeEntry extends TransportRequest {
+        final ShardId shardId;
+        final String allocationId;
+        final long primaryTerm;
+        final long settingsVersion;
+        final ShardLongFieldRange timestampRange;
+
+        ShardTimestampRangeEntry(StreamInput in) throws IOException {
+            super(in);
+            shardId = new ShardId(in);
+            allocationId = in.readString();
+            primaryTerm = in.readVLong();
+            settingsVersion = in.readVLong();
+            timestampRange = ShardLongFieldRange.readFrom(in);
+        }
+
+        public ShardTimestampRangeEntry(
+            final ShardId shardId,
+            final String allocationId,
+            final long primaryTerm,
+            final long settingsVersion,
+            final ShardLongFieldRange timestampRange
+        ) {
+            assert timestampRange != ShardLongFieldRange.UNKNOWN;
+            this.shardId = shardId;
+            this.allocationId = allocationId;
+            this.primaryTerm = primaryTerm;
+            this.settingsVersion = settingsVersion;
+            this.timestampRange = timestampRange;
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            shardId.writeTo(out);
+            out.writeString(allocationId);
+            out.writeVLong(primaryTerm);
+            out.writeVLong(settingsVersion);
+            timestampRange.writeTo(out);
+        }
+
+        @Override
+        public String toString() {
+            return Strings.format(
+                "ShardTimestampRangeEntry{shardId [%s], allocationId [%s], primary term [%d], settings version [%d], range [%s]}",
+                shardId,
+                allocationId,
+                primaryTerm,
+                settingsVersion,
+                timestampRange
+            );
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ShardTimestampRangeEntry that = (ShardTimestampRangeEntry) o;
+            return primaryTerm == that.primaryTerm
+                && settingsVersion == that.settingsVersion
+                && shardId.equals(that.shardId)
+                && allocationId.equals(that.allocationId)
+                && timestampRange.equals(that.timestampRange);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(shardId, allocationId, primaryTerm, settingsVersion, timestampRange);
+        }
+    }
+
+    public record ShardTimestampRangeUpdateTask(ShardTimestampRangeEntry entry, ActionListener<Void> listener)
+        implements
+            ClusterStateTaskListener {
+
+        @Override
+        public void onFailure(Exception e) {
+            if (e instanceof NotMasterException || e instanceof FailedToCommitClusterStateException) {
+                logger.debug(() -> format("%s failure while updating shard timestamp range [%s]", entry.shardId, entry), e);
+            } else {
+                logger.warn(() -> format("%s unexpected failure while updating shard timestamp range [%s]", entry.shardId, entry), e);
+            }
+            listener.onFailure(e);
+        }
+
+        public void onSuccess() {
+            listener.onResponse(null);
+        }
+    }
+
     public static final class NoLongerPrimaryShardException extends ElasticsearchException {
 
         public NoLongerPrimaryShardException(ShardId shardId, String msg) {
@@ -8,6 +8,7 @@
 
 package org.elasticsearch.cluster.coordination;
 
+import org.elasticsearch.TransportVersions;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
@@ -19,7 +20,7 @@ import java.io.IOException;
 
 public class ClusterStateSerializationStats implements Writeable, ToXContentObject {
 
-    public static final ClusterStateSerializationStats EMPTY = new ClusterStateSerializationStats(0L, 0L, 0L, 0L, 0L, 0L);
+    public static final ClusterStateSerializationStats EMPTY = new ClusterStateSerializationStats(0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L);
 
     private final long fullStateCount;
     private final long totalUncompressedFullStateBytes;
@@ -27,6 +28,8 @@ public class ClusterStateSerializationStats implements Writeable, ToXContentObje
     private final long diffCount;
     private final long totalUncompressedDiffBytes;
     private final long totalCompressedDiffBytes;
+    private final long dictionaryCompressedCount;
+    private final long totalDictionarySavedBytes;
 
     public ClusterStateSerializationStats(
         long fullStateCount,
@@ -34,7 +37,9 @@ public class ClusterStateSerializationStats implements Writeable, ToXContentObje
         long totalCompressedFullStateBytes,
         long diffCount,
         long totalUncompressedDiffBytes,
-        long totalCompressedDiffBytes
+        long totalCompressedDiffBytes,
+        long dictionaryCompressedCount,
+        long totalDictionarySavedBytes
     ) {
         this.fullStateCount = fullStateCount;
         this.totalUncompressedFullStateBytes = totalUncompressedFullStateBytes;
@@ -42,6 +47,8 @@ public class ClusterStateSerializationStats implements Writeable, ToXContentObje
         this.diffCount = diffCount;
         this.totalUncompressedDiffBytes = totalUncompressedDiffBytes;
         this.totalCompressedDiffBytes = totalCompressedDiffBytes;
+        this.dictionaryCompressedCount = dictionaryCompressedCount;
+        this.totalDictionarySavedBytes = totalDictionarySavedBytes;
     }
 
     public ClusterStateSerializationStats(StreamInput in) throws IOException {
@@ -51,6 +58,13 @@ public class ClusterStateSerializationStats implements Writeable, ToXContentObje
         this.diffCount = in.readVLong();
         this.totalUncompressedDiffBytes = in.readVLong();
         this.totalCompressedDiffBytes = in.readVLong();
+        if (in.getTransportVersion().onOrAfter(TransportVersions.PUBLICATION_COMPRESSION_DICTIONARY)) {
+            this.dictionaryCompressedCount = in.readVLong();
+            this.totalDictionarySavedBytes = in.readVLong();
+        } else {
+            this.dictionaryCompressedCount = 0L;
+            this.totalDictionarySavedBytes = 0L;
+        }
     }
 
     public long getFullStateCount() {
@@ -77,6 +91,20 @@ public class ClusterStateSerializationStats implements Writeable, ToXContentObje
         return totalCompressedDiffBytes;
     }
 
+    /**
+     * @return the number of serialized cluster states and diffs that were compressed with a shared compression dictionary
+     */
+    public long getDictionaryCompressedCount() {
+        return dictionaryCompressedCount;
+    }
+
+    /**
+     * @return an estimate of the number of compressed bytes that the shared compression dictionary saved
+     */
+    public long getTotalDictionarySavedBytes() {
+        return totalDictionarySavedBytes;
+    }
+
     @Override
     public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
         builder.startObject();
@@ -94,6 +122,10 @@ public class ClusterStateSerializationStats implements Writeable, ToXContentObje
         builder.humanReadableField("uncompressed_size_in_bytes", "uncompressed_size", ByteSizeValue.ofBytes(totalUncompressedDiffBytes));
         builder.humanReadableField("compressed_size_in_bytes", "compressed_size", ByteSizeValue.ofBytes(totalCompressedDiffBytes));
         builder.endObject();
+        builder.startObject("dictionary");
+        builder.field("count", dictionaryCompressedCount);
+        builder.humanReadableField("saved_size_in_bytes", "saved_size", ByteSizeValue.ofBytes(totalDictionarySavedBytes));
+        builder.endObject();
         builder.endObject();
         return builder;
     }
@@ -106,6 +138,10 @@ public class ClusterStateSerializationStats implements Writeable, ToXContentObje
         out.writeVLong(diffCount);
         out.writeVLong(totalUncompressedDiffBytes);
         out.writeVLong(totalCompressedDiffBytes);
+        if (out.getTransportVersion().onOrAfter(TransportVersions.PUBLICATION_COMPRESSION_DICTIONARY)) {
+            out.writeVLong(dictionaryCompressedCount);
+            out.writeVLong(totalDictionarySavedBytes);
+        }
     }
 
 }
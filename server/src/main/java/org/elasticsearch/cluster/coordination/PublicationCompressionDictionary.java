@@ -0,0 +1,417 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+package org.elasticsearch.cluster.coordination;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.hash.MurmurHash3;
+import org.elasticsearch.common.util.ByteUtils;
+import org.elasticsearch.core.Nullable;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A preset dictionary for the DEFLATE compression of the cluster states and diffs that the master publishes, trained from the bytes of
+ * recent publications. Dictionaries are identified by a hash of their content, so that nodes can tell whether they share a dictionary
+ * regardless of which master trained it.
+ */
+final class PublicationCompressionDictionary {
+
+    private static final Logger logger = LogManager.getLogger(PublicationCompressionDictionary.class);
+
+    /**
+     * DEFLATE only refers back this far, so larger dictionaries don't help.
+     */
+    static final int MAX_SIZE = 32 * 1024;
+
+    // same level as the DeflateCompressor that compresses publications without a dictionary
+    static final int LEVEL = 3;
+
+    private final long id;
+    private final byte[] bytes;
+
+    PublicationCompressionDictionary(byte[] bytes) {
+        assert bytes.length <= MAX_SIZE : bytes.length;
+        this.bytes = bytes;
+        this.id = MurmurHash3.hash128(bytes, 0, bytes.length, 0, new MurmurHash3.Hash128()).h1;
+    }
+
+    long id() {
+        return id;
+    }
+
+    byte[] bytes() {
+        return bytes;
+    }
+
+    /**
+     * @return a raw DEFLATE compressor that uses this dictionary, which the caller must {@link Deflater#end()}
+     */
+    Deflater newDeflater() {
+        final Deflater deflater = new Deflater(LEVEL, true);
+        deflater.setDictionary(bytes);
+        return deflater;
+    }
+
+    @Override
+    public String toString() {
+        return "PublicationCompressionDictionary{id=" + id + ", size=" + bytes.length + "}";
+    }
+
+    private static final int BUFFER_SIZE = 4096;
+
+    /**
+     * @return a stream that writes the raw DEFLATE compression of the bytes written to it to the given stream, using the given
+     *         dictionary if not {@code null}. Closing the returned stream closes the given stream.
+     */
+    static OutputStream compressingStream(OutputStream out, @Nullable PublicationCompressionDictionary dictionary) {
+        final Deflater deflater = new Deflater(LEVEL, true);
+        if (dictionary != null) {
+            deflater.setDictionary(dictionary.bytes);
+        }
+        return new DeflaterOutputStream(out, deflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * @return a stream that decompresses the raw DEFLATE compressed bytes of the given stream, which were compressed with the given
+     *         dictionary if not {@code null}. Closing the returned stream closes the given stream.
+     */
+    static InputStream decompressingStream(InputStream in, @Nullable PublicationCompressionDictionary dictionary) {
+        final Inflater inflater = new Inflater(true);
+        if (dictionary != null) {
+            inflater.setDictionary(dictionary.bytes);
+        }
+        return new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * @return the number of bytes that the given bytes compress to with the given dictionary, or without a dictionary if {@code null}
+     */
+    static long compressedLength(byte[] bytes, int offset, int length, @Nullable PublicationCompressionDictionary dictionary) {
+        final Deflater deflater = dictionary == null ? new Deflater(LEVEL, true) : dictionary.newDeflater();
+        try {
+            deflater.setInput(bytes, offset, length);
+            deflater.finish();
+            final byte[] buffer = new byte[4096];
+            long compressedLength = 0;
+            while (deflater.finished() == false) {
+                compressedLength += deflater.deflate(buffer);
+            }
+            return compressedLength;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Passes bytes through to the given stream and records their beginning, from which it estimates how many bytes a dictionary saved
+     * when compressing them. A dictionary only matters as long as the compressor can still refer back to it, so the beginning suffices.
+     */
+    static final class SavedBytesEstimatingStream extends FilterOutputStream {
+
+        static final int PREFIX_SIZE = 2 * MAX_SIZE;
+
+        private final byte[] prefix = new byte[PREFIX_SIZE];
+        private int prefixLength;
+        private boolean truncated;
+
+        SavedBytesEstimatingStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (prefixLength < prefix.length) {
+                prefix[prefixLength++] = (byte) b;
+            } else {
+                truncated = true;
+            }
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            final int recorded = Math.min(len, prefix.length - prefixLength);
+            System.arraycopy(b, off, prefix, prefixLength, recorded);
+            prefixLength += recorded;
+            truncated |= recorded < len;
+            out.write(b, off, len);
+        }
+
+        /**
+         * @param compressedLength the number of bytes that the given dictionary compressed the bytes written to this stream to, which is
+         *                         exact for payloads that fit in the recorded prefix so that only one more compression is needed for them
+         */
+        long estimateSavedBytes(long compressedLength, PublicationCompressionDictionary dictionary) {
+            final long withDictionary = truncated
+                ? PublicationCompressionDictionary.compressedLength(prefix, 0, prefixLength, dictionary)
+                : compressedLength;
+            return Math.max(0L, PublicationCompressionDictionary.compressedLength(prefix, 0, prefixLength, null) - withDictionary);
+        }
+    }
+
+    // k-mers of this length are the unit of content that the trainer tries to cover, long enough to be worth a back reference
+    private static final int KMER_LENGTH = 8;
+    private static final int SEGMENT_SIZE = 256;
+    private static final int TABLE_BITS = 18;
+
+    /**
+     * Builds a dictionary out of the segments of the given samples whose content recurs across the most samples, in the spirit of the
+     * COVER algorithm of zstd. Frequencies are counted in a hash table of fixed size, collisions only cost quality.
+     *
+     * @return the dictionary, or {@code null} if the samples have nothing in common
+     */
+    @Nullable
+    static PublicationCompressionDictionary train(List<byte[]> samples) {
+        final int[] frequencies = new int[1 << TABLE_BITS];
+        final int[] lastSample = new int[1 << TABLE_BITS];
+        Arrays.fill(lastSample, -1);
+        for (int s = 0; s < samples.size(); s++) {
+            final byte[] sample = samples.get(s);
+            for (int i = 0; i + KMER_LENGTH <= sample.length; i++) {
+                final int slot = slot(sample, i);
+                if (lastSample[slot] != s) {
+                    // count each k-mer once per sample, content that recurs within a single sample compresses well without a dictionary
+                    lastSample[slot] = s;
+                    frequencies[slot]++;
+                }
+            }
+        }
+
+        final boolean[] covered = new boolean[1 << TABLE_BITS];
+        final PriorityQueue<Segment> candidates = new PriorityQueue<>((a, b) -> Long.compare(b.score, a.score));
+        for (byte[] sample : samples) {
+            for (int offset = 0; offset < sample.length; offset += SEGMENT_SIZE) {
+                final Segment segment = new Segment(sample, offset, Math.min(SEGMENT_SIZE, sample.length - offset));
+                segment.score = segment.score(frequencies, covered);
+                if (segment.score > 0) {
+                    candidates.add(segment);
+                }
+            }
+        }
+
+        // lazy greedy selection: the score of a segment only drops as other segments cover its k-mers, so a segment whose updated score
+        // still beats the best remaining stale score is the best choice
+        final List<Segment> selected = new ArrayList<>();
+        int size = 0;
+        Segment segment;
+        while (size < MAX_SIZE && (segment = candidates.poll()) != null) {
+            final long score = segment.score(frequencies, covered);
+            if (score <= 0) {
+                continue;
+            }
+            final Segment next = candidates.peek();
+            if (next != null && score < next.score) {
+                segment.score = score;
+                candidates.add(segment);
+                continue;
+            }
+            segment.cover(covered);
+            selected.add(segment);
+            size += segment.length;
+        }
+        if (selected.isEmpty()) {
+            return null;
+        }
+
+        // the most valuable content goes to the end of the dictionary, where back references to it are cheapest
+        final byte[] bytes = new byte[Math.min(size, MAX_SIZE)];
+        int end = bytes.length;
+        for (Segment s : selected) {
+            final int length = Math.min(s.length, end);
+            System.arraycopy(s.sample, s.offset, bytes, end - length, length);
+            end -= length;
+            if (end == 0) {
+                break;
+            }
+        }
+        return new PublicationCompressionDictionary(bytes);
+    }
+
+    private static int slot(byte[] bytes, int offset) {
+        return (int) ((ByteUtils.readLongLE(bytes, offset) * 0x9E3779B97F4A7C15L) >>> (64 - TABLE_BITS));
+    }
+
+    private static final class Segment {
+        private final byte[] sample;
+        private final int offset;
+        private final int length;
+        private long score;
+
+        Segment(byte[] sample, int offset, int length) {
+            this.sample = sample;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        long score(int[] frequencies, boolean[] covered) {
+            long score = 0;
+            for (int i = offset; i + KMER_LENGTH <= offset + length; i++) {
+                final int slot = slot(sample, i);
+                if (covered[slot] == false && frequencies[slot] > 1) {
+                    score += frequencies[slot] - 1;
+                }
+            }
+            return score;
+        }
+
+        void cover(boolean[] covered) {
+            for (int i = offset; i + KMER_LENGTH <= offset + length; i++) {
+                covered[slot(sample, i)] = true;
+            }
+        }
+    }
+
+    /**
+     * Collects samples of the publications of the master and periodically trains a new dictionary from them on the given executor. A new
+     * dictionary only replaces the current one if it compresses the recent samples notably better, because every new dictionary has to
+     * be shipped to every node.
+     */
+    static final class Trainer {
+
+        static final int MAX_SAMPLE_SIZE = 16 * 1024;
+        static final int MAX_SAMPLES_SIZE = 512 * 1024;
+        static final int SAMPLES_PER_TRAINING = 64;
+        private static final int SLICES_PER_SAMPLE = 4;
+
+        private final Executor executor;
+        private final Deque<byte[]> samples = new ArrayDeque<>();
+        private final AtomicBoolean training = new AtomicBoolean();
+        private long samplesSize;
+        private int newSamples;
+        @Nullable
+        private volatile PublicationCompressionDictionary current;
+
+        Trainer(Executor executor) {
+            this.executor = executor;
+        }
+
+        @Nullable
+        PublicationCompressionDictionary current() {
+            return current;
+        }
+
+        // exposed for tests
+        void setCurrent(PublicationCompressionDictionary dictionary) {
+            current = dictionary;
+        }
+
+        /**
+         * Adds the given uncompressed publication to the samples, or evenly spaced slices of it if it's large.
+         */
+        void addSample(BytesReference uncompressed) {
+            final List<byte[]> newSlices = new ArrayList<>(SLICES_PER_SAMPLE);
+            if (uncompressed.length() <= MAX_SAMPLE_SIZE) {
+                newSlices.add(BytesReference.toBytes(uncompressed));
+            } else {
+                final int sliceSize = MAX_SAMPLE_SIZE / SLICES_PER_SAMPLE;
+                final long stride = (uncompressed.length() - sliceSize) / (SLICES_PER_SAMPLE - 1);
+                for (int i = 0; i < SLICES_PER_SAMPLE; i++) {
+                    newSlices.add(BytesReference.toBytes(uncompressed.slice((int) (i * stride), sliceSize)));
+                }
+            }
+            final List<byte[]> trainingSamples;
+            synchronized (samples) {
+                for (byte[] slice : newSlices) {
+                    samples.addLast(slice);
+                    samplesSize += slice.length;
+                }
+                while (samplesSize > MAX_SAMPLES_SIZE) {
+                    samplesSize -= samples.removeFirst().length;
+                }
+                newSamples += 1;
+                if (newSamples < SAMPLES_PER_TRAINING || training.compareAndSet(false, true) == false) {
+                    return;
+                }
+                newSamples = 0;
+                trainingSamples = new ArrayList<>(samples);
+            }
+            executor.execute(() -> {
+                try {
+                    maybeReplaceDictionary(trainingSamples);
+                } catch (Exception e) {
+                    assert false : e;
+                    logger.warn("failed to train a compression dictionary for cluster state publications", e);
+                } finally {
+                    training.set(false);
+                }
+            });
+        }
+
+        private void maybeReplaceDictionary(List<byte[]> trainingSamples) {
+            final PublicationCompressionDictionary candidate = train(trainingSamples);
+            if (candidate == null) {
+                return;
+            }
+            final PublicationCompressionDictionary previous = current;
+            if (previous != null && previous.id() == candidate.id()) {
+                return;
+            }
+            final long candidateSize = compressedLength(trainingSamples, candidate);
+            final long previousSize = compressedLength(trainingSamples, previous);
+            if (candidateSize < previousSize * 0.95) {
+                logger.debug(
+                    "replacing compression dictionary [{}] with [{}], which compresses recent publications to [{}] rather than [{}] bytes",
+                    previous,
+                    candidate,
+                    candidateSize,
+                    previousSize
+                );
+                current = candidate;
+            }
+        }
+
+        private static long compressedLength(List<byte[]> samples, @Nullable PublicationCompressionDictionary dictionary) {
+            long compressedLength = 0;
+            for (byte[] sample : samples) {
+                compressedLength += PublicationCompressionDictionary.compressedLength(sample, 0, sample.length, dictionary);
+            }
+            return compressedLength;
+        }
+    }
+}
@@ -23,19 +23,27 @@ import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.node.DiscoveryNodeRole;
 import org.elasticsearch.cluster.node.DiscoveryNodes;
 import org.elasticsearch.common.CheckedSupplier;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.bytes.ReleasableBytesReference;
 import org.elasticsearch.common.compress.Compressor;
 import org.elasticsearch.common.compress.CompressorFactory;
 import org.elasticsearch.common.io.Streams;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
 import org.elasticsearch.common.io.stream.NamedWriteableAwareStreamInput;
 import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.io.stream.ParallelWritingStreamOutput;
 import org.elasticsearch.common.io.stream.PositionTrackingOutputStreamStreamOutput;
 import org.elasticsearch.common.io.stream.RecyclerBytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.LazyInitializable;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
 import org.elasticsearch.core.AbstractRefCounted;
+import org.elasticsearch.core.CheckedConsumer;
 import org.elasticsearch.core.IOUtils;
+import org.elasticsearch.core.Nullable;
 import org.elasticsearch.core.Releasables;
 import org.elasticsearch.tasks.Task;
 import org.elasticsearch.threadpool.ThreadPool;
@@ -47,13 +55,17 @@ import org.elasticsearch.transport.TransportRequestOptions;
 import org.elasticsearch.transport.TransportService;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static org.elasticsearch.core.Strings.format;
 import static org.elasticsearch.threadpool.ThreadPool.Names.GENERIC;
@@ -67,6 +79,11 @@ import static org.elasticsearch.threadpool.ThreadPool.Names.GENERIC;
  * <p>
  * It also uses the {@link Diff} mechanism to reduce the data to be transferred wherever possible. This is only a best-effort mechanism so
  * we fall back to sending a full cluster state if the diff cannot be applied for some reason.
+ * <p>
+ * If {@link #COMPRESSION_DICTIONARY_ENABLED_SETTING} is set, the master also trains a {@link PublicationCompressionDictionary} from the
+ * diffs it publishes and compresses diffs with it. Each node receives the dictionary along with the first cluster state or diff that the
+ * master sends it after training, and diffs that refer to a dictionary that the receiving node doesn't hold are rejected just like diffs
+ * that don't apply, so that the master falls back to sending a full cluster state along with the dictionary.
  */
 public class PublicationTransportHandler {
 
@@ -74,6 +91,31 @@ public class PublicationTransportHandler {
 
     public static final String PUBLISH_STATE_ACTION_NAME = "internal:cluster/coordination/publish_state";
 
+    public static final Setting<Boolean> COMPRESSION_DICTIONARY_ENABLED_SETTING = Setting.boolSetting(
+        "cluster.publish.compression_dictionary.enabled",
+        false,
+        Setting.Property.NodeScope
+    );
+
+    /**
+     * The number of threads that serialize the indices of a cluster state or diff for publication, or 1 to serialize them on the
+     * publishing thread.
+     */
+    public static final Setting<Integer> SERIALIZATION_PARALLELISM_SETTING = new Setting<>(
+        "cluster.publish.serialization_parallelism",
+        (s) -> Integer.toString(EsExecutors.allocatedProcessors(s)),
+        (s) -> Setting.parseInt(s, 1, "cluster.publish.serialization_parallelism"),
+        Setting.Property.NodeScope
+    );
+
+    // the leading boolean of an uncompressed publication is 0 or 1, and this differs from the DeflateCompressor header, so the receiving
+    // node can tell the three formats apart
+    private static final byte[] DICTIONARY_HEADER = new byte[] { 'D', 'C', 'T', '\0' };
+    // the dictionary itself precedes the publication in the compressed bytes
+    private static final byte INLINE_DICTIONARY_MARKER = 0;
+    // the publication is compressed with the dictionary whose id precedes the compressed bytes
+    private static final byte DICTIONARY_MARKER = 1;
+
     private final TransportService transportService;
     private final Executor clusterCoordinationExecutor;
     private final NamedWriteableRegistry namedWriteableRegistry;
@@ -81,6 +123,15 @@ public class PublicationTransportHandler {
 
     private final AtomicReference<ClusterState> lastSeenClusterState = new AtomicReference<>();
 
+    private final int serializationParallelism;
+
+    @Nullable // if compression dictionaries are disabled
+    private final PublicationCompressionDictionary.Trainer compressionDictionaryTrainer;
+    // the ids of the compression dictionaries that the other nodes acknowledged receiving, by ephemeral id
+    private final Map<String, Long> acknowledgedCompressionDictionaries = new ConcurrentHashMap<>();
+    // the compression dictionary that the master most recently sent to this node
+    private final AtomicReference<PublicationCompressionDictionary> receivedCompressionDictionary = new AtomicReference<>();
+
     private final AtomicLong fullClusterStateReceivedCount = new AtomicLong();
     private final AtomicLong incompatibleClusterStateDiffReceivedCount = new AtomicLong();
     private final AtomicLong compatibleClusterStateDiffReceivedCount = new AtomicLong();
@@ -96,6 +147,7 @@ public class PublicationTransportHandler {
     private final SerializationStatsTracker serializationStatsTracker = new SerializationStatsTracker();
 
     public PublicationTransportHandler(
+        Settings settings,
         TransportService transportService,
         NamedWriteableRegistry namedWriteableRegistry,
         Function<PublishRequest, PublishWithJoinResponse> handlePublishRequest
@@ -104,6 +156,10 @@ public class PublicationTransportHandler {
         this.clusterCoordinationExecutor = transportService.getThreadPool().executor(ThreadPool.Names.CLUSTER_COORDINATION);
         this.namedWriteableRegistry = namedWriteableRegistry;
         this.handlePublishRequest = handlePublishRequest;
+        this.serializationParallelism = SERIALIZATION_PARALLELISM_SETTING.get(settings);
+        this.compressionDictionaryTrainer = COMPRESSION_DICTIONARY_ENABLED_SETTING.get(settings)
+            ? new PublicationCompressionDictionary.Trainer(transportService.getThreadPool().generic())
+            : null;
 
         transportService.registerRequestHandler(
             PUBLISH_STATE_ACTION_NAME,
@@ -124,15 +180,24 @@ public class PublicationTransportHandler {
         );
     }
 
+    // exposed for tests
+    void setCompressionDictionary(PublicationCompressionDictionary dictionary) {
+        assert compressionDictionaryTrainer != null;
+        compressionDictionaryTrainer.setCurrent(dictionary);
+    }
+
     private void handleIncomingPublishRequest(
         BytesTransportRequest request,
         ActionListener<PublishWithJoinResponse> publishResponseListener
     ) throws IOException {
         assert ThreadPool.assertCurrentThreadPool(GENERIC);
-        final Compressor compressor = CompressorFactory.compressor(request.bytes());
+        final boolean dictionaryCompressed = isDictionaryCompressed(request.bytes());
+        final Compressor compressor = dictionaryCompressed ? null : CompressorFactory.compressor(request.bytes());
         StreamInput in = request.bytes().streamInput();
         try {
-            if (compressor != null) {
+            if (dictionaryCompressed) {
+                in = dictionaryCompressedStreamInput(in);
+            } else if (compressor != null) {
                 in = compressor.threadLocalStreamInput(in);
             }
             in = new NamedWriteableAwareStreamInput(in, namedWriteableRegistry);
@@ -181,6 +246,50 @@ public class PublicationTransportHandler {
         }
     }
 
+    private static boolean isDictionaryCompressed(BytesReference bytes) {
+        if (bytes.length() < DICTIONARY_HEADER.length) {
+            return false;
+        }
+        for (int i = 0; i < DICTIONARY_HEADER.length; i++) {
+            if (bytes.get(i) != DICTIONARY_HEADER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private StreamInput dictionaryCompressedStreamInput(StreamInput in) throws IOException {
+        in.skipNBytes(DICTIONARY_HEADER.length);
+        final byte marker = in.readByte();
+        if (marker == INLINE_DICTIONARY_MARKER) {
+            final StreamInput decompressed = new InputStreamStreamInput(PublicationCompressionDictionary.decompressingStream(in, null));
+            boolean success = false;
+            try {
+                final PublicationCompressionDictionary dictionary = new PublicationCompressionDictionary(decompressed.readByteArray());
+                logger.debug("received compression dictionary [{}]", dictionary);
+                receivedCompressionDictionary.set(dictionary);
+                success = true;
+                return decompressed;
+            } finally {
+                if (success == false) {
+                    IOUtils.closeWhileHandlingException(decompressed);
+                }
+            }
+        } else if (marker == DICTIONARY_MARKER) {
+            final long dictionaryId = in.readLong();
+            final PublicationCompressionDictionary dictionary = receivedCompressionDictionary.get();
+            if (dictionary == null || dictionary.id() != dictionaryId) {
+                // only diffs refer to a dictionary, see PublicationContext#compressionMode
+                logger.debug("received diff compressed with unknown dictionary [{}], have [{}]", dictionaryId, dictionary);
+                incompatibleClusterStateDiffReceivedCount.incrementAndGet();
+                throw new IncompatibleClusterStateVersionException("unknown compression dictionary [" + dictionaryId + "]");
+            }
+            return new InputStreamStreamInput(PublicationCompressionDictionary.decompressingStream(in, dictionary));
+        } else {
+            throw new IllegalStateException("unexpected compression dictionary marker [" + marker + "]");
+        }
+    }
+
     private ClusterState deserializeAndApplyDiff(BytesTransportRequest request, StreamInput in, ClusterState currentState)
         throws IOException {
         ClusterState incomingState;
@@ -252,75 +361,96 @@ public class PublicationTransportHandler {
         }
     }
 
-    private ReleasableBytesReference serializeFullClusterState(ClusterState clusterState, DiscoveryNode node, TransportVersion version) {
-        final RecyclerBytesStreamOutput bytesStream = transportService.newNetworkBytesStream();
-        boolean success = false;
+    private ReleasableBytesReference serializeFullClusterState(
+        ClusterState clusterState,
+        DiscoveryNode node,
+        SerializationKey key,
+        @Nullable PublicationCompressionDictionary dictionary
+    ) {
+        final SerializedPublication serialized;
         try {
-            final long uncompressedBytes;
-            try (
-                StreamOutput stream = new PositionTrackingOutputStreamStreamOutput(
-                    CompressorFactory.COMPRESSOR.threadLocalOutputStream(Streams.flushOnCloseStream(bytesStream))
-                )
-            ) {
-                stream.setTransportVersion(version);
+            serialized = serialize(key, dictionary, false, stream -> {
                 stream.writeBoolean(true);
                 clusterState.writeTo(stream);
-                uncompressedBytes = stream.position();
-            } catch (IOException e) {
-                throw new ElasticsearchException("failed to serialize cluster state for publishing to node {}", e, node);
-            }
-            final ReleasableBytesReference result = new ReleasableBytesReference(bytesStream.bytes(), bytesStream);
-            serializationStatsTracker.serializedFullState(uncompressedBytes, result.length());
-            logger.trace(
-                "serialized full cluster state version [{}] using transport version [{}] with size [{}]",
-                clusterState.version(),
-                version,
-                result.length()
-            );
-            success = true;
-            return result;
-        } finally {
-            if (success == false) {
-                bytesStream.close();
-            }
+            });
+        } catch (IOException e) {
+            throw new ElasticsearchException("failed to serialize cluster state for publishing to node {}", e, node);
         }
+        final ReleasableBytesReference result = serialized.bytes();
+        serializationStatsTracker.serializedFullState(serialized.uncompressedBytes(), result.length());
+        logger.trace(
+            "serialized full cluster state version [{}] using transport version [{}] and compression mode [{}] with size [{}]",
+            clusterState.version(),
+            key.version(),
+            key.compressionMode(),
+            result.length()
+        );
+        return result;
     }
 
     private ReleasableBytesReference serializeDiffClusterState(
         ClusterState newState,
         Diff<ClusterState> diff,
         DiscoveryNode node,
-        TransportVersion version
+        SerializationKey key,
+        @Nullable PublicationCompressionDictionary dictionary,
+        boolean addSample
     ) {
         final long clusterStateVersion = newState.version();
-        final RecyclerBytesStreamOutput bytesStream = transportService.newNetworkBytesStream();
-        boolean success = false;
+        final TransportVersion version = key.version();
+        final SerializedPublication serialized;
         try {
-            final long uncompressedBytes;
-            try (
-                StreamOutput stream = new PositionTrackingOutputStreamStreamOutput(
-                    CompressorFactory.COMPRESSOR.threadLocalOutputStream(Streams.flushOnCloseStream(bytesStream))
-                )
-            ) {
-                stream.setTransportVersion(version);
+            serialized = serialize(key, dictionary, addSample, stream -> {
                 stream.writeBoolean(false);
                 diff.writeTo(stream);
                 if (version.onOrAfter(INCLUDES_LAST_COMMITTED_DATA_VERSION)) {
                     stream.writeBoolean(newState.metadata().clusterUUIDCommitted());
                     newState.getLastCommittedConfiguration().writeTo(stream);
                 }
-                uncompressedBytes = stream.position();
-            } catch (IOException e) {
-                throw new ElasticsearchException("failed to serialize cluster state diff for publishing to node {}", e, node);
+            });
+        } catch (IOException e) {
+            throw new ElasticsearchException("failed to serialize cluster state diff for publishing to node {}", e, node);
+        }
+        final ReleasableBytesReference result = serialized.bytes();
+        serializationStatsTracker.serializedDiff(serialized.uncompressedBytes(), result.length());
+        if (key.compressionMode() == CompressionMode.DICTIONARY) {
+            serializationStatsTracker.compressedWithDictionary(serialized.dictionarySavedBytes());
+        }
+        logger.trace(
+            "serialized cluster state diff for version [{}] using transport version [{}] and compression mode [{}] with size [{}]",
+            clusterStateVersion,
+            version,
+            key.compressionMode(),
+            result.length()
+        );
+        return result;
+    }
+
+    private SerializedPublication serialize(
+        SerializationKey key,
+        @Nullable PublicationCompressionDictionary dictionary,
+        boolean addSample,
+        CheckedConsumer<StreamOutput, IOException> writer
+    ) throws IOException {
+        assert key.compressionMode() == CompressionMode.PLAIN || dictionary != null : key;
+        assert addSample == false || compressionDictionaryTrainer != null;
+        final RecyclerBytesStreamOutput bytesStream = transportService.newNetworkBytesStream();
+        boolean success = false;
+        try {
+            final SerializedPublication result;
+            if (addSample) {
+                // the trainer needs to see the uncompressed bytes, but it only samples one diff per publication so that's the only
+                // serialization that needs an uncompressed copy
+                try (RecyclerBytesStreamOutput uncompressedStream = transportService.newNetworkBytesStream()) {
+                    uncompressedStream.setTransportVersion(key.version());
+                    writer.accept(parallelWritingStream(uncompressedStream));
+                    final BytesReference uncompressed = uncompressedStream.bytes();
+                    compressionDictionaryTrainer.addSample(uncompressed);
+                    result = compress(key, dictionary, bytesStream, uncompressed::writeTo);
+                }
+            } else {
+                result = compress(key, dictionary, bytesStream, stream -> writer.accept(parallelWritingStream(stream)));
             }
-            final ReleasableBytesReference result = new ReleasableBytesReference(bytesStream.bytes(), bytesStream);
-            serializationStatsTracker.serializedDiff(uncompressedBytes, result.length());
-            logger.trace(
-                "serialized cluster state diff for version [{}] using transport version [{}] with size [{}]",
-                clusterStateVersion,
-                version,
-                result.length()
-            );
             success = true;
             return result;
         } finally {
@@ -330,6 +460,90 @@ public class PublicationTransportHandler {
         }
     }
 
+    private static SerializedPublication compress(
+        SerializationKey key,
+        @Nullable PublicationCompressionDictionary dictionary,
+        RecyclerBytesStreamOutput bytesStream,
+        CheckedConsumer<StreamOutput, IOException> writer
+    ) throws IOException {
+        final OutputStream compressingStream = switch (key.compressionMode()) {
+            case PLAIN -> CompressorFactory.COMPRESSOR.threadLocalOutputStream(Streams.flushOnCloseStream(bytesStream));
+            case INLINE_DICTIONARY -> {
+                bytesStream.writeBytes(DICTIONARY_HEADER);
+                bytesStream.writeByte(INLINE_DICTIONARY_MARKER);
+                yield PublicationCompressionDictionary.compressingStream(Streams.flushOnCloseStream(bytesStream), null);
+            }
+            case DICTIONARY -> {
+                bytesStream.writeBytes(DICTIONARY_HEADER);
+                bytesStream.writeByte(DICTIONARY_MARKER);
+                bytesStream.writeLong(dictionary.id());
+                yield PublicationCompressionDictionary.compressingStream(Streams.flushOnCloseStream(bytesStream), dictionary);
+            }
+        };
+        final int headerLength = bytesStream.size();
+        final boolean estimateSavedBytes = key.compressionMode() == CompressionMode.DICTIONARY;
+        final var savedBytesEstimatingStream = estimateSavedBytes
+            ? new PublicationCompressionDictionary.SavedBytesEstimatingStream(compressingStream)
+            : null;
+        final long uncompressedBytes;
+        try (
+            PositionTrackingOutputStreamStreamOutput stream = new PositionTrackingOutputStreamStreamOutput(
+                estimateSavedBytes ? savedBytesEstimatingStream : compressingStream
+            )
+        ) {
+            stream.setTransportVersion(key.version());
+            if (key.compressionMode() == CompressionMode.INLINE_DICTIONARY) {
+                stream.writeByteArray(dictionary.bytes());
+            }
+            final long dictionaryBytes = stream.position();
+            writer.accept(stream);
+            uncompressedBytes = stream.position() - dictionaryBytes;
+        }
+        final long dictionarySavedBytes = estimateSavedBytes
+            ? savedBytesEstimatingStream.estimateSavedBytes(bytesStream.size() - headerLength, dictionary)
+            : 0L;
+        return new SerializedPublication(
+            new ReleasableBytesReference(bytesStream.bytes(), bytesStream),
+            uncompressedBytes,
+            dictionarySavedBytes
+        );
+    }
+
+    /**
+     * Serializing the indices in the metadata and routing table of a large cluster takes a while, so we serialize them in chunks on
+     * several threads, see {@link ParallelWritingStreamOutput}. This doesn't change the serialized bytes.
+     */
+    private StreamOutput parallelWritingStream(StreamOutput out) {
+        if (serializationParallelism <= 1) {
+            return out;
+        }
+        return new ParallelWritingStreamOutput(
+            out,
+            transportService.getThreadPool().generic(),
+            serializationParallelism,
+            transportService::newNetworkBytesStream
+        );
+    }
+
+    private enum CompressionMode {
+        /**
+         * Compressed with the {@link CompressorFactory#COMPRESSOR}, as understood by all nodes.
+         */
+        PLAIN,
+        /**
+         * Compressed together with the compression dictionary, for nodes that don't hold the dictionary yet.
+         */
+        INLINE_DICTIONARY,
+        /**
+         * Compressed with the compression dictionary, for nodes that acknowledged receiving the dictionary.
+         */
+        DICTIONARY
+    }
+
+    private record SerializationKey(TransportVersion version, CompressionMode compressionMode) {}
+
+    private record SerializedPublication(ReleasableBytesReference bytes, long uncompressedBytes, long dictionarySavedBytes) {}
+
     /**
      * Publishing a cluster state typically involves sending the same cluster state (or diff) to every node, so the work of diffing,
      * serializing, and compressing the state can be done once and the results shared across publish requests. The
@@ -345,10 +559,17 @@ public class PublicationTransportHandler {
         private final Task task;
         private final boolean sendFullVersion;
 
+        @Nullable // if compression dictionaries are disabled or no dictionary has been trained yet
+        private final PublicationCompressionDictionary compressionDictionary;
+        private final AtomicBoolean sampledDiff = new AtomicBoolean();
+
         private final Map<DiscoveryNode, Transport.Connection> nodeConnections = new HashMap<>();
+        // The serialization of the diff for each node is decided up front, because the node may acknowledge a compression dictionary
+        // in the meantime.
+        private final Map<DiscoveryNode, SerializationKey> diffSerializationKeys = new HashMap<>();
         // All the values of these maps have one ref for the context (while it's open) and one for each in-flight message.
-        private final Map<TransportVersion, ReleasableBytesReference> serializedStates = new ConcurrentHashMap<>();
-        private final Map<TransportVersion, ReleasableBytesReference> serializedDiffs = new HashMap<>();
+        private final Map<SerializationKey, ReleasableBytesReference> serializedStates = new ConcurrentHashMap<>();
+        private final Map<SerializationKey, ReleasableBytesReference> serializedDiffs = new HashMap<>();
 
         PublicationContext(ClusterStatePublicationEvent clusterStatePublicationEvent) {
             discoveryNodes = clusterStatePublicationEvent.getNewState().nodes();
@@ -356,6 +577,33 @@ public class PublicationTransportHandler {
             previousState = clusterStatePublicationEvent.getOldState();
             task = clusterStatePublicationEvent.getTask();
             sendFullVersion = previousState.getBlocks().disableStatePersistence();
+            compressionDictionary = compressionDictionaryTrainer == null ? null : compressionDictionaryTrainer.current();
+        }
+
+        private CompressionMode compressionMode(DiscoveryNode node, TransportVersion version, boolean fullState) {
+            if (compressionDictionary == null || version.before(TransportVersions.PUBLICATION_COMPRESSION_DICTIONARY)) {
+                return CompressionMode.PLAIN;
+            }
+            final Long acknowledgedDictionaryId = acknowledgedCompressionDictionaries.get(node.getEphemeralId());
+            if (acknowledgedDictionaryId != null && acknowledgedDictionaryId == compressionDictionary.id()) {
+                // full states are mostly far larger than the window within which DEFLATE can refer back to the dictionary
+                return fullState ? CompressionMode.PLAIN : CompressionMode.DICTIONARY;
+            }
+            return CompressionMode.INLINE_DICTIONARY;
+        }
+
+        private ActionListener<PublishWithJoinResponse> acknowledgeCompressionDictionary(
+            DiscoveryNode destination,
+            CompressionMode compressionMode,
+            ActionListener<PublishWithJoinResponse> listener
+        ) {
+            if (compressionMode == CompressionMode.PLAIN) {
+                return listener;
+            }
+            return listener.map(response -> {
+                acknowledgedCompressionDictionaries.put(destination.getEphemeralId(), compressionDictionary.id());
+                return response;
+            });
         }
 
         void buildDiffAndSerializeStates() {
@@ -363,6 +611,10 @@ public class PublicationTransportHandler {
             final LazyInitializable<Diff<ClusterState>, RuntimeException> diffSupplier = new LazyInitializable<>(
                 () -> newState.diff(previousState)
             );
+            if (compressionDictionaryTrainer != null) {
+                final Set<String> ephemeralIds = discoveryNodes.stream().map(DiscoveryNode::getEphemeralId).collect(Collectors.toSet());
+                acknowledgedCompressionDictionaries.keySet().retainAll(ephemeralIds);
+            }
             for (DiscoveryNode node : discoveryNodes) {
                 if (node.equals(transportService.getLocalNode())) {
                     // publication to local node bypasses any serialization
@@ -379,12 +631,25 @@ public class PublicationTransportHandler {
                 }
 
                 nodeConnections.put(node, connection);
+                final TransportVersion version = connection.getTransportVersion();
                 if (sendFullVersion || previousState.nodes().nodeExists(node) == false) {
-                    serializedStates.computeIfAbsent(connection.getTransportVersion(), v -> serializeFullClusterState(newState, node, v));
+                    serializedStates.computeIfAbsent(
+                        new SerializationKey(version, compressionMode(node, version, true)),
+                        k -> serializeFullClusterState(newState, node, k, compressionDictionary)
+                    );
                 } else {
+                    final SerializationKey serializationKey = new SerializationKey(version, compressionMode(node, version, false));
+                    diffSerializationKeys.put(node, serializationKey);
                     serializedDiffs.computeIfAbsent(
-                        connection.getTransportVersion(),
-                        v -> serializeDiffClusterState(newState, diffSupplier.getOrCompute(), node, v)
+                        serializationKey,
+                        k -> serializeDiffClusterState(
+                            newState,
+                            diffSupplier.getOrCompute(),
+                            node,
+                            k,
+                            compressionDictionary,
+                            compressionDictionaryTrainer != null && sampledDiff.compareAndSet(false, true)
+                        )
                     );
                 }
             }
@@ -455,17 +720,25 @@ public class PublicationTransportHandler {
             }
 
             var version = connection.getTransportVersion();
-            ReleasableBytesReference bytes = serializedStates.get(version);
+            final SerializationKey serializationKey = new SerializationKey(version, compressionMode(destination, version, true));
+            ReleasableBytesReference bytes = serializedStates.get(serializationKey);
             if (bytes == null) {
                 try {
-                    bytes = serializedStates.computeIfAbsent(version, v -> serializeFullClusterState(newState, destination, v));
+                    bytes = serializedStates.computeIfAbsent(
+                        serializationKey,
+                        k -> serializeFullClusterState(newState, destination, k, compressionDictionary)
+                    );
                 } catch (Exception e) {
                     logger.warn(() -> format("failed to serialize cluster state before publishing it to node %s", destination), e);
                     listener.onFailure(e);
                     return;
                 }
             }
-            sendClusterState(connection, bytes, listener);
+            sendClusterState(
+                connection,
+                bytes,
+                acknowledgeCompressionDictionary(destination, serializationKey.compressionMode(), listener)
+            );
         }
 
         private void sendClusterStateDiff(DiscoveryNode destination, ActionListener<PublishWithJoinResponse> listener) {
@@ -476,7 +749,8 @@ public class PublicationTransportHandler {
                 return;
             }
 
-            final ReleasableBytesReference bytes = serializedDiffs.get(connection.getTransportVersion());
+            final SerializationKey serializationKey = diffSerializationKeys.get(destination);
+            final ReleasableBytesReference bytes = serializationKey == null ? null : serializedDiffs.get(serializationKey);
             assert bytes != null
                 : "failed to find serialized diff for node "
                     + destination
@@ -490,9 +764,15 @@ public class PublicationTransportHandler {
                 listener.onFailure(new IllegalStateException("publication context released before transmission"));
                 return;
             }
-            sendClusterState(connection, bytes, ActionListener.runAfter(listener.delegateResponse((delegate, e) -> {
+            final CompressionMode compressionMode = serializationKey.compressionMode();
+            final var diffListener = acknowledgeCompressionDictionary(destination, compressionMode, listener);
+            sendClusterState(connection, bytes, ActionListener.runAfter(diffListener.delegateResponse((delegate, e) -> {
                 if (e instanceof final TransportException transportException) {
                     if (transportException.unwrapCause() instanceof IncompatibleClusterStateVersionException) {
+                        if (compressionMode == CompressionMode.DICTIONARY) {
+                            // the node may have lost the dictionary, so send it again along with the full state
+                            acknowledgedCompressionDictionaries.remove(destination.getEphemeralId(), compressionDictionary.id());
+                        }
                         logger.debug(
                             () -> format(
                                 "resending full cluster state to node %s reason %s",
@@ -548,6 +828,9 @@ public class PublicationTransportHandler {
         private long totalUncompressedDiffBytes;
         private long totalCompressedDiffBytes;
 
+        private long dictionaryCompressedCount;
+        private long totalDictionarySavedBytes;
+
         public synchronized void serializedFullState(long uncompressedBytes, int compressedBytes) {
             fullStateCount += 1;
             totalUncompressedFullStateBytes += uncompressedBytes;
@@ -560,6 +843,11 @@ public class PublicationTransportHandler {
             totalCompressedDiffBytes += compressedBytes;
         }
 
+        public synchronized void compressedWithDictionary(long savedBytes) {
+            dictionaryCompressedCount += 1;
+            totalDictionarySavedBytes += savedBytes;
+        }
+
         public synchronized ClusterStateSerializationStats getSerializationStats() {
             return new ClusterStateSerializationStats(
                 fullStateCount,
@@ -567,7 +855,9 @@ public class PublicationTransportHandler {
                 totalCompressedFullStateBytes,
                 diffCount,
                 totalUncompressedDiffBytes,
-                totalCompressedDiffBytes
+                totalCompressedDiffBytes,
+                dictionaryCompressedCount,
+                totalDictionarySavedBytes
             );
         }
     }
@@ -418,7 +418,9 @@ public class MetadataIndexStateService {
                 final Settings updatedSettings = Settings.builder().put(indexMetadata.getSettings()).put(block.settingName(), true).build();
 
                 metadata.put(
-                    IndexMetadata.builder(indexMetadata).settings(updatedSettings).settingsVersion(indexMetadata.getSettingsVersion() + 1)
+                    ShardTimestampRanges.removeStale(IndexMetadata.builder(indexMetadata))
+                        .settings(updatedSettings)
+                        .settingsVersion(indexMetadata.getSettingsVersion() + 1)
                 );
             }
         }
@@ -885,7 +887,8 @@ public class MetadataIndexStateService {
                 blocks.addIndexBlock(index.getName(), INDEX_CLOSED_BLOCK);
                 final IndexMetadata.Builder updatedMetadata = IndexMetadata.builder(indexMetadata).state(IndexMetadata.State.CLOSE);
                 metadata.put(
-                    updatedMetadata.timestampRange(IndexLongFieldRange.NO_SHARDS)
+                    ShardTimestampRanges.removeStale(updatedMetadata)
+                        .timestampRange(IndexLongFieldRange.NO_SHARDS)
                         .settingsVersion(indexMetadata.getSettingsVersion() + 1)
                         .settings(Settings.builder().put(indexMetadata.getSettings()).put(VERIFIED_BEFORE_CLOSE_SETTING.getKey(), true))
                 );
@@ -1127,7 +1130,7 @@ public class MetadataIndexStateService {
                     final Settings.Builder updatedSettings = Settings.builder().put(indexMetadata.getSettings());
                     updatedSettings.remove(VERIFIED_BEFORE_CLOSE_SETTING.getKey());
 
-                    IndexMetadata newIndexMetadata = IndexMetadata.builder(indexMetadata)
+                    IndexMetadata newIndexMetadata = ShardTimestampRanges.removeStale(IndexMetadata.builder(indexMetadata))
                         .state(IndexMetadata.State.OPEN)
                         .settingsVersion(indexMetadata.getSettingsVersion() + 1)
                         .settings(updatedSettings)
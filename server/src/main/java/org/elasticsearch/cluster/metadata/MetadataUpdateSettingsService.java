@@ -316,6 +316,8 @@ public class MetadataUpdateSettingsService {
                     changed = true;
                     final IndexMetadata.Builder builder = IndexMetadata.builder(metadataBuilder.get(index));
                     builder.settingsVersion(1 + builder.settingsVersion());
+                    // for instance when a write block is lifted
+                    ShardTimestampRanges.removeStale(builder);
                     metadataBuilder.put(builder);
                 }
             }
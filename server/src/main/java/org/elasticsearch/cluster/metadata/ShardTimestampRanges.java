@@ -0,0 +1,167 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.cluster.metadata;
+
+import org.elasticsearch.core.Nullable;
+import org.elasticsearch.index.shard.IndexLongFieldRange;
+import org.elasticsearch.index.shard.ShardLongFieldRange;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A per-shard summary of the {@code @timestamp} field values of a write-blocked index, which the primaries report to the master
+ * periodically and which is stored in the custom data of the {@link IndexMetadata}. Unlike {@link IndexMetadata#getTimestampRange()},
+ * which is only known for indices whose engine guarantees that the range never changes, this summary is kept for regular indices that
+ * have a write, read-only or read-only-allow-delete block. Indices without such a block, such as backing indices of a data stream that
+ * were only rolled over, are not covered. Coordinating nodes use it to skip shards that cannot match a range query without sending them a
+ * can-match request.
+ * <p>
+ * The summary records the settings version of the index at the time the ranges were computed. Adding or removing a block changes the
+ * settings version, so a summary whose version does not match the current settings version of the index, or a summary of an index that
+ * accepts writes again, is ignored.
+ */
+public final class ShardTimestampRanges {
+
+    public static final String CUSTOM_KEY = "shard_timestamp_ranges";
+
+    static final String SETTINGS_VERSION_KEY = "settings_version";
+    private static final String EMPTY = "empty";
+
+    private final long settingsVersion;
+    private final Map<Integer, ShardLongFieldRange> shardRanges;
+
+    ShardTimestampRanges(long settingsVersion, Map<Integer, ShardLongFieldRange> shardRanges) {
+        this.settingsVersion = settingsVersion;
+        this.shardRanges = Map.copyOf(shardRanges);
+    }
+
+    /**
+     * @return the summary stored in the given index metadata, or {@code null} if there is none or it is no longer valid
+     */
+    @Nullable
+    public static ShardTimestampRanges fromIndexMetadata(@Nullable IndexMetadata indexMetadata) {
+        if (indexMetadata == null || isWriteBlocked(indexMetadata) == false) {
+            return null;
+        }
+        final Map<String, String> customData = indexMetadata.getCustomData(CUSTOM_KEY);
+        if (customData == null) {
+            return null;
+        }
+        final String settingsVersion = customData.get(SETTINGS_VERSION_KEY);
+        if (settingsVersion == null || Long.parseLong(settingsVersion) != indexMetadata.getSettingsVersion()) {
+            return null;
+        }
+        final Map<Integer, ShardLongFieldRange> shardRanges = new HashMap<>();
+        for (Map.Entry<String, String> entry : customData.entrySet()) {
+            if (SETTINGS_VERSION_KEY.equals(entry.getKey()) == false) {
+                shardRanges.put(Integer.parseInt(entry.getKey()), parseRange(entry.getValue()));
+            }
+        }
+        return new ShardTimestampRanges(indexMetadata.getSettingsVersion(), shardRanges);
+    }
+
+    /**
+     * @return whether the given index rejects all writes that could extend the timestamp range of its shards
+     */
+    public static boolean isWriteBlocked(IndexMetadata indexMetadata) {
+        return IndexMetadata.INDEX_BLOCKS_WRITE_SETTING.get(indexMetadata.getSettings())
+            || IndexMetadata.INDEX_READ_ONLY_SETTING.get(indexMetadata.getSettings())
+            || IndexMetadata.INDEX_BLOCKS_READ_ONLY_ALLOW_DELETE_SETTING.get(indexMetadata.getSettings());
+    }
+
+    /**
+     * @return a copy of the summary in the given index metadata, or an empty summary for the current settings version if there is none
+     * or it is no longer valid, with the range of the given shard replaced
+     */
+    public static ShardTimestampRanges withShardRange(IndexMetadata indexMetadata, int shardId, ShardLongFieldRange range) {
+        assert range != ShardLongFieldRange.UNKNOWN;
+        final ShardTimestampRanges current = fromIndexMetadata(indexMetadata);
+        final Map<Integer, ShardLongFieldRange> shardRanges = current == null ? new HashMap<>() : new HashMap<>(current.shardRanges);
+        shardRanges.put(shardId, range);
+        return new ShardTimestampRanges(indexMetadata.getSettingsVersion(), shardRanges);
+    }
+
+    /**
+     * Removes the summary from the given index metadata, which must be done whenever its settings version changes since the summary only
+     * holds for the blocks under which it was computed. A summary that is left behind is ignored anyway, but it would never go away.
+     */
+    public static IndexMetadata.Builder removeStale(IndexMetadata.Builder builder) {
+        builder.removeCustom(CUSTOM_KEY);
+        return builder;
+    }
+
+    public long getSettingsVersion() {
+        return settingsVersion;
+    }
+
+    /**
+     * @return the timestamp range of the given shard, or {@code null} if the shard has not reported its range yet
+     */
+    @Nullable
+    public ShardLongFieldRange getShardRange(int shardId) {
+        return shardRanges.get(shardId);
+    }
+
+    /**
+     * @return the timestamp range of the given shard as a complete range of a single-shard index, suitable for a coordinator rewrite, or
+     * {@code null} if the shard has not reported its range yet
+     */
+    @Nullable
+    public IndexLongFieldRange getShardRangeForRewrite(int shardId) {
+        final ShardLongFieldRange shardRange = shardRanges.get(shardId);
+        if (shardRange == null) {
+            return null;
+        }
+        return IndexLongFieldRange.NO_SHARDS.extendWithShardRange(0, 1, shardRange);
+    }
+
+    public Map<String, String> toCustomData() {
+        final Map<String, String> customData = new HashMap<>(shardRanges.size() + 1);
+        customData.put(SETTINGS_VERSION_KEY, Long.toString(settingsVersion));
+        for (Map.Entry<Integer, ShardLongFieldRange> entry : shardRanges.entrySet()) {
+            customData.put(Integer.toString(entry.getKey()), formatRange(entry.getValue()));
+        }
+        return customData;
+    }
+
+    private static String formatRange(ShardLongFieldRange range) {
+        return range == ShardLongFieldRange.EMPTY ? EMPTY : range.getMin() + "," + range.getMax();
+    }
+
+    private static ShardLongFieldRange parseRange(String value) {
+        if (EMPTY.equals(value)) {
+            return ShardLongFieldRange.EMPTY;
+        }
+        final int separator = value.indexOf(',');
+        if (separator < 0) {
+            throw new IllegalArgumentException("invalid shard timestamp range [" + value + "]");
+        }
+        return ShardLongFieldRange.of(Long.parseLong(value.substring(0, separator)), Long.parseLong(value.substring(separator + 1)));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ShardTimestampRanges that = (ShardTimestampRanges) o;
+        return settingsVersion == that.settingsVersion && shardRanges.equals(that.shardRanges);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(settingsVersion, shardRanges);
+    }
+
+    @Override
+    public String toString() {
+        return "ShardTimestampRanges{settingsVersion=" + settingsVersion + ", shardRanges=" + shardRanges + "}";
+    }
+}
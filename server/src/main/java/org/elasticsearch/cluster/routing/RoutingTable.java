@@ -15,6 +15,7 @@ import org.elasticsearch.cluster.metadata.IndexMetadata;
 import org.elasticsearch.cluster.metadata.Metadata;
 import org.elasticsearch.cluster.routing.RecoverySource.SnapshotRecoverySource;
 import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.io.stream.ParallelWritingStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.core.Nullable;
@@ -344,7 +345,8 @@ public class RoutingTable implements Iterable<IndexRoutingTable>, Diffable<Routi
     @Override
     public void writeTo(StreamOutput out) throws IOException {
         out.writeLong(version);
-        out.writeCollection(indicesRouting.values());
+        out.writeVInt(indicesRouting.size());
+        ParallelWritingStreamOutput.writeAll(out, indicesRouting.values(), (o, indexRoutingTable) -> indexRoutingTable.writeTo(o));
     }
 
     private static class RoutingTableDiff implements Diff<RoutingTable> {
@@ -46,14 +46,17 @@ import org.elasticsearch.gateway.PriorityComparator;
 import org.elasticsearch.index.shard.ShardId;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.BiFunction;
+import java.util.function.Predicate;
 import java.util.stream.StreamSupport;
 
 import static org.elasticsearch.cluster.metadata.SingleNodeShutdownMetadata.Type.REPLACE;
@@ -190,6 +193,28 @@ public class BalancedShardsAllocator implements ShardsAllocator {
         balancer.balance();
     }
 
+    @Override
+    public void allocateIncrementally(RoutingAllocation allocation, Set<String> affectedIndices) {
+        assert allocation.ignoreDisable() == false;
+
+        if (allocation.routingNodes().size() == 0) {
+            failAllocationOfNewPrimaries(allocation);
+            return;
+        }
+        final WeightFunction weightFunction = new WeightFunction(
+            indexBalanceFactor,
+            shardBalanceFactor,
+            writeLoadBalanceFactor,
+            diskUsageBalanceFactor
+        );
+        final Balancer balancer = new Balancer(writeLoadForecaster, allocation, weightFunction, threshold);
+        balancer.allocateUnassigned();
+        // the other shards could remain where they are before, so only those on the nodes which received new shards may need to move
+        final Set<String> affectedNodeIds = balancer.nodesHoldingShardsOf(affectedIndices);
+        balancer.moveShards(shardRouting -> affectedNodeIds.contains(shardRouting.currentNodeId()));
+        balancer.balance(affectedIndices);
+    }
+
     @Override
     public ShardAllocationDecision decideShardAllocation(final ShardRouting shard, final RoutingAllocation allocation) {
         WeightFunction weightFunction = new WeightFunction(
@@ -430,6 +455,22 @@ public class BalancedShardsAllocator implements ShardsAllocator {
             return newValue == null ? accumulator : Math.max(accumulator, newValue);
         }
 
+        /**
+         * Returns the IDs of the nodes which hold a shard of any of the given indices.
+         */
+        private Set<String> nodesHoldingShardsOf(Collection<String> indices) {
+            final Set<String> nodeIds = new HashSet<>();
+            for (ModelNode modelNode : nodes.values()) {
+                for (String index : indices) {
+                    if (modelNode.getIndex(index) != null) {
+                        nodeIds.add(modelNode.getNodeId());
+                        break;
+                    }
+                }
+            }
+            return nodeIds;
+        }
+
         /**
          * Returns an array view on the nodes in the balancer. Nodes should not be removed from this list.
          */
@@ -490,9 +531,16 @@ public class BalancedShardsAllocator implements ShardsAllocator {
 
         /**
          * Balances the nodes on the cluster model according to the weight function.
-         * The actual balancing is delegated to {@link #balanceByWeights()}
+         * The actual balancing is delegated to {@link #balanceByWeights}
          */
         private void balance() {
+            balance(allocation.routingTable().indicesRouting().keySet());
+        }
+
+        /**
+         * Balances the shards of the given indices, see {@link #balance()}.
+         */
+        private void balance(Collection<String> indices) {
             if (logger.isTraceEnabled()) {
                 logger.trace("Start balancing cluster");
             }
@@ -515,7 +563,7 @@ public class BalancedShardsAllocator implements ShardsAllocator {
                 logger.trace("skipping rebalance as single node only");
                 return;
             }
-            balanceByWeights();
+            balanceByWeights(indices);
         }
 
         /**
@@ -652,11 +700,11 @@ public class BalancedShardsAllocator implements ShardsAllocator {
          * only, or in other words relocations that move the weight delta closer
          * to {@code 0.0}
          */
-        private void balanceByWeights() {
+        private void balanceByWeights(Collection<String> indices) {
             final AllocationDeciders deciders = allocation.deciders();
             final ModelNode[] modelNodes = sorter.modelNodes;
             final float[] weights = sorter.weights;
-            for (String index : buildWeightOrderedIndices()) {
+            for (String index : buildWeightOrderedIndices(indices)) {
                 IndexMetadata indexMetadata = metadata.index(index);
 
                 // find nodes that have a shard of this index or where shards of this index are allowed to be allocated to,
@@ -787,8 +835,8 @@ public class BalancedShardsAllocator implements ShardsAllocator {
          * average. To re-balance we need to move shards back eventually likely
          * to the nodes we relocated them from.
          */
-        private String[] buildWeightOrderedIndices() {
-            final String[] indices = allocation.routingTable().indicesRouting().keySet().toArray(String[]::new);
+        private String[] buildWeightOrderedIndices(Collection<String> indicesToOrder) {
+            final String[] indices = indicesToOrder.toArray(String[]::new);
             final float[] deltas = new float[indices.length];
             for (int i = 0; i < deltas.length; i++) {
                 sorter.reset(indices[i]);
@@ -838,11 +886,21 @@ public class BalancedShardsAllocator implements ShardsAllocator {
          * {@link ShardRoutingState#INITIALIZING}.
          */
         public void moveShards() {
+            moveShards(shardRouting -> true);
+        }
+
+        /**
+         * Like {@link #moveShards()}, but only considers the shards which match the given predicate.
+         */
+        private void moveShards(Predicate<ShardRouting> shardsToConsider) {
             // Iterate over the started shards interleaving between nodes, and check if they can remain. In the presence of throttling
             // shard movements, the goal of this iteration order is to achieve a fairer movement of shards from the nodes that are
             // offloading the shards.
             for (Iterator<ShardRouting> it = allocation.routingNodes().nodeInterleavedShardIterator(); it.hasNext();) {
                 ShardRouting shardRouting = it.next();
+                if (shardsToConsider.test(shardRouting) == false) {
+                    continue;
+                }
                 final MoveDecision moveDecision = decideMove(shardRouting);
                 if (moveDecision.isDecisionTaken() && moveDecision.forceMove()) {
                     final ModelNode sourceNode = nodes.get(shardRouting.currentNodeId());
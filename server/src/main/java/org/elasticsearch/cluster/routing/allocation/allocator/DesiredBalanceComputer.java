@@ -11,7 +11,12 @@ package org.elasticsearch.cluster.routing.allocation.allocator;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.elasticsearch.cluster.ClusterInfo;
 import org.elasticsearch.cluster.ClusterInfoSimulator;
+import org.elasticsearch.cluster.metadata.IndexMetadata;
+import org.elasticsearch.cluster.metadata.Metadata;
+import org.elasticsearch.cluster.metadata.NodesShutdownMetadata;
+import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.routing.RoutingNodes;
 import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.cluster.routing.UnassignedInfo;
@@ -22,6 +27,7 @@ import org.elasticsearch.common.metrics.MeanMetric;
 import org.elasticsearch.common.settings.ClusterSettings;
 import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.util.Maps;
+import org.elasticsearch.core.Nullable;
 import org.elasticsearch.core.Strings;
 import org.elasticsearch.core.TimeValue;
 import org.elasticsearch.index.shard.ShardId;
@@ -33,6 +39,7 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Queue;
 import java.util.Set;
 import java.util.TreeMap;
@@ -62,12 +69,36 @@ public class DesiredBalanceComputer {
         Setting.Property.NodeScope
     );
 
+    /**
+     * Whether to compute the desired balance incrementally if the only change since the last converged computation is the creation of
+     * some indices. An incremental computation allocates the new shards but only moves and rebalances the shards of the new indices and
+     * the shards on the nodes that receive them.
+     */
+    public static final Setting<Boolean> INCREMENTAL_COMPUTATION_ENABLED_SETTING = Setting.boolSetting(
+        "cluster.routing.allocation.desired_balance.incremental_computation.enabled",
+        false,
+        Setting.Property.Dynamic,
+        Setting.Property.NodeScope
+    );
+
+    /**
+     * Incremental computations do not rebalance the shards of the existing indices, so we compute the desired balance from scratch again
+     * once the indices created since the last full computation account for more than this fraction of all shards.
+     */
+    static final double MAX_INCREMENTAL_SHARDS_RATIO = 0.1;
+
     private TimeValue progressLogInterval;
+    private volatile boolean incrementalComputationEnabled;
+
+    // the inputs and the result of the last computation if it converged, only accessed by the computation which never runs concurrently
+    @Nullable
+    private ConvergedComputation lastConvergedComputation;
 
     public DesiredBalanceComputer(ClusterSettings clusterSettings, ThreadPool threadPool, ShardsAllocator delegateAllocator) {
         this.threadPool = threadPool;
         this.delegateAllocator = delegateAllocator;
         clusterSettings.initializeAndWatch(PROGRESS_LOG_INTERVAL_SETTING, value -> this.progressLogInterval = value);
+        clusterSettings.initializeAndWatch(INCREMENTAL_COMPUTATION_ENABLED_SETTING, value -> this.incrementalComputationEnabled = value);
     }
 
     public DesiredBalance compute(
@@ -242,6 +273,17 @@ public class DesiredBalanceComputer {
             }
         }
 
+        final var incrementalChange = incrementalComputationEnabled && pendingDesiredBalanceMoves.stream().allMatch(List::isEmpty)
+            ? getIncrementalChange(previousDesiredBalance, desiredBalanceInput.routingAllocation())
+            : null;
+        if (incrementalChange != null) {
+            logger.debug(
+                "Computing desired balance for [{}] incrementally for new indices {}",
+                desiredBalanceInput.index(),
+                incrementalChange.newIndices()
+            );
+        }
+
         List<MoveAllocationCommand> commands;
         while ((commands = pendingDesiredBalanceMoves.poll()) != null) {
             for (MoveAllocationCommand command : commands) {
@@ -284,7 +326,11 @@ public class DesiredBalanceComputer {
 
             routingAllocation.setSimulatedClusterInfo(clusterInfoSimulator.getClusterInfo());
             logger.trace("running delegate allocator");
-            delegateAllocator.allocate(routingAllocation);
+            if (incrementalChange == null) {
+                delegateAllocator.allocate(routingAllocation);
+            } else {
+                delegateAllocator.allocateIncrementally(routingAllocation, incrementalChange.newIndices());
+            }
             assert routingNodes.unassigned().isEmpty(); // any unassigned shards should now be ignored
 
             hasChanges = false;
@@ -368,7 +414,89 @@ public class DesiredBalanceComputer {
         }
 
         long lastConvergedIndex = hasChanges ? previousDesiredBalance.lastConvergedIndex() : desiredBalanceInput.index();
-        return new DesiredBalance(lastConvergedIndex, assignments);
+        final var desiredBalance = new DesiredBalance(lastConvergedIndex, assignments);
+        if (incrementalComputationEnabled && hasChanges == false) {
+            lastConvergedComputation = new ConvergedComputation(
+                desiredBalance,
+                desiredBalanceInput.routingAllocation().metadata(),
+                desiredBalanceInput.routingAllocation().nodes().getNodes(),
+                desiredBalanceInput.routingAllocation().clusterInfo(),
+                incrementalChange == null ? 0 : incrementalChange.shardsSinceFullComputation()
+            );
+        } else {
+            lastConvergedComputation = null;
+        }
+        return desiredBalance;
+    }
+
+    /**
+     * The inputs and result of a converged computation of the desired balance, against which we compare the inputs of the next computation
+     * to find out whether we may compute it incrementally.
+     *
+     * @param shardsSinceFullComputation the number of shards of the indices created since the last computation from scratch
+     */
+    private record ConvergedComputation(
+        DesiredBalance desiredBalance,
+        Metadata metadata,
+        Map<String, DiscoveryNode> nodes,
+        ClusterInfo clusterInfo,
+        int shardsSinceFullComputation
+    ) {}
+
+    private record IncrementalChange(Set<String> newIndices, int shardsSinceFullComputation) {}
+
+    /**
+     * Checks whether the only change since the last converged computation is the creation of some indices, in which case the desired
+     * balance of the other shards stays the same and we may compute it incrementally. This includes the case where nothing relevant to
+     * allocation changed at all, e.g. the reroutes which follow the shards of the new indices starting, for which there are no new indices
+     * and the incremental computation just confirms the previous desired balance.
+     *
+     * @return the new indices, or {@code null} if we must compute the desired balance from scratch
+     */
+    @Nullable
+    private IncrementalChange getIncrementalChange(DesiredBalance previousDesiredBalance, RoutingAllocation routingAllocation) {
+        final var lastComputation = lastConvergedComputation;
+        if (lastComputation == null || lastComputation.desiredBalance() != previousDesiredBalance) {
+            // the previous desired balance did not converge, or it was reset
+            return null;
+        }
+
+        final var metadata = routingAllocation.metadata();
+        final var lastMetadata = lastComputation.metadata();
+        if (lastMetadata.settings().equals(metadata.settings()) == false
+            || Objects.equals(lastMetadata.custom(NodesShutdownMetadata.TYPE), metadata.custom(NodesShutdownMetadata.TYPE)) == false
+            || lastComputation.nodes().equals(routingAllocation.nodes().getNodes()) == false
+            || lastComputation.clusterInfo().equals(routingAllocation.clusterInfo()) == false) {
+            return null;
+        }
+
+        for (final var lastIndexMetadata : lastMetadata.indices().values()) {
+            final var indexMetadata = metadata.index(lastIndexMetadata.getIndex());
+            if (indexMetadata == null || isSameForAllocation(lastIndexMetadata, indexMetadata) == false) {
+                return null;
+            }
+        }
+
+        final var newIndices = new HashSet<String>();
+        var shardsSinceFullComputation = lastComputation.shardsSinceFullComputation();
+        for (final var indexMetadata : metadata.indices().values()) {
+            if (lastMetadata.hasIndex(indexMetadata.getIndex()) == false) {
+                newIndices.add(indexMetadata.getIndex().getName());
+                shardsSinceFullComputation += indexMetadata.getTotalNumberOfShards();
+            }
+        }
+        if (shardsSinceFullComputation > metadata.getTotalNumberOfShards() * MAX_INCREMENTAL_SHARDS_RATIO) {
+            return null;
+        }
+        return new IncrementalChange(Set.copyOf(newIndices), shardsSinceFullComputation);
+    }
+
+    private static boolean isSameForAllocation(IndexMetadata previous, IndexMetadata current) {
+        return previous == current
+            || (previous.getState() == current.getState()
+                && previous.getSettings().equals(current.getSettings())
+                && previous.getForecastedWriteLoad().equals(current.getForecastedWriteLoad())
+                && previous.getForecastedShardSizeInBytes().equals(current.getForecastedShardSizeInBytes()));
     }
 
     private static Map<ShardId, ShardAssignment> collectShardAssignments(RoutingNodes routingNodes) {
@@ -17,6 +17,8 @@ import org.elasticsearch.cluster.routing.allocation.RoutingExplanations;
 import org.elasticsearch.cluster.routing.allocation.ShardAllocationDecision;
 import org.elasticsearch.cluster.routing.allocation.command.AllocationCommands;
 
+import java.util.Set;
+
 /**
  * <p>
  * A {@link ShardsAllocator} is the main entry point for shard allocation on nodes in the cluster.
@@ -50,6 +52,19 @@ public interface ShardsAllocator {
         listener.onResponse(null);
     }
 
+    /**
+     * Allocates shards to nodes in the cluster after a change which only affects the given indices, for instance because they were just
+     * created. Like {@link #allocate(RoutingAllocation)} this assigns all unassigned shards, but it may assume that all other shards are
+     * already well-balanced and therefore only relocate the shards that the change affects. The default implementation just calls
+     * {@link #allocate(RoutingAllocation)}.
+     *
+     * @param allocation current node allocation
+     * @param affectedIndices the names of the indices which the change affects
+     */
+    default void allocateIncrementally(RoutingAllocation allocation, Set<String> affectedIndices) {
+        allocate(allocation);
+    }
+
     /**
      * Execute allocation commands
      */
@@ -28,6 +28,7 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.core.SuppressForbidden;
 import org.elasticsearch.node.Node;
 import org.elasticsearch.tasks.TaskManager;
+import org.elasticsearch.telemetry.metric.MeterRegistry;
 import org.elasticsearch.threadpool.ThreadPool;
 
 public class ClusterService extends AbstractLifecycleComponent {
@@ -54,10 +55,20 @@ public class ClusterService extends AbstractLifecycleComponent {
     private final String nodeName;
 
     public ClusterService(Settings settings, ClusterSettings clusterSettings, ThreadPool threadPool, TaskManager taskManager) {
+        this(settings, clusterSettings, threadPool, taskManager, MeterRegistry.NOOP);
+    }
+
+    public ClusterService(
+        Settings settings,
+        ClusterSettings clusterSettings,
+        ThreadPool threadPool,
+        TaskManager taskManager,
+        MeterRegistry meterRegistry
+    ) {
         this(
             settings,
             clusterSettings,
-            new MasterService(settings, clusterSettings, threadPool, taskManager),
+            new MasterService(settings, clusterSettings, threadPool, taskManager, meterRegistry),
             new ClusterApplierService(Node.NODE_NAME_SETTING.get(settings), settings, clusterSettings, threadPool)
         );
     }
@@ -253,4 +264,17 @@ public class ClusterService extends AbstractLifecycleComponent {
     ) {
         return masterService.createTaskQueue(name, priority, executor);
     }
+
+    /**
+     * Create a new task queue like {@link #createTaskQueue(String, Priority, ClusterStateTaskExecutor)}, optionally with adaptive batching
+     * for high-volume tasks. See {@link MasterService#createTaskQueue(String, Priority, ClusterStateTaskExecutor, boolean)}.
+     */
+    public <T extends ClusterStateTaskListener> MasterServiceTaskQueue<T> createTaskQueue(
+        String name,
+        Priority priority,
+        ClusterStateTaskExecutor<T> executor,
+        boolean adaptiveBatching
+    ) {
+        return masterService.createTaskQueue(name, priority, executor, adaptiveBatching);
+    }
 }
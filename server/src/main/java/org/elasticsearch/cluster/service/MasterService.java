@@ -52,6 +52,8 @@ import org.elasticsearch.tasks.Task;
 import org.elasticsearch.tasks.TaskAwareRequest;
 import org.elasticsearch.tasks.TaskId;
 import org.elasticsearch.tasks.TaskManager;
+import org.elasticsearch.telemetry.metric.LongHistogram;
+import org.elasticsearch.telemetry.metric.MeterRegistry;
 import org.elasticsearch.threadpool.Scheduler;
 import org.elasticsearch.threadpool.ThreadPool;
 
@@ -65,6 +67,7 @@ import java.util.Objects;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -92,6 +95,22 @@ public class MasterService extends AbstractLifecycleComponent {
         Setting.Property.NodeScope
     );
 
+    /**
+     * The longest time for which a queue created with adaptive batching delays a batch to let more tasks join it. Queues only delay batches
+     * while they receive a steady stream of tasks, see {@link #createTaskQueue(String, Priority, ClusterStateTaskExecutor, boolean)}.
+     * Defaults to zero, which disables adaptive batching.
+     */
+    public static final Setting<TimeValue> MASTER_SERVICE_ADAPTIVE_BATCHING_MAX_WINDOW_SETTING = Setting.timeSetting(
+        "cluster.service.adaptive_batching.max_window",
+        TimeValue.ZERO,
+        TimeValue.ZERO,
+        Setting.Property.Dynamic,
+        Setting.Property.NodeScope
+    );
+
+    public static final String BATCH_SIZE_HISTOGRAM_NAME = "es.master_service.batch.size.histogram";
+    public static final String QUEUE_LATENCY_HISTOGRAM_NAME = "es.master_service.queue.latency.histogram";
+
     public static final String MASTER_UPDATE_THREAD_NAME = "masterService#updateTask";
 
     public static final String STATE_UPDATE_ACTION_NAME = "publish_cluster_state_update";
@@ -105,6 +124,7 @@ public class MasterService extends AbstractLifecycleComponent {
 
     private volatile TimeValue slowTaskLoggingThreshold;
     private final TimeValue starvationLoggingThreshold;
+    private volatile TimeValue maxBatchWindow;
 
     protected final ThreadPool threadPool;
     private final TaskManager taskManager;
@@ -117,8 +137,19 @@ public class MasterService extends AbstractLifecycleComponent {
 
     private final ClusterStateUpdateStatsTracker clusterStateUpdateStatsTracker = new ClusterStateUpdateStatsTracker();
     private final StarvationWatcher starvationWatcher = new StarvationWatcher();
+    private final BatchMetrics batchMetrics;
 
     public MasterService(Settings settings, ClusterSettings clusterSettings, ThreadPool threadPool, TaskManager taskManager) {
+        this(settings, clusterSettings, threadPool, taskManager, MeterRegistry.NOOP);
+    }
+
+    public MasterService(
+        Settings settings,
+        ClusterSettings clusterSettings,
+        ThreadPool threadPool,
+        TaskManager taskManager,
+        MeterRegistry meterRegistry
+    ) {
         this.nodeName = Objects.requireNonNull(Node.NODE_NAME_SETTING.get(settings));
 
         this.slowTaskLoggingThreshold = MASTER_SERVICE_SLOW_TASK_LOGGING_THRESHOLD_SETTING.get(settings);
@@ -126,6 +157,8 @@ public class MasterService extends AbstractLifecycleComponent {
 
         this.starvationLoggingThreshold = MASTER_SERVICE_STARVATION_LOGGING_THRESHOLD_SETTING.get(settings);
 
+        clusterSettings.initializeAndWatch(MASTER_SERVICE_ADAPTIVE_BATCHING_MAX_WINDOW_SETTING, value -> this.maxBatchWindow = value);
+
         this.threadPool = threadPool;
         this.taskManager = taskManager;
 
@@ -135,6 +168,14 @@ public class MasterService extends AbstractLifecycleComponent {
         }
         this.queuesByPriority = Collections.unmodifiableMap(queuesByPriorityBuilder);
         this.unbatchedExecutor = new UnbatchedExecutor();
+        this.batchMetrics = new BatchMetrics(
+            meterRegistry.registerLongHistogram(BATCH_SIZE_HISTOGRAM_NAME, "The number of tasks in each batch of a task queue", "{task}"),
+            meterRegistry.registerLongHistogram(
+                QUEUE_LATENCY_HISTOGRAM_NAME,
+                "The time the oldest task in each batch of a task queue waited in the queue, in milliseconds",
+                "millis"
+            )
+        );
     }
 
     private void setSlowTaskLoggingThreshold(TimeValue slowTaskLoggingThreshold) {
@@ -601,7 +642,10 @@ public class MasterService extends AbstractLifecycleComponent {
     private Stream<Batch> allBatchesStream() {
         return Stream.concat(
             Stream.ofNullable(currentlyExecutingBatch),
-            queuesByPriority.values().stream().filter(Objects::nonNull).flatMap(q -> q.queue.stream())
+            queuesByPriority.values()
+                .stream()
+                .filter(Objects::nonNull)
+                .flatMap(q -> Stream.concat(q.queue.stream(), q.delayedBatches.stream().map(DelayedBatch::batch)))
         );
     }
 
@@ -1286,6 +1330,8 @@ public class MasterService extends AbstractLifecycleComponent {
         assert totalQueueSize.get() > 0;
         assert currentlyExecutingBatch == null;
         for (final var queue : queuesByPriority.values()) {
+            // never run a batch ahead of a delayed batch of the same or a higher priority
+            queue.releaseDelayedBatches();
             var batch = queue.queue.poll();
             if (batch != null) {
                 currentlyExecutingBatch = batch;
@@ -1345,6 +1391,8 @@ public class MasterService extends AbstractLifecycleComponent {
      */
     private class PerPriorityQueue {
         private final ConcurrentLinkedQueue<Batch> queue = new ConcurrentLinkedQueue<>();
+        // batches which are pending but not yet in the queue, see executeDelayed
+        private final ConcurrentLinkedQueue<DelayedBatch> delayedBatches = new ConcurrentLinkedQueue<>();
         private final Priority priority;
 
         PerPriorityQueue(Priority priority) {
@@ -1359,11 +1407,83 @@ public class MasterService extends AbstractLifecycleComponent {
             }
         }
 
+        /**
+         * Adds the given batch to this queue after the given delay. Until then the batch counts as pending, and the master service adds it
+         * to the queue earlier if it would otherwise run a batch of the same or a lower priority first, so that delaying a batch never
+         * lets lower-priority tasks overtake it.
+         */
+        void executeDelayed(Batch runner, TimeValue delay) {
+            final var delayedBatch = new DelayedBatch(runner, this);
+            delayedBatches.add(delayedBatch);
+            try {
+                threadPool.schedule(new AbstractRunnable() {
+                    @Override
+                    protected void doRun() {
+                        delayedBatch.release();
+                    }
+
+                    @Override
+                    public void onRejection(Exception e) {
+                        // the master service rejects the batch itself if it's shutting down too
+                        delayedBatch.release();
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        logger.error(() -> format("unexpected failure enqueueing %s", delayedBatch), e);
+                        assert false : e;
+                    }
+
+                    @Override
+                    public boolean isForceExecution() {
+                        return true;
+                    }
+
+                    @Override
+                    public String toString() {
+                        return delayedBatch.toString();
+                    }
+                }, delay, threadPool.generic());
+            } catch (Exception e) {
+                assert e instanceof EsRejectedExecutionException esre && esre.isExecutorShutdown() : e;
+                delayedBatch.release();
+            }
+        }
+
+        void releaseDelayedBatches() {
+            DelayedBatch delayedBatch;
+            while ((delayedBatch = delayedBatches.poll()) != null) {
+                delayedBatch.release();
+            }
+        }
+
         Priority priority() {
             return priority;
         }
     }
 
+    /**
+     * A batch which is pending but which is only added to its queue once its delay has elapsed or the master service would otherwise run a
+     * batch of the same or a lower priority.
+     */
+    private record DelayedBatch(Batch batch, PerPriorityQueue queue, AtomicBoolean released) {
+        DelayedBatch(Batch batch, PerPriorityQueue queue) {
+            this(batch, queue, new AtomicBoolean());
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                queue.delayedBatches.remove(this);
+                queue.execute(batch);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "delayed " + batch;
+        }
+    }
+
     private interface Batch {
 
         void run(ActionListener<Void> listener);
@@ -1415,6 +1535,26 @@ public class MasterService extends AbstractLifecycleComponent {
         String name,
         Priority priority,
         ClusterStateTaskExecutor<T> executor
+    ) {
+        return createTaskQueue(name, priority, executor, false);
+    }
+
+    /**
+     * Create a new task queue like {@link #createTaskQueue(String, Priority, ClusterStateTaskExecutor)}, optionally with adaptive batching.
+     * <p>
+     * A queue with adaptive batching is meant for high-volume tasks which arrive in a steady stream, such as the shard-started tasks during
+     * a cluster restart, which would otherwise be executed in many small batches each of which needs its own cluster state update and
+     * publication. While the tasks keep arriving shortly after the previous batch completed, the queue delays the execution of each batch
+     * for a window which doubles with each such batch, up to {@link #MASTER_SERVICE_ADAPTIVE_BATCHING_MAX_WINDOW_SETTING}, so that more
+     * tasks join the batch. Once the queue falls idle the window halves with each batch, so that isolated tasks are not delayed.
+     *
+     * @param adaptiveBatching Whether to delay batches while the queue receives a steady stream of tasks.
+     */
+    public <T extends ClusterStateTaskListener> MasterServiceTaskQueue<T> createTaskQueue(
+        String name,
+        Priority priority,
+        ClusterStateTaskExecutor<T> executor,
+        boolean adaptiveBatching
     ) {
         return new BatchingTaskQueue<>(
             name,
@@ -1422,10 +1562,20 @@ public class MasterService extends AbstractLifecycleComponent {
             insertionIndexSupplier,
             queuesByPriority.get(priority),
             executor,
-            threadPool
+            threadPool,
+            adaptiveBatching ? () -> maxBatchWindow.millis() : () -> 0L,
+            batchMetrics
         );
     }
 
+    private record BatchMetrics(LongHistogram batchSizeHistogram, LongHistogram queueLatencyHistogram) {
+        void onBatchStarted(String queueName, int taskCount, long queueLatencyMillis) {
+            final Map<String, Object> attributes = Map.of("queue", queueName);
+            batchSizeHistogram.record(taskCount, attributes);
+            queueLatencyHistogram.record(queueLatencyMillis, attributes);
+        }
+    }
+
     @FunctionalInterface
     private interface BatchConsumer<T extends ClusterStateTaskListener> {
         void runBatch(
@@ -1515,15 +1665,24 @@ public class MasterService extends AbstractLifecycleComponent {
         private final PerPriorityQueue perPriorityQueue;
         private final ClusterStateTaskExecutor<T> executor;
         private final ThreadPool threadPool;
+        private final LongSupplier maxBatchWindowMillisSupplier; // always 0 without adaptive batching
+        private final BatchMetrics batchMetrics;
         private final Batch processor = new Processor();
 
+        // written by the processor, read when submitting the first task of the next batch
+        private volatile long batchWindowMillis;
+        private volatile long lastBatchCompletionTimeMillis;
+        private volatile boolean hasCompletedBatch;
+
         BatchingTaskQueue(
             String name,
             BatchConsumer<T> batchConsumer,
             LongSupplier insertionIndexSupplier,
             PerPriorityQueue perPriorityQueue,
             ClusterStateTaskExecutor<T> executor,
-            ThreadPool threadPool
+            ThreadPool threadPool,
+            LongSupplier maxBatchWindowMillisSupplier,
+            BatchMetrics batchMetrics
         ) {
             this.name = name;
             this.batchConsumer = batchConsumer;
@@ -1531,6 +1690,8 @@ public class MasterService extends AbstractLifecycleComponent {
             this.perPriorityQueue = perPriorityQueue;
             this.executor = executor;
             this.threadPool = threadPool;
+            this.maxBatchWindowMillisSupplier = maxBatchWindowMillisSupplier;
+            this.batchMetrics = batchMetrics;
         }
 
         @Override
@@ -1573,10 +1734,37 @@ public class MasterService extends AbstractLifecycleComponent {
             );
 
             if (queueSize.getAndIncrement() == 0) {
+                enqueueProcessor();
+            }
+        }
+
+        private void enqueueProcessor() {
+            final var windowMillis = Math.min(batchWindowMillis, maxBatchWindowMillisSupplier.getAsLong());
+            if (windowMillis <= 0) {
                 perPriorityQueue.execute(processor);
+            } else {
+                logger.trace("delaying next batch of [{}] by [{}ms] to let more tasks join it", name, windowMillis);
+                perPriorityQueue.executeDelayed(processor, TimeValue.timeValueMillis(windowMillis));
             }
         }
 
+        private void onBatchStarted(int taskCount, long firstInsertionTimeMillis) {
+            batchMetrics.onBatchStarted(name, taskCount, Math.max(0L, threadPool.relativeTimeInMillis() - firstInsertionTimeMillis));
+
+            final var maxWindowMillis = maxBatchWindowMillisSupplier.getAsLong();
+            if (hasCompletedBatch && firstInsertionTimeMillis - lastBatchCompletionTimeMillis < maxWindowMillis) {
+                // the tasks keep on coming, so let more of them join the next batch
+                batchWindowMillis = Math.min(maxWindowMillis, Math.max(1L, batchWindowMillis * 2));
+            } else {
+                batchWindowMillis = Math.min(maxWindowMillis, batchWindowMillis / 2);
+            }
+        }
+
+        private void onBatchCompleted() {
+            lastBatchCompletionTimeMillis = threadPool.relativeTimeInMillis();
+            hasCompletedBatch = true;
+        }
+
         @Override
         public String toString() {
             return "BatchingTaskQueue[" + name + "]";
@@ -1632,6 +1820,7 @@ public class MasterService extends AbstractLifecycleComponent {
                 assert executing.isEmpty() : executing;
                 final var entryCount = queueSize.getAndSet(0);
                 var taskCount = 0;
+                var firstInsertionTimeMillis = Long.MAX_VALUE;
                 final var tasks = new ArrayList<ExecutionResult<T>>(entryCount);
                 for (int i = 0; i < entryCount; i++) {
                     final var entry = queue.poll();
@@ -1639,6 +1828,7 @@ public class MasterService extends AbstractLifecycleComponent {
                     final var task = entry.acquireForExecution();
                     if (task != null) {
                         taskCount += 1;
+                        firstInsertionTimeMillis = Math.min(firstInsertionTimeMillis, entry.insertionTimeMillis());
                         executing.add(entry);
                         tasks.add(
                             new ExecutionResult<>(entry.source(), task, threadPool.getThreadContext(), entry.storedContextSupplier())
@@ -1649,10 +1839,12 @@ public class MasterService extends AbstractLifecycleComponent {
                     listener.onResponse(null);
                     return;
                 }
+                onBatchStarted(taskCount, firstInsertionTimeMillis);
                 final var finalTaskCount = taskCount;
                 ActionListener.run(ActionListener.runBefore(listener, () -> {
                     assert executing.size() == finalTaskCount;
                     executing.clear();
+                    onBatchCompleted();
                 }), l -> batchConsumer.runBatch(executor, tasks, new BatchSummary(() -> buildTasksDescription(tasks)), l));
             }
 
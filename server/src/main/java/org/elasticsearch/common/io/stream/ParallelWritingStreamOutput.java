@@ -0,0 +1,304 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.common.io.stream;
+
+import org.elasticsearch.TransportVersion;
+import org.elasticsearch.common.io.stream.Writeable.Writer;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.core.Releasables;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * A {@link StreamOutput} that writes to another {@link StreamOutput} and lets {@link #writeAll} serialize large sequences of values
+ * concurrently. {@link #writeAll} splits the values into chunks of {@link #VALUES_PER_CHUNK} consecutive values and serializes the chunks
+ * into separate buffers on the given executor as well as on the calling thread. The calling thread copies each buffer to the underlying
+ * output as soon as it and all the chunks before it are serialized, so that the bytes written are exactly the same as if the values were
+ * serialized one after the other. Only a bounded number of chunks are serialized ahead of the next chunk to write, which bounds the memory
+ * that the buffers use however many values there are.
+ * <p>
+ * The calling thread works through the chunks too and only waits for chunks that other threads have started, so serialization completes
+ * even if the executor is busy or rejects the work.
+ */
+public final class ParallelWritingStreamOutput extends StreamOutput {
+
+    /**
+     * The number of consecutive values that are serialized into each chunk. Sequences of fewer than two chunks are serialized on the
+     * calling thread, because they aren't worth the overhead.
+     */
+    public static final int VALUES_PER_CHUNK = 64;
+
+    private final StreamOutput delegate;
+    private final Executor executor;
+    private final int maxParallelism;
+    private final Supplier<RecyclerBytesStreamOutput> buffers;
+
+    /**
+     * @param delegate       the output to write to
+     * @param executor       the executor on which to serialize chunks of values concurrently
+     * @param maxParallelism the maximum number of threads, including the calling thread, that serialize the chunks of one sequence
+     * @param buffers        supplies the buffers for the serialized chunks, which are closed once copied to the output
+     */
+    public ParallelWritingStreamOutput(
+        StreamOutput delegate,
+        Executor executor,
+        int maxParallelism,
+        Supplier<RecyclerBytesStreamOutput> buffers
+    ) {
+        if (maxParallelism < 1) {
+            throw new IllegalArgumentException("maxParallelism must be at least 1, got " + maxParallelism);
+        }
+        this.delegate = delegate;
+        this.executor = executor;
+        this.maxParallelism = maxParallelism;
+        this.buffers = buffers;
+        setTransportVersion(delegate.getTransportVersion());
+    }
+
+    /**
+     * Writes the given values one after the other without a length prefix. If {@code out} is a {@link ParallelWritingStreamOutput} and
+     * there are enough values then chunks of the values are serialized concurrently, and otherwise this just writes each value in turn.
+     */
+    public static <T> void writeAll(StreamOutput out, Collection<T> values, Writer<T> writer) throws IOException {
+        if (out instanceof ParallelWritingStreamOutput parallelOut
+            && parallelOut.maxParallelism > 1
+            && values.size() >= 2 * VALUES_PER_CHUNK) {
+            parallelOut.new ChunkWriter<>(List.copyOf(values), writer).run();
+        } else {
+            for (T value : values) {
+                writer.write(out, value);
+            }
+        }
+    }
+
+    /**
+     * Serializes the chunks of one sequence of values and writes them to the output in order. All state is guarded by the monitor of the
+     * instance, which the threads that serialize chunks also use to signal the calling thread.
+     */
+    private final class ChunkWriter<T> {
+
+        private final List<T> values;
+        private final Writer<T> writer;
+        private final int chunkCount;
+        // enough chunks to keep the helpers busy while the calling thread copies the serialized chunks to the output
+        private final int maxChunksInFlight = 2 * maxParallelism;
+        private final RecyclerBytesStreamOutput[] chunks;
+        private final boolean[] serialized;
+        private int nextChunkToSerialize;
+        private int nextChunkToWrite;
+        private int serializingChunks;
+        private int runningHelpers;
+        private boolean rejected;
+        private boolean done;
+        private boolean interrupted;
+        private Exception failure;
+
+        ChunkWriter(List<T> values, Writer<T> writer) {
+            this.values = values;
+            this.writer = writer;
+            this.chunkCount = (values.size() + VALUES_PER_CHUNK - 1) / VALUES_PER_CHUNK;
+            this.chunks = new RecyclerBytesStreamOutput[chunkCount];
+            this.serialized = new boolean[chunkCount];
+        }
+
+        void run() throws IOException {
+            try {
+                forkHelpers();
+                while (writeNextChunk()) {
+                    // keep going
+                }
+            } finally {
+                finish();
+            }
+        }
+
+        /**
+         * Writes the next chunk to the output if it is serialized, or otherwise serializes a chunk or waits for another thread to finish
+         * serializing the next chunk.
+         *
+         * @return whether there are more chunks to write
+         */
+        private boolean writeNextChunk() throws IOException {
+            RecyclerBytesStreamOutput chunk = null;
+            int chunkToSerialize = -1;
+            synchronized (this) {
+                if (failure instanceof IOException ioException) {
+                    throw ioException;
+                } else if (failure instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                } else if (failure != null) {
+                    throw new IOException(failure);
+                }
+                if (nextChunkToWrite == chunkCount) {
+                    return false;
+                }
+                if (serialized[nextChunkToWrite]) {
+                    chunk = chunks[nextChunkToWrite];
+                    chunks[nextChunkToWrite] = null;
+                    nextChunkToWrite++;
+                } else {
+                    chunkToSerialize = claimChunk();
+                    if (chunkToSerialize < 0) {
+                        // another thread is serializing the next chunk to write and there is no other chunk left to serialize for now
+                        waitForSerializedChunk();
+                        return true;
+                    }
+                }
+            }
+            if (chunk != null) {
+                try (RecyclerBytesStreamOutput chunkToWrite = chunk) {
+                    chunkToWrite.bytes().writeTo(ParallelWritingStreamOutput.this);
+                }
+                // there may be room for more chunks in flight now
+                forkHelpers();
+            } else {
+                serializeChunk(chunkToSerialize);
+            }
+            return true;
+        }
+
+        /**
+         * @return the index of the next chunk to serialize, or {@code -1} if there is none or too many chunks are in flight
+         */
+        private synchronized int claimChunk() {
+            if (done
+                || failure != null
+                || nextChunkToSerialize == chunkCount
+                || nextChunkToSerialize >= nextChunkToWrite + maxChunksInFlight) {
+                return -1;
+            }
+            serializingChunks++;
+            return nextChunkToSerialize++;
+        }
+
+        private void serializeChunk(int chunk) {
+            RecyclerBytesStreamOutput buffer = null;
+            Exception chunkFailure = null;
+            try {
+                buffer = buffers.get();
+                buffer.setTransportVersion(getTransportVersion());
+                final int from = chunk * VALUES_PER_CHUNK;
+                for (T value : values.subList(from, Math.min(values.size(), from + VALUES_PER_CHUNK))) {
+                    writer.write(buffer, value);
+                }
+            } catch (Exception e) {
+                chunkFailure = e;
+            } finally {
+                synchronized (this) {
+                    chunks[chunk] = buffer;
+                    serialized[chunk] = true;
+                    if (chunkFailure != null) {
+                        if (failure == null) {
+                            failure = chunkFailure;
+                        } else {
+                            failure.addSuppressed(chunkFailure);
+                        }
+                    }
+                    serializingChunks--;
+                    notifyAll();
+                }
+            }
+        }
+
+        private void forkHelpers() {
+            final int helpersToFork;
+            synchronized (this) {
+                // the calling thread serializes chunks too, so only fork helpers for the chunks beyond the first one it can serialize
+                final int chunksToSerialize = Math.min(chunkCount, nextChunkToWrite + maxChunksInFlight) - nextChunkToSerialize;
+                helpersToFork = rejected || done ? 0 : Math.min(maxParallelism - 1 - runningHelpers, chunksToSerialize - 1);
+                if (helpersToFork <= 0) {
+                    return;
+                }
+                runningHelpers += helpersToFork;
+            }
+            for (int i = 0; i < helpersToFork; i++) {
+                try {
+                    executor.execute(this::serializeChunksOnHelper);
+                } catch (EsRejectedExecutionException e) {
+                    // the calling thread serializes the remaining chunks itself
+                    synchronized (this) {
+                        runningHelpers -= helpersToFork - i;
+                        rejected = true;
+                    }
+                    break;
+                }
+            }
+        }
+
+        private void serializeChunksOnHelper() {
+            try {
+                int chunk;
+                while ((chunk = claimChunk()) >= 0) {
+                    serializeChunk(chunk);
+                }
+            } finally {
+                synchronized (this) {
+                    runningHelpers--;
+                }
+            }
+        }
+
+        private void waitForSerializedChunk() {
+            assert Thread.holdsLock(this);
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        private synchronized void finish() {
+            // helpers that haven't claimed a chunk yet won't claim one any more, but the other threads may still use their buffers, so we
+            // must not release them before these threads are done
+            done = true;
+            while (serializingChunks > 0) {
+                waitForSerializedChunk();
+            }
+            Releasables.close(chunks);
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void setTransportVersion(TransportVersion version) {
+        super.setTransportVersion(version);
+        delegate.setTransportVersion(version);
+    }
+
+    @Override
+    public void writeByte(byte b) throws IOException {
+        delegate.writeByte(b);
+    }
+
+    @Override
+    public void writeBytes(byte[] b, int offset, int length) throws IOException {
+        delegate.writeBytes(b, offset, length);
+    }
+
+    @Override
+    public long position() throws IOException {
+        return delegate.position();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
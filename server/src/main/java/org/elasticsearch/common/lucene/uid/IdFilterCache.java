@@ -0,0 +1,224 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.common.lucene.uid;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.hash.MurmurHash3;
+import org.elasticsearch.common.metrics.CounterMetric;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.core.Nullable;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Per-segment filters over the ids of the documents of a shard, which let version lookups skip the segments that can't contain an id
+ * without seeking their terms dictionary. Segments are immutable, so the filter of a segment is built once, by iterating over its ids
+ * after it becomes visible to the internal reader, and is dropped when the segment is closed. Segments without a filter are always
+ * looked up. The filters are kept on heap and accounted in a circuit breaker, and a segment gets no filter if it would trip the breaker.
+ * The id of a lookup is hashed once for all segments.
+ * <p>
+ * The filters are blocked bloom filters: an id sets {@link #NUM_HASHES} bits within a single block of 512 bits, so probing a filter
+ * touches a single cache line. With {@link #BITS_PER_ID} bits per id about one in a hundred lookups of an id that is not in a segment
+ * still seeks its terms dictionary.
+ */
+public final class IdFilterCache implements Accountable {
+
+    static final int BITS_PER_ID = 10;
+    static final int NUM_HASHES = 7;
+    private static final int BLOCK_SIZE_IN_LONGS = 512 / Long.SIZE;
+    private static final int MAX_BLOCKS = Integer.MAX_VALUE / BLOCK_SIZE_IN_LONGS;
+
+    private final String idField;
+    private final CircuitBreaker breaker;
+    private final ConcurrentMap<IndexReader.CacheKey, Filter> filters = ConcurrentCollections.newConcurrentMap();
+    private final IndexReader.ClosedListener removeFilter = this::removeFilter;
+
+    private final CounterMetric hits = new CounterMetric();
+    private final CounterMetric misses = new CounterMetric();
+    private final CounterMetric falsePositives = new CounterMetric();
+
+    public IdFilterCache(String idField, CircuitBreaker breaker) {
+        this.idField = idField;
+        this.breaker = breaker;
+    }
+
+    /**
+     * Builds the filters of the segments of the given reader that don't have one yet, until the memory of the filters would trip the
+     * circuit breaker.
+     */
+    public void buildFilters(IndexReader reader) throws IOException {
+        for (LeafReaderContext leaf : reader.leaves()) {
+            final IndexReader.CacheHelper cacheHelper = leaf.reader().getCoreCacheHelper();
+            if (cacheHelper == null || filters.containsKey(cacheHelper.getKey())) {
+                continue;
+            }
+            final Terms terms = leaf.reader().terms(idField);
+            if (terms == null) {
+                // the segment only contains no-ops
+                continue;
+            }
+            final long numIds = terms.size() >= 0 ? terms.size() : leaf.reader().maxDoc();
+            final int numBlocks = (int) Math.max(1, Math.min(MAX_BLOCKS, (numIds * BITS_PER_ID + 511) / 512));
+            final long bytes = Filter.ramBytesUsed(numBlocks);
+            try {
+                breaker.addEstimateBytesAndMaybeBreak(bytes, "<id_filter>");
+            } catch (CircuitBreakingException e) {
+                // the lookups in segments without a filter seek their terms dictionary, which is slower but correct
+                return;
+            }
+            boolean added = false;
+            try {
+                final Filter filter = Filter.build(terms, numBlocks);
+                if (filters.putIfAbsent(cacheHelper.getKey(), filter) == null) {
+                    cacheHelper.addClosedListener(removeFilter);
+                    added = true;
+                }
+            } finally {
+                if (added == false) {
+                    breaker.addWithoutBreaking(-bytes);
+                }
+            }
+        }
+    }
+
+    private void removeFilter(IndexReader.CacheKey key) {
+        final Filter filter = filters.remove(key);
+        if (filter != null) {
+            breaker.addWithoutBreaking(-filter.ramBytesUsed());
+        }
+    }
+
+    /**
+     * @return the filter of the given segment, or {@code null} if it has none yet
+     */
+    @Nullable
+    Filter getFilter(LeafReader reader) {
+        final IndexReader.CacheHelper cacheHelper = reader.getCoreCacheHelper();
+        return cacheHelper == null ? null : filters.get(cacheHelper.getKey());
+    }
+
+    static MurmurHash3.Hash128 hash(BytesRef id) {
+        return MurmurHash3.hash128(id.bytes, id.offset, id.length, 0, new MurmurHash3.Hash128());
+    }
+
+    /**
+     * Checks whether the segment of the given filter may contain the id with the given hash, counting a miss if it doesn't.
+     */
+    boolean mayContain(Filter filter, MurmurHash3.Hash128 hash) {
+        if (filter.mayContain(hash)) {
+            return true;
+        }
+        misses.inc();
+        return false;
+    }
+
+    /**
+     * Records the outcome of looking up an id in a segment whose filter may contain it.
+     *
+     * @param found whether the segment contains the id, regardless of whether the document with that id is deleted
+     */
+    void onLookup(boolean found) {
+        if (found) {
+            hits.inc();
+        } else {
+            falsePositives.inc();
+        }
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        long bytes = 0;
+        for (Filter filter : filters.values()) {
+            bytes += filter.ramBytesUsed();
+        }
+        return bytes;
+    }
+
+    public Stats stats() {
+        return new Stats(ramBytesUsed(), hits.count(), misses.count(), falsePositives.count());
+    }
+
+    /**
+     * @param memoryInBytes  the heap used by the filters
+     * @param hits           the number of lookups that found the id in a segment whose filter may contain it
+     * @param misses         the number of lookups that skipped a segment because its filter ruled out the id
+     * @param falsePositives the number of lookups that didn't find the id in a segment whose filter may contain it
+     */
+    public record Stats(long memoryInBytes, long hits, long misses, long falsePositives) {}
+
+    static final class Filter implements Accountable {
+
+        private final long[] bits;
+        private final int numBlocks;
+
+        private Filter(int numBlocks) {
+            this.numBlocks = numBlocks;
+            this.bits = new long[numBlocks * BLOCK_SIZE_IN_LONGS];
+        }
+
+        static Filter build(Terms terms, int numBlocks) throws IOException {
+            final Filter filter = new Filter(numBlocks);
+            final TermsEnum termsEnum = terms.iterator();
+            final MurmurHash3.Hash128 hash = new MurmurHash3.Hash128();
+            for (BytesRef id = termsEnum.next(); id != null; id = termsEnum.next()) {
+                filter.add(MurmurHash3.hash128(id.bytes, id.offset, id.length, 0, hash));
+            }
+            return filter;
+        }
+
+        private int block(MurmurHash3.Hash128 hash) {
+            // maps the upper bits of the hash to a block without a division
+            return (int) (((hash.h1 >>> 32) * numBlocks) >>> 32) * BLOCK_SIZE_IN_LONGS;
+        }
+
+        private void add(MurmurHash3.Hash128 hash) {
+            final int block = block(hash);
+            final int h = (int) hash.h2;
+            final int step = (int) (hash.h2 >>> 32) | 1;
+            for (int i = 0; i < NUM_HASHES; i++) {
+                final int bit = (h + i * step) & 511;
+                bits[block + (bit >>> 6)] |= 1L << bit;
+            }
+        }
+
+        boolean mayContain(MurmurHash3.Hash128 hash) {
+            final int block = block(hash);
+            final int h = (int) hash.h2;
+            final int step = (int) (hash.h2 >>> 32) | 1;
+            for (int i = 0; i < NUM_HASHES; i++) {
+                final int bit = (h + i * step) & 511;
+                if ((bits[block + (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        static long ramBytesUsed(int numBlocks) {
+            return RamUsageEstimator.alignObjectSize(
+                RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + (long) Long.BYTES * numBlocks * BLOCK_SIZE_IN_LONGS
+            );
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            return ramBytesUsed(numBlocks);
+        }
+    }
+}
@@ -52,6 +52,9 @@ final class PerThreadIDVersionAndSeqNoLookup {
     /** Reused for iteration (when the term exists) */
     private PostingsEnum docsEnum;
 
+    /** whether the last lookup found the term, even if all documents with that term are deleted */
+    private boolean lastLookupFoundTerm;
+
     /** used for assertions to make sure class usage meets assumptions */
     private final Object readerKey;
 
@@ -145,7 +148,8 @@ final class PerThreadIDVersionAndSeqNoLookup {
      * */
     private int getDocID(BytesRef id, LeafReaderContext context) throws IOException {
         // termsEnum can possibly be null here if this leaf contains only no-ops.
-        if (termsEnum != null && termsEnum.seekExact(id)) {
+        lastLookupFoundTerm = termsEnum != null && termsEnum.seekExact(id);
+        if (lastLookupFoundTerm) {
             final Bits liveDocs = context.reader().getLiveDocs();
             int docID = DocIdSetIterator.NO_MORE_DOCS;
             // there may be more than one matching docID, in the case of nested docs, so we want the last one:
@@ -162,6 +166,10 @@ final class PerThreadIDVersionAndSeqNoLookup {
         }
     }
 
+    boolean lastLookupFoundTerm() {
+        return lastLookupFoundTerm;
+    }
+
     private static long readNumericDocValues(LeafReader reader, String field, int docId) throws IOException {
         final NumericDocValues dv = reader.getNumericDocValues(field);
         if (dv == null || dv.advanceExact(docId) == false) {
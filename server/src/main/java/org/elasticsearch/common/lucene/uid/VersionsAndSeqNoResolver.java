@@ -13,9 +13,11 @@ import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.util.CloseableThreadLocal;
+import org.elasticsearch.common.hash.MurmurHash3;
 import org.elasticsearch.common.util.ByteUtils;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.core.Assertions;
+import org.elasticsearch.core.Nullable;
 
 import java.io.IOException;
 import java.util.Base64;
@@ -137,14 +139,36 @@ public final class VersionsAndSeqNoResolver {
      * </ul>
      */
     public static DocIdAndVersion timeSeriesLoadDocIdAndVersion(IndexReader reader, Term term, boolean loadSeqNo) throws IOException {
+        return timeSeriesLoadDocIdAndVersion(reader, term, loadSeqNo, null);
+    }
+
+    /**
+     * Load the internal doc ID and version for the uid from the reader, skipping the segments whose filter rules out the uid.
+     *
+     * @param idFilters the filters of the segments of the reader, or {@code null} to look up the uid in all segments
+     */
+    public static DocIdAndVersion timeSeriesLoadDocIdAndVersion(
+        IndexReader reader,
+        Term term,
+        boolean loadSeqNo,
+        @Nullable IdFilterCache idFilters
+    ) throws IOException {
         PerThreadIDVersionAndSeqNoLookup[] lookups = getLookupState(reader, term.field(), false);
         List<LeafReaderContext> leaves = reader.leaves();
+        final MurmurHash3.Hash128 hash = idFilters == null ? null : IdFilterCache.hash(term.bytes());
         // iterate backwards to optimize for the frequently updated documents
         // which are likely to be in the last segments
         for (int i = leaves.size() - 1; i >= 0; i--) {
             final LeafReaderContext leaf = leaves.get(i);
+            final IdFilterCache.Filter filter = idFilters == null ? null : idFilters.getFilter(leaf.reader());
+            if (filter != null && idFilters.mayContain(filter, hash) == false) {
+                continue;
+            }
             PerThreadIDVersionAndSeqNoLookup lookup = lookups[leaf.ord];
             DocIdAndVersion result = lookup.lookupVersion(term.bytes(), loadSeqNo, leaf);
+            if (filter != null) {
+                idFilters.onLookup(lookup.lastLookupFoundTerm());
+            }
             if (result != null) {
                 return result;
             }
@@ -217,14 +241,32 @@ public final class VersionsAndSeqNoResolver {
      * The result is either null or the live and latest version of the given uid.
      */
     public static DocIdAndSeqNo loadDocIdAndSeqNo(IndexReader reader, Term term) throws IOException {
+        return loadDocIdAndSeqNo(reader, term, null);
+    }
+
+    /**
+     * Loads the internal docId and sequence number of the latest copy for a given uid from the provided reader, skipping the segments
+     * whose filter rules out the uid.
+     *
+     * @param idFilters the filters of the segments of the reader, or {@code null} to look up the uid in all segments
+     */
+    public static DocIdAndSeqNo loadDocIdAndSeqNo(IndexReader reader, Term term, @Nullable IdFilterCache idFilters) throws IOException {
         final PerThreadIDVersionAndSeqNoLookup[] lookups = getLookupState(reader, term.field(), false);
         final List<LeafReaderContext> leaves = reader.leaves();
+        final MurmurHash3.Hash128 hash = idFilters == null ? null : IdFilterCache.hash(term.bytes());
         // iterate backwards to optimize for the frequently updated documents
         // which are likely to be in the last segments
         for (int i = leaves.size() - 1; i >= 0; i--) {
             final LeafReaderContext leaf = leaves.get(i);
+            final IdFilterCache.Filter filter = idFilters == null ? null : idFilters.getFilter(leaf.reader());
+            if (filter != null && idFilters.mayContain(filter, hash) == false) {
+                continue;
+            }
             final PerThreadIDVersionAndSeqNoLookup lookup = lookups[leaf.ord];
             final DocIdAndSeqNo result = lookup.lookupSeqNo(term.bytes(), leaf);
+            if (filter != null) {
+                idFilters.onLookup(lookup.lastLookupFoundTerm());
+            }
             if (result != null) {
                 return result;
             }
@@ -0,0 +1,268 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.index;
+
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.core.Nullable;
+import org.elasticsearch.core.Releasable;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.stats.IndexingPressureStats.AdaptiveShardLimit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the bytes of outstanding primary operations of each shard with an additive-increase/multiplicative-decrease controller, so that
+ * writes to a shard that can't keep up are rejected before they fill up the node-wide indexing pressure limit.
+ * <p>
+ * Every shard starts with the node-wide limit. Each time the write thread pool picks up an operation for a shard, the controller updates a
+ * moving average of the time the operations of the shard spent queued and the rate at which the write threads take up its bytes. If the
+ * average queue latency exceeds a target then the shard is only allowed the bytes it gets through within the target latency at its current
+ * throughput. If it holds more than that, its limit is multiplied by the decrease factor but not below these bytes, at most once per target
+ * latency so that a single burst does not collapse it. Shards that keep up with their writes are therefore not throttled just because the
+ * write thread pool is busy with other shards. Once the average queue latency is back below the target the limit grows by the minimum
+ * limit, up to the node-wide limit. While a shard has no outstanding operations its limit grows by the minimum limit per target latency. A
+ * shard always admits an operation when it has none outstanding, so that operations larger than its limit still make progress.
+ * <p>
+ * Shards are only tracked while they have outstanding operations or a reduced limit.
+ */
+final class AdaptiveShardIndexingPressure {
+
+    // alpha of the moving average of the queue latency
+    private static final double QUEUE_LATENCY_ALPHA = 0.3;
+    private static final long THROUGHPUT_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final long maxLimit;
+    private final long minLimit;
+    private final long targetQueueLatencyNanos;
+    private final double decreaseFactor;
+    private final LongSupplier relativeTimeInNanos;
+
+    private final Map<ShardId, ShardState> shards = ConcurrentCollections.newConcurrentMap();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder limitDecreases = new LongAdder();
+
+    AdaptiveShardIndexingPressure(
+        long maxLimit,
+        long minLimit,
+        TimeValue targetQueueLatency,
+        double decreaseFactor,
+        LongSupplier relativeTimeInNanos
+    ) {
+        this.maxLimit = maxLimit;
+        this.minLimit = Math.min(minLimit, maxLimit);
+        this.targetQueueLatencyNanos = targetQueueLatency.nanos();
+        this.decreaseFactor = decreaseFactor;
+        this.relativeTimeInNanos = relativeTimeInNanos;
+    }
+
+    /**
+     * Accounts for the bytes of a primary operation on the given shard.
+     *
+     * @return releases the bytes once the operation has completed
+     * @throws EsRejectedExecutionException if the operation is not forced and would take the shard over its limit
+     */
+    Releasable markPrimaryOperationStarted(ShardId shardId, long bytes, boolean forceExecution) {
+        while (true) {
+            final long now = relativeTimeInNanos.getAsLong();
+            final ShardState state = getOrCreateShardState(shardId, now);
+            synchronized (state) {
+                if (state.removed) {
+                    // raced with the removal of an idle shard, start over with a fresh state
+                    continue;
+                }
+                if (state.currentBytes == 0) {
+                    state.recoverIdleLimit(now);
+                }
+                if (forceExecution == false && state.currentBytes > 0 && state.currentBytes + bytes > state.limit) {
+                    rejections.increment();
+                    throw new EsRejectedExecutionException(
+                        "rejected execution of primary operation ["
+                            + "shard="
+                            + shardId
+                            + ", "
+                            + "shard_primary_bytes="
+                            + state.currentBytes
+                            + ", "
+                            + "primary_operation_bytes="
+                            + bytes
+                            + ", "
+                            + "max_shard_primary_bytes="
+                            + state.limit
+                            + "]",
+                        false
+                    );
+                }
+                state.currentBytes += bytes;
+                state.lastActivityNanos = now;
+            }
+            return () -> release(shardId, state, bytes);
+        }
+    }
+
+    /**
+     * Feeds back that a write thread picked up a primary operation on the given shard after it was queued for the given time.
+     */
+    void onPrimaryOperationDequeued(ShardId shardId, long bytes, long queueLatencyInNanos) {
+        final ShardState state = shards.get(shardId);
+        if (state == null) {
+            return;
+        }
+        final long now = relativeTimeInNanos.getAsLong();
+        synchronized (state) {
+            if (state.removed) {
+                return;
+            }
+            state.lastActivityNanos = now;
+            if (state.hasQueueLatency) {
+                state.queueLatencyNanos = QUEUE_LATENCY_ALPHA * queueLatencyInNanos + (1 - QUEUE_LATENCY_ALPHA) * state.queueLatencyNanos;
+            } else {
+                state.queueLatencyNanos = queueLatencyInNanos;
+                state.hasQueueLatency = true;
+            }
+            state.windowBytes += bytes;
+            final long windowNanos = now - state.windowStartNanos;
+            if (windowNanos >= THROUGHPUT_WINDOW_NANOS) {
+                state.bytesPerSecond = (double) state.windowBytes * TimeUnit.SECONDS.toNanos(1) / windowNanos;
+                state.windowBytes = 0;
+                state.windowStartNanos = now;
+            }
+            if (state.queueLatencyNanos > targetQueueLatencyNanos) {
+                // the bytes that the shard gets through within the target latency at its current throughput
+                final long drainableBytes = (long) (state.bytesPerSecond * targetQueueLatencyNanos / TimeUnit.SECONDS.toNanos(1));
+                if (state.currentBytes > drainableBytes && now - state.lastDecreaseNanos >= targetQueueLatencyNanos) {
+                    final long newLimit = Math.max(minLimit, Math.max(drainableBytes, (long) (state.limit * decreaseFactor)));
+                    if (newLimit < state.limit) {
+                        state.limit = newLimit;
+                        state.lastDecreaseNanos = now;
+                        limitDecreases.increment();
+                    }
+                }
+            } else {
+                state.limit = Math.min(maxLimit, state.limit + minLimit);
+            }
+        }
+    }
+
+    private ShardState getOrCreateShardState(ShardId shardId, long now) {
+        final ShardState existing = shards.get(shardId);
+        if (existing != null) {
+            return existing;
+        }
+        // sweep the idle shards whenever a shard becomes active so that shards that were throttled and then went away are not kept
+        for (Map.Entry<ShardId, ShardState> entry : shards.entrySet()) {
+            final ShardState state = entry.getValue();
+            synchronized (state) {
+                if (state.currentBytes == 0) {
+                    state.recoverIdleLimit(now);
+                    maybeRemove(entry.getKey(), state);
+                }
+            }
+        }
+        return shards.computeIfAbsent(shardId, k -> new ShardState(maxLimit, now, now - targetQueueLatencyNanos));
+    }
+
+    private void release(ShardId shardId, ShardState state, long bytes) {
+        synchronized (state) {
+            state.currentBytes -= bytes;
+            assert state.currentBytes >= 0 : "shard [" + shardId + "] released more bytes than it accounted for";
+            maybeRemove(shardId, state);
+        }
+    }
+
+    private void maybeRemove(ShardId shardId, ShardState state) {
+        assert Thread.holdsLock(state);
+        if (state.currentBytes == 0 && state.limit == maxLimit && state.removed == false) {
+            state.removed = true;
+            shards.remove(shardId, state);
+        }
+    }
+
+    /**
+     * @return the state of the controller of the given shard, or {@code null} if the shard is not tracked
+     */
+    @Nullable
+    AdaptiveShardLimit shardStats(ShardId shardId) {
+        final ShardState state = shards.get(shardId);
+        if (state == null) {
+            return null;
+        }
+        synchronized (state) {
+            return state.removed ? null : state.toShardLimit(shardId);
+        }
+    }
+
+    Stats stats() {
+        int throttledShards = 0;
+        final List<AdaptiveShardLimit> shardLimits = new ArrayList<>();
+        for (Map.Entry<ShardId, ShardState> entry : shards.entrySet()) {
+            final ShardState state = entry.getValue();
+            synchronized (state) {
+                if (state.removed == false) {
+                    shardLimits.add(state.toShardLimit(entry.getKey()));
+                    if (state.limit < maxLimit) {
+                        throttledShards++;
+                    }
+                }
+            }
+        }
+        return new Stats(shardLimits.size(), throttledShards, limitDecreases.sum(), rejections.sum(), shardLimits);
+    }
+
+    /**
+     * @param trackedShards   the number of shards that have outstanding primary operations or a reduced limit
+     * @param throttledShards the number of shards whose limit is below the node-wide limit
+     * @param limitDecreases  the number of times the limit of a shard was decreased
+     * @param rejections      the number of primary operations rejected because their shard was over its limit
+     * @param shards          the state of the controllers of the tracked shards
+     */
+    record Stats(int trackedShards, int throttledShards, long limitDecreases, long rejections, List<AdaptiveShardLimit> shards) {}
+
+    private final class ShardState {
+        private long currentBytes;
+        private long limit;
+        private long lastActivityNanos;
+        private long lastDecreaseNanos;
+        private boolean hasQueueLatency;
+        private double queueLatencyNanos;
+        private long windowStartNanos;
+        private long windowBytes;
+        private double bytesPerSecond;
+        private boolean removed;
+
+        ShardState(long limit, long now, long lastDecreaseNanos) {
+            this.limit = limit;
+            this.lastActivityNanos = now;
+            this.windowStartNanos = now;
+            this.lastDecreaseNanos = lastDecreaseNanos;
+        }
+
+        AdaptiveShardLimit toShardLimit(ShardId shardId) {
+            return new AdaptiveShardLimit(shardId, currentBytes, limit, (long) queueLatencyNanos, (long) bytesPerSecond);
+        }
+
+        void recoverIdleLimit(long now) {
+            if (limit < maxLimit) {
+                final long idlePeriods = (now - lastActivityNanos) / targetQueueLatencyNanos;
+                if (idlePeriods > (maxLimit - limit) / minLimit) {
+                    limit = maxLimit;
+                } else {
+                    limit += idlePeriods * minLimit;
+                    lastActivityNanos += idlePeriods * targetQueueLatencyNanos;
+                }
+            }
+        }
+    }
+}
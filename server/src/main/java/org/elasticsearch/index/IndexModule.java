@@ -43,6 +43,7 @@ import org.elasticsearch.index.cache.query.IndexQueryCache;
 import org.elasticsearch.index.cache.query.QueryCache;
 import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.engine.EngineFactory;
+import org.elasticsearch.index.engine.ThreadPoolMergeExecutorService;
 import org.elasticsearch.index.mapper.IdFieldMapper;
 import org.elasticsearch.index.mapper.MapperMetrics;
 import org.elasticsearch.index.mapper.MapperRegistry;
@@ -54,6 +55,7 @@ import org.elasticsearch.index.shard.ShardPath;
 import org.elasticsearch.index.similarity.SimilarityService;
 import org.elasticsearch.index.store.FsDirectoryFactory;
 import org.elasticsearch.indices.IndicesQueryCache;
+import org.elasticsearch.indices.TranslogGroupCommitService;
 import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.indices.fielddata.cache.IndicesFieldDataCache;
 import org.elasticsearch.indices.recovery.RecoveryState;
@@ -178,6 +180,8 @@ public final class IndexModule {
     private final BooleanSupplier allowExpensiveQueries;
     private final Map<String, IndexStorePlugin.RecoveryStateFactory> recoveryStateFactories;
     private final SetOnce<Engine.IndexCommitListener> indexCommitListener = new SetOnce<>();
+    private final SetOnce<TranslogGroupCommitService> translogGroupCommitService = new SetOnce<>();
+    private final SetOnce<ThreadPoolMergeExecutorService> threadPoolMergeExecutorService = new SetOnce<>();
     private final MapperMetrics mapperMetrics;
 
     /**
@@ -392,6 +396,16 @@ public final class IndexModule {
         this.indexCommitListener.set(Objects.requireNonNull(listener));
     }
 
+    public void setTranslogGroupCommitService(TranslogGroupCommitService service) {
+        ensureNotFrozen();
+        this.translogGroupCommitService.set(Objects.requireNonNull(service));
+    }
+
+    public void setThreadPoolMergeExecutorService(ThreadPoolMergeExecutorService service) {
+        ensureNotFrozen();
+        this.threadPoolMergeExecutorService.set(Objects.requireNonNull(service));
+    }
+
     IndexEventListener freeze() { // pkg private for testing
         if (this.frozen.compareAndSet(false, true)) {
             return new CompositeIndexEventListener(indexSettings, indexEventListeners);
@@ -541,7 +555,9 @@ public final class IndexModule {
                 indexFoldersDeletionListener,
                 snapshotCommitSupplier,
                 indexCommitListener.get(),
-                mapperMetrics
+                mapperMetrics,
+                translogGroupCommitService.get(),
+                threadPoolMergeExecutorService.get()
             );
             success = true;
             return indexService;
@@ -563,6 +563,19 @@ public final class IndexSettings {
         Setting.Property.IndexScope,
         Property.DeprecatedWarning
     );
+
+    /**
+     * Whether the engine keeps a filter over the _id terms of each segment on heap, so that version lookups of ids that don't exist,
+     * which are the common case when appending documents with client-supplied ids, skip the segments without seeking their terms
+     * dictionary. The filters use about 10 bits per document, which is accounted in the accounting circuit breaker, and are built in the
+     * background after refreshes that add segments. This doesn't apply to time series indices, which skip segments based on the
+     * timestamp encoded in the _id.
+     */
+    public static final Setting<Boolean> ID_FILTER_ENABLED_SETTING = Setting.boolSetting(
+        "index.engine.id_filter.enabled",
+        false,
+        Property.IndexScope
+    );
     public static final String LIFECYCLE_ORIGINATION_DATE = "index.lifecycle.origination_date";
     public static final Setting<Long> LIFECYCLE_ORIGINATION_DATE_SETTING = Setting.longSetting(
         LIFECYCLE_ORIGINATION_DATE,
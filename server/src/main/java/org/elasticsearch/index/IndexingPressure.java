@@ -15,11 +15,17 @@ import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.core.Nullable;
 import org.elasticsearch.core.Releasable;
+import org.elasticsearch.core.Releasables;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.stats.IndexingPressureStats;
 
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
 public class IndexingPressure {
 
@@ -29,6 +35,48 @@ public class IndexingPressure {
         Setting.Property.NodeScope
     );
 
+    /**
+     * Whether to adapt a limit on the outstanding primary bytes of each shard to how long its writes are queued, see
+     * {@link AdaptiveShardIndexingPressure}.
+     */
+    public static final Setting<Boolean> SHARD_ADAPTIVE_ENABLED = Setting.boolSetting(
+        "indexing_pressure.shard.adaptive.enabled",
+        false,
+        Setting.Property.NodeScope
+    );
+
+    /**
+     * The time writes may be queued for a write thread on average before the limit of their shard is decreased.
+     */
+    public static final Setting<TimeValue> SHARD_ADAPTIVE_TARGET_QUEUE_LATENCY = Setting.timeSetting(
+        "indexing_pressure.shard.adaptive.target_queue_latency",
+        TimeValue.timeValueMillis(100),
+        TimeValue.timeValueMillis(1),
+        Setting.Property.NodeScope
+    );
+
+    /**
+     * The lowest limit of a shard, which is also the amount its limit grows by when its writes are not queued for too long.
+     */
+    public static final Setting<ByteSizeValue> SHARD_ADAPTIVE_MIN_LIMIT = Setting.byteSizeSetting(
+        "indexing_pressure.shard.adaptive.min_limit",
+        ByteSizeValue.ofMb(1),
+        ByteSizeValue.ofBytes(1),
+        ByteSizeValue.ofBytes(Long.MAX_VALUE),
+        Setting.Property.NodeScope
+    );
+
+    /**
+     * The factor the limit of a shard is multiplied by when its writes are queued for too long.
+     */
+    public static final Setting<Double> SHARD_ADAPTIVE_DECREASE_FACTOR = Setting.doubleSetting(
+        "indexing_pressure.shard.adaptive.decrease_factor",
+        0.5,
+        0.05,
+        0.95,
+        Setting.Property.NodeScope
+    );
+
     private static final Logger logger = LogManager.getLogger(IndexingPressure.class);
 
     private final AtomicLong currentCombinedCoordinatingAndPrimaryBytes = new AtomicLong(0);
@@ -58,9 +106,27 @@ public class IndexingPressure {
     private final long primaryAndCoordinatingLimits;
     private final long replicaLimits;
 
+    @Nullable
+    private final AdaptiveShardIndexingPressure shardIndexingPressure;
+
     public IndexingPressure(Settings settings) {
+        this(settings, System::nanoTime);
+    }
+
+    IndexingPressure(Settings settings, LongSupplier relativeTimeInNanos) {
         this.primaryAndCoordinatingLimits = MAX_INDEXING_BYTES.get(settings).getBytes();
         this.replicaLimits = (long) (this.primaryAndCoordinatingLimits * 1.5);
+        if (SHARD_ADAPTIVE_ENABLED.get(settings)) {
+            this.shardIndexingPressure = new AdaptiveShardIndexingPressure(
+                primaryAndCoordinatingLimits,
+                SHARD_ADAPTIVE_MIN_LIMIT.get(settings).getBytes(),
+                SHARD_ADAPTIVE_TARGET_QUEUE_LATENCY.get(settings),
+                SHARD_ADAPTIVE_DECREASE_FACTOR.get(settings),
+                relativeTimeInNanos
+            );
+        } else {
+            this.shardIndexingPressure = null;
+        }
     }
 
     private static Releasable wrapReleasable(Releasable releasable) {
@@ -130,6 +196,66 @@ public class IndexingPressure {
         });
     }
 
+    /**
+     * Like {@link #markPrimaryOperationLocalToCoordinatingNodeStarted(int, long)}, but also accounts the operation against the limit of
+     * its shard if {@link #SHARD_ADAPTIVE_ENABLED adaptive shard limits} are enabled.
+     */
+    public Releasable markPrimaryOperationLocalToCoordinatingNodeStarted(
+        ShardId shardId,
+        int operations,
+        long bytes,
+        boolean forceExecution
+    ) {
+        final Releasable shardReleasable = markShardPrimaryOperationStarted(shardId, operations, bytes, forceExecution);
+        return Releasables.wrap(markPrimaryOperationLocalToCoordinatingNodeStarted(operations, bytes), shardReleasable);
+    }
+
+    /**
+     * Like {@link #markPrimaryOperationStarted(int, long, boolean)}, but also accounts the operation against the limit of its shard if
+     * {@link #SHARD_ADAPTIVE_ENABLED adaptive shard limits} are enabled.
+     */
+    public Releasable markPrimaryOperationStarted(ShardId shardId, int operations, long bytes, boolean forceExecution) {
+        final Releasable shardReleasable = markShardPrimaryOperationStarted(shardId, operations, bytes, forceExecution);
+        boolean success = false;
+        try {
+            final Releasable releasable = markPrimaryOperationStarted(operations, bytes, forceExecution);
+            success = true;
+            return Releasables.wrap(releasable, shardReleasable);
+        } finally {
+            if (success == false) {
+                shardReleasable.close();
+            }
+        }
+    }
+
+    private Releasable markShardPrimaryOperationStarted(ShardId shardId, int operations, long bytes, boolean forceExecution) {
+        if (shardIndexingPressure == null) {
+            return () -> {};
+        }
+        try {
+            return wrapReleasable(shardIndexingPressure.markPrimaryOperationStarted(shardId, bytes, forceExecution));
+        } catch (EsRejectedExecutionException e) {
+            this.primaryRejections.getAndIncrement();
+            this.primaryDocumentRejections.addAndGet(operations);
+            throw e;
+        }
+    }
+
+    /**
+     * Feeds back that a write thread picked up a primary operation on the given shard after it was queued for the given time, so that
+     * the limit of the shard can adapt if {@link #SHARD_ADAPTIVE_ENABLED adaptive shard limits} are enabled.
+     */
+    public void onPrimaryOperationDequeued(ShardId shardId, long bytes, long queueLatencyInNanos) {
+        if (shardIndexingPressure != null) {
+            shardIndexingPressure.onPrimaryOperationDequeued(shardId, bytes, queueLatencyInNanos);
+        }
+    }
+
+    @Nullable
+    IndexingPressureStats.AdaptiveShardLimit shardStats(ShardId shardId) {
+        return shardIndexingPressure == null ? null : shardIndexingPressure.shardStats(shardId);
+    }
+
     public Releasable markPrimaryOperationStarted(int operations, long bytes, boolean forceExecution) {
         long combinedBytes = this.currentCombinedCoordinatingAndPrimaryBytes.addAndGet(bytes);
         long replicaWriteBytes = this.currentReplicaBytes.get();
@@ -204,6 +330,9 @@ public class IndexingPressure {
     }
 
     public IndexingPressureStats stats() {
+        final AdaptiveShardIndexingPressure.Stats shardStats = shardIndexingPressure == null
+            ? new AdaptiveShardIndexingPressure.Stats(0, 0, 0L, 0L, List.of())
+            : shardIndexingPressure.stats();
         return new IndexingPressureStats(
             totalCombinedCoordinatingAndPrimaryBytes.get(),
             totalCoordinatingBytes.get(),
@@ -224,7 +353,12 @@ public class IndexingPressure {
             currentPrimaryOps.get(),
             currentReplicaOps.get(),
             primaryDocumentRejections.get(),
-            totalCoordinatingRequests.get()
+            totalCoordinatingRequests.get(),
+            shardStats.trackedShards(),
+            shardStats.throttledShards(),
+            shardStats.limitDecreases(),
+            shardStats.rejections(),
+            shardStats.shards()
         );
     }
 }
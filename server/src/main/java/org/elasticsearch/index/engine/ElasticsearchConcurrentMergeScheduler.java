@@ -35,7 +35,7 @@ import java.util.Set;
  * An extension to the {@link ConcurrentMergeScheduler} that provides tracking on merge times, total
  * and current merges.
  */
-class ElasticsearchConcurrentMergeScheduler extends ConcurrentMergeScheduler {
+class ElasticsearchConcurrentMergeScheduler extends ConcurrentMergeScheduler implements ElasticsearchMergeScheduler {
 
     protected final Logger logger;
     private final Settings indexSettings;
@@ -62,6 +62,7 @@ class ElasticsearchConcurrentMergeScheduler extends ConcurrentMergeScheduler {
         refreshConfig();
     }
 
+    @Override
     public Set<OnGoingMerge> onGoingMerges() {
         return readOnlyOnGoingMerges;
     }
@@ -167,6 +168,11 @@ class ElasticsearchConcurrentMergeScheduler extends ConcurrentMergeScheduler {
      */
     protected void afterMerge(OnGoingMerge merge) {}
 
+    @Override
+    public MergeScheduler getMergeScheduler() {
+        return this;
+    }
+
     @Override
     public MergeScheduler clone() {
         // Lucene IW makes a clone internally but since we hold on to this instance
@@ -189,7 +195,8 @@ class ElasticsearchConcurrentMergeScheduler extends ConcurrentMergeScheduler {
         return thread;
     }
 
-    MergeStats stats() {
+    @Override
+    public MergeStats stats() {
         final MergeStats mergeStats = new MergeStats();
         mergeStats.add(
             totalMerges.count(),
@@ -206,7 +213,8 @@ class ElasticsearchConcurrentMergeScheduler extends ConcurrentMergeScheduler {
         return mergeStats;
     }
 
-    void refreshConfig() {
+    @Override
+    public void refreshConfig() {
         if (this.getMaxMergeCount() != config.getMaxMergeCount() || this.getMaxThreadCount() != config.getMaxThreadCount()) {
             this.setMaxMergesAndThreads(config.getMaxMergeCount(), config.getMaxThreadCount());
         }
@@ -0,0 +1,36 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.index.engine;
+
+import org.apache.lucene.index.MergeScheduler;
+import org.elasticsearch.index.merge.MergeStats;
+import org.elasticsearch.index.merge.OnGoingMerge;
+
+import java.util.Set;
+
+/**
+ * The merge scheduler of the {@link InternalEngine}, which either runs the merges of the shard on threads of its own or on the threads
+ * that are shared by all shards on the node.
+ */
+interface ElasticsearchMergeScheduler {
+
+    Set<OnGoingMerge> onGoingMerges();
+
+    MergeStats stats();
+
+    /**
+     * Applies the settings of the {@link org.elasticsearch.index.MergeSchedulerConfig} of the index, which may have changed.
+     */
+    void refreshConfig();
+
+    /**
+     * @return the scheduler to hand to the index writer
+     */
+    MergeScheduler getMergeScheduler();
+}
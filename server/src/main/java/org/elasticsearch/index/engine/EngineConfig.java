@@ -109,6 +109,16 @@ public final class EngineConfig {
         }
     }, Property.IndexScope, Property.NodeScope, Property.ServerlessPublic);
 
+    /**
+     * Whether the live version map keeps the version values of recent operations in paged arrays accounted to the accounting circuit
+     * breaker instead of in maps of objects, to reduce the GC pressure of update-heavy indices.
+     */
+    public static final Setting<Boolean> INDEX_PAGED_VERSION_MAP_SETTING = Setting.boolSetting(
+        "index.engine.paged_version_map",
+        false,
+        Property.IndexScope
+    );
+
     // don't convert to Setting<> and register... we only set this in tests and register via a test plugin
     public static final String USE_COMPOUND_FILE = "index.use_compound_file";
 
@@ -134,6 +144,9 @@ public final class EngineConfig {
 
     private final boolean promotableToPrimary;
 
+    @Nullable
+    private final ThreadPoolMergeExecutorService threadPoolMergeExecutorService;
+
     /**
      * Creates a new {@link org.elasticsearch.index.engine.EngineConfig}
      */
@@ -163,7 +176,8 @@ public final class EngineConfig {
         Comparator<LeafReader> leafSorter,
         LongSupplier relativeTimeInNanosSupplier,
         Engine.IndexCommitListener indexCommitListener,
-        boolean promotableToPrimary
+        boolean promotableToPrimary,
+        @Nullable ThreadPoolMergeExecutorService threadPoolMergeExecutorService
     ) {
         this.shardId = shardId;
         this.indexSettings = indexSettings;
@@ -206,6 +220,7 @@ public final class EngineConfig {
         this.relativeTimeInNanosSupplier = relativeTimeInNanosSupplier;
         this.indexCommitListener = indexCommitListener;
         this.promotableToPrimary = promotableToPrimary;
+        this.threadPoolMergeExecutorService = threadPoolMergeExecutorService;
         // always use compound on flush - reduces # of file-handles on refresh
         this.useCompoundFile = indexSettings.getSettings().getAsBoolean(USE_COMPOUND_FILE, true);
     }
@@ -430,6 +445,15 @@ public final class EngineConfig {
         return promotableToPrimary;
     }
 
+    /**
+     * @return the service that runs the merges of all shards on the node, or {@code null} if each shard runs its merges on threads of
+     * its own
+     */
+    @Nullable
+    public ThreadPoolMergeExecutorService getThreadPoolMergeExecutorService() {
+        return threadPoolMergeExecutorService;
+    }
+
     /**
      * @return whether the Engine's index writer should pack newly written segments in a compound file. Default is true.
      */
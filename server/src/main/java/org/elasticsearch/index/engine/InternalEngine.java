@@ -19,6 +19,7 @@ import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.LiveIndexWriterConfig;
 import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.MergeScheduler;
 import org.apache.lucene.index.SegmentCommitInfo;
 import org.apache.lucene.index.SegmentInfos;
 import org.apache.lucene.index.SoftDeletesRetentionMergePolicy;
@@ -45,10 +46,12 @@ import org.elasticsearch.action.support.PlainActionFuture;
 import org.elasticsearch.action.support.SubscribableListener;
 import org.elasticsearch.cluster.metadata.DataStream;
 import org.elasticsearch.cluster.service.ClusterApplierService;
+import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.lucene.LoggerInfoStream;
 import org.elasticsearch.common.lucene.Lucene;
 import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
 import org.elasticsearch.common.lucene.search.Queries;
+import org.elasticsearch.common.lucene.uid.IdFilterCache;
 import org.elasticsearch.common.lucene.uid.Versions;
 import org.elasticsearch.common.lucene.uid.VersionsAndSeqNoResolver;
 import org.elasticsearch.common.lucene.uid.VersionsAndSeqNoResolver.DocIdAndSeqNo;
@@ -56,6 +59,7 @@ import org.elasticsearch.common.metrics.CounterMetric;
 import org.elasticsearch.common.metrics.MeanMetric;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.Maps;
 import org.elasticsearch.common.util.concurrent.AbstractRunnable;
 import org.elasticsearch.common.util.concurrent.AsyncIOProcessor;
@@ -134,7 +138,7 @@ public class InternalEngine extends Engine {
     private volatile long lastDeleteVersionPruneTimeMSec;
 
     private final Translog translog;
-    private final ElasticsearchConcurrentMergeScheduler mergeScheduler;
+    private final ElasticsearchMergeScheduler mergeScheduler;
 
     private final IndexWriter indexWriter;
 
@@ -190,7 +194,16 @@ public class InternalEngine extends Engine {
 
     private final CompletionStatsCache completionStatsCache;
 
+    // filters over the ids of the segments of the internal reader that let version lookups skip segments, if enabled
+    @Nullable
+    private final IdFilterCache idFilterCache;
+    // the number of refreshes since the filters over ids were last built, the filters are built in the background when it isn't 0
+    private final AtomicInteger pendingIdFilterBuilds = new AtomicInteger();
+
     private final AtomicBoolean trackTranslogLocation = new AtomicBoolean(false);
+    private final AtomicInteger numMergesInFlight = new AtomicInteger(0);
+    private final AtomicBoolean isThrottlingForMerges = new AtomicBoolean();
+    private final Object mergeThrottleMutex = new Object();
     private final KeyedLock<Long> noOpKeyedLock = new KeyedLock<>();
     private final AtomicBoolean shouldPeriodicallyFlushAfterBigMerge = new AtomicBoolean(false);
 
@@ -236,18 +249,32 @@ public class InternalEngine extends Engine {
         this.relativeTimeInNanosSupplier = config().getRelativeTimeInNanosSupplier();
         this.lastFlushTimestamp = relativeTimeInNanosSupplier.getAsLong(); // default to creation timestamp
         this.liveVersionMapArchive = createLiveVersionMapArchive();
-        this.versionMap = new LiveVersionMap(liveVersionMapArchive);
+        this.versionMap = new LiveVersionMap(liveVersionMapArchive, versionMapBigArrays(engineConfig, liveVersionMapArchive));
+        final IndexSettings indexSettings = engineConfig.getIndexSettings();
+        if (indexSettings.getMode() != IndexMode.TIME_SERIES && IndexSettings.ID_FILTER_ENABLED_SETTING.get(indexSettings.getSettings())) {
+            this.idFilterCache = new IdFilterCache(
+                IdFieldMapper.NAME,
+                engineConfig.getCircuitBreakerService().getBreaker(CircuitBreaker.ACCOUNTING)
+            );
+        } else {
+            this.idFilterCache = null;
+        }
         final TranslogDeletionPolicy translogDeletionPolicy = new TranslogDeletionPolicy();
         store.incRef();
         IndexWriter writer = null;
         Translog translog = null;
         ExternalReaderManager externalReaderManager = null;
         ElasticsearchReaderManager internalReaderManager = null;
-        EngineMergeScheduler scheduler = null;
+        MergeScheduler scheduler = null;
         boolean success = false;
         try {
             this.lastDeleteVersionPruneTimeMSec = engineConfig.getThreadPool().relativeTimeInMillis();
-            mergeScheduler = scheduler = new EngineMergeScheduler(engineConfig.getShardId(), engineConfig.getIndexSettings());
+            mergeScheduler = createMergeScheduler(
+                engineConfig.getShardId(),
+                engineConfig.getIndexSettings(),
+                engineConfig.getThreadPoolMergeExecutorService()
+            );
+            scheduler = mergeScheduler.getMergeScheduler();
             throttle = new IndexThrottle();
             try {
                 store.trimUnsafeCommits(config().getTranslogConfig().getTranslogPath());
@@ -303,6 +330,10 @@ public class InternalEngine extends Engine {
             }
             this.lastRefreshedCheckpointListener = new LastRefreshedCheckpointListener(localCheckpointTracker.getProcessedCheckpoint());
             this.internalReaderManager.addListener(lastRefreshedCheckpointListener);
+            if (idFilterCache != null) {
+                this.internalReaderManager.addListener(new IdFilterRefreshListener());
+                scheduleIdFiltersBuild();
+            }
             maxSeqNoOfUpdatesOrDeletes = new AtomicLong(SequenceNumbers.max(localCheckpointTracker.getMaxSeqNo(), translog.getMaxSeqNo()));
             if (localCheckpointTracker.getPersistedCheckpoint() < localCheckpointTracker.getMaxSeqNo()) {
                 try (Searcher searcher = acquireSearcher("restore_version_map_and_checkpoint_tracker", SearcherScope.INTERNAL)) {
@@ -990,7 +1021,11 @@ public class InternalEngine extends Engine {
             // load from index
             assert incrementIndexVersionLookup();
             try (Searcher searcher = acquireSearcher("load_seq_no", SearcherScope.INTERNAL)) {
-                final DocIdAndSeqNo docAndSeqNo = VersionsAndSeqNoResolver.loadDocIdAndSeqNo(searcher.getIndexReader(), op.uid());
+                final DocIdAndSeqNo docAndSeqNo = VersionsAndSeqNoResolver.loadDocIdAndSeqNo(
+                    searcher.getIndexReader(),
+                    op.uid(),
+                    idFilterCache
+                );
                 if (docAndSeqNo == null) {
                     status = OpVsLuceneDocStatus.LUCENE_DOC_NOT_FOUND;
                 } else if (op.seqNo() > docAndSeqNo.seqNo) {
@@ -1027,7 +1062,8 @@ public class InternalEngine extends Engine {
                     docIdAndVersion = VersionsAndSeqNoResolver.timeSeriesLoadDocIdAndVersion(
                         searcher.getIndexReader(),
                         op.uid(),
-                        loadSeqNo
+                        loadSeqNo,
+                        idFilterCache
                     );
                 }
             }
@@ -2573,6 +2609,15 @@ public class InternalEngine extends Engine {
         stats.addVersionMapMemoryInBytes(versionMap.ramBytesUsed());
         stats.addIndexWriterMemoryInBytes(indexWriter.ramBytesUsed());
         stats.updateMaxUnsafeAutoIdTimestamp(maxUnsafeAutoIdTimestamp.get());
+        if (idFilterCache != null) {
+            final IdFilterCache.Stats idFilterStats = idFilterCache.stats();
+            stats.addIdFilterStats(
+                idFilterStats.memoryInBytes(),
+                idFilterStats.hits(),
+                idFilterStats.misses(),
+                idFilterStats.falsePositives()
+            );
+        }
     }
 
     @Override
@@ -2688,7 +2733,7 @@ public class InternalEngine extends Engine {
             verbose = Boolean.parseBoolean(System.getProperty("tests.verbose"));
         } catch (Exception ignore) {}
         iwc.setInfoStream(verbose ? InfoStream.getDefault() : new LoggerInfoStream(logger));
-        iwc.setMergeScheduler(mergeScheduler);
+        iwc.setMergeScheduler(mergeScheduler.getMergeScheduler());
         // Give us the opportunity to upgrade old segments while performing
         // background merges
         MergePolicy mergePolicy = config().getMergePolicy();
@@ -2802,30 +2847,82 @@ public class InternalEngine extends Engine {
         return indexWriter.getConfig();
     }
 
+    private ElasticsearchMergeScheduler createMergeScheduler(
+        ShardId shardId,
+        IndexSettings indexSettings,
+        @Nullable ThreadPoolMergeExecutorService threadPoolMergeExecutorService
+    ) {
+        if (threadPoolMergeExecutorService != null) {
+            return new EngineThreadPoolMergeScheduler(shardId, indexSettings, threadPoolMergeExecutorService);
+        }
+        return new EngineMergeScheduler(shardId, indexSettings);
+    }
+
     private final class EngineMergeScheduler extends ElasticsearchConcurrentMergeScheduler {
-        private final AtomicInteger numMergesInFlight = new AtomicInteger(0);
-        private final AtomicBoolean isThrottling = new AtomicBoolean();
 
         EngineMergeScheduler(ShardId shardId, IndexSettings indexSettings) {
             super(shardId, indexSettings);
         }
 
         @Override
-        public synchronized void beforeMerge(OnGoingMerge merge) {
-            int maxNumMerges = mergeScheduler.getMaxMergeCount();
+        public void beforeMerge(OnGoingMerge merge) {
+            onBeforeMerge();
+        }
+
+        @Override
+        public void afterMerge(OnGoingMerge merge) {
+            onAfterMerge(merge);
+        }
+
+        @Override
+        protected void handleMergeException(final Throwable exc) {
+            onMergeFailure(exc);
+        }
+    }
+
+    private final class EngineThreadPoolMergeScheduler extends ThreadPoolMergeScheduler {
+
+        EngineThreadPoolMergeScheduler(
+            ShardId shardId,
+            IndexSettings indexSettings,
+            ThreadPoolMergeExecutorService threadPoolMergeExecutorService
+        ) {
+            super(shardId, indexSettings, threadPoolMergeExecutorService);
+        }
+
+        @Override
+        protected void beforeMerge(OnGoingMerge merge) {
+            onBeforeMerge();
+        }
+
+        @Override
+        protected void afterMerge(OnGoingMerge merge) {
+            onAfterMerge(merge);
+        }
+
+        @Override
+        protected void handleMergeException(Throwable exc) {
+            onMergeFailure(exc);
+        }
+    }
+
+    private void onBeforeMerge() {
+        synchronized (mergeThrottleMutex) {
+            int maxNumMerges = engineConfig.getIndexSettings().getMergeSchedulerConfig().getMaxMergeCount();
             if (numMergesInFlight.incrementAndGet() > maxNumMerges) {
-                if (isThrottling.getAndSet(true) == false) {
+                if (isThrottlingForMerges.getAndSet(true) == false) {
                     logger.info("now throttling indexing: numMergesInFlight={}, maxNumMerges={}", numMergesInFlight, maxNumMerges);
                     activateThrottling();
                 }
             }
         }
+    }
 
-        @Override
-        public synchronized void afterMerge(OnGoingMerge merge) {
-            int maxNumMerges = mergeScheduler.getMaxMergeCount();
+    private void onAfterMerge(OnGoingMerge merge) {
+        synchronized (mergeThrottleMutex) {
+            int maxNumMerges = engineConfig.getIndexSettings().getMergeSchedulerConfig().getMaxMergeCount();
             if (numMergesInFlight.decrementAndGet() < maxNumMerges) {
-                if (isThrottling.getAndSet(false)) {
+                if (isThrottlingForMerges.getAndSet(false)) {
                     logger.info("stop throttling indexing: numMergesInFlight={}, maxNumMerges={}", numMergesInFlight, maxNumMerges);
                     deactivateThrottling();
                 }
@@ -2856,26 +2953,25 @@ public class InternalEngine extends Engine {
                 shouldPeriodicallyFlushAfterBigMerge.set(true);
             }
         }
+    }
 
-        @Override
-        protected void handleMergeException(final Throwable exc) {
-            engineConfig.getThreadPool().generic().execute(new AbstractRunnable() {
-                @Override
-                public void onFailure(Exception e) {
-                    logger.debug("merge failure action rejected", e);
-                }
+    private void onMergeFailure(final Throwable exc) {
+        engineConfig.getThreadPool().generic().execute(new AbstractRunnable() {
+            @Override
+            public void onFailure(Exception e) {
+                logger.debug("merge failure action rejected", e);
+            }
 
-                @Override
-                protected void doRun() throws Exception {
-                    /*
-                     * We do this on another thread rather than the merge thread that we are initially called on so that we have complete
-                     * confidence that the call stack does not contain catch statements that would cause the error that might be thrown
-                     * here from being caught and never reaching the uncaught exception handler.
-                     */
-                    failEngine("merge failed", new MergePolicy.MergeException(exc));
-                }
-            });
-        }
+            @Override
+            protected void doRun() throws Exception {
+                /*
+                 * We do this on another thread rather than the merge thread that we are initially called on so that we have complete
+                 * confidence that the call stack does not contain catch statements that would cause the error that might be thrown
+                 * here from being caught and never reaching the uncaught exception handler.
+                 */
+                failEngine("merge failed", new MergePolicy.MergeException(exc));
+            }
+        });
     }
 
     /**
@@ -3210,6 +3306,55 @@ public class InternalEngine extends Engine {
         }
     }
 
+    /**
+     * Builds the filters over the ids of the segments of the internal reader that don't have one yet on the warmer thread pool, so
+     * that iterating over the ids of a large merged segment doesn't delay the refresh that makes it visible. Lookups don't skip the
+     * segments whose filter isn't built yet. Builds that are requested while one is running are coalesced into a single build.
+     */
+    private void scheduleIdFiltersBuild() {
+        if (pendingIdFilterBuilds.getAndIncrement() > 0) {
+            return;
+        }
+        engineConfig.getThreadPool().executor(ThreadPool.Names.WARMER).execute(new AbstractRunnable() {
+            @Override
+            protected void doRun() throws IOException {
+                int builds;
+                do {
+                    builds = pendingIdFilterBuilds.get();
+                    final ElasticsearchDirectoryReader reader = internalReaderManager.acquire();
+                    try {
+                        idFilterCache.buildFilters(reader);
+                    } finally {
+                        internalReaderManager.release(reader);
+                    }
+                } while (pendingIdFilterBuilds.addAndGet(-builds) > 0);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                pendingIdFilterBuilds.set(0);
+                if (e instanceof AlreadyClosedException == false) {
+                    logger.warn("failed to build the filters over the ids", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Builds the filters over the ids of the segments that were flushed or merged since the last refresh.
+     */
+    private final class IdFilterRefreshListener implements ReferenceManager.RefreshListener {
+        @Override
+        public void beforeRefresh() {}
+
+        @Override
+        public void afterRefresh(boolean didRefresh) {
+            if (didRefresh) {
+                scheduleIdFiltersBuild();
+            }
+        }
+    }
+
     private final class LastRefreshedCheckpointListener implements ReferenceManager.RefreshListener {
         final AtomicLong refreshedCheckpoint;
         private long pendingCheckpoint;
@@ -3382,6 +3527,19 @@ public class InternalEngine extends Engine {
         return lastUnsafeSegmentGenerationForGets.get();
     }
 
+    @Nullable
+    private static BigArrays versionMapBigArrays(EngineConfig engineConfig, LiveVersionMapArchive archive) {
+        if (EngineConfig.INDEX_PAGED_VERSION_MAP_SETTING.get(engineConfig.getIndexSettings().getSettings()) == false) {
+            return null;
+        }
+        if (archive != LiveVersionMapArchive.NOOP_ARCHIVE) {
+            // archived version maps outlive the refresh that releases paged version maps
+            return null;
+        }
+        // account without breaking: failing an operation that has already been applied to Lucene isn't an option
+        return new BigArrays(null, engineConfig.getCircuitBreakerService(), CircuitBreaker.ACCOUNTING);
+    }
+
     protected LiveVersionMapArchive createLiveVersionMapArchive() {
         return LiveVersionMapArchive.NOOP_ARCHIVE;
     }
@@ -12,28 +12,58 @@ import org.apache.lucene.search.ReferenceManager;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.common.util.concurrent.KeyedLock;
+import org.elasticsearch.core.Nullable;
 import org.elasticsearch.core.Releasable;
 
 import java.io.IOException;
 import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
-
-/** Maps _uid value to its version information. */
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Maps _uid value to its version information.
+ * <p>
+ * By default the live version values are kept in concurrent maps on heap and operations on a uid are serialized through a
+ * {@link KeyedLock}. When created with {@link BigArrays} the live version values are kept in {@link PagedVersionTable}s instead and
+ * operations on a uid are serialized through a fixed set of striped locks, so that update-heavy workloads neither allocate a map entry
+ * and a lock per operation nor keep millions of small objects alive between two refreshes. Tombstones stay on heap in both cases.
+ */
 public final class LiveVersionMap implements ReferenceManager.RefreshListener, Accountable {
 
-    private final KeyedLock<BytesRef> keyedLock = new KeyedLock<>();
+    /**
+     * The number of locks that serialize operations on uids when the live version values are kept in paged tables.
+     */
+    static final int LOCK_STRIPES = 1024;
+
+    private final UidLock uidLock;
 
     private final LiveVersionMapArchive archive;
 
+    @Nullable
+    private final BigArrays bigArrays;
+
     LiveVersionMap() {
         this(LiveVersionMapArchive.NOOP_ARCHIVE);
     }
 
     LiveVersionMap(LiveVersionMapArchive archive) {
+        this(archive, null);
+    }
+
+    /**
+     * @param bigArrays if not null, the arrays to keep the live version values in, only supported without an archive since archived maps
+     *                  outlive the refresh that would otherwise release them
+     */
+    public LiveVersionMap(LiveVersionMapArchive archive, @Nullable BigArrays bigArrays) {
+        assert bigArrays == null || archive == LiveVersionMapArchive.NOOP_ARCHIVE : "paged version maps can't be archived";
         this.archive = archive;
+        this.bigArrays = bigArrays;
+        this.uidLock = bigArrays == null ? new KeyedUidLock() : new StripedUidLock(LOCK_STRIPES);
+        this.maps = new Maps(bigArrays);
     }
 
     public static final class VersionLookup {
@@ -45,6 +75,9 @@ public final class LiveVersionMap implements ReferenceManager.RefreshListener, A
 
         private static final VersionLookup EMPTY = new VersionLookup(Collections.emptyMap());
         private final Map<BytesRef, VersionValue> map;
+        // if not null, the entries are kept in this table instead of in the map
+        @Nullable
+        private final PagedVersionTable table;
 
         // each version map has a notion of safe / unsafe which allows us to apply certain optimization in the auto-generated ID usecase
         // where we know that documents can't have any duplicates so we can skip the version map entirely. This reduces
@@ -64,6 +97,7 @@ public final class LiveVersionMap implements ReferenceManager.RefreshListener, A
 
         // Modifies the map of this instance by merging with the given VersionLookup
         public void merge(VersionLookup versionLookup) {
+            assert table == null && versionLookup.table == null : "paged version lookups can't be merged";
             long existingEntriesSize = 0;
             for (var entry : versionLookup.map.entrySet()) {
                 var existingValue = map.get(entry.getKey());
@@ -77,13 +111,22 @@ public final class LiveVersionMap implements ReferenceManager.RefreshListener, A
         // Visible for testing
         VersionLookup(Map<BytesRef, VersionValue> map) {
             this.map = map;
+            this.table = null;
+        }
+
+        VersionLookup(PagedVersionTable table) {
+            this.map = null;
+            this.table = table;
         }
 
         public VersionValue get(BytesRef key) {
-            return map.get(key);
+            return table == null ? map.get(key) : table.get(key);
         }
 
         VersionValue put(BytesRef key, VersionValue value) {
+            if (table != null) {
+                return table.put(key, value);
+            }
             long ramAccounting = mapEntryBytesUsed(key, value);
             VersionValue previousValue = map.put(key, value);
             ramAccounting += previousValue == null ? 0 : -mapEntryBytesUsed(key, previousValue);
@@ -92,11 +135,11 @@ public final class LiveVersionMap implements ReferenceManager.RefreshListener, A
         }
 
         public boolean isEmpty() {
-            return map.isEmpty();
+            return table == null ? map.isEmpty() : table.isEmpty();
         }
 
         int size() {
-            return map.size();
+            return table == null ? map.size() : table.size();
         }
 
         public boolean isUnsafe() {
@@ -108,6 +151,9 @@ public final class LiveVersionMap implements ReferenceManager.RefreshListener, A
         }
 
         VersionValue remove(BytesRef uid) {
+            if (table != null) {
+                return table.remove(uid);
+            }
             VersionValue previousValue = map.remove(uid);
             if (previousValue != null) {
                 adjustRamUsage(-mapEntryBytesUsed(uid, previousValue));
@@ -131,7 +177,7 @@ public final class LiveVersionMap implements ReferenceManager.RefreshListener, A
         }
 
         public long ramBytesUsed() {
-            return ramBytesUsed.get();
+            return table == null ? ramBytesUsed.get() : table.ramBytesUsed();
         }
 
         public static long mapEntryBytesUsed(BytesRef key, VersionValue value) {
@@ -140,7 +186,16 @@ public final class LiveVersionMap implements ReferenceManager.RefreshListener, A
 
         // Used only for testing
         Map<BytesRef, VersionValue> getMap() {
-            return map;
+            return table == null ? map : table.toMap();
+        }
+
+        /**
+         * Releases the table that backs this lookup, if any. The lookup behaves like an empty one afterwards.
+         */
+        void release() {
+            if (table != null) {
+                table.close();
+            }
         }
     }
 
@@ -157,14 +212,29 @@ public final class LiveVersionMap implements ReferenceManager.RefreshListener, A
         boolean needsSafeAccess;
         final boolean previousMapsNeededSafeAccess;
 
-        Maps(VersionLookup current, VersionLookup old, boolean previousMapsNeededSafeAccess) {
+        @Nullable
+        final BigArrays bigArrays;
+
+        Maps(VersionLookup current, VersionLookup old, boolean previousMapsNeededSafeAccess, @Nullable BigArrays bigArrays) {
             this.current = current;
             this.old = old;
             this.previousMapsNeededSafeAccess = previousMapsNeededSafeAccess;
+            this.bigArrays = bigArrays;
+        }
+
+        Maps(@Nullable BigArrays bigArrays) {
+            this(newVersionLookup(bigArrays, 0), VersionLookup.EMPTY, false, bigArrays);
         }
 
         Maps() {
-            this(new VersionLookup(ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency()), VersionLookup.EMPTY, false);
+            this((BigArrays) null);
+        }
+
+        private static VersionLookup newVersionLookup(@Nullable BigArrays bigArrays, int expectedSize) {
+            if (bigArrays != null) {
+                return new VersionLookup(new PagedVersionTable(bigArrays));
+            }
+            return new VersionLookup(ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency(expectedSize));
         }
 
         boolean isSafeAccessMode() {
@@ -182,18 +252,14 @@ public final class LiveVersionMap implements ReferenceManager.RefreshListener, A
          * Builds a new map for the refresh transition this should be called in beforeRefresh()
          */
         Maps buildTransitionMap() {
-            return new Maps(
-                new VersionLookup(ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency(current.size())),
-                current,
-                shouldInheritSafeAccess()
-            );
+            return new Maps(newVersionLookup(bigArrays, current.size()), current, shouldInheritSafeAccess(), bigArrays);
         }
 
         /**
          * similar to `invalidateOldMap` but used only for the `unsafeKeysMap` used for assertions
          */
         Maps invalidateOldMapForAssert() {
-            return new Maps(current, VersionLookup.EMPTY, previousMapsNeededSafeAccess);
+            return new Maps(current, VersionLookup.EMPTY, previousMapsNeededSafeAccess, bigArrays);
         }
 
         /**
@@ -201,7 +267,10 @@ public final class LiveVersionMap implements ReferenceManager.RefreshListener, A
          */
         Maps invalidateOldMap(LiveVersionMapArchive archive) {
             archive.afterRefresh(old);
-            return new Maps(current, VersionLookup.EMPTY, previousMapsNeededSafeAccess);
+            // operations that still hold a reference to the old map find nothing in it once it is released, and fall back to the
+            // searcher that was just refreshed
+            old.release();
+            return new Maps(current, VersionLookup.EMPTY, previousMapsNeededSafeAccess, bigArrays);
         }
 
         void put(BytesRef uid, VersionValue version) {
@@ -223,14 +292,19 @@ public final class LiveVersionMap implements ReferenceManager.RefreshListener, A
         }
 
         long ramBytesUsed() {
-            return current.ramBytesUsed.get() + old.ramBytesUsed.get();
+            return current.ramBytesUsed() + old.ramBytesUsed();
+        }
+
+        void release() {
+            current.release();
+            old.release();
         }
     }
 
     // All deletes also go here, and delete "tombstones" are retained after refresh:
     private final Map<BytesRef, DeleteVersionValue> tombstones = ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency();
 
-    private volatile Maps maps = new Maps();
+    private volatile Maps maps;
     // we maintain a second map that only receives the updates that we skip on the actual map (unsafe ops)
     // this map is only maintained if assertions are enabled
     private volatile Maps unsafeKeysMap = new Maps();
@@ -304,7 +378,7 @@ public final class LiveVersionMap implements ReferenceManager.RefreshListener, A
     /**
      * Returns the live version (add or delete) for this uid.
      */
-    VersionValue getUnderLock(final BytesRef uid) {
+    public VersionValue getUnderLock(final BytesRef uid) {
         return getUnderLock(uid, maps);
     }
 
@@ -369,7 +443,7 @@ public final class LiveVersionMap implements ReferenceManager.RefreshListener, A
         }
     }
 
-    void putIndexUnderLock(BytesRef uid, IndexVersionValue version) {
+    public void putIndexUnderLock(BytesRef uid, IndexVersionValue version) {
         assert assertKeyedLockHeldByCurrentThread(uid);
         assert uid.bytes.length == uid.length : "Oversized _uid! UID length: " + uid.length + ", bytes length: " + uid.bytes.length;
         maps.put(uid, version);
@@ -440,7 +514,7 @@ public final class LiveVersionMap implements ReferenceManager.RefreshListener, A
             // we won't collect the tombstone below since it must be newer than this one.
             if (canRemoveTombstone(maxTimestampToPrune, maxSeqNoToPrune, entry.getValue())) {
                 final BytesRef uid = entry.getKey();
-                try (Releasable lock = keyedLock.tryAcquire(uid)) {
+                try (Releasable lock = uidLock.tryAcquire(uid)) {
                     // we use tryAcquire here since this is a best effort and we try to be least disruptive
                     // this method is also called under lock in the engine under certain situations such that this can lead to deadlocks
                     // if we do use a blocking acquire. see #28714
@@ -462,7 +536,10 @@ public final class LiveVersionMap implements ReferenceManager.RefreshListener, A
      * Called when this index is closed.
      */
     synchronized void clear() {
+        final Maps previousMaps = maps;
+        // don't allocate new paged tables for a closed index, they would never be released
         maps = new Maps();
+        previousMaps.release();
         tombstones.clear();
         // NOTE: we can't zero this here, because a refresh thread could be calling InternalEngine.pruneDeletedTombstones at the same time,
         // and this will lead to an assert trip. Presumably it's fine if our ramBytesUsedForTombstones is non-zero after clear since the
@@ -494,7 +571,7 @@ public final class LiveVersionMap implements ReferenceManager.RefreshListener, A
      */
     long reclaimableRefreshRamBytes() {
         return archive == LiveVersionMapArchive.NOOP_ARCHIVE
-            ? maps.current.ramBytesUsed.get()
+            ? maps.current.ramBytesUsed()
             : maps.ramBytesUsed() + archive.getReclaimableRamBytes();
     }
 
@@ -511,14 +588,14 @@ public final class LiveVersionMap implements ReferenceManager.RefreshListener, A
      * fraction of the Archive entries that are kept around until an ongoing unpromotable refresh is finished.
      */
     long getRefreshingBytes() {
-        return archive == LiveVersionMapArchive.NOOP_ARCHIVE ? maps.old.ramBytesUsed.get() : archive.getRefreshingRamBytes();
+        return archive == LiveVersionMapArchive.NOOP_ARCHIVE ? maps.old.ramBytesUsed() : archive.getRefreshingRamBytes();
     }
 
     /**
      * Returns the current internal versions as a point in time snapshot
      */
     Map<BytesRef, VersionValue> getAllCurrent() {
-        return maps.current.map;
+        return maps.current.getMap();
     }
 
     /** Iterates over all deleted versions, including new ones (not yet exposed via reader) and old ones
@@ -533,17 +610,96 @@ public final class LiveVersionMap implements ReferenceManager.RefreshListener, A
      * map are broken. We assert on this lock to be hold when calling these methods.
      * @see KeyedLock
      */
-    Releasable acquireLock(BytesRef uid) {
-        return keyedLock.acquire(uid);
+    public Releasable acquireLock(BytesRef uid) {
+        return uidLock.acquire(uid);
     }
 
     boolean assertKeyedLockHeldByCurrentThread(BytesRef uid) {
-        assert keyedLock.isHeldByCurrentThread(uid) : "Thread [" + Thread.currentThread().getName() + "], uid [" + uid.utf8ToString() + "]";
+        assert uidLock.isHeldByCurrentThread(uid) : "Thread [" + Thread.currentThread().getName() + "], uid [" + uid.utf8ToString() + "]";
         return true;
     }
 
+    // visible for testing purposes only
+    boolean isPaged() {
+        return bigArrays != null;
+    }
+
     // visible for testing purposes only
     LiveVersionMapArchive getArchive() {
         return archive;
     }
+
+    /**
+     * Serializes the operations on the same uid.
+     */
+    private interface UidLock {
+
+        Releasable acquire(BytesRef uid);
+
+        /**
+         * Returns a releasable that releases the lock, or {@code null} if it is held by another thread.
+         */
+        @Nullable
+        Releasable tryAcquire(BytesRef uid);
+
+        boolean isHeldByCurrentThread(BytesRef uid);
+    }
+
+    private static final class KeyedUidLock implements UidLock {
+        private final KeyedLock<BytesRef> keyedLock = new KeyedLock<>();
+
+        @Override
+        public Releasable acquire(BytesRef uid) {
+            return keyedLock.acquire(uid);
+        }
+
+        @Override
+        public Releasable tryAcquire(BytesRef uid) {
+            return keyedLock.tryAcquire(uid);
+        }
+
+        @Override
+        public boolean isHeldByCurrentThread(BytesRef uid) {
+            return keyedLock.isHeldByCurrentThread(uid);
+        }
+    }
+
+    /**
+     * Maps every uid to one of a fixed number of reentrant locks by its hash, so that acquiring a lock never allocates. Operations on
+     * different uids that map to the same lock are serialized, which is fine as long as there are many more locks than indexing threads.
+     * The engine never holds the locks of two uids at once, other than through {@link #tryAcquire}, so sharing locks can't deadlock.
+     */
+    private static final class StripedUidLock implements UidLock {
+        private final ReentrantLock[] locks;
+
+        StripedUidLock(int stripes) {
+            assert Integer.bitCount(stripes) == 1 : "stripes must be a power of two but was " + stripes;
+            locks = new ReentrantLock[stripes];
+            for (int i = 0; i < stripes; i++) {
+                locks[i] = new ReentrantLock();
+            }
+        }
+
+        private ReentrantLock lock(BytesRef uid) {
+            return locks[uid.hashCode() & (locks.length - 1)];
+        }
+
+        @Override
+        public Releasable acquire(BytesRef uid) {
+            final ReentrantLock lock = lock(uid);
+            lock.lock();
+            return lock::unlock;
+        }
+
+        @Override
+        public Releasable tryAcquire(BytesRef uid) {
+            final ReentrantLock lock = lock(uid);
+            return lock.tryLock() ? lock::unlock : null;
+        }
+
+        @Override
+        public boolean isHeldByCurrentThread(BytesRef uid) {
+            return lock(uid).isHeldByCurrentThread();
+        }
+    }
 }
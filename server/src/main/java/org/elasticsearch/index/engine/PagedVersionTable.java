@@ -0,0 +1,288 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.index.engine;
+
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.ByteArray;
+import org.elasticsearch.common.util.BytesRefHash;
+import org.elasticsearch.common.util.IntArray;
+import org.elasticsearch.common.util.LongArray;
+import org.elasticsearch.core.Releasable;
+import org.elasticsearch.core.Releasables;
+import org.elasticsearch.index.translog.Translog;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A table of uid to {@link VersionValue} that keeps its entries in {@link BigArrays} instead of in a map of objects: the uids are kept in
+ * open-addressing {@link BytesRefHash}es and the version, seq#, term and translog location or delete timestamp of every entry in parallel
+ * primitive arrays. This makes the table a handful of large arrays regardless of the number of entries, so that a table holding millions
+ * of entries between two refreshes does not put pressure on the garbage collector, and the memory it uses is accounted to the circuit
+ * breaker of the {@link BigArrays} as it grows rather than estimated per entry.
+ * <p>
+ * {@link VersionValue}s are materialized on lookup. Entries are never removed from the hashes but only marked as such, which is fine since
+ * a table only lives until the next refresh. The table is split into segments by uid hash, each guarded by its own monitor, so that
+ * concurrent operations on different uids rarely contend. Once the table is {@link #close() closed} it releases its arrays, behaves like
+ * an empty table and ignores writes.
+ */
+final class PagedVersionTable implements Accountable, Releasable {
+
+    static final int SEGMENTS = 16;
+
+    private static final byte REMOVED = 0;
+    private static final byte INDEX = 1;
+    private static final byte INDEX_WITH_LOCATION = 2;
+    private static final byte DELETE = 3;
+
+    private final BigArrays bigArrays;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicLong ramBytesUsed = new AtomicLong();
+
+    PagedVersionTable(BigArrays bigArrays) {
+        this.bigArrays = bigArrays;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    VersionValue get(BytesRef uid) {
+        final int hash = uid.hashCode();
+        return segment(hash).get(uid, hash);
+    }
+
+    /**
+     * @return the previous value of the uid, or {@code null} if it had none
+     */
+    VersionValue put(BytesRef uid, VersionValue value) {
+        final int hash = uid.hashCode();
+        return segment(hash).put(uid, hash, value);
+    }
+
+    /**
+     * @return the previous value of the uid, or {@code null} if it had none
+     */
+    VersionValue remove(BytesRef uid) {
+        final int hash = uid.hashCode();
+        return segment(hash).remove(uid, hash);
+    }
+
+    int size() {
+        return Math.toIntExact(size.get());
+    }
+
+    boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    /**
+     * Returns a copy of the live entries of this table. This materializes every entry and should only be used for testing and assertions.
+     */
+    Map<BytesRef, VersionValue> toMap() {
+        final Map<BytesRef, VersionValue> map = new HashMap<>();
+        for (Segment segment : segments) {
+            segment.copyTo(map);
+        }
+        return map;
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        return ramBytesUsed.get();
+    }
+
+    @Override
+    public void close() {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+    }
+
+    private Segment segment(int hash) {
+        return segments[hash & (SEGMENTS - 1)];
+    }
+
+    private final class Segment {
+        private BytesRefHash uids;
+        private ByteArray types;
+        private LongArray versions;
+        private LongArray seqNos;
+        private LongArray terms;
+        // the translog generation of an index operation, or the timestamp of a delete
+        private LongArray generationsOrTimes;
+        private LongArray locations;
+        private IntArray locationSizes;
+        private long accountedRamBytes;
+        private boolean closed;
+
+        synchronized VersionValue get(BytesRef uid, int hash) {
+            if (uids == null) {
+                return null;
+            }
+            final long id = uids.find(uid, hash);
+            return id < 0 ? null : read(id);
+        }
+
+        synchronized VersionValue put(BytesRef uid, int hash, VersionValue value) {
+            if (closed) {
+                return null;
+            }
+            VersionValue previous = null;
+            long id = uids == null ? -1 : uids.find(uid, hash);
+            if (id < 0) {
+                if (uids == null) {
+                    allocate();
+                }
+                id = uids.add(uid, hash);
+                grow(id + 1);
+                // only adding a uid may grow the arrays, so only then do we need to recompute how many bytes the segment uses
+                final long delta = segmentRamBytesUsed() - accountedRamBytes;
+                accountedRamBytes += delta;
+                ramBytesUsed.addAndGet(delta);
+                size.incrementAndGet();
+            } else {
+                previous = read(id);
+                if (previous == null) {
+                    size.incrementAndGet();
+                }
+            }
+            write(id, value);
+            return previous;
+        }
+
+        synchronized VersionValue remove(BytesRef uid, int hash) {
+            if (uids == null) {
+                return null;
+            }
+            final long id = uids.find(uid, hash);
+            if (id < 0) {
+                return null;
+            }
+            final VersionValue previous = read(id);
+            if (previous != null) {
+                types.set(id, REMOVED);
+                size.decrementAndGet();
+            }
+            return previous;
+        }
+
+        synchronized void copyTo(Map<BytesRef, VersionValue> map) {
+            if (uids == null) {
+                return;
+            }
+            final BytesRef spare = new BytesRef();
+            for (long id = 0; id < uids.size(); id++) {
+                final VersionValue value = read(id);
+                if (value != null) {
+                    map.put(BytesRef.deepCopyOf(uids.get(id, spare)), value);
+                }
+            }
+        }
+
+        synchronized void close() {
+            if (closed == false) {
+                closed = true;
+                if (uids != null) {
+                    size.addAndGet(-countLive());
+                    Releasables.close(uids, types, versions, seqNos, terms, generationsOrTimes, locations, locationSizes);
+                    uids = null;
+                    ramBytesUsed.addAndGet(-accountedRamBytes);
+                    accountedRamBytes = 0;
+                }
+            }
+        }
+
+        private void allocate() {
+            boolean success = false;
+            try {
+                uids = new BytesRefHash(16, bigArrays);
+                types = bigArrays.newByteArray(16, false);
+                versions = bigArrays.newLongArray(16, false);
+                seqNos = bigArrays.newLongArray(16, false);
+                terms = bigArrays.newLongArray(16, false);
+                generationsOrTimes = bigArrays.newLongArray(16, false);
+                locations = bigArrays.newLongArray(16, false);
+                locationSizes = bigArrays.newIntArray(16, false);
+                success = true;
+            } finally {
+                if (success == false) {
+                    Releasables.close(uids, types, versions, seqNos, terms, generationsOrTimes, locations, locationSizes);
+                    uids = null;
+                }
+            }
+        }
+
+        private void grow(long minSize) {
+            types = bigArrays.grow(types, minSize);
+            versions = bigArrays.grow(versions, minSize);
+            seqNos = bigArrays.grow(seqNos, minSize);
+            terms = bigArrays.grow(terms, minSize);
+            generationsOrTimes = bigArrays.grow(generationsOrTimes, minSize);
+            locations = bigArrays.grow(locations, minSize);
+            locationSizes = bigArrays.grow(locationSizes, minSize);
+        }
+
+        private void write(long id, VersionValue value) {
+            versions.set(id, value.version);
+            seqNos.set(id, value.seqNo);
+            terms.set(id, value.term);
+            if (value.isDelete()) {
+                types.set(id, DELETE);
+                generationsOrTimes.set(id, ((DeleteVersionValue) value).time);
+            } else {
+                final Translog.Location location = value.getLocation();
+                if (location == null) {
+                    types.set(id, INDEX);
+                } else {
+                    types.set(id, INDEX_WITH_LOCATION);
+                    generationsOrTimes.set(id, location.generation);
+                    locations.set(id, location.translogLocation);
+                    locationSizes.set(id, location.size);
+                }
+            }
+        }
+
+        private VersionValue read(long id) {
+            return switch (types.get(id)) {
+                case REMOVED -> null;
+                case INDEX -> new IndexVersionValue(null, versions.get(id), seqNos.get(id), terms.get(id));
+                case INDEX_WITH_LOCATION -> new IndexVersionValue(
+                    new Translog.Location(generationsOrTimes.get(id), locations.get(id), locationSizes.get(id)),
+                    versions.get(id),
+                    seqNos.get(id),
+                    terms.get(id)
+                );
+                case DELETE -> new DeleteVersionValue(versions.get(id), seqNos.get(id), terms.get(id), generationsOrTimes.get(id));
+                default -> throw new AssertionError("unknown entry type [" + types.get(id) + "]");
+            };
+        }
+
+        private long countLive() {
+            long live = 0;
+            for (long id = 0; id < uids.size(); id++) {
+                if (types.get(id) != REMOVED) {
+                    live++;
+                }
+            }
+            return live;
+        }
+
+        private long segmentRamBytesUsed() {
+            if (uids == null) {
+                return 0;
+            }
+            return uids.ramBytesUsed() + types.ramBytesUsed() + versions.ramBytesUsed() + seqNos.ramBytesUsed() + terms.ramBytesUsed()
+                + generationsOrTimes.ramBytesUsed() + locations.ramBytesUsed() + locationSizes.ramBytesUsed();
+        }
+    }
+}
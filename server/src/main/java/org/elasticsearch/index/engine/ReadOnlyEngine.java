@@ -7,11 +7,9 @@
  */
 package org.elasticsearch.index.engine;
 
-import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexCommit;
 import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.PointValues;
 import org.apache.lucene.index.SegmentCommitInfo;
 import org.apache.lucene.index.SegmentInfos;
 import org.apache.lucene.index.SoftDeletesDirectoryReaderWrapper;
@@ -591,20 +589,7 @@ public class ReadOnlyEngine extends Engine {
      */
     @Override
     public ShardLongFieldRange getRawFieldRange(String field) throws IOException {
-        try (Searcher searcher = acquireSearcher(FIELD_RANGE_SEARCH_SOURCE)) {
-            final DirectoryReader directoryReader = searcher.getDirectoryReader();
-
-            final byte[] minPackedValue = PointValues.getMinPackedValue(directoryReader, field);
-            final byte[] maxPackedValue = PointValues.getMaxPackedValue(directoryReader, field);
-
-            if (minPackedValue == null || maxPackedValue == null) {
-                assert minPackedValue == null && maxPackedValue == null
-                    : Arrays.toString(minPackedValue) + "-" + Arrays.toString(maxPackedValue);
-                return ShardLongFieldRange.EMPTY;
-            }
-
-            return ShardLongFieldRange.of(LongPoint.decodeDimension(minPackedValue, 0), LongPoint.decodeDimension(maxPackedValue, 0));
-        }
+        return getSearchableFieldRange(field);
     }
 
     @Override
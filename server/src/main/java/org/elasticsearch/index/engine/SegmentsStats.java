@@ -31,6 +31,10 @@ public class SegmentsStats implements Writeable, ToXContentFragment {
     private long versionMapMemoryInBytes;
     private long maxUnsafeAutoIdTimestamp = Long.MIN_VALUE;
     private long bitsetMemoryInBytes;
+    private long idFilterMemoryInBytes;
+    private long idFilterHits;
+    private long idFilterMisses;
+    private long idFilterFalsePositives;
     private final Map<String, FileStats> files;
 
     public SegmentsStats() {
@@ -53,6 +57,12 @@ public class SegmentsStats implements Writeable, ToXContentFragment {
         bitsetMemoryInBytes = in.readLong();
         maxUnsafeAutoIdTimestamp = in.readLong();
         files = in.readMapValues(FileStats::new, FileStats::getExt);
+        if (in.getTransportVersion().onOrAfter(TransportVersions.SEGMENTS_STATS_ID_FILTER)) {
+            idFilterMemoryInBytes = in.readVLong();
+            idFilterHits = in.readVLong();
+            idFilterMisses = in.readVLong();
+            idFilterFalsePositives = in.readVLong();
+        }
     }
 
     public void add(long count) {
@@ -75,6 +85,13 @@ public class SegmentsStats implements Writeable, ToXContentFragment {
         this.bitsetMemoryInBytes += bitsetMemoryInBytes;
     }
 
+    public void addIdFilterStats(long memoryInBytes, long hits, long misses, long falsePositives) {
+        this.idFilterMemoryInBytes += memoryInBytes;
+        this.idFilterHits += hits;
+        this.idFilterMisses += misses;
+        this.idFilterFalsePositives += falsePositives;
+    }
+
     public void addFiles(Map<String, FileStats> newFiles) {
         newFiles.forEach((k, v) -> files.merge(k, v, FileStats::merge));
     }
@@ -88,6 +105,12 @@ public class SegmentsStats implements Writeable, ToXContentFragment {
         addIndexWriterMemoryInBytes(mergeStats.indexWriterMemoryInBytes);
         addVersionMapMemoryInBytes(mergeStats.versionMapMemoryInBytes);
         addBitsetMemoryInBytes(mergeStats.bitsetMemoryInBytes);
+        addIdFilterStats(
+            mergeStats.idFilterMemoryInBytes,
+            mergeStats.idFilterHits,
+            mergeStats.idFilterMisses,
+            mergeStats.idFilterFalsePositives
+        );
         addFiles(mergeStats.files);
     }
 
@@ -131,6 +154,38 @@ public class SegmentsStats implements Writeable, ToXContentFragment {
         return ByteSizeValue.ofBytes(bitsetMemoryInBytes);
     }
 
+    /**
+     * Estimation of the memory used by the filters over the ids of the segments, if enabled.
+     */
+    public long getIdFilterMemoryInBytes() {
+        return idFilterMemoryInBytes;
+    }
+
+    public ByteSizeValue getIdFilterMemory() {
+        return ByteSizeValue.ofBytes(idFilterMemoryInBytes);
+    }
+
+    /**
+     * The number of times an id was found in a segment whose filter may contain it.
+     */
+    public long getIdFilterHits() {
+        return idFilterHits;
+    }
+
+    /**
+     * The number of times the filter of a segment ruled out an id, so that the segment was skipped.
+     */
+    public long getIdFilterMisses() {
+        return idFilterMisses;
+    }
+
+    /**
+     * The number of times an id was not found in a segment whose filter may contain it.
+     */
+    public long getIdFilterFalsePositives() {
+        return idFilterFalsePositives;
+    }
+
     /**
      * Returns a mapping of file extension to statistics about files of that type.
      *
@@ -163,6 +218,18 @@ public class SegmentsStats implements Writeable, ToXContentFragment {
         builder.humanReadableField(Fields.VERSION_MAP_MEMORY_IN_BYTES, Fields.VERSION_MAP_MEMORY, getVersionMapMemory());
         builder.humanReadableField(Fields.FIXED_BIT_SET_MEMORY_IN_BYTES, Fields.FIXED_BIT_SET, getBitsetMemory());
         builder.field(Fields.MAX_UNSAFE_AUTO_ID_TIMESTAMP, maxUnsafeAutoIdTimestamp);
+        builder.startObject(Fields.ID_FILTER);
+        builder.humanReadableField(Fields.MEMORY_IN_BYTES, Fields.MEMORY, getIdFilterMemory());
+        builder.field(Fields.HITS, idFilterHits);
+        builder.field(Fields.MISSES, idFilterMisses);
+        builder.field(Fields.FALSE_POSITIVES, idFilterFalsePositives);
+        final long idFilterLookups = idFilterHits + idFilterMisses + idFilterFalsePositives;
+        builder.field(Fields.HIT_RATE, idFilterLookups == 0 ? 0.0 : (double) idFilterHits / idFilterLookups);
+        builder.field(Fields.MISS_RATE, idFilterLookups == 0 ? 0.0 : (double) idFilterMisses / idFilterLookups);
+        // the share of the lookups of ids that are not in a segment that its filter didn't rule out
+        final long idFilterNegatives = idFilterMisses + idFilterFalsePositives;
+        builder.field(Fields.FALSE_POSITIVE_RATE, idFilterNegatives == 0 ? 0.0 : (double) idFilterFalsePositives / idFilterNegatives);
+        builder.endObject();
         builder.startObject(Fields.FILE_SIZES);
         for (Map.Entry<String, FileStats> entry : files.entrySet()) {
             entry.getValue().toXContent(builder, params);
@@ -182,12 +249,27 @@ public class SegmentsStats implements Writeable, ToXContentFragment {
             && versionMapMemoryInBytes == that.versionMapMemoryInBytes
             && maxUnsafeAutoIdTimestamp == that.maxUnsafeAutoIdTimestamp
             && bitsetMemoryInBytes == that.bitsetMemoryInBytes
+            && idFilterMemoryInBytes == that.idFilterMemoryInBytes
+            && idFilterHits == that.idFilterHits
+            && idFilterMisses == that.idFilterMisses
+            && idFilterFalsePositives == that.idFilterFalsePositives
             && Objects.equals(files, that.files);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(count, indexWriterMemoryInBytes, versionMapMemoryInBytes, maxUnsafeAutoIdTimestamp, bitsetMemoryInBytes, files);
+        return Objects.hash(
+            count,
+            indexWriterMemoryInBytes,
+            versionMapMemoryInBytes,
+            maxUnsafeAutoIdTimestamp,
+            bitsetMemoryInBytes,
+            idFilterMemoryInBytes,
+            idFilterHits,
+            idFilterMisses,
+            idFilterFalsePositives,
+            files
+        );
     }
 
     static final class Fields {
@@ -215,6 +297,13 @@ public class SegmentsStats implements Writeable, ToXContentFragment {
         static final String FIXED_BIT_SET = "fixed_bit_set";
         static final String FIXED_BIT_SET_MEMORY_IN_BYTES = "fixed_bit_set_memory_in_bytes";
         static final String FILE_SIZES = "file_sizes";
+        static final String ID_FILTER = "id_filter";
+        static final String HITS = "hits";
+        static final String MISSES = "misses";
+        static final String FALSE_POSITIVES = "false_positives";
+        static final String HIT_RATE = "hit_rate";
+        static final String MISS_RATE = "miss_rate";
+        static final String FALSE_POSITIVE_RATE = "false_positive_rate";
     }
 
     @Override
@@ -235,6 +324,12 @@ public class SegmentsStats implements Writeable, ToXContentFragment {
         out.writeLong(maxUnsafeAutoIdTimestamp);
 
         out.writeCollection(files.values());
+        if (out.getTransportVersion().onOrAfter(TransportVersions.SEGMENTS_STATS_ID_FILTER)) {
+            out.writeVLong(idFilterMemoryInBytes);
+            out.writeVLong(idFilterHits);
+            out.writeVLong(idFilterMisses);
+            out.writeVLong(idFilterFalsePositives);
+        }
     }
 
     public void clearFiles() {
@@ -0,0 +1,467 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.index.engine;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.core.Nullable;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.env.NodeEnvironment;
+import org.elasticsearch.index.MergeSchedulerConfig;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.monitor.fs.FsInfo;
+import org.elasticsearch.monitor.fs.FsProbe;
+import org.elasticsearch.threadpool.Scheduler;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Runs the merges of all shards on this node on a shared pool of threads and splits a node-wide budget of merge writes per second
+ * between the running merges, instead of letting every shard start merge threads of its own and throttle them on its own.
+ * <p>
+ * Queued merges start smallest first. The merges of shards that are not search idle count as a fraction of their size, since the
+ * number of segments of these shards affects searches. The size a queued merge counts as halves every {@link #AGING_INTERVAL} it waits,
+ * and merges that count as the same size start in the order they were queued, so that a steady stream of small merges can't hold back
+ * a large merge forever, nor keep the indexing of its shard throttled. A shard never runs more than the
+ * {@link MergeSchedulerConfig#getMaxThreadCount() maximum number of merge threads} of its index at once, so a single shard can't take
+ * all threads.
+ * <p>
+ * The utilization of the disks of the data paths is sampled every {@link #SAMPLE_INTERVAL}. While the busiest disk is utilized above
+ * {@link #DISK_UTILIZATION_THRESHOLD_SETTING}, requests queue up on it and their latency rises, so the rate of the merges that are
+ * larger than {@link #LARGE_MERGE_SIZE_SETTING} is halved on every sample. It doubles again on every sample below the threshold, until
+ * the large merges get their full share of the budget.
+ */
+public final class ThreadPoolMergeExecutorService implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(ThreadPoolMergeExecutorService.class);
+
+    public static final Setting<Boolean> USE_THREAD_POOL_SETTING = Setting.boolSetting(
+        "indices.merge.scheduler.use_thread_pool",
+        false,
+        Property.NodeScope
+    );
+
+    public static final Setting<Integer> MAX_THREAD_COUNT_SETTING = new Setting<>(
+        "indices.merge.scheduler.max_thread_count",
+        (s) -> Integer.toString(Math.max(1, EsExecutors.allocatedProcessors(s) / 2)),
+        (s) -> Setting.parseInt(s, 1, "indices.merge.scheduler.max_thread_count"),
+        Property.NodeScope
+    );
+
+    /**
+     * The number of bytes per second that all running merges together may write.
+     */
+    public static final Setting<ByteSizeValue> MAX_IO_RATE_SETTING = Setting.byteSizeSetting(
+        "indices.merge.scheduler.max_io_rate",
+        ByteSizeValue.ofGb(1),
+        ByteSizeValue.ofMb(1),
+        ByteSizeValue.ofBytes(Long.MAX_VALUE),
+        Property.NodeScope,
+        Property.Dynamic
+    );
+
+    public static final Setting<ByteSizeValue> LARGE_MERGE_SIZE_SETTING = Setting.byteSizeSetting(
+        "indices.merge.scheduler.large_merge_size",
+        ByteSizeValue.ofGb(1),
+        Property.NodeScope,
+        Property.Dynamic
+    );
+
+    /**
+     * The share of the time a disk may be busy before large merges back off.
+     */
+    public static final Setting<Double> DISK_UTILIZATION_THRESHOLD_SETTING = Setting.doubleSetting(
+        "indices.merge.scheduler.disk_utilization_threshold",
+        0.9,
+        0.0,
+        1.0,
+        Property.NodeScope,
+        Property.Dynamic
+    );
+
+    public static final String THREAD_NAME = "merge";
+
+    static final TimeValue SAMPLE_INTERVAL = TimeValue.timeValueSeconds(1);
+
+    static final int SEARCH_ACTIVE_PRIORITY_FACTOR = 4;
+
+    /**
+     * How long a queued merge waits until it counts as half its size when picking the next merge to start.
+     */
+    static final TimeValue AGING_INTERVAL = TimeValue.timeValueSeconds(10);
+
+    static final double MIN_LARGE_MERGE_RATE_FACTOR = 1.0 / 32;
+
+    /**
+     * A merge of a shard that is queued on or run by the executor service.
+     */
+    interface MergeTask extends Runnable {
+
+        ShardId shardId();
+
+        /**
+         * @return the maximum number of merges of the shard that may run at once
+         */
+        int maxConcurrentMerges();
+
+        long estimatedSizeInBytes();
+
+        /**
+         * @return whether the merge was aborted, in which case running it returns right away
+         */
+        boolean isAborted();
+
+        /**
+         * Sets the number of bytes per second the merge may write.
+         */
+        void setIORate(double bytesPerSecond);
+    }
+
+    private final int maxThreadCount;
+    private final ExecutorService executor;
+    private final Predicate<ShardId> searchActive;
+    private final LongSupplier relativeTimeInNanos;
+    @Nullable
+    private final Scheduler.Cancellable sampler;
+
+    private final Object mutex = new Object();
+    private final List<QueuedTask> queuedTasks = new ArrayList<>();
+    private final Set<MergeTask> runningTasks = new HashSet<>();
+    private double largeMergeRateFactor = 1.0;
+    private boolean closed;
+
+    private volatile long maxIORateInBytes;
+    private volatile long largeMergeSizeInBytes;
+    private volatile double diskUtilizationThreshold;
+
+    @SuppressWarnings("this-escape")
+    public ThreadPoolMergeExecutorService(
+        Settings settings,
+        ClusterSettings clusterSettings,
+        ThreadPool threadPool,
+        NodeEnvironment nodeEnvironment,
+        Predicate<ShardId> searchActive
+    ) {
+        this(
+            EsExecutors.threadName(settings, THREAD_NAME),
+            MAX_THREAD_COUNT_SETTING.get(settings),
+            threadPool.getThreadContext(),
+            searchActive,
+            threadPool::relativeTimeInNanos,
+            threadPool,
+            new DiskUtilizationProbe(new FsProbe(nodeEnvironment))
+        );
+        setMaxIORate(MAX_IO_RATE_SETTING.get(settings));
+        setLargeMergeSize(LARGE_MERGE_SIZE_SETTING.get(settings));
+        setDiskUtilizationThreshold(DISK_UTILIZATION_THRESHOLD_SETTING.get(settings));
+        clusterSettings.addSettingsUpdateConsumer(MAX_IO_RATE_SETTING, this::setMaxIORate);
+        clusterSettings.addSettingsUpdateConsumer(LARGE_MERGE_SIZE_SETTING, this::setLargeMergeSize);
+        clusterSettings.addSettingsUpdateConsumer(DISK_UTILIZATION_THRESHOLD_SETTING, this::setDiskUtilizationThreshold);
+    }
+
+    @SuppressWarnings("this-escape")
+    ThreadPoolMergeExecutorService(
+        String threadName,
+        int maxThreadCount,
+        ThreadContext threadContext,
+        Predicate<ShardId> searchActive,
+        LongSupplier relativeTimeInNanos,
+        @Nullable ThreadPool threadPool,
+        @Nullable DoubleSupplier diskUtilization
+    ) {
+        this.maxThreadCount = maxThreadCount;
+        this.searchActive = searchActive;
+        this.relativeTimeInNanos = relativeTimeInNanos;
+        this.executor = EsExecutors.newFixed(
+            threadName,
+            maxThreadCount,
+            -1,
+            EsExecutors.daemonThreadFactory(threadName),
+            threadContext,
+            EsExecutors.TaskTrackingConfig.DO_NOT_TRACK
+        );
+        this.maxIORateInBytes = MAX_IO_RATE_SETTING.getDefault(Settings.EMPTY).getBytes();
+        this.largeMergeSizeInBytes = LARGE_MERGE_SIZE_SETTING.getDefault(Settings.EMPTY).getBytes();
+        this.diskUtilizationThreshold = DISK_UTILIZATION_THRESHOLD_SETTING.getDefault(Settings.EMPTY);
+        if (threadPool != null && diskUtilization != null) {
+            this.sampler = threadPool.scheduleWithFixedDelay(() -> {
+                runAbortedTasks();
+                onDiskUtilizationSample(diskUtilization.getAsDouble());
+            }, SAMPLE_INTERVAL, threadPool.generic());
+        } else {
+            this.sampler = null;
+        }
+    }
+
+    void setMaxIORate(ByteSizeValue maxIORate) {
+        this.maxIORateInBytes = maxIORate.getBytes();
+        synchronized (mutex) {
+            updateIORates();
+        }
+    }
+
+    void setLargeMergeSize(ByteSizeValue largeMergeSize) {
+        this.largeMergeSizeInBytes = largeMergeSize.getBytes();
+        synchronized (mutex) {
+            updateIORates();
+        }
+    }
+
+    void setDiskUtilizationThreshold(double diskUtilizationThreshold) {
+        this.diskUtilizationThreshold = diskUtilizationThreshold;
+    }
+
+    /**
+     * Queues the given merge and starts it as soon as a thread is available and no queued merge takes precedence.
+     *
+     * @return {@code false} if the merge was not queued because this service is closed
+     */
+    boolean submit(MergeTask task) {
+        synchronized (mutex) {
+            if (closed) {
+                return false;
+            }
+            queuedTasks.add(new QueuedTask(task, relativeTimeInNanos.getAsLong()));
+        }
+        maybeStartTasks();
+        return true;
+    }
+
+    private void maybeStartTasks() {
+        final List<MergeTask> tasksToStart = new ArrayList<>();
+        synchronized (mutex) {
+            MergeTask task;
+            while (closed == false && runningTasks.size() < maxThreadCount && (task = pollNextTask()) != null) {
+                runningTasks.add(task);
+                tasksToStart.add(task);
+            }
+            if (tasksToStart.isEmpty() == false) {
+                updateIORates();
+            }
+        }
+        for (MergeTask task : tasksToStart) {
+            executor.execute(() -> runTask(task));
+        }
+    }
+
+    private void runTask(MergeTask task) {
+        try {
+            task.run();
+        } finally {
+            synchronized (mutex) {
+                runningTasks.remove(task);
+                updateIORates();
+            }
+            maybeStartTasks();
+        }
+    }
+
+    /**
+     * @return the queued merge to start next, or {@code null} if no queued merge can start
+     */
+    @Nullable
+    private MergeTask pollNextTask() {
+        assert Thread.holdsLock(mutex);
+        final long nowInNanos = relativeTimeInNanos.getAsLong();
+        int nextIndex = -1;
+        long nextPriority = Long.MAX_VALUE;
+        for (int i = 0; i < queuedTasks.size(); i++) {
+            final QueuedTask queuedTask = queuedTasks.get(i);
+            final MergeTask task = queuedTask.task();
+            if (task.isAborted()) {
+                // aborted merges return right away and the index writer of the shard waits for them to be run when it's closed
+                nextIndex = i;
+                break;
+            }
+            if (runningMerges(task.shardId()) >= task.maxConcurrentMerges()) {
+                continue;
+            }
+            final long priority = priority(task, nowInNanos - queuedTask.queuedAtNanos());
+            // the queue is in the order the merges were queued, so the oldest of the merges with the same priority starts first
+            if (nextIndex == -1 || priority < nextPriority) {
+                nextIndex = i;
+                nextPriority = priority;
+            }
+        }
+        return nextIndex == -1 ? null : queuedTasks.remove(nextIndex).task();
+    }
+
+    private long priority(MergeTask task, long queuedNanos) {
+        final long size = task.estimatedSizeInBytes();
+        final long priority = searchActive.test(task.shardId()) ? size / SEARCH_ACTIVE_PRIORITY_FACTOR : size;
+        final long agingIntervals = Math.max(0L, queuedNanos) / AGING_INTERVAL.nanos();
+        return agingIntervals >= Long.SIZE - 1 ? 0L : priority >> agingIntervals;
+    }
+
+    private int runningMerges(ShardId shardId) {
+        int count = 0;
+        for (MergeTask task : runningTasks) {
+            if (task.shardId().equals(shardId)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void updateIORates() {
+        assert Thread.holdsLock(mutex);
+        if (runningTasks.isEmpty()) {
+            return;
+        }
+        final double share = (double) maxIORateInBytes / runningTasks.size();
+        for (MergeTask task : runningTasks) {
+            task.setIORate(task.estimatedSizeInBytes() >= largeMergeSizeInBytes ? share * largeMergeRateFactor : share);
+        }
+    }
+
+    /**
+     * Lets large merges back off while the utilization of the disks is above the threshold and recover once it drops again.
+     *
+     * @param diskUtilization the share of the time the busiest disk was busy since the previous sample, or {@link Double#NaN} if unknown
+     */
+    void onDiskUtilizationSample(double diskUtilization) {
+        synchronized (mutex) {
+            final double previousFactor = largeMergeRateFactor;
+            if (diskUtilization > diskUtilizationThreshold) {
+                largeMergeRateFactor = Math.max(MIN_LARGE_MERGE_RATE_FACTOR, largeMergeRateFactor / 2);
+            } else {
+                largeMergeRateFactor = Math.min(1.0, largeMergeRateFactor * 2);
+            }
+            if (largeMergeRateFactor != previousFactor) {
+                logger.debug(
+                    "disk utilization is [{}], large merges now get [{}] of their share of the merge io rate",
+                    diskUtilization,
+                    largeMergeRateFactor
+                );
+                updateIORates();
+            }
+        }
+    }
+
+    /**
+     * Runs the queued merges that were aborted on the calling thread, so that closing the shards of these merges doesn't wait for a
+     * merge thread to become available.
+     */
+    void runAbortedTasks() {
+        final List<MergeTask> abortedTasks = new ArrayList<>();
+        synchronized (mutex) {
+            queuedTasks.removeIf(queuedTask -> {
+                if (queuedTask.task().isAborted()) {
+                    abortedTasks.add(queuedTask.task());
+                    return true;
+                }
+                return false;
+            });
+        }
+        for (MergeTask task : abortedTasks) {
+            task.run();
+        }
+    }
+
+    /**
+     * @return the number of merges that are queued
+     */
+    int queuedMerges() {
+        synchronized (mutex) {
+            return queuedTasks.size();
+        }
+    }
+
+    /**
+     * @return the number of merges that are running
+     */
+    int runningMerges() {
+        synchronized (mutex) {
+            return runningTasks.size();
+        }
+    }
+
+    double largeMergeRateFactor() {
+        synchronized (mutex) {
+            return largeMergeRateFactor;
+        }
+    }
+
+    /**
+     * @return the number of bytes per second that each running merge may write if it's not large
+     */
+    double currentIORate() {
+        synchronized (mutex) {
+            return (double) maxIORateInBytes / Math.max(1, runningTasks.size());
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (mutex) {
+            closed = true;
+        }
+        if (sampler != null) {
+            sampler.cancel();
+        }
+        // the shards are closed before this service, so only aborted merges may still be queued
+        runAbortedTasks();
+        ThreadPool.terminate(executor, 10, TimeUnit.SECONDS);
+    }
+
+    private record QueuedTask(MergeTask task, long queuedAtNanos) {}
+
+    /**
+     * Samples the share of the time the busiest device of the data paths was busy since the previous sample.
+     */
+    static final class DiskUtilizationProbe implements DoubleSupplier {
+
+        private final FsProbe fsProbe;
+        private FsInfo previous;
+
+        DiskUtilizationProbe(FsProbe fsProbe) {
+            this.fsProbe = fsProbe;
+        }
+
+        @Override
+        public double getAsDouble() {
+            final FsInfo current;
+            try {
+                current = fsProbe.stats(previous);
+            } catch (IOException e) {
+                logger.debug("failed to sample the utilization of the disks", e);
+                return Double.NaN;
+            }
+            final FsInfo previous = this.previous;
+            this.previous = current;
+            if (previous == null || current.getIoStats() == null) {
+                return Double.NaN;
+            }
+            final long elapsedMillis = current.getTimestamp() - previous.getTimestamp();
+            long maxIOTimeInMillis = -1;
+            for (FsInfo.DeviceStats deviceStats : current.getIoStats().getDevicesStats()) {
+                maxIOTimeInMillis = Math.max(maxIOTimeInMillis, deviceStats.ioTimeInMillis());
+            }
+            return elapsedMillis <= 0 || maxIOTimeInMillis < 0 ? Double.NaN : (double) maxIOTimeInMillis / elapsedMillis;
+        }
+    }
+}
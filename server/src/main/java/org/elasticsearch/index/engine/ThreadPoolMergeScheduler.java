@@ -0,0 +1,290 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.index.engine;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.MergeRateLimiter;
+import org.apache.lucene.index.MergeScheduler;
+import org.apache.lucene.index.MergeTrigger;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RateLimitedIndexOutput;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.metrics.CounterMetric;
+import org.elasticsearch.common.metrics.MeanMetric;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.MergeSchedulerConfig;
+import org.elasticsearch.index.merge.MergeStats;
+import org.elasticsearch.index.merge.OnGoingMerge;
+import org.elasticsearch.index.shard.ShardId;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A merge scheduler that runs the merges of a shard on the threads of the node-wide {@link ThreadPoolMergeExecutorService} rather than
+ * on threads of its own, and tracks merge times, total and current merges like {@link ElasticsearchConcurrentMergeScheduler}. Merges
+ * wait in the queue of the executor service until it starts them, and count towards the merges in flight from the moment they are
+ * queued, so that indexing is throttled when the merges of the shard fall behind.
+ */
+class ThreadPoolMergeScheduler extends MergeScheduler implements ElasticsearchMergeScheduler {
+
+    protected final Logger logger;
+    private final ShardId shardId;
+    private final MergeSchedulerConfig config;
+    private final ThreadPoolMergeExecutorService executorService;
+
+    private final MeanMetric totalMerges = new MeanMetric();
+    private final CounterMetric totalMergesNumDocs = new CounterMetric();
+    private final CounterMetric totalMergesSizeInBytes = new CounterMetric();
+    private final CounterMetric currentMerges = new CounterMetric();
+    private final CounterMetric currentMergesNumDocs = new CounterMetric();
+    private final CounterMetric currentMergesSizeInBytes = new CounterMetric();
+    private final CounterMetric totalMergeStoppedTime = new CounterMetric();
+    private final CounterMetric totalMergeThrottledTime = new CounterMetric();
+    private final CounterMetric queuedMerges = new CounterMetric();
+    private final CounterMetric totalMergeQueuedTime = new CounterMetric();
+
+    private final Set<OnGoingMerge> onGoingMerges = ConcurrentCollections.newConcurrentSet();
+    private final Set<OnGoingMerge> readOnlyOnGoingMerges = Collections.unmodifiableSet(onGoingMerges);
+    private final Map<MergePolicy.OneMerge, MergeTask> runningMergeTasks = ConcurrentCollections.newConcurrentMap();
+
+    ThreadPoolMergeScheduler(ShardId shardId, IndexSettings indexSettings, ThreadPoolMergeExecutorService executorService) {
+        this.shardId = shardId;
+        this.config = indexSettings.getMergeSchedulerConfig();
+        this.executorService = executorService;
+        this.logger = Loggers.getLogger(getClass(), shardId);
+    }
+
+    @Override
+    public Set<OnGoingMerge> onGoingMerges() {
+        return readOnlyOnGoingMerges;
+    }
+
+    @Override
+    public synchronized void merge(MergeSource mergeSource, MergeTrigger trigger) {
+        MergePolicy.OneMerge merge;
+        while ((merge = mergeSource.getNextMerge()) != null) {
+            final MergeTask task = new MergeTask(mergeSource, merge);
+            queuedMerges.inc();
+            beforeMerge(task.onGoingMerge);
+            if (executorService.submit(task) == false) {
+                queuedMerges.dec();
+                mergeSource.onMergeFinished(merge);
+                afterMerge(task.onGoingMerge);
+            }
+        }
+    }
+
+    @Override
+    public Directory wrapForMerge(MergePolicy.OneMerge merge, Directory in) {
+        final MergeTask task = runningMergeTasks.get(merge);
+        assert task != null : "merge [" + merge.segString() + "] is not run by this scheduler";
+        if (task == null) {
+            return in;
+        }
+        return new FilterDirectory(in) {
+            @Override
+            public IndexOutput createOutput(String name, IOContext context) throws IOException {
+                assert context.context == IOContext.Context.MERGE : "got context=" + context.context;
+                return new RateLimitedIndexOutput(task.rateLimiter, in.createOutput(name, context));
+            }
+        };
+    }
+
+    private static String getSegmentName(MergePolicy.OneMerge merge) {
+        return merge.getMergeInfo() != null ? merge.getMergeInfo().info.name : "_na_";
+    }
+
+    /**
+     * A callback allowing for custom logic when a merge is queued.
+     */
+    protected void beforeMerge(OnGoingMerge merge) {}
+
+    /**
+     * A callback allowing for custom logic after a merge is done, or won't run.
+     */
+    protected void afterMerge(OnGoingMerge merge) {}
+
+    /**
+     * Called on the merge thread with the exception of a merge that failed.
+     */
+    protected void handleMergeException(Throwable t) {
+        throw new MergePolicy.MergeException(t);
+    }
+
+    @Override
+    public MergeStats stats() {
+        final MergeStats mergeStats = new MergeStats();
+        mergeStats.add(
+            totalMerges.count(),
+            totalMerges.sum(),
+            totalMergesNumDocs.count(),
+            totalMergesSizeInBytes.count(),
+            currentMerges.count(),
+            currentMergesNumDocs.count(),
+            currentMergesSizeInBytes.count(),
+            totalMergeStoppedTime.count(),
+            totalMergeThrottledTime.count(),
+            executorService.currentIORate() / 1024 / 1024
+        );
+        mergeStats.addQueued(queuedMerges.count(), totalMergeQueuedTime.count());
+        return mergeStats;
+    }
+
+    @Override
+    public void refreshConfig() {
+        // the executor service reads the maximum number of merge threads of the shard from the config whenever it starts a merge
+    }
+
+    @Override
+    public MergeScheduler getMergeScheduler() {
+        return this;
+    }
+
+    @Override
+    public void close() {
+        // the index writer aborts and waits for all merges of the shard before it closes the scheduler
+    }
+
+    private final class MergeTask implements ThreadPoolMergeExecutorService.MergeTask {
+
+        private final MergeSource mergeSource;
+        private final MergePolicy.OneMerge merge;
+        private final OnGoingMerge onGoingMerge;
+        private final MergeRateLimiter rateLimiter;
+        private final long queuedTimeNanos = System.nanoTime();
+
+        MergeTask(MergeSource mergeSource, MergePolicy.OneMerge merge) {
+            this.mergeSource = mergeSource;
+            this.merge = merge;
+            this.onGoingMerge = new OnGoingMerge(merge);
+            this.rateLimiter = new MergeRateLimiter(merge.getMergeProgress());
+        }
+
+        @Override
+        public ShardId shardId() {
+            return shardId;
+        }
+
+        @Override
+        public int maxConcurrentMerges() {
+            return config.getMaxThreadCount();
+        }
+
+        @Override
+        public long estimatedSizeInBytes() {
+            return merge.totalBytesSize();
+        }
+
+        @Override
+        public boolean isAborted() {
+            return merge.isAborted();
+        }
+
+        @Override
+        public void setIORate(double bytesPerSecond) {
+            rateLimiter.setMBPerSec(bytesPerSecond / 1024 / 1024);
+        }
+
+        @Override
+        public void run() {
+            final long queuedMS = TimeValue.nsecToMSec(System.nanoTime() - queuedTimeNanos);
+            queuedMerges.dec();
+            totalMergeQueuedTime.inc(queuedMS);
+            try {
+                doMerge();
+            } catch (MergePolicy.MergeAbortedException e) {
+                // the merge was aborted, which is fine
+            } catch (Throwable t) {
+                handleMergeException(t);
+            } finally {
+                afterMerge(onGoingMerge);
+            }
+            try {
+                // the index writer registers the merges that the merge made possible, pick them up
+                merge(mergeSource, MergeTrigger.MERGE_FINISHED);
+            } catch (AlreadyClosedException e) {
+                // the index writer was closed in the meantime
+            }
+        }
+
+        private void doMerge() throws IOException {
+            final int totalNumDocs = merge.totalNumDocs();
+            final long totalSizeInBytes = merge.totalBytesSize();
+            final long timeNS = System.nanoTime();
+            currentMerges.inc();
+            currentMergesNumDocs.inc(totalNumDocs);
+            currentMergesSizeInBytes.inc(totalSizeInBytes);
+            onGoingMerges.add(onGoingMerge);
+            runningMergeTasks.put(merge, this);
+            if (logger.isTraceEnabled()) {
+                logger.trace(
+                    "merge [{}] starting..., merging [{}] segments, [{}] docs, [{}] size, into [{}] estimated_size",
+                    getSegmentName(merge),
+                    merge.segments.size(),
+                    totalNumDocs,
+                    ByteSizeValue.ofBytes(totalSizeInBytes),
+                    ByteSizeValue.ofBytes(merge.estimatedMergeBytes)
+                );
+            }
+            try {
+                mergeSource.merge(merge);
+            } finally {
+                final long tookMS = TimeValue.nsecToMSec(System.nanoTime() - timeNS);
+
+                runningMergeTasks.remove(merge);
+                onGoingMerges.remove(onGoingMerge);
+
+                currentMerges.dec();
+                currentMergesNumDocs.dec(totalNumDocs);
+                currentMergesSizeInBytes.dec(totalSizeInBytes);
+
+                totalMergesNumDocs.inc(totalNumDocs);
+                totalMergesSizeInBytes.inc(totalSizeInBytes);
+                totalMerges.inc(tookMS);
+                final long stoppedMS = TimeValue.nsecToMSec(
+                    merge.getMergeProgress().getPauseTimes().get(MergePolicy.OneMergeProgress.PauseReason.STOPPED)
+                );
+                final long throttledMS = TimeValue.nsecToMSec(
+                    merge.getMergeProgress().getPauseTimes().get(MergePolicy.OneMergeProgress.PauseReason.PAUSED)
+                );
+                totalMergeStoppedTime.inc(stoppedMS);
+                totalMergeThrottledTime.inc(throttledMS);
+
+                final String message = String.format(
+                    Locale.ROOT,
+                    "merge segment [%s] done: took [%s], [%,.1f MB], [%,d docs], [%s queued], [%s stopped], [%s throttled]",
+                    getSegmentName(merge),
+                    TimeValue.timeValueMillis(tookMS),
+                    totalSizeInBytes / 1024f / 1024f,
+                    totalNumDocs,
+                    TimeValue.timeValueNanos(timeNS - queuedTimeNanos),
+                    TimeValue.timeValueMillis(stoppedMS),
+                    TimeValue.timeValueMillis(throttledMS)
+                );
+                if (tookMS > 20000) { // if more than 20 seconds, DEBUG log it
+                    logger.debug("{}", message);
+                } else if (logger.isTraceEnabled()) {
+                    logger.trace("{}", message);
+                }
+            }
+        }
+    }
+}
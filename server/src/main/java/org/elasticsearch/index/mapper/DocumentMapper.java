@@ -9,6 +9,7 @@
 package org.elasticsearch.index.mapper;
 
 import org.elasticsearch.common.compress.CompressedXContent;
+import org.elasticsearch.core.Nullable;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.IndexVersion;
 import org.elasticsearch.index.IndexVersions;
@@ -48,10 +49,25 @@ public class DocumentMapper {
         CompressedXContent source,
         IndexVersion version,
         MapperMetrics mapperMetrics
+    ) {
+        this(documentParser, mapping, source, version, mapperMetrics, null);
+    }
+
+    /**
+     * @param previousMappingLookup the lookup of the mapper whose mapping the given mapping was merged from, if any, so that the lookup of
+     *                              this mapper can be built incrementally
+     */
+    DocumentMapper(
+        DocumentParser documentParser,
+        Mapping mapping,
+        CompressedXContent source,
+        IndexVersion version,
+        MapperMetrics mapperMetrics,
+        @Nullable MappingLookup previousMappingLookup
     ) {
         this.documentParser = documentParser;
         this.type = mapping.getRoot().name();
-        this.mappingLookup = MappingLookup.fromMapping(mapping);
+        this.mappingLookup = MappingLookup.fromMapping(mapping, previousMappingLookup);
         this.mappingSource = source;
         this.mapperMetrics = mapperMetrics;
 
@@ -11,6 +11,7 @@ package org.elasticsearch.index.mapper;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.time.DateFormatter;
 import org.elasticsearch.index.IndexMode;
 import org.elasticsearch.index.IndexSettings;
@@ -119,6 +120,7 @@ public abstract class DocumentParserContext {
     private final SeqNoFieldMapper.SequenceIDFields seqID;
     private final Set<String> fieldsAppliedFromTemplates;
     private final Set<String> copyToFields;
+    private final Utf8ValueBuffer utf8ValueBuffer;
 
     // Indicates if the source for this context has been cloned and gets parsed multiple times.
     private boolean clonedSource;
@@ -141,6 +143,7 @@ public abstract class DocumentParserContext {
         Set<String> fieldsAppliedFromTemplates,
         Set<String> copyToFields,
         DynamicMapperSize dynamicMapperSize,
+        Utf8ValueBuffer utf8ValueBuffer,
         boolean clonedSource
     ) {
         this.mappingLookup = mappingLookup;
@@ -160,6 +163,7 @@ public abstract class DocumentParserContext {
         this.fieldsAppliedFromTemplates = fieldsAppliedFromTemplates;
         this.copyToFields = copyToFields;
         this.dynamicMappersSize = dynamicMapperSize;
+        this.utf8ValueBuffer = utf8ValueBuffer;
         this.clonedSource = clonedSource;
     }
 
@@ -182,6 +186,7 @@ public abstract class DocumentParserContext {
             in.fieldsAppliedFromTemplates,
             in.copyToFields,
             in.dynamicMappersSize,
+            in.utf8ValueBuffer,
             in.clonedSource
         );
     }
@@ -211,6 +216,7 @@ public abstract class DocumentParserContext {
             new HashSet<>(),
             new HashSet<>(),
             new DynamicMapperSize(),
+            new Utf8ValueBuffer(),
             false
         );
     }
@@ -295,6 +301,16 @@ public abstract class DocumentParserContext {
         }
     }
 
+    /**
+     * Encodes the current string value of the parser to UTF-8 without materializing it as a {@link String}. The returned bytes are
+     * shared with other values of the document and must not be modified.
+     */
+    final BytesRef utf8TextValue() throws IOException {
+        final XContentParser parser = parser();
+        assert parser.hasTextCharacters();
+        return utf8ValueBuffer.encode(parser.textCharacters(), parser.textOffset(), parser.textLength());
+    }
+
     public final Field version() {
         return this.version;
     }
@@ -56,12 +56,7 @@ final class FieldTypeLookup {
         final Map<String, Set<String>> fieldToCopiedFields = new HashMap<>();
         for (FieldMapper fieldMapper : fieldMappers) {
             String fieldName = fieldMapper.name();
-            MappedFieldType fieldType = fieldMapper.fieldType();
-            fullNameToFieldType.put(fieldType.name(), fieldType);
-            fieldMapper.sourcePathUsedBy().forEachRemaining(mapper -> fullSubfieldNameToParentPath.put(mapper.name(), fieldName));
-            if (fieldType instanceof DynamicFieldType) {
-                dynamicFieldTypes.put(fieldType.name(), (DynamicFieldType) fieldType);
-            }
+            addFieldType(fieldMapper, fullNameToFieldType, fullSubfieldNameToParentPath, dynamicFieldTypes);
             for (String targetField : fieldMapper.copyTo().copyToFields()) {
                 Set<String> sourcePath = fieldToCopiedFields.get(targetField);
                 if (sourcePath == null) {
@@ -73,11 +68,7 @@ final class FieldTypeLookup {
             }
         }
 
-        int maxParentPathDots = 0;
-        for (String dynamicRoot : dynamicFieldTypes.keySet()) {
-            maxParentPathDots = Math.max(maxParentPathDots, dotCount(dynamicRoot));
-        }
-        this.maxParentPathDots = maxParentPathDots;
+        this.maxParentPathDots = maxParentPathDots(dynamicFieldTypes);
 
         for (FieldAliasMapper fieldAliasMapper : fieldAliasMappers) {
             String aliasName = fieldAliasMapper.name();
@@ -134,6 +125,50 @@ final class FieldTypeLookup {
         this.fieldToCopiedFields = Map.copyOf(fieldToCopiedFields);
     }
 
+    /**
+     * Creates a lookup that holds the field types of the given lookup and those of the given field mappers, which must be new fields that
+     * don't copy their values to other fields. The given lookup must not contain field aliases, pass-through fields or runtime fields,
+     * since those could refer to or shadow the new fields.
+     */
+    FieldTypeLookup(FieldTypeLookup previous, Collection<FieldMapper> newFieldMappers) {
+        final Map<String, MappedFieldType> fullNameToFieldType = new HashMap<>(previous.fullNameToFieldType);
+        final Map<String, String> fullSubfieldNameToParentPath = new HashMap<>(previous.fullSubfieldNameToParentPath);
+        final Map<String, DynamicFieldType> dynamicFieldTypes = new HashMap<>(previous.dynamicFieldTypes);
+        for (FieldMapper fieldMapper : newFieldMappers) {
+            assert previous.fullNameToFieldType.containsKey(fieldMapper.name()) == false : fieldMapper.name() + " is not a new field";
+            assert fieldMapper.copyTo().copyToFields().isEmpty() : fieldMapper.name() + " copies its values to other fields";
+            addFieldType(fieldMapper, fullNameToFieldType, fullSubfieldNameToParentPath, dynamicFieldTypes);
+        }
+        this.maxParentPathDots = maxParentPathDots(dynamicFieldTypes);
+        this.fullNameToFieldType = Map.copyOf(fullNameToFieldType);
+        this.fullSubfieldNameToParentPath = Map.copyOf(fullSubfieldNameToParentPath);
+        this.dynamicFieldTypes = Map.copyOf(dynamicFieldTypes);
+        this.fieldToCopiedFields = previous.fieldToCopiedFields;
+    }
+
+    private static void addFieldType(
+        FieldMapper fieldMapper,
+        Map<String, MappedFieldType> fullNameToFieldType,
+        Map<String, String> fullSubfieldNameToParentPath,
+        Map<String, DynamicFieldType> dynamicFieldTypes
+    ) {
+        String fieldName = fieldMapper.name();
+        MappedFieldType fieldType = fieldMapper.fieldType();
+        fullNameToFieldType.put(fieldType.name(), fieldType);
+        fieldMapper.sourcePathUsedBy().forEachRemaining(mapper -> fullSubfieldNameToParentPath.put(mapper.name(), fieldName));
+        if (fieldType instanceof DynamicFieldType) {
+            dynamicFieldTypes.put(fieldType.name(), (DynamicFieldType) fieldType);
+        }
+    }
+
+    private static int maxParentPathDots(Map<String, DynamicFieldType> dynamicFieldTypes) {
+        int maxParentPathDots = 0;
+        for (String dynamicRoot : dynamicFieldTypes.keySet()) {
+            maxParentPathDots = Math.max(maxParentPathDots, dotCount(dynamicRoot));
+        }
+        return maxParentPathDots;
+    }
+
     public static int dotCount(String path) {
         int dotCount = 0;
         for (int i = 0; i < path.length(); i++) {
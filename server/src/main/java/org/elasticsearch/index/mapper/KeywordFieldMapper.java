@@ -63,6 +63,7 @@ import org.elasticsearch.search.runtime.StringScriptFieldRegexpQuery;
 import org.elasticsearch.search.runtime.StringScriptFieldTermQuery;
 import org.elasticsearch.search.runtime.StringScriptFieldWildcardQuery;
 import org.elasticsearch.xcontent.XContentBuilder;
+import org.elasticsearch.xcontent.XContentParser;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
@@ -887,7 +888,18 @@ public final class KeywordFieldMapper extends FieldMapper {
 
     @Override
     protected void parseCreateField(DocumentParserContext context) throws IOException {
-        final String value = context.parser().textOrNull();
+        final XContentParser parser = context.parser();
+        if (parser.currentToken() == XContentParser.Token.VALUE_STRING
+            && parser.hasTextCharacters()
+            && fieldType().normalizer() == Lucene.KEYWORD_ANALYZER
+            && parser.textLength() <= fieldType().ignoreAbove()) {
+            // fast path for values that are indexed as they are, encode the characters of the parser without going through a String
+            if (isIndexedOrStored()) {
+                indexValue(context, context.utf8TextValue());
+            }
+            return;
+        }
+        final String value = parser.textOrNull();
         indexValue(context, value == null ? fieldType().nullValue : value);
     }
 
@@ -906,7 +918,7 @@ public final class KeywordFieldMapper extends FieldMapper {
             return;
         }
         // if field is disabled, skip indexing
-        if ((fieldType.indexOptions() == IndexOptions.NONE) && (fieldType.stored() == false) && (fieldType().hasDocValues() == false)) {
+        if (isIndexedOrStored() == false) {
             return;
         }
 
@@ -922,8 +934,14 @@ public final class KeywordFieldMapper extends FieldMapper {
         value = normalizeValue(fieldType().normalizer(), name(), value);
 
         // convert to utf8 only once before feeding postings/dv/stored fields
-        final BytesRef binaryValue = new BytesRef(value);
+        indexValue(context, new BytesRef(value));
+    }
+
+    private boolean isIndexedOrStored() {
+        return fieldType.indexOptions() != IndexOptions.NONE || fieldType.stored() || fieldType().hasDocValues();
+    }
 
+    private void indexValue(DocumentParserContext context, BytesRef binaryValue) {
         if (fieldType().isDimension()) {
             context.getDimensions().addString(fieldType().name(), binaryValue).validate(context.indexSettings());
         }
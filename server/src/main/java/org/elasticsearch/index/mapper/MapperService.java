@@ -40,6 +40,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -315,12 +316,11 @@ public class MapperService extends AbstractIndexComponent implements Closeable {
         if (newMappingMetadata != null) {
             String type = newMappingMetadata.type();
             CompressedXContent incomingMappingSource = newMappingMetadata.source();
-            Mapping incomingMapping = parseMapping(type, MergeReason.MAPPING_UPDATE, incomingMappingSource);
             DocumentMapper previousMapper;
             synchronized (this) {
                 previousMapper = this.mapper;
-                assert assertRefreshIsNotNeeded(previousMapper, type, incomingMapping);
-                this.mapper = newDocumentMapper(incomingMapping, MergeReason.MAPPING_RECOVERY, incomingMappingSource);
+                assert assertRefreshIsNotNeeded(previousMapper, type, incomingMappingSource);
+                this.mapper = newDocumentMapperFromClusterState(previousMapper, type, incomingMappingSource);
                 this.mappingVersion = newIndexMetadata.getMappingVersion();
             }
             String op = previousMapper != null ? "updated" : "added";
@@ -334,7 +334,131 @@ public class MapperService extends AbstractIndexComponent implements Closeable {
         }
     }
 
-    private boolean assertRefreshIsNotNeeded(DocumentMapper currentMapper, String type, Mapping incomingMapping) {
+    /**
+     * Builds the mapper for a mapping that the master already merged. Parsing the whole mapping creates new mappers for all fields, which
+     * share nothing with the current mapping, so the lookup of the current mapper can't be reused for them. The mappings in the cluster
+     * state usually only add fields to the current mapping though, in which case only the added fields are parsed and merged into the
+     * current mapping like a mapping update, which shares the unchanged mappers and lets the lookup be updated incrementally.
+     */
+    private DocumentMapper newDocumentMapperFromClusterState(
+        @Nullable DocumentMapper currentMapper,
+        String type,
+        CompressedXContent incomingMappingSource
+    ) {
+        if (currentMapper != null) {
+            if (currentMapper.mappingSource().equals(incomingMappingSource)) {
+                return currentMapper;
+            }
+            Map<String, Object> additions = mappingAdditions(
+                MappingParser.convertToMap(currentMapper.mappingSource()),
+                MappingParser.convertToMap(incomingMappingSource)
+            );
+            if (additions != null) {
+                try {
+                    Mapping update = parseMapping(type, MergeReason.MAPPING_UPDATE, additions);
+                    Mapping mapping = mergeMappings(currentMapper, update, MergeReason.MAPPING_RECOVERY, indexSettings);
+                    if (mapping.toCompressedXContent().equals(incomingMappingSource)) {
+                        return newDocumentMapper(mapping, MergeReason.MAPPING_RECOVERY, incomingMappingSource, currentMapper.mappers());
+                    }
+                    // e.g. the merge applied defaults or normalized parameters differently than the master did
+                    logger.debug("[{}] merging the additions of the mapping resulted in a different mapping, parsing it in full", index());
+                } catch (IllegalArgumentException | MapperException e) {
+                    logger.debug(() -> "[" + index() + "] failed to merge the additions of the mapping into the current mapping", e);
+                }
+            }
+        }
+        Mapping incomingMapping = parseMapping(type, MergeReason.MAPPING_UPDATE, incomingMappingSource);
+        return newDocumentMapper(incomingMapping, MergeReason.MAPPING_RECOVERY, incomingMappingSource, null);
+    }
+
+    /**
+     * Returns the fields and objects that the incoming mapping adds to the current one, along with the objects that hold them, or
+     * {@code null} if the incoming mapping differs from the current one in another way, for instance if it changes a field.
+     */
+    @Nullable
+    static Map<String, Object> mappingAdditions(Map<String, Object> currentMapping, Map<String, Object> incomingMapping) {
+        if (currentMapping.size() != 1 || currentMapping.keySet().equals(incomingMapping.keySet()) == false) {
+            return null;
+        }
+        String type = currentMapping.keySet().iterator().next();
+        Map<String, Object> currentRoot = asMap(currentMapping.get(type));
+        Map<String, Object> incomingRoot = asMap(incomingMapping.get(type));
+        if (currentRoot == null || incomingRoot == null) {
+            return null;
+        }
+        Map<String, Object> rootAdditions = objectAdditions(currentRoot, incomingRoot, true);
+        return rootAdditions == null ? null : Map.of(type, rootAdditions);
+    }
+
+    @Nullable
+    private static Map<String, Object> objectAdditions(
+        Map<String, Object> currentObject,
+        Map<String, Object> incomingObject,
+        boolean root
+    ) {
+        Set<String> keys = new HashSet<>(currentObject.keySet());
+        keys.addAll(incomingObject.keySet());
+        Map<String, Object> additions = new HashMap<>();
+        for (String key : keys) {
+            Object currentValue = currentObject.get(key);
+            Object incomingValue = incomingObject.get(key);
+            if (key.equals("properties")) {
+                Map<String, Object> currentProperties = currentValue == null ? Map.of() : asMap(currentValue);
+                Map<String, Object> incomingProperties = asMap(incomingValue);
+                if (currentProperties == null || incomingProperties == null) {
+                    return null;
+                }
+                Map<String, Object> propertiesAdditions = propertiesAdditions(currentProperties, incomingProperties);
+                if (propertiesAdditions == null) {
+                    return null;
+                }
+                if (propertiesAdditions.isEmpty() == false) {
+                    additions.put(key, propertiesAdditions);
+                }
+            } else if (Objects.equals(currentValue, incomingValue) == false) {
+                return null;
+            } else if (root == false) {
+                // objects keep their parameters, such as their type, so that their additions are parsed and merged like them
+                additions.put(key, incomingValue);
+            }
+        }
+        return additions;
+    }
+
+    @Nullable
+    private static Map<String, Object> propertiesAdditions(Map<String, Object> currentProperties, Map<String, Object> incomingProperties) {
+        if (incomingProperties.keySet().containsAll(currentProperties.keySet()) == false) {
+            return null;
+        }
+        Map<String, Object> additions = new HashMap<>();
+        for (Map.Entry<String, Object> entry : incomingProperties.entrySet()) {
+            Object currentValue = currentProperties.get(entry.getKey());
+            if (currentValue == null) {
+                additions.put(entry.getKey(), entry.getValue());
+            } else if (currentValue.equals(entry.getValue()) == false) {
+                // only objects can differ by additions, any difference in the parameters of a field makes this fall back
+                Map<String, Object> currentMapper = asMap(currentValue);
+                Map<String, Object> incomingMapper = asMap(entry.getValue());
+                Map<String, Object> mapperAdditions = currentMapper == null || incomingMapper == null
+                    ? null
+                    : objectAdditions(currentMapper, incomingMapper, false);
+                if (mapperAdditions == null) {
+                    return null;
+                }
+                additions.put(entry.getKey(), mapperAdditions);
+            }
+        }
+        return additions;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable
+    private static Map<String, Object> asMap(Object value) {
+        return value instanceof Map<?, ?> ? (Map<String, Object>) value : null;
+    }
+
+    private boolean assertRefreshIsNotNeeded(DocumentMapper currentMapper, String type, CompressedXContent mappingSource) {
+        Mapping incomingMapping = parseMapping(type, MergeReason.MAPPING_UPDATE, mappingSource);
         Mapping mergedMapping = mergeMappings(currentMapper, incomingMapping, MergeReason.MAPPING_RECOVERY, indexSettings);
         // skip the runtime section or removed runtime fields will make the assertion fail
         ToXContent.MapParams params = new ToXContent.MapParams(Collections.singletonMap(RootObjectMapper.TOXCONTENT_SKIP_RUNTIME, "true"));
@@ -545,7 +669,12 @@ public class MapperService extends AbstractIndexComponent implements Closeable {
         Mapping mapping = mergeMappings(this.mapper, incomingMapping, reason, this.indexSettings);
         // TODO: In many cases the source here is equal to mappingSource so we need not serialize again.
         // We should identify these cases reliably and save expensive serialization here
-        DocumentMapper newMapper = newDocumentMapper(mapping, reason, mapping.toCompressedXContent());
+        DocumentMapper newMapper = newDocumentMapper(
+            mapping,
+            reason,
+            mapping.toCompressedXContent(),
+            this.mapper == null ? null : this.mapper.mappers()
+        );
         if (reason == MergeReason.MAPPING_AUTO_UPDATE_PREFLIGHT) {
             return newMapper;
         }
@@ -554,8 +683,24 @@ public class MapperService extends AbstractIndexComponent implements Closeable {
         return newMapper;
     }
 
-    private DocumentMapper newDocumentMapper(Mapping mapping, MergeReason reason, CompressedXContent mappingSource) {
-        DocumentMapper newMapper = new DocumentMapper(documentParser, mapping, mappingSource, indexVersionCreated, mapperMetrics);
+    /**
+     * @param previousMappingLookup the lookup of the mapping that the given mapping was merged into, which shares the unchanged mappers
+     *                              with it and lets the lookup be built incrementally, or {@code null} to build the lookup from scratch
+     */
+    private DocumentMapper newDocumentMapper(
+        Mapping mapping,
+        MergeReason reason,
+        CompressedXContent mappingSource,
+        @Nullable MappingLookup previousMappingLookup
+    ) {
+        DocumentMapper newMapper = new DocumentMapper(
+            documentParser,
+            mapping,
+            mappingSource,
+            indexVersionCreated,
+            mapperMetrics,
+            previousMappingLookup
+        );
         newMapper.validate(indexSettings, reason != MergeReason.MAPPING_RECOVERY);
         return newMapper;
     }
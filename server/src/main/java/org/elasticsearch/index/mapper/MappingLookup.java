@@ -11,6 +11,7 @@ package org.elasticsearch.index.mapper;
 import org.apache.lucene.codecs.PostingsFormat;
 import org.elasticsearch.cluster.metadata.DataStream;
 import org.elasticsearch.cluster.metadata.InferenceFieldMetadata;
+import org.elasticsearch.core.Nullable;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.analysis.IndexAnalyzers;
 import org.elasticsearch.index.analysis.NamedAnalyzer;
@@ -59,6 +60,8 @@ public final class MappingLookup {
     private final Mapping mapping;
     private final Set<String> completionFields;
     private final int totalFieldsCount;
+    // whether a lookup for a mapping that only adds fields to this one can be built from this lookup
+    private final boolean incrementallyUpdatable;
 
     /**
      * Creates a new {@link MappingLookup} instance by parsing the provided mapping and extracting its field definitions.
@@ -82,6 +85,113 @@ public final class MappingLookup {
         return new MappingLookup(mapping, newFieldMappers, newObjectMappers, newFieldAliasMappers, newPassThroughMappers);
     }
 
+    /**
+     * Creates a new {@link MappingLookup} instance for the provided mapping, reusing the given lookup of the mapping it was merged from.
+     * Merges usually only add a few fields to a mapping, and the mappers that didn't change are shared with the previous mapping, so the
+     * new fields can be found without walking the whole mapping and added to copies of the structures of the previous lookup. This falls
+     * back to building the lookup from scratch if the merge changed or removed mappers, or if the mappings use features that make the
+     * lookup of a field depend on other fields, such as field aliases, pass-through objects, runtime fields, nested objects or copy_to.
+     *
+     * @param mapping  the mapping source
+     * @param previous the lookup of the mapping that the provided mapping was merged from
+     * @return the newly created lookup instance
+     */
+    public static MappingLookup fromMapping(Mapping mapping, @Nullable MappingLookup previous) {
+        if (previous != null
+            && previous.incrementallyUpdatable
+            && mapping.getRoot().runtimeFields().isEmpty()
+            && sameMetadataMappers(previous.mapping, mapping)) {
+            List<FieldMapper> newFieldMappers = new ArrayList<>();
+            List<ObjectMapper> updatedObjectMappers = new ArrayList<>();
+            if (collectAdditions(previous, previous.mapping.getRoot(), mapping.getRoot(), newFieldMappers, updatedObjectMappers)) {
+                return new MappingLookup(previous, mapping, newFieldMappers, updatedObjectMappers);
+            }
+        }
+        return fromMapping(mapping);
+    }
+
+    private static boolean sameMetadataMappers(Mapping previous, Mapping mapping) {
+        MetadataFieldMapper[] previousMetadataMappers = previous.getSortedMetadataMappers();
+        MetadataFieldMapper[] metadataMappers = mapping.getSortedMetadataMappers();
+        if (previousMetadataMappers.length != metadataMappers.length) {
+            return false;
+        }
+        for (int i = 0; i < metadataMappers.length; i++) {
+            if (previousMetadataMappers[i] != metadataMappers[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collects the mappers of the given object that are not part of the previous lookup.
+     *
+     * @return {@code false} if the lookup can't be updated incrementally because the object changed in another way than by adding
+     *         plain fields and objects
+     */
+    private static boolean collectAdditions(
+        MappingLookup previous,
+        @Nullable ObjectMapper previousObject,
+        ObjectMapper object,
+        Collection<FieldMapper> newFieldMappers,
+        Collection<ObjectMapper> updatedObjectMappers
+    ) {
+        if (previousObject != null) {
+            for (String name : previousObject.mappers.keySet()) {
+                if (object.mappers.containsKey(name) == false) {
+                    // the mapper was removed, e.g. flattened because of subobjects: false
+                    return false;
+                }
+            }
+        }
+        for (Mapper child : object.mappers.values()) {
+            Mapper previousChild = previousObject == null ? null : previousObject.mappers.get(child.simpleName());
+            if (child == previousChild) {
+                continue;
+            }
+            if (child instanceof PassThroughObjectMapper || child instanceof NestedObjectMapper) {
+                return false;
+            }
+            if (child instanceof ObjectMapper childObject) {
+                if (previousChild != null && previousChild instanceof ObjectMapper == false) {
+                    return false;
+                }
+                if (previousChild == null && previous.isMapped(childObject.fullPath())) {
+                    return false;
+                }
+                updatedObjectMappers.add(childObject);
+                if (collectAdditions(previous, (ObjectMapper) previousChild, childObject, newFieldMappers, updatedObjectMappers) == false) {
+                    return false;
+                }
+            } else if (child instanceof FieldMapper fieldMapper) {
+                if (previousChild != null || collectNewField(previous, fieldMapper, newFieldMappers) == false) {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean collectNewField(MappingLookup previous, FieldMapper fieldMapper, Collection<FieldMapper> newFieldMappers) {
+        if (fieldMapper.copyTo().copyToFields().isEmpty() == false || previous.isMapped(fieldMapper.name())) {
+            return false;
+        }
+        newFieldMappers.add(fieldMapper);
+        for (Mapper subfield : fieldMapper) {
+            if (subfield instanceof FieldMapper == false || collectNewField(previous, (FieldMapper) subfield, newFieldMappers) == false) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isMapped(String name) {
+        return fieldMappers.containsKey(name) || objectMappers.containsKey(name);
+    }
+
     private static void collect(
         Mapper mapper,
         Collection<ObjectMapper> objectMappers,
@@ -213,10 +323,71 @@ public final class MappingLookup {
         this.completionFields = Set.copyOf(completionFields);
         this.indexTimeScriptMappers = List.copyOf(indexTimeScriptMappers);
 
+        this.incrementallyUpdatable = aliasMappers.isEmpty() && passThroughMappers.isEmpty() && runtimeFields.isEmpty();
+
         runtimeFields.stream().flatMap(RuntimeField::asMappedFieldTypes).map(MappedFieldType::name).forEach(this::validateDoesNotShadow);
         assert assertMapperNamesInterned(this.fieldMappers, this.objectMappers);
     }
 
+    private MappingLookup(
+        MappingLookup previous,
+        Mapping mapping,
+        Collection<FieldMapper> newFieldMappers,
+        Collection<ObjectMapper> updatedObjectMappers
+    ) {
+        assert previous.incrementallyUpdatable;
+        this.totalFieldsCount = mapping.getRoot().getTotalFieldsCount();
+        this.mapping = mapping;
+        Map<String, Mapper> fieldMappers = new HashMap<>(previous.fieldMappers);
+        Map<String, ObjectMapper> objects = new HashMap<>(previous.objectMappers);
+        for (ObjectMapper mapper : updatedObjectMappers) {
+            assert mapper.isNested() == false : "nested objects are not updated incrementally";
+            objects.put(mapper.fullPath(), mapper);
+        }
+        // nested objects only change when the lookup is built from scratch
+        this.nestedLookup = previous.nestedLookup;
+
+        final Map<String, NamedAnalyzer> indexAnalyzersMap = new HashMap<>(previous.indexAnalyzersMap);
+        final Set<String> completionFields = new HashSet<>(previous.completionFields);
+        final List<FieldMapper> indexTimeScriptMappers = new ArrayList<>(previous.indexTimeScriptMappers);
+        for (FieldMapper mapper : newFieldMappers) {
+            if (objects.containsKey(mapper.name())) {
+                throw new MapperParsingException("Field [" + mapper.name() + "] is defined both as an object and a field");
+            }
+            if (fieldMappers.put(mapper.name(), mapper) != null) {
+                throw new MapperParsingException("Field [" + mapper.name() + "] is defined more than once");
+            }
+            indexAnalyzersMap.putAll(mapper.indexAnalyzers());
+            if (mapper.hasScript()) {
+                indexTimeScriptMappers.add(mapper);
+            }
+            if (mapper instanceof CompletionFieldMapper) {
+                completionFields.add(mapper.name());
+            }
+        }
+
+        this.fieldTypeLookup = new FieldTypeLookup(previous.fieldTypeLookup, newFieldMappers);
+        // there are no runtime fields
+        this.indexTimeLookup = fieldTypeLookup;
+
+        Map<String, InferenceFieldMetadata> inferenceFields = new HashMap<>(previous.inferenceFields);
+        for (FieldMapper mapper : newFieldMappers) {
+            if (mapper instanceof InferenceFieldMapper inferenceFieldMapper) {
+                inferenceFields.put(mapper.name(), inferenceFieldMapper.getMetadata(fieldTypeLookup.sourcePaths(mapper.name())));
+            }
+        }
+        this.inferenceFields = Map.copyOf(inferenceFields);
+
+        this.fieldMappers = Map.copyOf(fieldMappers);
+        this.objectMappers = Map.copyOf(objects);
+        this.runtimeFieldMappersCount = 0;
+        this.indexAnalyzersMap = Map.copyOf(indexAnalyzersMap);
+        this.completionFields = Set.copyOf(completionFields);
+        this.indexTimeScriptMappers = List.copyOf(indexTimeScriptMappers);
+        this.incrementallyUpdatable = true;
+        assert assertMapperNamesInterned(this.fieldMappers, this.objectMappers);
+    }
+
     private static boolean assertMapperNamesInterned(Map<String, Mapper> mappers, Map<String, ObjectMapper> objectMappers) {
         mappers.forEach(MappingLookup::assertNamesInterned);
         objectMappers.forEach(MappingLookup::assertNamesInterned);
@@ -0,0 +1,74 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.index.mapper;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.UnicodeUtil;
+
+/**
+ * Encodes the string values of a document to UTF-8 into shared pages, so that a value read from the characters of the parser doesn't
+ * need a {@link String} and a {@code byte[]} of its own. The returned {@link BytesRef}s stay valid for as long as the buffer is
+ * referenced since pages are never reused, so a buffer must only be used for a single document.
+ */
+final class Utf8ValueBuffer {
+
+    static final int PAGE_SIZE = 4096;
+
+    private byte[] page;
+    private int pageOffset;
+
+    /**
+     * Encodes the given characters to UTF-8, replacing unpaired surrogates with {@code U+FFFD} like {@link UnicodeUtil} does.
+     */
+    BytesRef encode(char[] chars, int offset, int length) {
+        final int maxLength = UnicodeUtil.maxUTF8Length(length);
+        if (maxLength > PAGE_SIZE / 2) {
+            // large values get an array of their own to keep the pages densely packed
+            final byte[] bytes = new byte[maxLength];
+            return new BytesRef(bytes, 0, encode(chars, offset, length, bytes, 0));
+        }
+        if (page == null || page.length - pageOffset < maxLength) {
+            page = new byte[PAGE_SIZE];
+            pageOffset = 0;
+        }
+        final int start = pageOffset;
+        pageOffset = encode(chars, offset, length, page, start);
+        return new BytesRef(page, start, pageOffset - start);
+    }
+
+    private static int encode(char[] chars, int offset, int length, byte[] out, int outOffset) {
+        final int end = offset + length;
+        int upto = outOffset;
+        for (int i = offset; i < end; i++) {
+            final int code = chars[i];
+            if (code < 0x80) {
+                out[upto++] = (byte) code;
+            } else if (code < 0x800) {
+                out[upto++] = (byte) (0xC0 | (code >> 6));
+                out[upto++] = (byte) (0x80 | (code & 0x3F));
+            } else if (code < 0xD800 || code > 0xDFFF) {
+                out[upto++] = (byte) (0xE0 | (code >> 12));
+                out[upto++] = (byte) (0x80 | ((code >> 6) & 0x3F));
+                out[upto++] = (byte) (0x80 | (code & 0x3F));
+            } else if (code < 0xDC00 && i < end - 1 && chars[i + 1] >= 0xDC00 && chars[i + 1] <= 0xDFFF) {
+                final int codePoint = Character.toCodePoint((char) code, chars[++i]);
+                out[upto++] = (byte) (0xF0 | (codePoint >> 18));
+                out[upto++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                out[upto++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                out[upto++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                // unpaired surrogate
+                out[upto++] = (byte) 0xEF;
+                out[upto++] = (byte) 0xBF;
+                out[upto++] = (byte) 0xBD;
+            }
+        }
+        return upto;
+    }
+}
@@ -8,6 +8,7 @@
 
 package org.elasticsearch.index.merge;
 
+import org.elasticsearch.TransportVersions;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
@@ -37,6 +38,12 @@ public class MergeStats implements Writeable, ToXContentFragment {
 
     private long totalBytesPerSecAutoThrottle;
 
+    /** The number of merges that wait for a thread of the merge thread pool of the node. */
+    private long currentQueued;
+
+    /** Total millis that merges waited for a thread of the merge thread pool of the node. */
+    private long totalQueuedTimeInMillis;
+
     public MergeStats() {
 
     }
@@ -53,6 +60,10 @@ public class MergeStats implements Writeable, ToXContentFragment {
         totalStoppedTimeInMillis = in.readVLong();
         totalThrottledTimeInMillis = in.readVLong();
         totalBytesPerSecAutoThrottle = in.readVLong();
+        if (in.getTransportVersion().onOrAfter(TransportVersions.MERGE_STATS_QUEUED)) {
+            currentQueued = in.readVLong();
+            totalQueuedTimeInMillis = in.readVLong();
+        }
     }
 
     @Override
@@ -69,7 +80,9 @@ public class MergeStats implements Writeable, ToXContentFragment {
             && currentSizeInBytes == that.currentSizeInBytes
             && totalStoppedTimeInMillis == that.totalStoppedTimeInMillis
             && totalThrottledTimeInMillis == that.totalThrottledTimeInMillis
-            && totalBytesPerSecAutoThrottle == that.totalBytesPerSecAutoThrottle;
+            && totalBytesPerSecAutoThrottle == that.totalBytesPerSecAutoThrottle
+            && currentQueued == that.currentQueued
+            && totalQueuedTimeInMillis == that.totalQueuedTimeInMillis;
     }
 
     @Override
@@ -84,7 +97,9 @@ public class MergeStats implements Writeable, ToXContentFragment {
             currentSizeInBytes,
             totalStoppedTimeInMillis,
             totalThrottledTimeInMillis,
-            totalBytesPerSecAutoThrottle
+            totalBytesPerSecAutoThrottle,
+            currentQueued,
+            totalQueuedTimeInMillis
         );
     }
 
@@ -117,6 +132,11 @@ public class MergeStats implements Writeable, ToXContentFragment {
         }
     }
 
+    public void addQueued(long currentQueued, long queuedTimeMillis) {
+        this.currentQueued += currentQueued;
+        this.totalQueuedTimeInMillis += queuedTimeMillis;
+    }
+
     public void add(MergeStats mergeStats) {
         if (mergeStats == null) {
             return;
@@ -124,6 +144,7 @@ public class MergeStats implements Writeable, ToXContentFragment {
         this.current += mergeStats.current;
         this.currentNumDocs += mergeStats.currentNumDocs;
         this.currentSizeInBytes += mergeStats.currentSizeInBytes;
+        this.currentQueued += mergeStats.currentQueued;
 
         addTotals(mergeStats);
     }
@@ -138,6 +159,7 @@ public class MergeStats implements Writeable, ToXContentFragment {
         this.totalSizeInBytes += mergeStats.totalSizeInBytes;
         this.totalStoppedTimeInMillis += mergeStats.totalStoppedTimeInMillis;
         this.totalThrottledTimeInMillis += mergeStats.totalThrottledTimeInMillis;
+        this.totalQueuedTimeInMillis += mergeStats.totalQueuedTimeInMillis;
         if (this.totalBytesPerSecAutoThrottle == Long.MAX_VALUE || mergeStats.totalBytesPerSecAutoThrottle == Long.MAX_VALUE) {
             this.totalBytesPerSecAutoThrottle = Long.MAX_VALUE;
         } else {
@@ -229,18 +251,41 @@ public class MergeStats implements Writeable, ToXContentFragment {
         return ByteSizeValue.ofBytes(currentSizeInBytes);
     }
 
+    /**
+     * The current number of merges waiting for a thread of the merge thread pool of the node.
+     */
+    public long getCurrentQueued() {
+        return this.currentQueued;
+    }
+
+    /**
+     * The total time merges waited for a thread of the merge thread pool of the node.
+     */
+    public long getTotalQueuedTimeInMillis() {
+        return this.totalQueuedTimeInMillis;
+    }
+
+    /**
+     * The total time merges waited for a thread of the merge thread pool of the node.
+     */
+    public TimeValue getTotalQueuedTime() {
+        return new TimeValue(totalQueuedTimeInMillis);
+    }
+
     @Override
     public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
         builder.startObject(Fields.MERGES);
         builder.field(Fields.CURRENT, current);
         builder.field(Fields.CURRENT_DOCS, currentNumDocs);
         builder.humanReadableField(Fields.CURRENT_SIZE_IN_BYTES, Fields.CURRENT_SIZE, getCurrentSize());
+        builder.field(Fields.CURRENT_QUEUED, currentQueued);
         builder.field(Fields.TOTAL, total);
         builder.humanReadableField(Fields.TOTAL_TIME_IN_MILLIS, Fields.TOTAL_TIME, getTotalTime());
         builder.field(Fields.TOTAL_DOCS, totalNumDocs);
         builder.humanReadableField(Fields.TOTAL_SIZE_IN_BYTES, Fields.TOTAL_SIZE, getTotalSize());
         builder.humanReadableField(Fields.TOTAL_STOPPED_TIME_IN_MILLIS, Fields.TOTAL_STOPPED_TIME, getTotalStoppedTime());
         builder.humanReadableField(Fields.TOTAL_THROTTLED_TIME_IN_MILLIS, Fields.TOTAL_THROTTLED_TIME, getTotalThrottledTime());
+        builder.humanReadableField(Fields.TOTAL_QUEUED_TIME_IN_MILLIS, Fields.TOTAL_QUEUED_TIME, getTotalQueuedTime());
         if (builder.humanReadable() && totalBytesPerSecAutoThrottle != -1) {
             builder.field(Fields.TOTAL_THROTTLE_BYTES_PER_SEC).value(ByteSizeValue.ofBytes(totalBytesPerSecAutoThrottle).toString());
         }
@@ -255,6 +300,7 @@ public class MergeStats implements Writeable, ToXContentFragment {
         static final String CURRENT_DOCS = "current_docs";
         static final String CURRENT_SIZE = "current_size";
         static final String CURRENT_SIZE_IN_BYTES = "current_size_in_bytes";
+        static final String CURRENT_QUEUED = "current_queued";
         static final String TOTAL = "total";
         static final String TOTAL_TIME = "total_time";
         static final String TOTAL_TIME_IN_MILLIS = "total_time_in_millis";
@@ -262,6 +308,8 @@ public class MergeStats implements Writeable, ToXContentFragment {
         static final String TOTAL_STOPPED_TIME_IN_MILLIS = "total_stopped_time_in_millis";
         static final String TOTAL_THROTTLED_TIME = "total_throttled_time";
         static final String TOTAL_THROTTLED_TIME_IN_MILLIS = "total_throttled_time_in_millis";
+        static final String TOTAL_QUEUED_TIME = "total_queued_time";
+        static final String TOTAL_QUEUED_TIME_IN_MILLIS = "total_queued_time_in_millis";
         static final String TOTAL_DOCS = "total_docs";
         static final String TOTAL_SIZE = "total_size";
         static final String TOTAL_SIZE_IN_BYTES = "total_size_in_bytes";
@@ -282,5 +330,9 @@ public class MergeStats implements Writeable, ToXContentFragment {
         out.writeVLong(totalStoppedTimeInMillis);
         out.writeVLong(totalThrottledTimeInMillis);
         out.writeVLong(totalBytesPerSecAutoThrottle);
+        if (out.getTransportVersion().onOrAfter(TransportVersions.MERGE_STATS_QUEUED)) {
+            out.writeVLong(currentQueued);
+            out.writeVLong(totalQueuedTimeInMillis);
+        }
     }
 }
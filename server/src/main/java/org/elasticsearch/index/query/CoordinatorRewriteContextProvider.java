@@ -10,10 +10,12 @@ package org.elasticsearch.index.query;
 
 import org.elasticsearch.client.internal.Client;
 import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.ShardTimestampRanges;
 import org.elasticsearch.core.Nullable;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.mapper.DateFieldMapper;
 import org.elasticsearch.index.shard.IndexLongFieldRange;
+import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.xcontent.XContentParserConfiguration;
 
 import java.util.function.Function;
@@ -43,6 +45,20 @@ public class CoordinatorRewriteContextProvider {
 
     @Nullable
     public CoordinatorRewriteContext getCoordinatorRewriteContext(Index index) {
+        return getCoordinatorRewriteContext(index, -1);
+    }
+
+    /**
+     * Like {@link #getCoordinatorRewriteContext(Index)}, but if the timestamp range of the whole index is unknown falls back to the range
+     * that the given shard reported to the master, see {@link ShardTimestampRanges}.
+     */
+    @Nullable
+    public CoordinatorRewriteContext getCoordinatorRewriteContext(ShardId shardId) {
+        return getCoordinatorRewriteContext(shardId.getIndex(), shardId.id());
+    }
+
+    @Nullable
+    private CoordinatorRewriteContext getCoordinatorRewriteContext(Index index, int shardId) {
         var clusterState = clusterStateSupplier.get();
         var indexMetadata = clusterState.metadata().index(index);
 
@@ -56,6 +72,12 @@ public class CoordinatorRewriteContextProvider {
         IndexLongFieldRange timestampRange = indexMetadata.getTimestampRange();
         if (timestampRange.containsAllShardRanges() == false) {
             timestampRange = indexMetadata.getTimeSeriesTimestampRange(dateFieldType);
+            if (timestampRange == null && shardId >= 0) {
+                final ShardTimestampRanges shardTimestampRanges = ShardTimestampRanges.fromIndexMetadata(indexMetadata);
+                if (shardTimestampRanges != null) {
+                    timestampRange = shardTimestampRanges.getShardRangeForRewrite(shardId);
+                }
+            }
             if (timestampRange == null) {
                 return null;
             }
@@ -94,6 +94,7 @@ import org.elasticsearch.index.engine.RefreshFailedEngineException;
 import org.elasticsearch.index.engine.SafeCommitInfo;
 import org.elasticsearch.index.engine.Segment;
 import org.elasticsearch.index.engine.SegmentsStats;
+import org.elasticsearch.index.engine.ThreadPoolMergeExecutorService;
 import org.elasticsearch.index.fielddata.FieldDataStats;
 import org.elasticsearch.index.fielddata.ShardFieldData;
 import org.elasticsearch.index.flush.FlushStats;
@@ -137,6 +138,7 @@ import org.elasticsearch.index.warmer.ShardIndexWarmerService;
 import org.elasticsearch.index.warmer.WarmerStats;
 import org.elasticsearch.indices.IndexingMemoryController;
 import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.indices.TranslogGroupCommitService;
 import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.indices.cluster.IndicesClusterStateService;
 import org.elasticsearch.indices.recovery.PeerRecoveryTargetService;
@@ -225,6 +227,10 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
     private final ReplicationTracker replicationTracker;
     private final IndexStorePlugin.SnapshotCommitSupplier snapshotCommitSupplier;
     private final Engine.IndexCommitListener indexCommitListener;
+    @Nullable
+    private final TranslogGroupCommitService translogGroupCommitService;
+    @Nullable
+    private final ThreadPoolMergeExecutorService threadPoolMergeExecutorService;
     private FieldInfos fieldInfos;
     // sys prop to disable the field has value feature, defaults to true (enabled) if set to false (disabled) the
     // field caps always returns empty fields ignoring the value of the query param `field_caps_empty_fields_filter`.
@@ -323,7 +329,9 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         final IndexStorePlugin.SnapshotCommitSupplier snapshotCommitSupplier,
         final LongSupplier relativeTimeInNanosSupplier,
         final Engine.IndexCommitListener indexCommitListener,
-        final MapperMetrics mapperMetrics
+        final MapperMetrics mapperMetrics,
+        @Nullable final TranslogGroupCommitService translogGroupCommitService,
+        @Nullable final ThreadPoolMergeExecutorService threadPoolMergeExecutorService
     ) throws IOException {
         super(shardRouting.shardId(), indexSettings);
         assert shardRouting.initializing();
@@ -409,6 +417,8 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         this.refreshFieldHasValueListener = new RefreshFieldHasValueListener();
         this.relativeTimeInNanosSupplier = relativeTimeInNanosSupplier;
         this.indexCommitListener = indexCommitListener;
+        this.translogGroupCommitService = translogGroupCommitService;
+        this.threadPoolMergeExecutorService = threadPoolMergeExecutorService;
         this.fieldInfos = FieldInfos.EMPTY;
     }
 
@@ -920,6 +930,34 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         long ifPrimaryTerm,
         long autoGeneratedTimestamp,
         boolean isRetry
+    ) throws IOException {
+        return applyIndexOperationOnPrimary(
+            version,
+            versionType,
+            sourceToParse,
+            ifSeqNo,
+            ifPrimaryTerm,
+            autoGeneratedTimestamp,
+            isRetry,
+            null
+        );
+    }
+
+    /**
+     * Same as {@link #applyIndexOperationOnPrimary(long, VersionType, SourceToParse, long, long, long, boolean)}, but uses the given
+     * document if it was parsed with the current mapping instead of parsing the source again.
+     *
+     * @param preParsedDocument the result of {@link #preParseDocument} for the source, or {@code null} to parse the source
+     */
+    public Engine.IndexResult applyIndexOperationOnPrimary(
+        long version,
+        VersionType versionType,
+        SourceToParse sourceToParse,
+        long ifSeqNo,
+        long ifPrimaryTerm,
+        long autoGeneratedTimestamp,
+        boolean isRetry,
+        @Nullable PreParsedDocument preParsedDocument
     ) throws IOException {
         assert versionType.validateVersionForWrites(version);
         return applyIndexOperation(
@@ -933,10 +971,36 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
             autoGeneratedTimestamp,
             isRetry,
             Engine.Operation.Origin.PRIMARY,
-            sourceToParse
+            sourceToParse,
+            preParsedDocument
         );
     }
 
+    /**
+     * Parses a document with the current mapping of this shard so that it can later be passed to
+     * {@link #applyIndexOperationOnPrimary(long, VersionType, SourceToParse, long, long, long, boolean, PreParsedDocument)}. This can be
+     * called from any thread, concurrently with other operations on this shard. The parsed document is ignored if the mapping changed by
+     * the time the operation is applied.
+     *
+     * @return the parsed document, or {@code null} if this shard has no mapping yet
+     */
+    @Nullable
+    public PreParsedDocument preParseDocument(SourceToParse sourceToParse) {
+        final DocumentMapper documentMapper = mapperService.documentMapper();
+        if (documentMapper == null) {
+            return null;
+        }
+        return new PreParsedDocument(documentMapper, documentMapper.parse(sourceToParse));
+    }
+
+    /**
+     * A document parsed ahead of its index operation by {@link #preParseDocument}.
+     *
+     * @param documentMapper the mapper the document was parsed with
+     * @param parsedDocument the parsed document
+     */
+    public record PreParsedDocument(DocumentMapper documentMapper, ParsedDocument parsedDocument) {}
+
     public Engine.IndexResult applyIndexOperationOnReplica(
         long seqNo,
         long opPrimaryTerm,
@@ -956,7 +1020,8 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
             autoGeneratedTimeStamp,
             isRetry,
             Engine.Operation.Origin.REPLICA,
-            sourceToParse
+            sourceToParse,
+            null
         );
     }
 
@@ -971,27 +1036,44 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         long autoGeneratedTimeStamp,
         boolean isRetry,
         Engine.Operation.Origin origin,
-        SourceToParse sourceToParse
+        SourceToParse sourceToParse,
+        @Nullable PreParsedDocument preParsedDocument
     ) throws IOException {
         assert opPrimaryTerm <= getOperationPrimaryTerm()
             : "op term [ " + opPrimaryTerm + " ] > shard term [" + getOperationPrimaryTerm() + "]";
         ensureWriteAllowed(origin);
         Engine.Index operation;
         try {
-            operation = prepareIndex(
-                mapperService,
-                sourceToParse,
-                seqNo,
-                opPrimaryTerm,
-                version,
-                versionType,
-                origin,
-                autoGeneratedTimeStamp,
-                isRetry,
-                ifSeqNo,
-                ifPrimaryTerm,
-                getRelativeTimeInNanos()
-            );
+            if (preParsedDocument != null && preParsedDocument.documentMapper() == mapperService.documentMapper()) {
+                operation = newIndexOperation(
+                    preParsedDocument.parsedDocument(),
+                    seqNo,
+                    opPrimaryTerm,
+                    version,
+                    versionType,
+                    origin,
+                    autoGeneratedTimeStamp,
+                    isRetry,
+                    ifSeqNo,
+                    ifPrimaryTerm,
+                    getRelativeTimeInNanos()
+                );
+            } else {
+                operation = prepareIndex(
+                    mapperService,
+                    sourceToParse,
+                    seqNo,
+                    opPrimaryTerm,
+                    version,
+                    versionType,
+                    origin,
+                    autoGeneratedTimeStamp,
+                    isRetry,
+                    ifSeqNo,
+                    ifPrimaryTerm,
+                    getRelativeTimeInNanos()
+                );
+            }
             Mapping update = operation.parsedDoc().dynamicMappingsUpdate();
             if (update != null) {
                 return new Engine.IndexResult(update, operation.parsedDoc().id());
@@ -1045,6 +1127,34 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
             // whether mappings were provided or not.
             doc.addDynamicMappingsUpdate(mapping);
         }
+        return newIndexOperation(
+            doc,
+            seqNo,
+            primaryTerm,
+            version,
+            versionType,
+            origin,
+            autoGeneratedIdTimestamp,
+            isRetry,
+            ifSeqNo,
+            ifPrimaryTerm,
+            startTimeInNanos
+        );
+    }
+
+    private static Engine.Index newIndexOperation(
+        ParsedDocument doc,
+        long seqNo,
+        long primaryTerm,
+        long version,
+        VersionType versionType,
+        Engine.Operation.Origin origin,
+        long autoGeneratedIdTimestamp,
+        boolean isRetry,
+        long ifSeqNo,
+        long ifPrimaryTerm,
+        long startTimeInNanos
+    ) {
         Term uid = new Term(IdFieldMapper.NAME, Uid.encodeId(doc.id()));
         return new Engine.Index(
             uid,
@@ -1981,7 +2091,8 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
                     index.getAutoGeneratedIdTimestamp(),
                     true,
                     origin,
-                    new SourceToParse(index.id(), index.source(), XContentHelper.xContentType(index.source()), index.routing())
+                    new SourceToParse(index.id(), index.source(), XContentHelper.xContentType(index.source()), index.routing()),
+                    null
                 );
             }
             case DELETE -> {
@@ -2228,15 +2339,8 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
 
     @Override
     public ShardLongFieldRange getTimestampRange() {
-        if (mapperService() == null) {
-            return ShardLongFieldRange.UNKNOWN; // no mapper service, no idea if the field even exists
-        }
-        final MappedFieldType mappedFieldType = mapperService().fieldType(DataStream.TIMESTAMP_FIELD_NAME);
-        if (mappedFieldType instanceof DateFieldMapper.DateFieldType == false) {
-            return ShardLongFieldRange.UNKNOWN; // field missing or not a date
-        }
-        if (mappedFieldType.isIndexed() == false) {
-            return ShardLongFieldRange.UNKNOWN; // range information missing
+        if (hasIndexedTimestampField() == false) {
+            return ShardLongFieldRange.UNKNOWN;
         }
 
         final ShardLongFieldRange rawTimestampFieldRange;
@@ -2257,6 +2361,40 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         return ShardLongFieldRange.of(rawTimestampFieldRange.getMin(), rawTimestampFieldRange.getMax());
     }
 
+    /**
+     * Refreshes this shard and returns the range of the timestamp field over the documents that are visible to searches afterwards, or
+     * {@link ShardLongFieldRange#UNKNOWN} if it cannot be determined. Unlike {@link #getTimestampRange()} this works with every engine,
+     * but the range may still grow, so callers must hold all the operation permits of a primary that no longer accepts writes.
+     */
+    public ShardLongFieldRange getSearchableTimestampRange() {
+        if (hasIndexedTimestampField() == false) {
+            return ShardLongFieldRange.UNKNOWN;
+        }
+        try {
+            final Engine engine = getEngine();
+            engine.refresh("timestamp_range");
+            final ShardLongFieldRange range = engine.getSearchableFieldRange(DataStream.TIMESTAMP_FIELD_NAME);
+            if (range == ShardLongFieldRange.EMPTY) {
+                return ShardLongFieldRange.EMPTY;
+            }
+            return ShardLongFieldRange.of(range.getMin(), range.getMax());
+        } catch (IOException | AlreadyClosedException e) {
+            logger.debug("exception obtaining searchable range for timestamp field", e);
+            return ShardLongFieldRange.UNKNOWN;
+        }
+    }
+
+    private boolean hasIndexedTimestampField() {
+        if (mapperService() == null) {
+            return false; // no mapper service, no idea if the field even exists
+        }
+        final MappedFieldType mappedFieldType = mapperService().fieldType(DataStream.TIMESTAMP_FIELD_NAME);
+        if (mappedFieldType instanceof DateFieldMapper.DateFieldType == false) {
+            return false; // field missing or not a date
+        }
+        return mappedFieldType.isIndexed(); // otherwise range information is missing
+    }
+
     /**
      * perform the last stages of recovery once all translog operations are done.
      * note that you should still call {@link #postRecovery(String, ActionListener)}.
@@ -3489,7 +3627,8 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
             isTimeBasedIndex ? TIMESERIES_LEAF_READERS_SORTER : null,
             relativeTimeInNanosSupplier,
             indexCommitListener,
-            routingEntry().isPromotableToPrimary()
+            routingEntry().isPromotableToPrimary(),
+            threadPoolMergeExecutorService
         );
     }
 
@@ -3813,6 +3952,9 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
      * This method allows indexing threads to continue indexing without blocking on fsync calls. We ensure that there is only one thread
      * blocking on the sync an all others can continue indexing.
      * <p>
+     * If the {@link TranslogGroupCommitService} is enabled, the sync is instead performed by the next sync round of the data path of
+     * this shard and the caller thread is never hijacked.
+     * <p>
      * NOTE: if the syncListener throws an exception when it's processed the exception will only be logged. Users should make sure that the
      * listener handles all exception cases internally.
      */
@@ -3820,7 +3962,17 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         // TODO AwaitsFix https://github.com/elastic/elasticsearch/issues/97183
         // assert indexShardOperationPermits.getActiveOperationsCount() != 0;
         verifyNotClosed();
-        getEngine().asyncEnsureTranslogSynced(location, syncListener);
+        if (translogGroupCommitService != null) {
+            translogGroupCommitService.sync(
+                path.getRootDataPath(),
+                this,
+                (syncLocation, listener) -> getEngine().asyncEnsureTranslogSynced(syncLocation, listener),
+                location,
+                syncListener
+            );
+        } else {
+            getEngine().asyncEnsureTranslogSynced(location, syncListener);
+        }
     }
 
     /**
@@ -13,10 +13,14 @@ import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
 import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.xcontent.ToXContentFragment;
+import org.elasticsearch.xcontent.ToXContentObject;
 import org.elasticsearch.xcontent.XContentBuilder;
 
 import java.io.IOException;
+import java.util.List;
 
 public class IndexingPressureStats implements Writeable, ToXContentFragment {
 
@@ -44,6 +48,12 @@ public class IndexingPressureStats implements Writeable, ToXContentFragment {
     private final long currentPrimaryOps;
     private final long currentReplicaOps;
 
+    private final long trackedShards;
+    private final long throttledShards;
+    private final long shardLimitDecreases;
+    private final long shardRejections;
+    private final List<AdaptiveShardLimit> adaptiveShardLimits;
+
     public IndexingPressureStats(StreamInput in) throws IOException {
         totalCombinedCoordinatingAndPrimaryBytes = in.readVLong();
         totalCoordinatingBytes = in.readVLong();
@@ -84,6 +94,24 @@ public class IndexingPressureStats implements Writeable, ToXContentFragment {
         } else {
             totalCoordinatingRequests = -1L;
         }
+
+        if (in.getTransportVersion().onOrAfter(TransportVersions.INDEXING_PRESSURE_ADAPTIVE_SHARD_STATS)) {
+            trackedShards = in.readVLong();
+            throttledShards = in.readVLong();
+            shardLimitDecreases = in.readVLong();
+            shardRejections = in.readVLong();
+        } else {
+            trackedShards = 0L;
+            throttledShards = 0L;
+            shardLimitDecreases = 0L;
+            shardRejections = 0L;
+        }
+
+        if (in.getTransportVersion().onOrAfter(TransportVersions.INDEXING_PRESSURE_ADAPTIVE_SHARD_LIMITS)) {
+            adaptiveShardLimits = in.readCollectionAsImmutableList(AdaptiveShardLimit::new);
+        } else {
+            adaptiveShardLimits = List.of();
+        }
     }
 
     public IndexingPressureStats(
@@ -106,7 +134,12 @@ public class IndexingPressureStats implements Writeable, ToXContentFragment {
         long currentPrimaryOps,
         long currentReplicaOps,
         long primaryDocumentRejections,
-        long totalCoordinatingRequests
+        long totalCoordinatingRequests,
+        long trackedShards,
+        long throttledShards,
+        long shardLimitDecreases,
+        long shardRejections,
+        List<AdaptiveShardLimit> adaptiveShardLimits
     ) {
         this.totalCombinedCoordinatingAndPrimaryBytes = totalCombinedCoordinatingAndPrimaryBytes;
         this.totalCoordinatingBytes = totalCoordinatingBytes;
@@ -130,6 +163,12 @@ public class IndexingPressureStats implements Writeable, ToXContentFragment {
 
         this.primaryDocumentRejections = primaryDocumentRejections;
         this.totalCoordinatingRequests = totalCoordinatingRequests;
+
+        this.trackedShards = trackedShards;
+        this.throttledShards = throttledShards;
+        this.shardLimitDecreases = shardLimitDecreases;
+        this.shardRejections = shardRejections;
+        this.adaptiveShardLimits = adaptiveShardLimits;
     }
 
     @Override
@@ -159,6 +198,17 @@ public class IndexingPressureStats implements Writeable, ToXContentFragment {
         if (out.getTransportVersion().onOrAfter(TransportVersions.INDEXING_PRESSURE_REQUEST_REJECTIONS_COUNT)) {
             out.writeVLong(totalCoordinatingRequests);
         }
+
+        if (out.getTransportVersion().onOrAfter(TransportVersions.INDEXING_PRESSURE_ADAPTIVE_SHARD_STATS)) {
+            out.writeVLong(trackedShards);
+            out.writeVLong(throttledShards);
+            out.writeVLong(shardLimitDecreases);
+            out.writeVLong(shardRejections);
+        }
+
+        if (out.getTransportVersion().onOrAfter(TransportVersions.INDEXING_PRESSURE_ADAPTIVE_SHARD_LIMITS)) {
+            out.writeCollection(adaptiveShardLimits);
+        }
     }
 
     public long getTotalCombinedCoordinatingAndPrimaryBytes() {
@@ -241,6 +291,26 @@ public class IndexingPressureStats implements Writeable, ToXContentFragment {
         return totalCoordinatingRequests;
     }
 
+    public long getTrackedShards() {
+        return trackedShards;
+    }
+
+    public long getThrottledShards() {
+        return throttledShards;
+    }
+
+    public long getShardLimitDecreases() {
+        return shardLimitDecreases;
+    }
+
+    public long getShardRejections() {
+        return shardRejections;
+    }
+
+    public List<AdaptiveShardLimit> getAdaptiveShardLimits() {
+        return adaptiveShardLimits;
+    }
+
     private static final String COMBINED = "combined_coordinating_and_primary";
     private static final String COMBINED_IN_BYTES = "combined_coordinating_and_primary_in_bytes";
     private static final String COORDINATING = "coordinating";
@@ -257,6 +327,11 @@ public class IndexingPressureStats implements Writeable, ToXContentFragment {
     private static final String PRIMARY_DOCUMENT_REJECTIONS = "primary_document_rejections";
     private static final String LIMIT = "limit";
     private static final String LIMIT_IN_BYTES = "limit_in_bytes";
+    private static final String TRACKED_SHARDS = "tracked_shards";
+    private static final String THROTTLED_SHARDS = "throttled_shards";
+    private static final String LIMIT_DECREASES = "limit_decreases";
+    private static final String REJECTIONS = "rejections";
+    private static final String SHARDS = "shards";
 
     @Override
     public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
@@ -286,6 +361,53 @@ public class IndexingPressureStats implements Writeable, ToXContentFragment {
         builder.endObject();
         builder.humanReadableField(LIMIT_IN_BYTES, LIMIT, ByteSizeValue.ofBytes(memoryLimit));
         builder.endObject();
+        builder.startObject("adaptive_shard_limits");
+        builder.field(TRACKED_SHARDS, trackedShards);
+        builder.field(THROTTLED_SHARDS, throttledShards);
+        builder.field(LIMIT_DECREASES, shardLimitDecreases);
+        builder.field(REJECTIONS, shardRejections);
+        builder.xContentList(SHARDS, adaptiveShardLimits);
+        builder.endObject();
         return builder.endObject();
     }
+
+    /**
+     * The state of the adaptive limit of a shard that has outstanding primary operations or a reduced limit.
+     *
+     * @param shardId           the shard
+     * @param currentBytes      the bytes of the outstanding primary operations of the shard
+     * @param limit             the current limit of the shard
+     * @param queueLatencyNanos the moving average of the time the primary operations of the shard are queued for a write thread
+     * @param bytesPerSecond    the rate at which the write threads picked up the primary operations of the shard over the last second
+     */
+    public record AdaptiveShardLimit(ShardId shardId, long currentBytes, long limit, long queueLatencyNanos, long bytesPerSecond)
+        implements
+            Writeable,
+            ToXContentObject {
+
+        public AdaptiveShardLimit(StreamInput in) throws IOException {
+            this(new ShardId(in), in.readVLong(), in.readVLong(), in.readVLong(), in.readVLong());
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            shardId.writeTo(out);
+            out.writeVLong(currentBytes);
+            out.writeVLong(limit);
+            out.writeVLong(queueLatencyNanos);
+            out.writeVLong(bytesPerSecond);
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject();
+            builder.field("index", shardId.getIndexName());
+            builder.field("shard", shardId.id());
+            builder.humanReadableField("current_in_bytes", "current", ByteSizeValue.ofBytes(currentBytes));
+            builder.humanReadableField(LIMIT_IN_BYTES, LIMIT, ByteSizeValue.ofBytes(limit));
+            builder.humanReadableField("queue_latency_in_millis", "queue_latency", TimeValue.timeValueNanos(queueLatencyNanos));
+            builder.humanReadableField("throughput_in_bytes_per_second", "throughput_per_second", ByteSizeValue.ofBytes(bytesPerSecond));
+            return builder.endObject();
+        }
+    }
 }
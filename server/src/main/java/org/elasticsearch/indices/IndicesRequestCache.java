@@ -9,6 +9,8 @@
 package org.elasticsearch.indices;
 
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.RamUsageEstimator;
 import org.elasticsearch.common.CheckedSupplier;
@@ -33,6 +35,7 @@ import java.util.Iterator;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
 
 /**
  * The indices request cache allows to cache a shard level request stage responses, helping with improving
@@ -44,6 +47,9 @@ import java.util.concurrent.ConcurrentMap;
  * Currently, the cache is only enabled for count requests, and can only be opted in on an index
  * level setting that can be dynamically changed and defaults to false.
  * <p>
+ * Aggregation requests that can be collected one segment at a time additionally cache the partial result of every segment, keyed
+ * on the segment's reader, so that after a refresh only the new segments need to be searched.
+ * <p>
  * There are still several TODOs left in this class, some easily addressable, some more complex, but the support
  * is functional.
  */
@@ -59,6 +65,16 @@ public final class IndicesRequestCache implements Closeable {
         Property.Dynamic,
         Property.IndexScope
     );
+    /**
+     * A setting to enable or disable caching the partial results of individual segments for requests that support it. Only has an
+     * effect if request caching is enabled for the index.
+     */
+    public static final Setting<Boolean> INDEX_CACHE_REQUEST_SEGMENT_LEVEL_ENABLED_SETTING = Setting.boolSetting(
+        "index.requests.cache.segment_level.enable",
+        true,
+        Property.Dynamic,
+        Property.IndexScope
+    );
     public static final Setting<ByteSizeValue> INDICES_CACHE_QUERY_SIZE = Setting.memorySizeSetting(
         "indices.requests.cache.size",
         "1%",
@@ -105,17 +121,52 @@ public final class IndicesRequestCache implements Closeable {
     ) throws Exception {
         final ESCacheHelper cacheHelper = ElasticsearchDirectoryReader.getESReaderCacheHelper(reader);
         assert cacheHelper != null;
-        final Key key = new Key(cacheEntity, mappingCacheKey, cacheHelper.getKey(), cacheKey);
+        return getOrCompute(cacheEntity, loader, mappingCacheKey, cacheHelper.getKey(), cacheKey, cacheHelper::addClosedListener);
+    }
+
+    /**
+     * Like {@link #getOrCompute(CacheEntity, CheckedSupplier, MappingLookup.CacheKey, DirectoryReader, BytesReference)}, but caches
+     * a result that only depends on a single segment of the shard. The entry is keyed on the reader of that segment, so it survives
+     * refreshes that leave the segment untouched and is cleaned up once the segment is merged away or its live docs change.
+     */
+    BytesReference getOrCompute(
+        CacheEntity cacheEntity,
+        CheckedSupplier<BytesReference, IOException> loader,
+        MappingLookup.CacheKey mappingCacheKey,
+        LeafReader reader,
+        BytesReference cacheKey
+    ) throws Exception {
+        final IndexReader.CacheHelper cacheHelper = reader.getReaderCacheHelper();
+        assert cacheHelper != null;
+        return getOrCompute(
+            cacheEntity,
+            loader,
+            mappingCacheKey,
+            cacheHelper.getKey(),
+            cacheKey,
+            cleanupKey -> cacheHelper.addClosedListener(cleanupKey::onClose)
+        );
+    }
+
+    private BytesReference getOrCompute(
+        CacheEntity cacheEntity,
+        CheckedSupplier<BytesReference, IOException> loader,
+        MappingLookup.CacheKey mappingCacheKey,
+        Object readerCacheKey,
+        BytesReference cacheKey,
+        Consumer<CleanupKey> closedListenerRegistration
+    ) throws Exception {
+        final Key key = new Key(cacheEntity, mappingCacheKey, readerCacheKey, cacheKey);
         Loader cacheLoader = new Loader(cacheEntity, loader);
         BytesReference value = cache.computeIfAbsent(key, cacheLoader);
         if (cacheLoader.isLoaded()) {
             key.entity.onMiss();
             // see if its the first time we see this reader, and make sure to register a cleanup key
-            CleanupKey cleanupKey = new CleanupKey(cacheEntity, cacheHelper.getKey());
+            CleanupKey cleanupKey = new CleanupKey(cacheEntity, readerCacheKey);
             if (registeredClosedListeners.containsKey(cleanupKey) == false) {
                 Boolean previous = registeredClosedListeners.putIfAbsent(cleanupKey, Boolean.TRUE);
                 if (previous == null) {
-                    cacheHelper.addClosedListener(cleanupKey);
+                    closedListenerRegistration.accept(cleanupKey);
                 }
             }
             /*
@@ -12,6 +12,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader.CacheHelper;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.util.CollectionUtil;
 import org.apache.lucene.util.RamUsageEstimator;
@@ -96,6 +97,7 @@ import org.elasticsearch.index.engine.CommitStats;
 import org.elasticsearch.index.engine.EngineFactory;
 import org.elasticsearch.index.engine.InternalEngineFactory;
 import org.elasticsearch.index.engine.NoOpEngine;
+import org.elasticsearch.index.engine.ThreadPoolMergeExecutorService;
 import org.elasticsearch.index.fielddata.IndexFieldDataCache;
 import org.elasticsearch.index.flush.FlushStats;
 import org.elasticsearch.index.get.GetStats;
@@ -137,6 +139,7 @@ import org.elasticsearch.plugins.IndexStorePlugin;
 import org.elasticsearch.plugins.PluginsService;
 import org.elasticsearch.repositories.RepositoriesService;
 import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.search.DefaultSearchContext;
 import org.elasticsearch.search.aggregations.support.ValuesSourceRegistry;
 import org.elasticsearch.search.internal.AliasFilter;
 import org.elasticsearch.search.internal.SearchContext;
@@ -238,6 +241,10 @@ public class IndicesService extends AbstractLifecycleComponent
     private final NamedWriteableRegistry namedWriteableRegistry;
     private final Map<String, IndexStorePlugin.SnapshotCommitSupplier> snapshotCommitSuppliers;
     private final IndexingMemoryController indexingMemoryController;
+    @Nullable
+    private final TranslogGroupCommitService translogGroupCommitService;
+    @Nullable
+    private final ThreadPoolMergeExecutorService threadPoolMergeExecutorService;
     private final TimeValue cleanInterval;
     final IndicesRequestCache indicesRequestCache; // pkg-private for testing
     private final IndicesQueryCache indicesQueryCache;
@@ -292,6 +299,9 @@ public class IndicesService extends AbstractLifecycleComponent
             // ensure we pull an iter with new shards - flatten makes a copy
             () -> Iterables.flatten(this).iterator()
         );
+        this.translogGroupCommitService = TranslogGroupCommitService.ENABLED_SETTING.get(settings)
+            ? new TranslogGroupCommitService(settings, threadPool.getThreadContext())
+            : null;
         this.indexScopedSettings = builder.indexScopedSettings;
         this.circuitBreakerService = builder.circuitBreakerService;
         this.bigArrays = builder.bigArrays;
@@ -299,6 +309,9 @@ public class IndicesService extends AbstractLifecycleComponent
         this.clusterService = builder.clusterService;
         this.client = builder.client;
         this.featureService = builder.featureService;
+        this.threadPoolMergeExecutorService = ThreadPoolMergeExecutorService.USE_THREAD_POOL_SETTING.get(settings)
+            ? new ThreadPoolMergeExecutorService(settings, clusterService.getClusterSettings(), threadPool, nodeEnv, this::isSearchActive)
+            : null;
         this.idFieldDataEnabled = INDICES_ID_FIELD_DATA_ENABLED_SETTING.get(clusterService.getSettings());
         clusterService.getClusterSettings().addSettingsUpdateConsumer(INDICES_ID_FIELD_DATA_ENABLED_SETTING, this::setIdFieldDataEnabled);
         this.indicesFieldDataCache = new IndicesFieldDataCache(settings, new IndexFieldDataCache.Listener() {
@@ -340,6 +353,8 @@ public class IndicesService extends AbstractLifecycleComponent
                 IOUtils.close(
                     analysisRegistry,
                     indexingMemoryController,
+                    translogGroupCommitService,
+                    threadPoolMergeExecutorService,
                     indicesFieldDataCache,
                     cacheCleaner,
                     indicesRequestCache,
@@ -756,6 +771,12 @@ public class IndicesService extends AbstractLifecycleComponent
         for (IndexingOperationListener operationListener : indexingOperationListeners) {
             indexModule.addIndexOperationListener(operationListener);
         }
+        if (translogGroupCommitService != null) {
+            indexModule.setTranslogGroupCommitService(translogGroupCommitService);
+        }
+        if (threadPoolMergeExecutorService != null) {
+            indexModule.setThreadPoolMergeExecutorService(threadPoolMergeExecutorService);
+        }
         pluginsService.forEach(p -> p.onIndexModule(indexModule));
         for (IndexEventListener listener : builtInListeners) {
             indexModule.addIndexEventListener(listener);
@@ -1584,13 +1605,22 @@ public class IndicesService extends AbstractLifecycleComponent
 
         boolean[] loadedFromCache = new boolean[] { true };
         BytesReference cacheKey = request.cacheKey(requestCacheKeyDifferentiator);
+        final MappingLookup.CacheKey mappingCacheKey = context.getSearchExecutionContext().mappingCacheKey();
         BytesReference bytesReference = cacheShardLevelResult(
             context.indexShard(),
-            context.getSearchExecutionContext().mappingCacheKey(),
+            mappingCacheKey,
             directoryReader,
             cacheKey,
             out -> {
-                QueryPhase.execute(context);
+                if (canCacheBySegment(context)) {
+                    final IndexShard indexShard = context.indexShard();
+                    QueryPhase.executeBySegment(
+                        context,
+                        (leaf, segmentLoader) -> cacheSegmentLevelResult(indexShard, mappingCacheKey, leaf, cacheKey, segmentLoader)
+                    );
+                } else {
+                    QueryPhase.execute(context);
+                }
                 context.queryResult().writeToNoId(out);
                 loadedFromCache[0] = false;
             }
@@ -1626,6 +1656,89 @@ public class IndicesService extends AbstractLifecycleComponent
         }
     }
 
+    /**
+     * Whether the aggregations of the given request can be computed segment by segment, which allows to cache the partial result of
+     * each segment in addition to the result of the whole shard. See {@link QueryPhase#canExecuteBySegment}.
+     */
+    private boolean canCacheBySegment(SearchContext context) {
+        final IndexShard indexShard = context.indexShard();
+        if (indexShard.indexSettings().getValue(IndicesRequestCache.INDEX_CACHE_REQUEST_SEGMENT_LEVEL_ENABLED_SETTING) == false) {
+            return false;
+        }
+        final IndexService indexService = indexService(indexShard.shardId().getIndex());
+        if (indexService == null) {
+            return false;
+        }
+        final DirectoryReader directoryReader = context.searcher().getDirectoryReader();
+        return QueryPhase.canExecuteBySegment(
+            context,
+            field -> DefaultSearchContext.getFieldCardinality(field, indexService, directoryReader)
+        );
+    }
+
+    /**
+     * Cache the partial result of a single segment of a shard. The entry is keyed on the reader of the segment, so it is reused by
+     * later requests as long as the segment is not merged away and its deletes do not change.
+     */
+    private QueryPhase.SegmentResult cacheSegmentLevelResult(
+        IndexShard shard,
+        MappingLookup.CacheKey mappingCacheKey,
+        LeafReaderContext leaf,
+        BytesReference cacheKey,
+        CheckedSupplier<QueryPhase.SegmentResult, IOException> loader
+    ) throws Exception {
+        if (leaf.reader().getReaderCacheHelper() == null) {
+            return loader.get();
+        }
+        // keep the computed result around so that a miss does not need to deserialize what it just serialized
+        final QueryPhase.SegmentResult[] computed = new QueryPhase.SegmentResult[1];
+        final BytesReference bytesReference = indicesRequestCache.getOrCompute(new IndexShardCacheEntity(shard), () -> {
+            computed[0] = loader.get();
+            // partial results of a segment are typically small, see cacheShardLevelResult
+            try (BytesStreamOutput out = new BytesStreamOutput(512)) {
+                computed[0].writeTo(out);
+                return out.bytes();
+            }
+        }, mappingCacheKey, leaf.reader(), cacheKey);
+        if (computed[0] != null) {
+            return computed[0];
+        }
+        try (StreamInput in = new NamedWriteableAwareStreamInput(bytesReference.streamInput(), namedWriteableRegistry)) {
+            return new QueryPhase.SegmentResult(in);
+        }
+    }
+
+    /**
+     * @return the service that syncs the translogs of the shards on this node in rounds, or {@code null} if it is not enabled
+     */
+    @Nullable
+    public TranslogGroupCommitService getTranslogGroupCommitService() {
+        return translogGroupCommitService;
+    }
+
+    /**
+     * @return the statistics of the {@link TranslogGroupCommitService}, or {@code null} if it is not enabled
+     */
+    @Nullable
+    public TranslogGroupCommitStats translogGroupCommitStats() {
+        return translogGroupCommitService == null ? null : translogGroupCommitService.stats();
+    }
+
+    /**
+     * @return the service that runs the merges of the shards on this node, or {@code null} if each shard runs its merges on threads of
+     * its own
+     */
+    @Nullable
+    public ThreadPoolMergeExecutorService getThreadPoolMergeExecutorService() {
+        return threadPoolMergeExecutorService;
+    }
+
+    private boolean isSearchActive(ShardId shardId) {
+        final IndexService indexService = indices.get(shardId.getIndex().getUUID());
+        final IndexShard indexShard = indexService == null ? null : indexService.getShardOrNull(shardId.id());
+        return indexShard != null && indexShard.isSearchIdle() == false;
+    }
+
     public ByteSizeValue getTotalIndexingBufferBytes() {
         return indexingMemoryController.indexingBufferSize();
     }
@@ -16,6 +16,7 @@ import org.elasticsearch.cluster.ClusterStateApplier;
 import org.elasticsearch.cluster.metadata.DataStream;
 import org.elasticsearch.cluster.metadata.IndexMetadata;
 import org.elasticsearch.cluster.metadata.Metadata;
+import org.elasticsearch.cluster.metadata.ShardTimestampRanges;
 import org.elasticsearch.common.component.AbstractLifecycleComponent;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.concurrent.AbstractRunnable;
@@ -146,6 +147,11 @@ public class TimestampFieldMapperService extends AbstractLifecycleComponent impl
             return true;
         }
 
+        if (ShardTimestampRanges.fromIndexMetadata(indexMetadata) != null) {
+            // write-blocked index whose shards report their timestamp ranges
+            return true;
+        }
+
         final IndexLongFieldRange timestampRange = indexMetadata.getTimestampRange();
         return timestampRange.isComplete() && timestampRange != IndexLongFieldRange.UNKNOWN;
     }
@@ -0,0 +1,329 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.indices;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.util.concurrent.EsThreadPoolExecutor;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.index.translog.Translog;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Syncs the translogs of the shards on this node in rounds instead of on the indexing threads. Every data path has a dedicated thread
+ * that takes all the syncs that are pending for shards on that path, coalesces the requests for the same translog into a single sync
+ * up to the highest requested location and runs the resulting syncs concurrently. The listeners of the requests for a translog are
+ * completed as soon as its sync has landed, without waiting for the other syncs of the round. While a round is in progress, new
+ * requests queue up for the next round, so the number of sync rounds adapts to the latency of the disk rather than to the number of
+ * indexing requests.
+ */
+public final class TranslogGroupCommitService implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(TranslogGroupCommitService.class);
+
+    public static final Setting<Boolean> ENABLED_SETTING = Setting.boolSetting(
+        "indices.translog.group_commit.enabled",
+        false,
+        Property.NodeScope
+    );
+
+    /**
+     * The maximum number of translogs that are synced concurrently in a round, across all data paths.
+     */
+    public static final Setting<Integer> CONCURRENCY_SETTING = Setting.intSetting(
+        "indices.translog.group_commit.concurrency",
+        4,
+        1,
+        Property.NodeScope
+    );
+
+    public static final String THREAD_NAME = "translog_group_commit";
+
+    // same bound as the per-shard translog sync processor, once it is reached callers sync directly rather than wait for a round
+    static final int QUEUE_SIZE = 1024;
+
+    private static final PendingSync CLOSED = new PendingSync(null, null, null, null);
+
+    /**
+     * Syncs a translog up to a location and notifies the listener, possibly on another thread, once it is done.
+     */
+    @FunctionalInterface
+    public interface TranslogSyncer {
+        void sync(Translog.Location location, Consumer<Exception> listener);
+    }
+
+    private final ThreadFactory threadFactory;
+    private final ThreadContext threadContext;
+    private final EsThreadPoolExecutor syncExecutor;
+    private final Map<Path, Committer> committers = ConcurrentCollections.newConcurrentMap();
+    private volatile boolean closed;
+
+    private final LongAdder rounds = new LongAdder();
+    private final LongAdder syncRequests = new LongAdder();
+    private final LongAdder translogSyncs = new LongAdder();
+    private final LongAdder totalRoundTimeInNanos = new LongAdder();
+    private final LongAdder directSyncs = new LongAdder();
+    private final LongAccumulator maxBatchSize = new LongAccumulator(Math::max, 0L);
+
+    public TranslogGroupCommitService(Settings settings, ThreadContext threadContext) {
+        this(EsExecutors.threadName(settings, THREAD_NAME), CONCURRENCY_SETTING.get(settings), threadContext);
+    }
+
+    public TranslogGroupCommitService(String threadName, int concurrency, ThreadContext threadContext) {
+        this.threadFactory = EsExecutors.daemonThreadFactory(threadName);
+        this.threadContext = threadContext;
+        this.syncExecutor = EsExecutors.newFixed(
+            threadName,
+            concurrency,
+            -1,
+            threadFactory,
+            threadContext,
+            EsExecutors.TaskTrackingConfig.DO_NOT_TRACK
+        );
+    }
+
+    /**
+     * Syncs a translog up to the given location in the next round of the given data path. Requests with the same key within a round are
+     * coalesced into a single call to the syncer of the last of them, with the highest of their locations.
+     *
+     * @param dataPath the data path that holds the translog, all translogs of a data path are synced by the same thread
+     * @param key      identifies the translog to sync, typically its shard
+     * @param syncer   syncs the translog
+     * @param location the location up to which the translog must be synced
+     * @param listener notified once the round that synced the location has landed
+     */
+    public void sync(Path dataPath, Object key, TranslogSyncer syncer, Translog.Location location, Consumer<Exception> listener) {
+        if (closed) {
+            syncer.sync(location, listener);
+            return;
+        }
+        final Committer committer = committers.computeIfAbsent(dataPath, this::startCommitter);
+        committer.add(new PendingSync(key, syncer, location, preserveContext(listener)));
+    }
+
+    public TranslogGroupCommitStats stats() {
+        return new TranslogGroupCommitStats(
+            rounds.sum(),
+            syncRequests.sum(),
+            translogSyncs.sum(),
+            directSyncs.sum(),
+            maxBatchSize.get(),
+            TimeUnit.NANOSECONDS.toMillis(totalRoundTimeInNanos.sum())
+        );
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Committer committer : committers.values()) {
+            committer.stop();
+        }
+        for (Committer committer : committers.values()) {
+            committer.join();
+        }
+        ThreadPool.terminate(syncExecutor, 10, TimeUnit.SECONDS);
+    }
+
+    private Committer startCommitter(Path dataPath) {
+        final Committer committer = new Committer(dataPath);
+        committer.thread.start();
+        return committer;
+    }
+
+    private Consumer<Exception> preserveContext(Consumer<Exception> listener) {
+        final Supplier<ThreadContext.StoredContext> restorableContext = threadContext.newRestorableContext(false);
+        return e -> {
+            try (ThreadContext.StoredContext ignore = restorableContext.get()) {
+                listener.accept(e);
+            }
+        };
+    }
+
+    private record PendingSync(Object key, TranslogSyncer syncer, Translog.Location location, Consumer<Exception> listener) {}
+
+    /**
+     * The coalesced requests for a single translog within a round, which are completed as soon as the sync of the translog has landed.
+     */
+    private static final class CoalescedSync implements Consumer<Exception> {
+        private final List<PendingSync> requests = new ArrayList<>();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private final CountDownLatch roundLanded;
+        private TranslogSyncer syncer;
+        private Translog.Location location = Translog.Location.EMPTY;
+
+        CoalescedSync(CountDownLatch roundLanded) {
+            this.roundLanded = roundLanded;
+        }
+
+        void add(PendingSync request) {
+            requests.add(request);
+            syncer = request.syncer();
+            if (location.compareTo(request.location()) < 0) {
+                location = request.location();
+            }
+        }
+
+        @Override
+        public void accept(Exception e) {
+            if (completed.compareAndSet(false, true)) {
+                try {
+                    for (PendingSync request : requests) {
+                        try {
+                            request.listener().accept(e);
+                        } catch (Exception inner) {
+                            logger.warn("failed to notify translog sync listener", inner);
+                        }
+                    }
+                } finally {
+                    roundLanded.countDown();
+                }
+            }
+        }
+    }
+
+    private final class Committer implements Runnable {
+        private final Path dataPath;
+        private final BlockingQueue<PendingSync> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        private final Thread thread;
+
+        Committer(Path dataPath) {
+            this.dataPath = dataPath;
+            this.thread = threadFactory.newThread(this);
+        }
+
+        void add(PendingSync pendingSync) {
+            if (queue.offer(pendingSync) == false) {
+                // the committer is falling behind, sync on this thread rather than block it until there is room in the queue
+                directSyncs.increment();
+                pendingSync.syncer().sync(pendingSync.location(), pendingSync.listener());
+                return;
+            }
+            if (closed) {
+                // the committer may have exited before the request was queued, sync whatever it left behind on this thread
+                syncDirectly();
+            }
+        }
+
+        void stop() {
+            // if the queue is full the committer is busy and checks whether the service is closed after its current round
+            queue.offer(CLOSED);
+        }
+
+        void join() {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            final List<PendingSync> batch = new ArrayList<>();
+            try {
+                while (closed == false) {
+                    batch.add(queue.take());
+                    queue.drainTo(batch);
+                    batch.remove(CLOSED);
+                    if (batch.isEmpty() == false) {
+                        runRound(batch);
+                        batch.clear();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                syncDirectly();
+            }
+        }
+
+        private void syncDirectly() {
+            PendingSync pendingSync;
+            while ((pendingSync = queue.poll()) != null) {
+                if (pendingSync != CLOSED) {
+                    pendingSync.syncer().sync(pendingSync.location(), pendingSync.listener());
+                }
+            }
+        }
+
+        private void runRound(List<PendingSync> batch) {
+            final long startNanos = System.nanoTime();
+            final Map<Object, List<PendingSync>> requestsByKey = new HashMap<>();
+            for (PendingSync pendingSync : batch) {
+                requestsByKey.computeIfAbsent(pendingSync.key(), k -> new ArrayList<>()).add(pendingSync);
+            }
+            final CountDownLatch roundLanded = new CountDownLatch(requestsByKey.size());
+            for (List<PendingSync> requests : requestsByKey.values()) {
+                final CoalescedSync sync = new CoalescedSync(roundLanded);
+                requests.forEach(sync::add);
+                syncExecutor.execute(new AbstractRunnable() {
+                    @Override
+                    protected void doRun() {
+                        sync.syncer.sync(sync.location, sync);
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        sync.accept(e);
+                    }
+                });
+            }
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    roundLanded.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+
+            final long roundTimeInNanos = System.nanoTime() - startNanos;
+            rounds.increment();
+            syncRequests.add(batch.size());
+            translogSyncs.add(requestsByKey.size());
+            totalRoundTimeInNanos.add(roundTimeInNanos);
+            maxBatchSize.accumulate(batch.size());
+            logger.trace(
+                "[{}] synced [{}] translogs for [{}] requests in [{}]",
+                dataPath,
+                requestsByKey.size(),
+                batch.size(),
+                TimeValue.timeValueNanos(roundTimeInNanos)
+            );
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.indices;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.xcontent.ToXContentFragment;
+import org.elasticsearch.xcontent.XContentBuilder;
+
+import java.io.IOException;
+
+/**
+ * Statistics of the {@link TranslogGroupCommitService} of a node.
+ *
+ * @param rounds                 number of sync rounds
+ * @param syncRequests           number of requests to sync a translog that were handled by a round
+ * @param translogSyncs          number of translog syncs, after coalescing the requests for the same translog within a round
+ * @param directSyncs            number of requests that were synced on the calling thread because too many syncs were pending
+ * @param maxBatchSize           the largest number of requests handled by a single round
+ * @param totalRoundTimeInMillis the time spent in sync rounds, from the start of a round until all its syncs have landed
+ */
+public record TranslogGroupCommitStats(
+    long rounds,
+    long syncRequests,
+    long translogSyncs,
+    long directSyncs,
+    long maxBatchSize,
+    long totalRoundTimeInMillis
+) implements Writeable, ToXContentFragment {
+
+    public TranslogGroupCommitStats(StreamInput in) throws IOException {
+        this(in.readVLong(), in.readVLong(), in.readVLong(), in.readVLong(), in.readVLong(), in.readVLong());
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeVLong(rounds);
+        out.writeVLong(syncRequests);
+        out.writeVLong(translogSyncs);
+        out.writeVLong(directSyncs);
+        out.writeVLong(maxBatchSize);
+        out.writeVLong(totalRoundTimeInMillis);
+    }
+
+    public double averageBatchSize() {
+        return rounds == 0 ? 0.0 : (double) syncRequests / rounds;
+    }
+
+    public long averageRoundTimeInMillis() {
+        return rounds == 0 ? 0L : totalRoundTimeInMillis / rounds;
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        return builder.startObject("translog_group_commit")
+            .field("rounds", rounds)
+            .field("sync_requests", syncRequests)
+            .field("translog_syncs", translogSyncs)
+            .field("direct_syncs", directSyncs)
+            .field("max_batch_size", maxBatchSize)
+            .field("avg_batch_size", averageBatchSize())
+            .humanReadableField("total_round_time_in_millis", "total_round_time", TimeValue.timeValueMillis(totalRoundTimeInMillis))
+            .humanReadableField("avg_round_time_in_millis", "avg_round_time", TimeValue.timeValueMillis(averageRoundTimeInMillis()))
+            .endObject();
+    }
+}
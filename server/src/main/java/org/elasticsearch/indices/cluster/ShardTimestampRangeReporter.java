@@ -0,0 +1,174 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.indices.cluster;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.support.ThreadedActionListener;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.action.shard.ShardStateAction;
+import org.elasticsearch.cluster.metadata.IndexMetadata;
+import org.elasticsearch.cluster.metadata.ShardTimestampRanges;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.component.AbstractLifecycleComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.core.Releasable;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.index.IndexService;
+import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.index.shard.IndexShardState;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.shard.ShardLongFieldRange;
+import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.threadpool.Scheduler;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Periodically reports the timestamp range of the started primaries of write-blocked indices on this node to the master, which keeps
+ * them in the {@link ShardTimestampRanges} of each index. A shard of a write-blocked index cannot receive new documents, so its range is
+ * only computed and reported once for every settings version of the index.
+ * <p>
+ * Writes that were accepted before the block was applied may still be in flight, and documents that were indexed before the block may
+ * not have been refreshed yet. The range is therefore only computed while holding all the operation permits of the primary, after a
+ * refresh: no write can be in flight then, and writes that acquire a permit later are rejected by the block.
+ */
+public class ShardTimestampRangeReporter extends AbstractLifecycleComponent {
+
+    private static final Logger logger = LogManager.getLogger(ShardTimestampRangeReporter.class);
+
+    public static final Setting<TimeValue> REPORT_INTERVAL_SETTING = Setting.timeSetting(
+        "indices.shard_timestamp_ranges.report_interval",
+        TimeValue.timeValueSeconds(30),
+        TimeValue.MINUS_ONE,
+        Setting.Property.NodeScope
+    );
+
+    private static final TimeValue PERMITS_TIMEOUT = TimeValue.timeValueSeconds(30);
+
+    private final Settings settings;
+    private final IndicesService indicesService;
+    private final ClusterService clusterService;
+    private final ThreadPool threadPool;
+    private final ShardStateAction shardStateAction;
+    private final TimeValue interval;
+    private final Executor executor;
+    private final Set<ShardId> inFlight = ConcurrentCollections.newConcurrentSet();
+
+    private volatile Scheduler.Cancellable scheduled;
+
+    @Inject
+    public ShardTimestampRangeReporter(
+        Settings settings,
+        IndicesService indicesService,
+        ClusterService clusterService,
+        ThreadPool threadPool,
+        ShardStateAction shardStateAction
+    ) {
+        this.settings = settings;
+        this.indicesService = indicesService;
+        this.clusterService = clusterService;
+        this.threadPool = threadPool;
+        this.shardStateAction = shardStateAction;
+        this.interval = REPORT_INTERVAL_SETTING.get(settings);
+        this.executor = threadPool.executor(ThreadPool.Names.REFRESH);
+    }
+
+    @Override
+    protected void doStart() {
+        if (DiscoveryNode.canContainData(settings) && interval.millis() > 0) {
+            scheduled = threadPool.scheduleWithFixedDelay(new AbstractRunnable() {
+                @Override
+                public void onFailure(Exception e) {
+                    logger.warn("failed to report shard timestamp ranges", e);
+                }
+
+                @Override
+                protected void doRun() {
+                    reportShardTimestampRanges();
+                }
+            }, interval, executor);
+        }
+    }
+
+    @Override
+    protected void doStop() {
+        final Scheduler.Cancellable scheduled = this.scheduled;
+        if (scheduled != null) {
+            scheduled.cancel();
+        }
+    }
+
+    @Override
+    protected void doClose() {}
+
+    void reportShardTimestampRanges() {
+        final ClusterState state = clusterService.state();
+        for (IndexService indexService : indicesService) {
+            final IndexMetadata indexMetadata = state.metadata().index(indexService.index());
+            if (indexMetadata == null || ShardTimestampRanges.isWriteBlocked(indexMetadata) == false) {
+                continue;
+            }
+            final ShardTimestampRanges known = ShardTimestampRanges.fromIndexMetadata(indexMetadata);
+            for (IndexShard indexShard : indexService) {
+                final ShardRouting shardRouting = indexShard.routingEntry();
+                if (shardRouting == null
+                    || shardRouting.primary() == false
+                    || indexShard.state() != IndexShardState.STARTED
+                    || (known != null && known.getShardRange(shardRouting.id()) != null)
+                    || inFlight.add(shardRouting.shardId()) == false) {
+                    continue;
+                }
+                try {
+                    reportShardTimestampRange(indexShard, shardRouting, indexMetadata);
+                } catch (Exception e) {
+                    inFlight.remove(shardRouting.shardId());
+                    logger.debug(() -> "failed to compute timestamp range of " + shardRouting.shardId(), e);
+                }
+            }
+        }
+    }
+
+    private void reportShardTimestampRange(IndexShard indexShard, ShardRouting shardRouting, IndexMetadata indexMetadata) {
+        final ShardId shardId = shardRouting.shardId();
+        final ActionListener<Void> reportListener = ActionListener.runAfter(
+            ActionListener.wrap(ignored -> {}, e -> logger.debug(() -> "failed to report timestamp range of " + shardId, e)),
+            () -> inFlight.remove(shardId)
+        );
+        final ActionListener<Releasable> onPermitsAcquired = reportListener.delegateFailureAndWrap((l, permits) -> {
+            final ShardLongFieldRange range;
+            try (permits) {
+                range = indexShard.getSearchableTimestampRange();
+            }
+            if (range == ShardLongFieldRange.UNKNOWN) {
+                l.onResponse(null);
+                return;
+            }
+            logger.trace("{} reporting timestamp range {}", shardId, range);
+            shardStateAction.shardTimestampRangeUpdated(
+                shardRouting,
+                indexMetadata.primaryTerm(shardRouting.id()),
+                indexMetadata.getSettingsVersion(),
+                range,
+                l
+            );
+        });
+        // the last permit may be released on a write thread, so the refresh and the range computation are forked to our own executor
+        indexShard.acquireAllPrimaryOperationsPermits(new ThreadedActionListener<>(executor, onPermitsAcquired), PERMITS_TIMEOUT);
+    }
+}
@@ -711,6 +711,7 @@ public class NodeMetrics extends AbstractLifecycleComponent {
             false,
             false,
             true,
+            false,
             false
         );
     }
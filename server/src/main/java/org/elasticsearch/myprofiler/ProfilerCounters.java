@@ -0,0 +1,208 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.myprofiler;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of per-index request counters used by the profiler. Every counter is a {@link LongAdder}, so concurrent increments from the
+ * search and write threads land in per-thread cells rather than contending on a single monitor or CAS target. Increments for an index
+ * that is already registered only perform a lock-free {@link ConcurrentMap#get}; the map itself acts as the intern table for index names
+ * so that each index is keyed by a single canonical {@link String} instance.
+ * <p>
+ * The number of tracked indices is capped so that snapshots taken at the end of an interval allocate at most one {@link IndexCounts} per
+ * tracked index. Indices that saw no traffic during an interval are evicted when the counters are drained, freeing up room for new ones.
+ * Increments for new indices that arrive while the registry is full are dropped and counted in {@link #droppedIncrements()}.
+ */
+public final class ProfilerCounters {
+
+    public static final int DEFAULT_MAX_INDICES = 10_000;
+
+    /**
+     * The operations tracked per index.
+     */
+    public enum Operation {
+        SEARCH_QUERY("search_query_count"),
+        INDEX_REQUEST("index_request_count"),
+        GET_REQUEST("get_request_count");
+
+        private static final Operation[] VALUES = values();
+
+        private final String fieldName;
+
+        Operation(String fieldName) {
+            this.fieldName = fieldName;
+        }
+
+        /**
+         * @return the name under which this operation's count is reported
+         */
+        public String fieldName() {
+            return fieldName;
+        }
+    }
+
+    private final int maxIndices;
+    private final ConcurrentMap<String, Cells> cells = ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency();
+    private final LongAdder droppedIncrements = new LongAdder();
+
+    public ProfilerCounters() {
+        this(DEFAULT_MAX_INDICES);
+    }
+
+    public ProfilerCounters(int maxIndices) {
+        if (maxIndices <= 0) {
+            throw new IllegalArgumentException("maxIndices must be positive but was [" + maxIndices + "]");
+        }
+        this.maxIndices = maxIndices;
+    }
+
+    /**
+     * Increments the counter of the given operation for the given index. Requests without an index are ignored.
+     */
+    public void increment(String index, Operation operation) {
+        if (index == null) {
+            return;
+        }
+        Cells indexCells = cells.get(index);
+        if (indexCells == null) {
+            indexCells = register(index);
+            if (indexCells == null) {
+                droppedIncrements.increment();
+                return;
+            }
+        }
+        indexCells.adders[operation.ordinal()].increment();
+    }
+
+    private Cells register(String index) {
+        if (cells.size() >= maxIndices) {
+            // re-check in case another thread registered the index in the meantime
+            return cells.get(index);
+        }
+        return cells.computeIfAbsent(index, Cells::new);
+    }
+
+    /**
+     * @return the current counts of all tracked indices, without resetting them
+     */
+    public List<IndexCounts> peek() {
+        final List<IndexCounts> counts = new ArrayList<>(Math.min(cells.size(), maxIndices));
+        for (Cells indexCells : cells.values()) {
+            counts.add(indexCells.sum(false));
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the counts accumulated since the previous drain and resets them. Indices that saw no traffic since the previous drain are
+     * not reported and are evicted from the registry. An increment racing with the eviction of its index may be lost, which is
+     * acceptable for sampling purposes.
+     */
+    public List<IndexCounts> drain() {
+        final List<IndexCounts> counts = new ArrayList<>(Math.min(cells.size(), maxIndices));
+        for (Iterator<Map.Entry<String, Cells>> iterator = cells.entrySet().iterator(); iterator.hasNext();) {
+            final IndexCounts indexCounts = iterator.next().getValue().sum(true);
+            if (indexCounts.isEmpty()) {
+                iterator.remove();
+            } else {
+                counts.add(indexCounts);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @return the number of indices currently tracked
+     */
+    public int size() {
+        return cells.size();
+    }
+
+    /**
+     * @return the number of increments dropped because the registry was full
+     */
+    public long droppedIncrements() {
+        return droppedIncrements.sum();
+    }
+
+    /**
+     * Counts of a single index at the time of a snapshot.
+     */
+    public record IndexCounts(String index, long searchQueryCount, long indexRequestCount, long getRequestCount) implements Writeable {
+
+        public IndexCounts(StreamInput in) throws IOException {
+            this(in.readString(), in.readVLong(), in.readVLong(), in.readVLong());
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeString(index);
+            out.writeVLong(searchQueryCount);
+            out.writeVLong(indexRequestCount);
+            out.writeVLong(getRequestCount);
+        }
+
+        /**
+         * @return the total number of requests of all operations
+         */
+        public long totalCount() {
+            return searchQueryCount + indexRequestCount + getRequestCount;
+        }
+
+        public long count(Operation operation) {
+            return switch (operation) {
+                case SEARCH_QUERY -> searchQueryCount;
+                case INDEX_REQUEST -> indexRequestCount;
+                case GET_REQUEST -> getRequestCount;
+            };
+        }
+
+        boolean isEmpty() {
+            return searchQueryCount == 0 && indexRequestCount == 0 && getRequestCount == 0;
+        }
+    }
+
+    private static final class Cells {
+        private final String index;
+        private final LongAdder[] adders = new LongAdder[Operation.VALUES.length];
+
+        Cells(String index) {
+            this.index = index;
+            for (int i = 0; i < adders.length; i++) {
+                adders[i] = new LongAdder();
+            }
+        }
+
+        IndexCounts sum(boolean reset) {
+            return new IndexCounts(
+                index,
+                sum(Operation.SEARCH_QUERY, reset),
+                sum(Operation.INDEX_REQUEST, reset),
+                sum(Operation.GET_REQUEST, reset)
+            );
+        }
+
+        private long sum(Operation operation, boolean reset) {
+            final LongAdder adder = adders[operation.ordinal()];
+            return reset ? adder.sumThenReset() : adder.sum();
+        }
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.myprofiler;
+
+import org.apache.lucene.util.hppc.BitMixer;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.tdigest.Centroid;
+import org.elasticsearch.tdigest.MergingDigest;
+import org.elasticsearch.tdigest.TDigest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-index latency histograms for the phases of a search, backed by {@link MergingDigest}s. A digest is not thread-safe, so every
+ * (index, phase) pair is split into a number of lazily created stripes, each guarded by its own lock, and threads pick a stripe based
+ * on their id. Stripes are merged into a single digest when a snapshot is taken, which keeps the recording path mostly uncontended
+ * while still allowing the snapshots of several nodes to be merged together.
+ * <p>
+ * Like {@link ProfilerCounters}, the number of tracked indices is capped and indices without samples are evicted when draining.
+ * Samples for new indices that arrive while the registry is full are dropped and counted in {@link #droppedSamples()}.
+ */
+public final class ProfilerLatencies {
+
+    public static final int DEFAULT_MAX_INDICES = 1_000;
+    public static final double COMPRESSION = 100.0;
+
+    /**
+     * The phases for which latencies are recorded.
+     */
+    public enum Phase {
+        CAN_MATCH("can_match"),
+        QUERY("query"),
+        FETCH("fetch"),
+        COORDINATOR_REDUCE("coordinator_reduce");
+
+        private static final Phase[] VALUES = values();
+
+        private final String fieldName;
+
+        Phase(String fieldName) {
+            this.fieldName = fieldName;
+        }
+
+        /**
+         * @return the name under which this phase's latencies are reported
+         */
+        public String fieldName() {
+            return fieldName;
+        }
+    }
+
+    private final int maxIndices;
+    private final int numStripes;
+    private final ConcurrentMap<String, IndexStripes> stripes = ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency();
+    private final LongAdder droppedSamples = new LongAdder();
+
+    public ProfilerLatencies() {
+        this(DEFAULT_MAX_INDICES, Math.min(8, EsExecutors.allocatedProcessors(Settings.EMPTY)));
+    }
+
+    public ProfilerLatencies(int maxIndices, int numStripes) {
+        if (maxIndices <= 0) {
+            throw new IllegalArgumentException("maxIndices must be positive but was [" + maxIndices + "]");
+        }
+        if (numStripes <= 0) {
+            throw new IllegalArgumentException("numStripes must be positive but was [" + numStripes + "]");
+        }
+        this.maxIndices = maxIndices;
+        this.numStripes = numStripes;
+    }
+
+    /**
+     * Records the time the given phase took for the given index. Requests without an index are ignored.
+     */
+    public void record(String index, Phase phase, long tookInNanos) {
+        if (index == null) {
+            return;
+        }
+        IndexStripes indexStripes = stripes.get(index);
+        if (indexStripes == null) {
+            indexStripes = register(index);
+            if (indexStripes == null) {
+                droppedSamples.increment();
+                return;
+            }
+        }
+        final double tookInMillis = (double) tookInNanos / TimeUnit.MILLISECONDS.toNanos(1);
+        final Stripe stripe = indexStripes.stripe(phase, slot());
+        synchronized (stripe) {
+            stripe.digest.add(Math.max(0.0, tookInMillis));
+        }
+    }
+
+    private IndexStripes register(String index) {
+        if (stripes.size() >= maxIndices) {
+            // re-check in case another thread registered the index in the meantime
+            return stripes.get(index);
+        }
+        return stripes.computeIfAbsent(index, i -> new IndexStripes(i, numStripes));
+    }
+
+    private int slot() {
+        final long id = Thread.currentThread().getId();
+        // don't trust the thread id to have equiprobable low bits
+        return ((int) BitMixer.mix64(id) & 0x7FFFFFFF) % numStripes;
+    }
+
+    /**
+     * @return the latencies recorded so far for every tracked (index, phase) pair, without resetting them
+     */
+    public List<PhaseLatencies> peek() {
+        final List<PhaseLatencies> latencies = new ArrayList<>();
+        for (IndexStripes indexStripes : stripes.values()) {
+            indexStripes.collect(false, latencies);
+        }
+        return latencies;
+    }
+
+    /**
+     * Returns the latencies recorded since the previous drain and resets them. Indices without samples since the previous drain are
+     * not reported and are evicted from the registry.
+     */
+    public List<PhaseLatencies> drain() {
+        final List<PhaseLatencies> latencies = new ArrayList<>();
+        for (Iterator<Map.Entry<String, IndexStripes>> iterator = stripes.entrySet().iterator(); iterator.hasNext();) {
+            if (iterator.next().getValue().collect(true, latencies) == false) {
+                iterator.remove();
+            }
+        }
+        return latencies;
+    }
+
+    /**
+     * @return the number of samples dropped because the registry was full
+     */
+    public long droppedSamples() {
+        return droppedSamples.sum();
+    }
+
+    /**
+     * The latency distribution, in milliseconds, of a single phase of a single index.
+     */
+    public record PhaseLatencies(String index, Phase phase, TDigest digest) implements Writeable {
+
+        public PhaseLatencies(StreamInput in) throws IOException {
+            this(in.readString(), in.readEnum(Phase.class), readDigest(in));
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeString(index);
+            out.writeEnum(phase);
+            final Collection<Centroid> centroids = digest.centroids();
+            out.writeVInt(centroids.size());
+            for (Centroid centroid : centroids) {
+                out.writeDouble(centroid.mean());
+                out.writeVLong(centroid.count());
+            }
+        }
+
+        private static TDigest readDigest(StreamInput in) throws IOException {
+            final TDigest digest = newDigest();
+            final int numCentroids = in.readVInt();
+            for (int i = 0; i < numCentroids; i++) {
+                digest.add(in.readDouble(), in.readVLong());
+            }
+            return digest;
+        }
+
+        public long count() {
+            return digest.size();
+        }
+
+        /**
+         * @return the latency at the given quantile in milliseconds, or {@link Double#NaN} if there are no samples
+         */
+        public double quantile(double q) {
+            return digest.size() == 0 ? Double.NaN : digest.quantile(q);
+        }
+    }
+
+    private static final class IndexStripes {
+        private final String index;
+        private final int numStripes;
+        private final AtomicReferenceArray<Stripe> stripes;
+
+        IndexStripes(String index, int numStripes) {
+            this.index = index;
+            this.numStripes = numStripes;
+            this.stripes = new AtomicReferenceArray<>(Phase.VALUES.length * numStripes);
+        }
+
+        Stripe stripe(Phase phase, int slot) {
+            final int i = phase.ordinal() * numStripes + slot;
+            final Stripe stripe = stripes.get(i);
+            if (stripe != null) {
+                return stripe;
+            }
+            final Stripe newStripe = new Stripe();
+            return stripes.compareAndSet(i, null, newStripe) ? newStripe : stripes.get(i);
+        }
+
+        /**
+         * Merges the stripes of every phase and adds the non-empty results to the given list.
+         *
+         * @return whether any phase had samples
+         */
+        boolean collect(boolean reset, List<PhaseLatencies> latencies) {
+            boolean hasSamples = false;
+            for (Phase phase : Phase.VALUES) {
+                TDigest merged = null;
+                for (int slot = 0; slot < numStripes; slot++) {
+                    final Stripe stripe = stripes.get(phase.ordinal() * numStripes + slot);
+                    if (stripe == null) {
+                        continue;
+                    }
+                    final TDigest digest;
+                    synchronized (stripe) {
+                        if (stripe.digest.size() == 0) {
+                            continue;
+                        }
+                        if (reset) {
+                            digest = stripe.digest;
+                            stripe.digest = newDigest();
+                        } else {
+                            digest = newDigest();
+                            digest.add(stripe.digest);
+                        }
+                    }
+                    if (merged == null) {
+                        merged = digest;
+                    } else {
+                        merged.add(digest);
+                    }
+                }
+                if (merged != null) {
+                    hasSamples = true;
+                    latencies.add(new PhaseLatencies(index, phase, merged));
+                }
+            }
+            return hasSamples;
+        }
+    }
+
+    private static final class Stripe {
+        private TDigest digest = newDigest();
+    }
+
+    public static TDigest newDigest() {
+        return new MergingDigest(COMPRESSION);
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.myprofiler;
+
+import org.elasticsearch.common.Randomness;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.core.Nullable;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.xcontent.XContentParser;
+import org.elasticsearch.xcontent.XContentParserConfiguration;
+import org.elasticsearch.xcontent.XContentType;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks the most frequent and the most expensive query shapes executed on this node. A sampled fraction of the searches is
+ * normalized into a structural fingerprint, see {@link #fingerprint}, which is then fed into two {@link SpaceSavingSketch}es: one
+ * weighted by the number of executions and one by the time spent in the query phase.
+ * <p>
+ * Fingerprinting is disabled by default and enabled by setting {@link #SAMPLING_RATE_SETTING} to a value greater than zero.
+ */
+public final class ProfilerQueries {
+
+    public static final Setting<Double> SAMPLING_RATE_SETTING = Setting.doubleSetting(
+        "profiler.query_fingerprint.sampling_rate",
+        0.0,
+        0.0,
+        1.0,
+        Setting.Property.NodeScope,
+        Setting.Property.Dynamic
+    );
+
+    public static final int DEFAULT_TOP_K = 100;
+
+    /**
+     * Fingerprints longer than this are truncated, which bounds the memory held by the sketches.
+     */
+    static final int MAX_FINGERPRINT_LENGTH = 2048;
+
+    private static final String VALUE_PLACEHOLDER = "?";
+
+    private volatile double samplingRate;
+    private final SpaceSavingSketch<String> byCount;
+    private final SpaceSavingSketch<String> byCost;
+    private final LongAdder sampledQueries = new LongAdder();
+    private final LongAdder failedFingerprints = new LongAdder();
+
+    public ProfilerQueries() {
+        this(DEFAULT_TOP_K);
+    }
+
+    public ProfilerQueries(int topK) {
+        this.byCount = new SpaceSavingSketch<>(topK);
+        this.byCost = new SpaceSavingSketch<>(topK);
+    }
+
+    public void setSamplingRate(double samplingRate) {
+        this.samplingRate = samplingRate;
+    }
+
+    public double getSamplingRate() {
+        return samplingRate;
+    }
+
+    /**
+     * Fingerprints the given search source and records it, if this search is sampled.
+     */
+    public void maybeRecord(@Nullable SearchSourceBuilder source, long tookInNanos) {
+        final double rate = samplingRate;
+        if (source == null || rate <= 0.0 || (rate < 1.0 && Randomness.get().nextDouble() >= rate)) {
+            return;
+        }
+        final String fingerprint;
+        try {
+            fingerprint = fingerprint(source);
+        } catch (IOException | RuntimeException e) {
+            failedFingerprints.increment();
+            return;
+        }
+        sampledQueries.increment();
+        byCount.offer(fingerprint, 1);
+        byCost.offer(fingerprint, Math.max(1, TimeUnit.NANOSECONDS.toMicros(tookInNanos)));
+    }
+
+    /**
+     * @return the most frequently sampled query shapes, weighted by number of executions
+     */
+    public List<SpaceSavingSketch.Entry<String>> topByCount() {
+        return byCount.top();
+    }
+
+    /**
+     * @return the most expensive sampled query shapes, weighted by query phase time in microseconds
+     */
+    public List<SpaceSavingSketch.Entry<String>> topByCost() {
+        return byCost.top();
+    }
+
+    public long sampledQueries() {
+        return sampledQueries.sum();
+    }
+
+    public long failedFingerprints() {
+        return failedFingerprints.sum();
+    }
+
+    /**
+     * Returns the query shapes recorded since the previous drain and resets both sketches.
+     */
+    public Snapshot drain() {
+        return new Snapshot(byCount.drain(), byCost.drain());
+    }
+
+    public record Snapshot(List<SpaceSavingSketch.Entry<String>> byCount, List<SpaceSavingSketch.Entry<String>> byCost) {}
+
+    /**
+     * Normalizes the given search source into its structure: object keys are kept, every literal value is replaced with {@code ?} and
+     * consecutive array elements of the same shape are collapsed, so that for instance {@code terms} queries on the same field with a
+     * different number of values share the same fingerprint.
+     */
+    static String fingerprint(SearchSourceBuilder source) throws IOException {
+        final BytesReference bytes = XContentHelper.toXContent(source, XContentType.JSON, false);
+        try (
+            XContentParser parser = XContentHelper.createParserNotCompressed(XContentParserConfiguration.EMPTY, bytes, XContentType.JSON)
+        ) {
+            final StringBuilder fingerprint = new StringBuilder();
+            if (parser.nextToken() != null) {
+                normalize(parser, fingerprint);
+            }
+            if (fingerprint.length() > MAX_FINGERPRINT_LENGTH) {
+                fingerprint.setLength(MAX_FINGERPRINT_LENGTH);
+                fingerprint.append("...");
+            }
+            return fingerprint.toString();
+        }
+    }
+
+    private static void normalize(XContentParser parser, StringBuilder fingerprint) throws IOException {
+        switch (parser.currentToken()) {
+            case START_OBJECT -> {
+                fingerprint.append('{');
+                boolean first = true;
+                while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+                    if (first == false) {
+                        fingerprint.append(',');
+                    }
+                    first = false;
+                    fingerprint.append(parser.currentName()).append(':');
+                    parser.nextToken();
+                    normalize(parser, fingerprint);
+                }
+                fingerprint.append('}');
+            }
+            case START_ARRAY -> {
+                fingerprint.append('[');
+                String previous = null;
+                while (parser.nextToken() != XContentParser.Token.END_ARRAY) {
+                    final StringBuilder element = new StringBuilder();
+                    normalize(parser, element);
+                    final String shape = element.toString();
+                    if (shape.equals(previous) == false) {
+                        if (previous != null) {
+                            fingerprint.append(',');
+                        }
+                        fingerprint.append(shape);
+                        previous = shape;
+                    }
+                }
+                fingerprint.append(']');
+            }
+            default -> fingerprint.append(VALUE_PLACEHOLDER);
+        }
+    }
+}
@@ -8,23 +8,30 @@
 
 package org.elasticsearch.myprofiler;
 
-
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.elasticsearch.ElasticsearchException;
-import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.client.internal.node.NodeClient;
+import org.elasticsearch.core.Nullable;
 import org.elasticsearch.core.TimeValue;
 import org.elasticsearch.threadpool.Scheduler;
 import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.xcontent.ToXContent;
 import org.elasticsearch.xcontent.XContentBuilder;
 import org.elasticsearch.xcontent.XContentFactory;
 
 import java.io.IOException;
-import java.util.Map;
+import java.util.List;
 
 public class ProfilerScheduler {
+    private static final Logger logger = LogManager.getLogger(ProfilerScheduler.class);
+
     private final ThreadPool threadPool;
     private final NodeClient client;
     private final TimeValue interval;
+    // created when the scheduler starts and closed, which flushes the buffered documents, when it stops
+    @Nullable
+    private ProfilerStatsPublisher publisher;
     private volatile Scheduler.Cancellable cancellable;
 
     public ProfilerScheduler(ThreadPool threadPool, NodeClient client, TimeValue interval) {
@@ -33,63 +40,112 @@ public class ProfilerScheduler {
         this.interval = interval;
     }
 
+    @Nullable
+    public synchronized ProfilerStatsPublisher getPublisher() {
+        return publisher;
+    }
+
     public synchronized void start() {
         if (cancellable == null) {
             ProfilerState.getInstance().enableProfiling();
-            System.out.println("scheduler running");
-            cancellable = threadPool.scheduleWithFixedDelay(this::run, interval,threadPool.generic());
+            publisher = new ProfilerStatsPublisher(client, interval);
+            logger.debug("started profiling, publishing stats every [{}]", interval);
+            cancellable = threadPool.scheduleWithFixedDelay(this::run, interval, threadPool.generic());
         }
     }
+
     public synchronized void stop() {
         if (cancellable != null) {
             ProfilerState.getInstance().disableProfiling();
-            System.out.println("scheduler off");
             cancellable.cancel();
             cancellable = null;
+            // closing waits for the buffered documents to be flushed, which shouldn't block the caller
+            threadPool.generic().execute(publisher::close);
+            publisher = null;
+            logger.debug("stopped profiling");
         }
     }
 
-    private void run() {
+    private synchronized void run() {
+        if (publisher == null) {
+            // stopped in the meantime
+            return;
+        }
         ProfilerState profilerState = ProfilerState.getInstance();
         long startTime = System.currentTimeMillis();
-        long endTime = startTime+300000;
+        long endTime = startTime + interval.millis();
         if (profilerState.isProfiling()) {
             long totalSearchQueries = profilerState.getQueryCount();
-            Map<String, Map<String, Long>> stats = profilerState.collectAndResetStats();
+            List<ProfilerCounters.IndexCounts> stats = profilerState.collectAndResetStats();
+            List<ProfilerLatencies.PhaseLatencies> latencies = profilerState.collectAndResetLatencies();
+            ProfilerQueries.Snapshot queries = profilerState.collectAndResetQueries();
             // Code to push stats to Elasticsearch index
 
-            pushStatsToIndex(stats,totalSearchQueries,startTime,endTime);
+            pushStatsToIndex(stats,latencies,queries,totalSearchQueries,startTime,endTime);
         }
     }
-    private void pushStatsToIndex(Map<String, Map<String, Long>> stats,long totalSearchQueries,long startTime,long endTime) throws ElasticsearchException{
-
-//        System.out.println("Statistics for the last interval:");
-//        for (Map.Entry<String, Long> entry : stats.entrySet()) {
-//            System.out.println(entry.getKey() + ": " + entry.getValue());
-//        }
+    private void pushStatsToIndex(
+        List<ProfilerCounters.IndexCounts> stats,
+        List<ProfilerLatencies.PhaseLatencies> latencies,
+        ProfilerQueries.Snapshot queries,
+        long totalSearchQueries,
+        long startTime,
+        long endTime
+    ) throws ElasticsearchException {
+        logger.trace("publishing profiler stats of [{}] indices and [{}] search queries", stats.size(), totalSearchQueries);
         try {
             XContentBuilder builder = XContentFactory.jsonBuilder().startObject()
-                .field("nodeName", "node-1")
+                .field("nodeId", client.getLocalNodeId())
                 .field("totalSearchQueries", totalSearchQueries)
                 .field("startTime", startTime)
                 .field("endTime", endTime)
                 .startArray("stats");
 
-            for (Map.Entry<String, Map<String, Long>> entry : stats.entrySet()) {
+            for (ProfilerCounters.IndexCounts indexCounts : stats) {
+                builder.startObject().field("index", indexCounts.index());
+                for (ProfilerCounters.Operation operation : ProfilerCounters.Operation.values()) {
+                    builder.field(operation.fieldName(), indexCounts.count(operation));
+                }
+                builder.endObject();
+            }
+            builder.endArray();
+            builder.startArray("latencies");
+            for (ProfilerLatencies.PhaseLatencies phaseLatencies : latencies) {
                 builder.startObject()
-                    .field("index", entry.getKey())
-                    .field("search_query_count", entry.getValue().getOrDefault("search_query_count", 0L))
-                    .field("index_request_count", entry.getValue().getOrDefault("index_request_count", 0L))
-                    .field("get_request_count", entry.getValue().getOrDefault("get_request_count", 0L))
+                    .field("index", phaseLatencies.index())
+                    .field("phase", phaseLatencies.phase().fieldName())
+                    .field("count", phaseLatencies.count())
+                    .field("p50_in_millis", phaseLatencies.quantile(0.5))
+                    .field("p99_in_millis", phaseLatencies.quantile(0.99))
+                    .field("p999_in_millis", phaseLatencies.quantile(0.999))
                     .endObject();
             }
-            builder.endArray().endObject();
-            IndexRequest indexRequest = new IndexRequest("profiler_stats").source(builder);
-            client.index(indexRequest);
+            builder.endArray();
+            builder.startObject("hot_queries");
+            toXContent(builder, "most_frequent", queries.byCount());
+            toXContent(builder, "most_expensive_in_micros", queries.byCost());
+            builder.endObject();
+            builder.startObject("publisher");
+            publisher.stats().toXContent(builder, ToXContent.EMPTY_PARAMS);
+            builder.endObject();
+            builder.endObject();
+            publisher.publish(builder);
         }catch (IOException e){
             throw new ElasticsearchException(e);
         }
 
     }
 
+    private static void toXContent(XContentBuilder builder, String name, List<SpaceSavingSketch.Entry<String>> entries)
+        throws IOException {
+        builder.startArray(name);
+        for (SpaceSavingSketch.Entry<String> entry : entries) {
+            builder.startObject()
+                .field("shape", entry.key())
+                .field("weight", entry.weight())
+                .field("error", entry.error())
+                .endObject();
+        }
+        builder.endArray();
+    }
 }
@@ -8,31 +8,29 @@
 
 package org.elasticsearch.myprofiler;
 
+import org.elasticsearch.core.Nullable;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 public class ProfilerState {
-    private static ProfilerState instance;
-    private boolean profiling;
-    private AtomicLong queryCount;
-    private ConcurrentHashMap<String,AtomicLong> index_search_query_count;
-    private ConcurrentHashMap<String,AtomicLong> index_requests_count;
-    private ConcurrentHashMap<String,AtomicLong> index_get_requests_count;
+    private static final ProfilerState instance = new ProfilerState();
+    private volatile boolean profiling;
+    private final LongAdder queryCount;
+    private final ProfilerCounters counters;
+    private final ProfilerLatencies latencies;
+    private final ProfilerQueries queries;
 
     private ProfilerState() {
         this.profiling = false;
-        this.queryCount = new AtomicLong(0);
-        this.index_search_query_count = new ConcurrentHashMap<>();
-        this.index_requests_count = new ConcurrentHashMap<>();
-        this.index_get_requests_count = new ConcurrentHashMap<>();
+        this.queryCount = new LongAdder();
+        this.counters = new ProfilerCounters();
+        this.latencies = new ProfilerLatencies();
+        this.queries = new ProfilerQueries();
     }
 
-    public static synchronized ProfilerState getInstance() {
-        if (instance == null) {
-            instance = new ProfilerState();
-        }
+    public static ProfilerState getInstance() {
         return instance;
     }
 
@@ -50,45 +48,76 @@ public class ProfilerState {
 
     public void incrementQueryCount() {
         if (profiling) {
-            queryCount.incrementAndGet();
+            queryCount.increment();
         }
     }
 
-    public synchronized int getStatus(){
+    public int getStatus(){
         return profiling ? 1:0;
     }
 
     public long getQueryCount() {
-        return queryCount.get();
+        return queryCount.sum();
     }
 
     public void resetQueryCount() {
-        queryCount.set(0);
-    }
-    public synchronized ConcurrentHashMap<String, AtomicLong> getIndex_query_count(){
-        return index_search_query_count;
+        queryCount.reset();
     }
-    public synchronized ConcurrentHashMap<String, AtomicLong> getIndex_requests_count(){
-        return index_requests_count;
+
+    public void recordSearchQuery(String index) {
+        record(index, ProfilerCounters.Operation.SEARCH_QUERY);
     }
-    public synchronized ConcurrentHashMap<String, AtomicLong> getIndex_get_requests_count(){
-        return index_get_requests_count;
+
+    public void recordIndexRequest(String index) {
+        record(index, ProfilerCounters.Operation.INDEX_REQUEST);
     }
 
+    public void recordGetRequest(String index) {
+        record(index, ProfilerCounters.Operation.GET_REQUEST);
+    }
 
-    public ConcurrentHashMap<String, Map<String, Long>> collectAndResetStats() {
-        ConcurrentHashMap<String, Map<String, Long>> stats = new ConcurrentHashMap<>();
-        for (Map.Entry<String, AtomicLong> entry : index_search_query_count.entrySet()) {
-            stats.computeIfAbsent(entry.getKey(), k -> new ConcurrentHashMap<>()).put("search_query_count", entry.getValue().getAndSet(0));
+    private void record(String index, ProfilerCounters.Operation operation) {
+        if (profiling) {
+            queryCount.increment();
+            counters.increment(index, operation);
         }
-        for (Map.Entry<String, AtomicLong> entry : index_requests_count.entrySet()) {
-            stats.computeIfAbsent(entry.getKey(), k -> new ConcurrentHashMap<>()).put("index_request_count", entry.getValue().getAndSet(0));
+    }
+
+    public void recordLatency(String index, ProfilerLatencies.Phase phase, long tookInNanos) {
+        if (profiling) {
+            latencies.record(index, phase, tookInNanos);
         }
-        for (Map.Entry<String, AtomicLong> entry : index_get_requests_count.entrySet()) {
-            stats.computeIfAbsent(entry.getKey(), k -> new ConcurrentHashMap<>()).put("index_get_request_count", entry.getValue().getAndSet(0));
+    }
+
+    public void recordQueryShape(@Nullable SearchSourceBuilder source, long tookInNanos) {
+        if (profiling) {
+            queries.maybeRecord(source, tookInNanos);
         }
-        queryCount.set(0);
-//        stats.put("totalQueries", queryCount.getAndSet(0));
+    }
+
+    public ProfilerCounters getCounters() {
+        return counters;
+    }
+
+    public ProfilerLatencies getLatencies() {
+        return latencies;
+    }
+
+    public ProfilerQueries getQueries() {
+        return queries;
+    }
+
+    public List<ProfilerCounters.IndexCounts> collectAndResetStats() {
+        List<ProfilerCounters.IndexCounts> stats = counters.drain();
+        queryCount.reset();
         return stats;
     }
+
+    public List<ProfilerLatencies.PhaseLatencies> collectAndResetLatencies() {
+        return latencies.drain();
+    }
+
+    public ProfilerQueries.Snapshot collectAndResetQueries() {
+        return queries.drain();
+    }
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.myprofiler;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor2;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.internal.Client;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.core.Nullable;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.tdigest.TDigest;
+import org.elasticsearch.xcontent.ToXContentFragment;
+import org.elasticsearch.xcontent.XContentBuilder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publishes profiler stats documents to the {@link #INDEX_NAME} index. Documents are buffered in a {@link BulkProcessor2} and written in
+ * batches, either once enough documents have accumulated or when the flush interval elapses. The bytes buffered or in flight are capped:
+ * documents published while the cap is reached are dropped and counted rather than queued, so a slow or unavailable stats index never
+ * holds on to more than a bounded amount of memory on the profiled node.
+ */
+public class ProfilerStatsPublisher implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(ProfilerStatsPublisher.class);
+
+    public static final String INDEX_NAME = "profiler_stats";
+
+    /**
+     * Each node publishes one document per publish interval, so a bulk request holds the documents of this many publish intervals.
+     */
+    static final int DOCS_PER_BULK = 5;
+    static final ByteSizeValue BULK_SIZE = ByteSizeValue.ofMb(1);
+    static final ByteSizeValue MAX_BYTES_IN_FLIGHT = ByteSizeValue.ofMb(10);
+    static final int MAX_RETRIES = 3;
+
+    private final BulkProcessor2 bulkProcessor;
+    private final Map<Long, Long> flushStartTimes = ConcurrentCollections.newConcurrentMap();
+    private final LongAdder publishedDocs = new LongAdder();
+    private final LongAdder droppedDocs = new LongAdder();
+    private final LongAdder failedDocs = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    // guarded by itself
+    private final TDigest flushLatencies = ProfilerLatencies.newDigest();
+
+    /**
+     * @param publishInterval how often documents are published, the flush interval spans {@link #DOCS_PER_BULK} of them
+     */
+    public ProfilerStatsPublisher(Client client, TimeValue publishInterval) {
+        this(client, DOCS_PER_BULK, MAX_BYTES_IN_FLIGHT, TimeValue.timeValueMillis(publishInterval.millis() * DOCS_PER_BULK));
+    }
+
+    ProfilerStatsPublisher(Client client, int bulkActions, ByteSizeValue maxBytesInFlight, @Nullable TimeValue flushInterval) {
+        this.bulkProcessor = BulkProcessor2.builder(client::bulk, new Listener(), client.threadPool())
+            .setBulkActions(bulkActions)
+            .setBulkSize(BULK_SIZE)
+            .setMaxBytesInFlight(maxBytesInFlight)
+            .setFlushInterval(flushInterval)
+            .setMaxNumberOfRetries(MAX_RETRIES)
+            .build();
+    }
+
+    /**
+     * Adds the given stats document to the next batch, or drops it if too many bytes are already buffered or in flight.
+     */
+    public void publish(XContentBuilder document) {
+        try {
+            bulkProcessor.add(new IndexRequest(INDEX_NAME).source(document));
+        } catch (EsRejectedExecutionException e) {
+            droppedDocs.increment();
+            logger.debug("dropping profiler stats document, too many bytes in flight", e);
+        }
+    }
+
+    public Stats stats() {
+        final double p50;
+        final double p99;
+        synchronized (flushLatencies) {
+            p50 = flushLatencies.size() == 0 ? Double.NaN : flushLatencies.quantile(0.5);
+            p99 = flushLatencies.size() == 0 ? Double.NaN : flushLatencies.quantile(0.99);
+        }
+        return new Stats(publishedDocs.sum(), droppedDocs.sum(), failedDocs.sum(), flushes.sum(), p50, p99);
+    }
+
+    @Override
+    public void close() {
+        bulkProcessor.close();
+    }
+
+    private void onFlushCompleted(long executionId, int numberOfActions, int numberOfFailures) {
+        final Long startTime = flushStartTimes.remove(executionId);
+        if (startTime != null) {
+            final double tookInMillis = (double) (System.nanoTime() - startTime) / TimeUnit.MILLISECONDS.toNanos(1);
+            synchronized (flushLatencies) {
+                flushLatencies.add(tookInMillis);
+            }
+        }
+        flushes.increment();
+        publishedDocs.add(numberOfActions - numberOfFailures);
+        failedDocs.add(numberOfFailures);
+    }
+
+    private class Listener implements BulkProcessor2.Listener {
+        @Override
+        public void beforeBulk(long executionId, BulkRequest request) {
+            flushStartTimes.put(executionId, System.nanoTime());
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+            int numberOfFailures = 0;
+            for (BulkItemResponse item : response.getItems()) {
+                if (item.isFailed()) {
+                    numberOfFailures++;
+                }
+            }
+            if (numberOfFailures > 0) {
+                logger.debug("failed to index [{}] of [{}] profiler stats documents", numberOfFailures, request.numberOfActions());
+            }
+            onFlushCompleted(executionId, request.numberOfActions(), numberOfFailures);
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, Exception failure) {
+            logger.debug(() -> "failed to index [" + request.numberOfActions() + "] profiler stats documents", failure);
+            onFlushCompleted(executionId, request.numberOfActions(), request.numberOfActions());
+        }
+    }
+
+    /**
+     * Self-monitoring metrics of the publisher, reported alongside the stats it publishes.
+     */
+    public record Stats(
+        long publishedDocs,
+        long droppedDocs,
+        long failedDocs,
+        long flushes,
+        double flushP50InMillis,
+        double flushP99InMillis
+    ) implements ToXContentFragment {
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.field("published_docs", publishedDocs);
+            builder.field("dropped_docs", droppedDocs);
+            builder.field("failed_docs", failedDocs);
+            builder.field("flushes", flushes);
+            if (flushes > 0) {
+                builder.field("flush_p50_in_millis", flushP50InMillis);
+                builder.field("flush_p99_in_millis", flushP99InMillis);
+            }
+            return builder;
+        }
+    }
+}
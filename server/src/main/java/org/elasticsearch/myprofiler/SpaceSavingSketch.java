@@ -0,0 +1,115 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.myprofiler;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A weighted Space-Saving heavy hitters sketch (Metwally et al.). It tracks at most {@code capacity} keys. When a key that is not tracked
+ * is offered while the sketch is full, it replaces the key with the smallest weight and inherits that weight as its error, so the
+ * reported weight of a key overestimates its true weight by at most {@link Entry#error()}. Any key whose true weight exceeds
+ * {@code total / capacity} is guaranteed to be tracked.
+ * <p>
+ * The sketch is meant to be fed with sampled data, so it uses a simple monitor and finds the smallest entry with a linear scan.
+ */
+public final class SpaceSavingSketch<K> {
+
+    private final int capacity;
+    private final Map<K, Counter<K>> counters;
+    private long total;
+
+    public SpaceSavingSketch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive but was [" + capacity + "]");
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity);
+    }
+
+    /**
+     * Adds the given weight to the given key.
+     */
+    public synchronized void offer(K key, long weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("weight must be positive but was [" + weight + "]");
+        }
+        total += weight;
+        final Counter<K> counter = counters.get(key);
+        if (counter != null) {
+            counter.weight += weight;
+        } else if (counters.size() < capacity) {
+            counters.put(key, new Counter<>(key, weight, 0));
+        } else {
+            Counter<K> min = null;
+            for (Counter<K> candidate : counters.values()) {
+                if (min == null || candidate.weight < min.weight) {
+                    min = candidate;
+                }
+            }
+            assert min != null;
+            counters.remove(min.key);
+            counters.put(key, new Counter<>(key, min.weight + weight, min.weight));
+        }
+    }
+
+    /**
+     * @return the tracked keys, heaviest first, without resetting the sketch
+     */
+    public synchronized List<Entry<K>> top() {
+        return entries();
+    }
+
+    /**
+     * @return the tracked keys, heaviest first, and resets the sketch
+     */
+    public synchronized List<Entry<K>> drain() {
+        final List<Entry<K>> entries = entries();
+        counters.clear();
+        total = 0;
+        return entries;
+    }
+
+    /**
+     * @return the sum of all weights offered since the sketch was last drained
+     */
+    public synchronized long total() {
+        return total;
+    }
+
+    private List<Entry<K>> entries() {
+        assert Thread.holdsLock(this);
+        final List<Entry<K>> entries = new ArrayList<>(counters.size());
+        for (Counter<K> counter : counters.values()) {
+            entries.add(new Entry<>(counter.key, counter.weight, counter.error));
+        }
+        entries.sort(Comparator.comparingLong((Entry<K> entry) -> entry.weight()).reversed());
+        return entries;
+    }
+
+    /**
+     * A tracked key with its estimated weight, which overestimates the true weight of the key by at most {@code error}.
+     */
+    public record Entry<K>(K key, long weight, long error) {}
+
+    private static final class Counter<K> {
+        private final K key;
+        private long weight;
+        private final long error;
+
+        Counter(K key, long weight, long error) {
+            this.key = key;
+            this.weight = weight;
+            this.error = error;
+        }
+    }
+}
@@ -58,6 +58,7 @@ import org.elasticsearch.health.HealthPeriodicLogger;
 import org.elasticsearch.http.HttpServerTransport;
 import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.indices.cluster.IndicesClusterStateService;
+import org.elasticsearch.indices.cluster.ShardTimestampRangeReporter;
 import org.elasticsearch.indices.recovery.PeerRecoverySourceService;
 import org.elasticsearch.indices.store.IndicesStore;
 import org.elasticsearch.monitor.fs.FsHealthService;
@@ -290,6 +291,7 @@ public class Node implements Closeable {
         injector.getInstance(MappingUpdatedAction.class).setClient(client);
         injector.getInstance(IndicesService.class).start();
         injector.getInstance(IndicesClusterStateService.class).start();
+        injector.getInstance(ShardTimestampRangeReporter.class).start();
         injector.getInstance(SnapshotsService.class).start();
         injector.getInstance(SnapshotShardsService.class).start();
         injector.getInstance(RepositoriesService.class).start();
@@ -464,6 +466,7 @@ public class Node implements Closeable {
         stopIfStarted(RepositoriesService.class);
         // stop any changes happening as a result of cluster state changes
         stopIfStarted(IndicesClusterStateService.class);
+        stopIfStarted(ShardTimestampRangeReporter.class);
         // close cluster coordinator early to not react to pings anymore.
         // This can confuse other nodes and delay things - mostly if we're the master and we're running tests.
         stopIfStarted(Coordinator.class);
@@ -523,6 +526,7 @@ public class Node implements Closeable {
         toClose.add(injector.getInstance(RepositoriesService.class));
         toClose.add(() -> stopWatch.stop().start("indices_cluster"));
         toClose.add(injector.getInstance(IndicesClusterStateService.class));
+        toClose.add(injector.getInstance(ShardTimestampRangeReporter.class));
         toClose.add(() -> stopWatch.stop().start("indices"));
         toClose.add(injector.getInstance(IndicesService.class));
         // close filter/fielddata caches after indices
@@ -139,6 +139,8 @@ import org.elasticsearch.monitor.MonitorService;
 import org.elasticsearch.monitor.fs.FsHealthService;
 import org.elasticsearch.monitor.jvm.JvmInfo;
 import org.elasticsearch.monitor.metrics.NodeMetrics;
+import org.elasticsearch.myprofiler.ProfilerQueries;
+import org.elasticsearch.myprofiler.ProfilerState;
 import org.elasticsearch.node.internal.TerminationHandler;
 import org.elasticsearch.node.internal.TerminationHandlerProvider;
 import org.elasticsearch.persistent.PersistentTasksClusterService;
@@ -655,7 +657,7 @@ class NodeConstruction {
             telemetryProvider.getTracer()
         );
 
-        ClusterService clusterService = createClusterService(settingsModule, threadPool, taskManager);
+        ClusterService clusterService = createClusterService(settingsModule, threadPool, taskManager, telemetryProvider);
         clusterService.addStateApplier(scriptService);
 
         modules.bindToInstance(DocumentParsingProvider.class, documentParsingProvider);
@@ -1054,6 +1056,10 @@ class NodeConstruction {
             telemetryProvider.getTracer()
         );
 
+        // the profiler state is shared by the whole node, so its settings are wired here rather than by the services that record into it
+        final ProfilerQueries profilerQueries = ProfilerState.getInstance().getQueries();
+        clusterService.getClusterSettings().initializeAndWatch(ProfilerQueries.SAMPLING_RATE_SETTING, profilerQueries::setSamplingRate);
+
         modules.add(
             loadPersistentTasksService(
                 settingsModule,
@@ -1166,12 +1172,18 @@ class NodeConstruction {
         postInjection(clusterModule, actionModule, clusterService, transportService, featureService);
     }
 
-    private ClusterService createClusterService(SettingsModule settingsModule, ThreadPool threadPool, TaskManager taskManager) {
+    private ClusterService createClusterService(
+        SettingsModule settingsModule,
+        ThreadPool threadPool,
+        TaskManager taskManager,
+        TelemetryProvider telemetryProvider
+    ) {
         ClusterService clusterService = new ClusterService(
             settingsModule.getSettings(),
             settingsModule.getClusterSettings(),
             threadPool,
-            taskManager
+            taskManager,
+            telemetryProvider.getMeterRegistry()
         );
         resourcesToClose.add(clusterService);
 
@@ -41,6 +41,7 @@ import org.elasticsearch.rest.RestHandler.Route;
 //import org.elasticsearch.rest.action.ProfilerActionHandler;
 import org.elasticsearch.rest.action.ProfilerActionHandler;
 import org.elasticsearch.rest.action.ProfilerCount;
+import org.elasticsearch.rest.action.ProfilerHotIndices;
 import org.elasticsearch.rest.action.ProfilerOff;
 import org.elasticsearch.rest.action.ProfilerOn;
 import org.elasticsearch.rest.action.ProfilerStatus;
@@ -136,6 +137,7 @@ public class RestController implements HttpServerTransport.Dispatcher {
         registerHandler(new ProfilerOn());
         registerHandler(new ProfilerCount());
         registerHandler(new ProfilerStatus());
+        registerHandler(new ProfilerHotIndices());
         registerHandler(new ProfilerActionHandler(client));
         this.apiProtections = new ServerlessApiProtections(false);
     }
@@ -9,6 +9,7 @@
 package org.elasticsearch.rest.action;
 
 import org.elasticsearch.client.internal.node.NodeClient;
+import org.elasticsearch.myprofiler.ProfilerCounters;
 import org.elasticsearch.myprofiler.ProfilerState;
 import org.elasticsearch.rest.BaseRestHandler;
 import org.elasticsearch.rest.RestRequest;
@@ -17,9 +18,6 @@ import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.xcontent.XContentBuilder;
 
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
 
 public class ProfilerData extends BaseRestHandler {
     @Override
@@ -42,14 +40,14 @@ public class ProfilerData extends BaseRestHandler {
         // int count = 2;
         return channel -> {
             try {
-                ConcurrentHashMap<String, AtomicLong> indexquerycount = ProfilerState.getInstance().getIndex_query_count();
+                List<ProfilerCounters.IndexCounts> indexCounts = ProfilerState.getInstance().getCounters().peek();
                 XContentBuilder builder = channel.newBuilder();
                 builder.startObject();
                 builder.startArray("indices");
-                for (Map.Entry<String, AtomicLong> entry : indexquerycount.entrySet()) {
+                for (ProfilerCounters.IndexCounts entry : indexCounts) {
                     builder.startObject();
-                    builder.field("index", entry.getKey());
-                    builder.field("search_query_count", entry.getValue().get());
+                    builder.field("index", entry.index());
+                    builder.field("search_query_count", entry.searchQueryCount());
                     builder.endObject();
                 }
                 builder.endArray();
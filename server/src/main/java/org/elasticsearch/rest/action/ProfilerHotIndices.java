@@ -0,0 +1,47 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.rest.action;
+
+import org.elasticsearch.action.TransportProfilerStatsAction;
+import org.elasticsearch.client.internal.node.NodeClient;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.action.RestActions.NodesResponseRestListener;
+
+import java.util.List;
+
+import static org.elasticsearch.rest.RestUtils.getTimeout;
+
+/**
+ * Returns the hottest indices of the cluster, merged from the live profiler counters and latency histograms of every node.
+ */
+public class ProfilerHotIndices extends BaseRestHandler {
+    @Override
+    public String getName() {
+        return "profiler_hot_indices_handler";
+    }
+
+    @Override
+    public List<Route> routes() {
+        return List.of(
+            new Route(RestRequest.Method.GET, "/profiler/hot_indices"),
+            new Route(RestRequest.Method.GET, "/profiler/{nodeId}/hot_indices")
+        );
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) {
+        String[] nodesIds = Strings.splitStringByCommaToArray(request.param("nodeId"));
+        TransportProfilerStatsAction.Request statsRequest = new TransportProfilerStatsAction.Request(nodesIds);
+        statsRequest.size(request.paramAsInt("size", TransportProfilerStatsAction.Request.DEFAULT_SIZE));
+        statsRequest.timeout(getTimeout(request));
+        return channel -> client.execute(TransportProfilerStatsAction.ACTION_TYPE, statsRequest, new NodesResponseRestListener<>(channel));
+    }
+}
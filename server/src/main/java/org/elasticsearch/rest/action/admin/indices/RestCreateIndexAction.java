@@ -30,7 +30,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicLong;
 
 import static java.util.Collections.singletonMap;
 import static org.elasticsearch.rest.RestRequest.Method.PUT;
@@ -57,10 +56,7 @@ public class RestCreateIndexAction extends BaseRestHandler {
     @Override
     public RestChannelConsumer prepareRequest(final RestRequest request, final NodeClient client) throws IOException {
         CreateIndexRequest createIndexRequest;
-        ProfilerState.getInstance().incrementQueryCount();
-        if(ProfilerState.getInstance().getStatus() == 1){
-            ProfilerState.getInstance().getIndex_requests_count().computeIfAbsent(request.params().get("index"),k->new AtomicLong(0)).addAndGet(1);
-        }
+        ProfilerState.getInstance().recordIndexRequest(request.params().get("index"));
         if (request.getRestApiVersion() == RestApiVersion.V_7) {
             createIndexRequest = prepareRequestV7(request);
         } else {
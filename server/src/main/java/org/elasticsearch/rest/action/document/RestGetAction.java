@@ -24,7 +24,6 @@ import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
 
 import java.io.IOException;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicLong;
 
 import static org.elasticsearch.rest.RestRequest.Method.GET;
 import static org.elasticsearch.rest.RestRequest.Method.HEAD;
@@ -56,10 +55,7 @@ public class RestGetAction extends BaseRestHandler {
         if (request.getRestApiVersion() == RestApiVersion.V_7) {
             request.param("type"); // consume and ignore the type
         }
-        ProfilerState.getInstance().incrementQueryCount();
-        if(ProfilerState.getInstance().getStatus() == 1){
-            ProfilerState.getInstance().getIndex_get_requests_count().computeIfAbsent(request.params().get("index"),k->new AtomicLong(0)).addAndGet(1);
-        }
+        ProfilerState.getInstance().recordGetRequest(request.params().get("index"));
 
         GetRequest getRequest = new GetRequest(request.param("index"), request.param("id"));
 
@@ -26,7 +26,6 @@ import org.elasticsearch.rest.action.RestToXContentListener;
 import java.io.IOException;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.atomic.AtomicLong;
 
 import static org.elasticsearch.rest.RestRequest.Method.POST;
 import static org.elasticsearch.rest.RestRequest.Method.PUT;
@@ -107,10 +106,7 @@ public class RestIndexAction extends BaseRestHandler {
             assert request.params().get("id") == null : "non-null id: " + request.params().get("id");
             // default to op_type create
             request.params().putIfAbsent("op_type", "create");
-            ProfilerState.getInstance().incrementQueryCount();
-            if(ProfilerState.getInstance().getStatus() == 1){
-                ProfilerState.getInstance().getIndex_requests_count().computeIfAbsent(request.params().get("index"),k->new AtomicLong(0)).addAndGet(1);
-            }
+            ProfilerState.getInstance().recordIndexRequest(request.params().get("index"));
             return super.prepareRequest(request, client);
         }
     }
@@ -226,7 +226,7 @@ final class DefaultSearchContext extends SearchContext {
         }
     }
 
-    static long getFieldCardinality(String field, IndexService indexService, DirectoryReader directoryReader) {
+    public static long getFieldCardinality(String field, IndexService indexService, DirectoryReader directoryReader) {
         MappedFieldType mappedFieldType = indexService.mapperService().fieldType(field);
         if (mappedFieldType == null) {
             return -1;
@@ -74,6 +74,7 @@ import org.elasticsearch.indices.ExecutorSelector;
 import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.indices.cluster.IndicesClusterStateService.AllocatedIndices.IndexRemovalReason;
+import org.elasticsearch.myprofiler.ProfilerLatencies;
 import org.elasticsearch.myprofiler.ProfilerState;
 import org.elasticsearch.node.ResponseCollectorService;
 import org.elasticsearch.script.FieldScript;
@@ -670,10 +671,7 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
      * when the object is no longer needed.
      */
     private SearchPhaseResult executeQueryPhase(ShardSearchRequest request, SearchShardTask task) throws Exception {
-        ProfilerState.getInstance().incrementQueryCount();
-        if(ProfilerState.getInstance().getStatus() == 1){
-            ProfilerState.getInstance().getIndex_query_count().computeIfAbsent(request.indices()[0],k->new AtomicLong(0)).addAndGet(1);
-        }
+        ProfilerState.getInstance().recordSearchQuery(request.indices()[0]);
 
        // ProfilerState.getInstance().getIndex_query_count().merge(request.indices()[0],1,Integer::sum);
 
@@ -1646,7 +1644,13 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
      * won't match any documents on the current shard.
      */
     public CanMatchShardResponse canMatch(ShardSearchRequest request) throws IOException {
-        return canMatch(request, true);
+        final long startTime = System.nanoTime();
+        try {
+            return canMatch(request, true);
+        } finally {
+            ProfilerState.getInstance()
+                .recordLatency(request.shardId().getIndexName(), ProfilerLatencies.Phase.CAN_MATCH, System.nanoTime() - startTime);
+        }
     }
 
     private CanMatchShardResponse canMatch(ShardSearchRequest request, boolean checkRefreshPending) throws IOException {
@@ -1866,6 +1870,15 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
                     } else {
                         listener.onQueryPhase(context, afterQueryTime - time);
                     }
+                    ProfilerState.getInstance()
+                        .recordLatency(
+                            context.indexShard().shardId().getIndexName(),
+                            fetch ? ProfilerLatencies.Phase.FETCH : ProfilerLatencies.Phase.QUERY,
+                            afterQueryTime - time
+                        );
+                    if (fetch == false) {
+                        ProfilerState.getInstance().recordQueryShape(context.request().source(), afterQueryTime - time);
+                    }
                 } else {
                     if (fetch) {
                         listener.onFailedFetchPhase(context);
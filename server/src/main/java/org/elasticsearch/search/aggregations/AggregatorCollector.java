@@ -50,6 +50,13 @@ public class AggregatorCollector implements TwoPhaseCollector {
         }
     }
 
+    /**
+     * @return the aggregations built by {@link #doPostCollection()}
+     */
+    public InternalAggregations getInternalAggregations() {
+        return InternalAggregations.from(internalAggregations);
+    }
+
     @Override
     public String toString() {
         String[] aggNames = new String[aggregators.length];
@@ -16,14 +16,21 @@ import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.ConstantScoreQuery;
 import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.MultiCollector;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHitCountCollector;
 import org.apache.lucene.search.TotalHits;
 import org.apache.lucene.search.Weight;
+import org.elasticsearch.common.CheckedSupplier;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
 import org.elasticsearch.common.lucene.Lucene;
 import org.elasticsearch.common.lucene.search.TopDocsAndMaxScore;
 import org.elasticsearch.common.util.concurrent.EsThreadPoolExecutor;
@@ -33,6 +40,9 @@ import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.SearchContextSourcePrinter;
 import org.elasticsearch.search.SearchService;
 import org.elasticsearch.search.aggregations.AggregationPhase;
+import org.elasticsearch.search.aggregations.AggregatorCollector;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.internal.ContextIndexSearcher;
 import org.elasticsearch.search.internal.ScrollContext;
 import org.elasticsearch.search.internal.SearchContext;
@@ -43,9 +53,11 @@ import org.elasticsearch.search.sort.SortAndFormats;
 import org.elasticsearch.search.suggest.SuggestPhase;
 import org.elasticsearch.threadpool.ThreadPool;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.function.ToLongFunction;
 
 import static org.elasticsearch.search.internal.SearchContext.TRACK_TOTAL_HITS_DISABLED;
 
@@ -223,19 +235,192 @@ public class QueryPhase {
             if (searchContext.terminateAfter() != SearchContext.DEFAULT_TERMINATE_AFTER) {
                 queryResult.terminatedEarly(queryPhaseResult.terminatedAfter());
             }
-            ExecutorService executor = searchContext.indexShard().getThreadPool().executor(ThreadPool.Names.SEARCH);
-            assert executor instanceof TaskExecutionTimeTrackingEsThreadPoolExecutor
-                || (executor instanceof EsThreadPoolExecutor == false /* in case thread pool is mocked out in tests */)
-                : "SEARCH threadpool should have an executor that exposes EWMA metrics, but is of type " + executor.getClass();
-            if (executor instanceof TaskExecutionTimeTrackingEsThreadPoolExecutor rExecutor) {
-                queryResult.nodeQueueSize(rExecutor.getCurrentQueueSize());
-                queryResult.serviceTimeEWMA((long) rExecutor.getTaskExecutionEWMA());
+            recordSearchThreadPoolStats(searchContext, queryResult);
+        } catch (Exception e) {
+            throw new QueryPhaseExecutionException(searchContext.shardTarget(), "Failed to execute main query", e);
+        }
+    }
+
+    private static void recordSearchThreadPoolStats(SearchContext searchContext, QuerySearchResult queryResult) {
+        ExecutorService executor = searchContext.indexShard().getThreadPool().executor(ThreadPool.Names.SEARCH);
+        assert executor instanceof TaskExecutionTimeTrackingEsThreadPoolExecutor
+            || (executor instanceof EsThreadPoolExecutor == false /* in case thread pool is mocked out in tests */)
+            : "SEARCH threadpool should have an executor that exposes EWMA metrics, but is of type " + executor.getClass();
+        if (executor instanceof TaskExecutionTimeTrackingEsThreadPoolExecutor rExecutor) {
+            queryResult.nodeQueueSize(rExecutor.getCurrentQueueSize());
+            queryResult.serviceTimeEWMA((long) rExecutor.getTaskExecutionEWMA());
+        }
+    }
+
+    /**
+     * Whether the query phase of the given request can be executed with {@link #executeBySegment}. This is the case for {@code size: 0}
+     * aggregation requests that do not depend on anything but the documents of each segment, and whose aggregations support parallel
+     * collection, so that combining the results of the individual segments yields the same result as searching the whole shard. Whether
+     * the aggregations need scores is only known once the aggregators are created, so {@link #executeBySegment} checks that itself.
+     */
+    public static boolean canExecuteBySegment(SearchContext searchContext, ToLongFunction<String> fieldCardinality) {
+        final SearchSourceBuilder source = searchContext.request().source();
+        return source != null
+            && searchContext.size() == 0
+            && searchContext.aggregations() != null
+            && searchContext.aggregations().isInSortOrderExecutionRequired() == false
+            && searchContext.sort() == null
+            && searchContext.parsedPostFilter() == null
+            && searchContext.minimumScore() == null
+            && searchContext.terminateAfter() == SearchContext.DEFAULT_TERMINATE_AFTER
+            && searchContext.scrollContext() == null
+            && searchContext.suggest() == null
+            && searchContext.queryPhaseRankShardContext() == null
+            && searchContext.getProfilers() == null
+            && getTimeoutCheck(searchContext) == null
+            && source.supportsParallelCollection(fieldCardinality);
+    }
+
+    /**
+     * Executes the query phase one segment at a time, looking up the hit count and the partially reduced aggregations of each segment in
+     * the given cache first, and then reduces the results of all segments into the result of the shard. Segments that did not change
+     * since a previous execution of the same request are thus not searched again.
+     * <p>
+     * Scores depend on the term statistics of the whole shard, which change with every refresh, so if the aggregations need scores then
+     * the result of a segment cannot be reused and this executes the query phase as usual without looking at the cache.
+     */
+    public static void executeBySegment(SearchContext searchContext, SegmentResultCache cache) throws QueryPhaseExecutionException {
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("{}", new SearchContextSourcePrinter(searchContext));
+        }
+
+        AggregationPhase.preProcess(searchContext);
+
+        final ContextIndexSearcher searcher = searchContext.searcher();
+        final SegmentCollector segmentCollector = new SegmentCollector(
+            searcher,
+            searchContext.rewrittenQuery(),
+            searchContext.aggregations().getAggsCollectorManager()
+        );
+        final boolean needsScores;
+        try {
+            needsScores = segmentCollector.scoreMode().needsScores();
+        } catch (Exception e) {
+            throw new QueryPhaseExecutionException(searchContext.shardTarget(), "Failed to execute main query", e);
+        }
+        if (needsScores) {
+            addCollectorsAndSearch(searchContext);
+            return;
+        }
+
+        final QuerySearchResult queryResult = searchContext.queryResult();
+        queryResult.searchTimedOut(false);
+        try {
+            queryResult.from(searchContext.from());
+            queryResult.size(searchContext.size());
+            final List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+            final List<SegmentResult> results = new ArrayList<>(leaves.size());
+            if (leaves.isEmpty()) {
+                // still build the empty aggregations
+                results.add(segmentCollector.collect(List.of()));
             }
+            for (LeafReaderContext leaf : leaves) {
+                results.add(cache.getOrCompute(leaf, () -> segmentCollector.collect(List.of(leaf))));
+            }
+
+            long hitCount = 0;
+            final List<InternalAggregations> aggregations = new ArrayList<>(results.size());
+            for (SegmentResult result : results) {
+                hitCount += result.hitCount();
+                aggregations.add(result.aggregations());
+            }
+            if (aggregations.size() == 1) {
+                queryResult.aggregations(aggregations.get(0));
+            } else {
+                queryResult.aggregations(
+                    InternalAggregations.topLevelReduce(
+                        aggregations,
+                        searchContext.aggregations().getAggregationReduceContextBuilder().forPartialReduction()
+                    )
+                );
+            }
+            final TopDocs topDocs = new TopDocs(totalHits(hitCount, searchContext.trackTotalHitsUpTo()), Lucene.EMPTY_SCORE_DOCS);
+            queryResult.topDocs(new TopDocsAndMaxScore(topDocs, Float.NaN), null);
+            recordSearchThreadPoolStats(searchContext, queryResult);
         } catch (Exception e) {
             throw new QueryPhaseExecutionException(searchContext.shardTarget(), "Failed to execute main query", e);
         }
     }
 
+    private static TotalHits totalHits(long hitCount, int trackTotalHitsUpTo) {
+        if (trackTotalHitsUpTo == TRACK_TOTAL_HITS_DISABLED) {
+            return new TotalHits(0, TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO);
+        } else if (hitCount > trackTotalHitsUpTo) {
+            return new TotalHits(trackTotalHitsUpTo, TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO);
+        } else {
+            return new TotalHits(hitCount, TotalHits.Relation.EQUAL_TO);
+        }
+    }
+
+    /**
+     * The hit count and the aggregations of a single segment.
+     */
+    public record SegmentResult(long hitCount, InternalAggregations aggregations) implements Writeable {
+
+        public SegmentResult(StreamInput in) throws IOException {
+            this(in.readVLong(), InternalAggregations.readFrom(in));
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeVLong(hitCount);
+            aggregations.writeTo(out);
+        }
+    }
+
+    @FunctionalInterface
+    public interface SegmentResultCache {
+        /**
+         * Returns the result of the given segment, computing it with the given loader if it is not cached.
+         */
+        SegmentResult getOrCompute(LeafReaderContext leaf, CheckedSupplier<SegmentResult, IOException> loader) throws Exception;
+    }
+
+    /**
+     * Collects the hits and aggregations of individual segments, with a fresh set of aggregators for every segment.
+     */
+    private static final class SegmentCollector {
+        private final ContextIndexSearcher searcher;
+        private final Query query;
+        private final CollectorManager<AggregatorCollector, Void> aggsCollectorManager;
+        // created by scoreMode() and used for the next segment
+        private AggregatorCollector nextAggsCollector;
+        private Weight weight;
+
+        SegmentCollector(ContextIndexSearcher searcher, Query query, CollectorManager<AggregatorCollector, Void> aggsCollectorManager) {
+            this.searcher = searcher;
+            this.query = query;
+            this.aggsCollectorManager = aggsCollectorManager;
+        }
+
+        ScoreMode scoreMode() throws IOException {
+            if (nextAggsCollector == null) {
+                nextAggsCollector = aggsCollectorManager.newCollector();
+            }
+            return nextAggsCollector.scoreMode();
+        }
+
+        SegmentResult collect(List<LeafReaderContext> leaves) throws IOException {
+            final AggregatorCollector aggsCollector = nextAggsCollector == null ? aggsCollectorManager.newCollector() : nextAggsCollector;
+            nextAggsCollector = null;
+            final TotalHitCountCollector hitCountCollector = new TotalHitCountCollector();
+            if (weight == null) {
+                final ScoreMode scoreMode = aggsCollector.scoreMode();
+                assert scoreMode.needsScores() == false : "the results of segments are only cached if no scores are needed";
+                // same as ContextIndexSearcher, take advantage of the rewrite rules of ConstantScoreQuery when scores are not needed
+                weight = searcher.createWeight(searcher.rewrite(new ConstantScoreQuery(query)), scoreMode, 1f);
+            }
+            searcher.search(leaves, weight, MultiCollector.wrap(hitCountCollector, aggsCollector));
+            aggsCollector.doPostCollection();
+            return new SegmentResult(hitCountCollector.getTotalHits(), aggsCollector.getInternalAggregations());
+        }
+    }
+
     /**
      * Returns whether collection within the provided <code>reader</code> can be early-terminated if it sorts
      * with <code>sortAndFormats</code>.
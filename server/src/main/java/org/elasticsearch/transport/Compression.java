@@ -18,6 +18,7 @@ import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.core.Booleans;
 import org.elasticsearch.lz4.ESLZ4Compressor;
 import org.elasticsearch.lz4.ESLZ4Decompressor;
+import org.elasticsearch.nativeaccess.NativeAccess;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -26,14 +27,19 @@ public class Compression {
 
     public enum Scheme {
         LZ4,
-        DEFLATE;
+        DEFLATE,
+        ZSTD;
 
         static final TransportVersion LZ4_VERSION = TransportVersions.V_7_14_0;
+        static final TransportVersion ZSTD_VERSION = TransportVersions.TRANSPORT_COMPRESSION_ZSTD;
         static final int HEADER_LENGTH = 4;
         private static final byte[] DEFLATE_HEADER = new byte[] { 'D', 'F', 'L', '\0' };
         private static final byte[] LZ4_HEADER = new byte[] { 'L', 'Z', '4', '\0' };
+        private static final byte[] ZSTD_HEADER = new byte[] { 'Z', 'S', 'T', '\0' };
         private static final int LZ4_BLOCK_SIZE;
         private static final boolean USE_FORKED_LZ4;
+        private static final int ZSTD_BLOCK_SIZE;
+        private static final int ZSTD_LEVEL;
 
         static {
             String blockSizeString = System.getProperty("es.transport.compression.lz4_block_size");
@@ -48,6 +54,28 @@ public class Compression {
             }
 
             USE_FORKED_LZ4 = Booleans.parseBoolean(System.getProperty("es.compression.use_forked_lz4", "true"));
+
+            String zstdBlockSizeString = System.getProperty("es.transport.compression.zstd_block_size");
+            if (zstdBlockSizeString != null) {
+                int zstdBlockSize = Integer.parseInt(zstdBlockSizeString);
+                if (zstdBlockSize < 1024 || zstdBlockSize > ZstdTransportDecompressor.MAX_BLOCK_SIZE) {
+                    throw new IllegalArgumentException("zstd_block_size must be >= 1KB and <= 1MB");
+                }
+                ZSTD_BLOCK_SIZE = zstdBlockSize;
+            } else {
+                ZSTD_BLOCK_SIZE = 256 * 1024;
+            }
+
+            String zstdLevelString = System.getProperty("es.transport.compression.zstd_level");
+            if (zstdLevelString != null) {
+                int zstdLevel = Integer.parseInt(zstdLevelString);
+                if (zstdLevel < 1 || zstdLevel > 19) {
+                    throw new IllegalArgumentException("zstd_level must be >= 1 and <= 19");
+                }
+                ZSTD_LEVEL = zstdLevel;
+            } else {
+                ZSTD_LEVEL = 3;
+            }
         }
 
         public static boolean isDeflate(BytesReference bytes) {
@@ -68,6 +96,15 @@ public class Compression {
             }
         }
 
+        public static boolean isZstd(BytesReference bytes) {
+            byte firstByte = bytes.get(0);
+            if (firstByte != Scheme.ZSTD_HEADER[0]) {
+                return false;
+            } else {
+                return validateHeader(bytes, ZSTD_HEADER);
+            }
+        }
+
         private static boolean validateHeader(BytesReference bytes, byte[] header) {
             for (int i = 1; i < Compression.Scheme.HEADER_LENGTH; ++i) {
                 if (bytes.get(i) != header[i]) {
@@ -95,6 +132,37 @@ public class Compression {
             }
             return new ReuseBuffersLZ4BlockOutputStream(outputStream, LZ4_BLOCK_SIZE, lz4Compressor);
         }
+
+        /**
+         * Whether this node can compress and decompress zstd, which requires native access.
+         */
+        public static boolean isZstdAvailable() {
+            return ZstdHolder.AVAILABLE;
+        }
+
+        public static OutputStream zstdOutputStream(OutputStream outputStream) throws IOException {
+            outputStream.write(ZSTD_HEADER);
+            return new ZstdBlockOutputStream(outputStream, ZSTD_BLOCK_SIZE, ZSTD_LEVEL);
+        }
+
+        /**
+         * Resolves the scheme to compress a message with for the given version of the receiving node, falling back to a scheme that
+         * both nodes support. Whether the receiving node can decompress zstd is resolved when the connection is opened, see
+         * {@link TcpTransport#compressionScheme}, and responses use the scheme of their request, so this only checks this node.
+         */
+        static Scheme forVersion(TransportVersion version, Scheme scheme) {
+            if (scheme == ZSTD && (version.before(ZSTD_VERSION) || isZstdAvailable() == false)) {
+                scheme = LZ4;
+            }
+            if (scheme == LZ4 && version.before(LZ4_VERSION)) {
+                return null;
+            }
+            return scheme;
+        }
+    }
+
+    private static final class ZstdHolder {
+        private static final boolean AVAILABLE = NativeAccess.instance().getZstd() != null;
     }
 
     public enum Enabled {
@@ -170,6 +170,7 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
 
         this.handshaker = new TransportHandshaker(
             version,
+            Compression.Scheme.isZstdAvailable(),
             threadPool,
             (node, channel, requestId, v) -> outboundHandler.sendRequest(
                 node,
@@ -243,12 +244,7 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
         private final Compression.Scheme compressionScheme;
         private final AtomicBoolean isClosing = new AtomicBoolean(false);
 
-        NodeChannels(
-            DiscoveryNode node,
-            List<TcpChannel> channels,
-            ConnectionProfile connectionProfile,
-            TransportVersion handshakeVersion
-        ) {
+        NodeChannels(DiscoveryNode node, List<TcpChannel> channels, ConnectionProfile connectionProfile, HandshakeResult handshakeResult) {
             this.node = node;
             this.channels = Collections.unmodifiableList(channels);
             assert channels.size() == connectionProfile.getNumConnections()
@@ -259,9 +255,9 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
                     typeMapping.put(type, handle);
                 }
             }
-            version = handshakeVersion;
+            version = handshakeResult.transportVersion();
             compress = connectionProfile.getCompressionEnabled();
-            compressionScheme = connectionProfile.getCompressionScheme();
+            compressionScheme = compressionScheme(connectionProfile.getCompressionScheme(), handshakeResult);
         }
 
         @Override
@@ -269,6 +265,10 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
             return version;
         }
 
+        Compression.Scheme getCompressionScheme() {
+            return compressionScheme;
+        }
+
         public List<TcpChannel> getChannels() {
             return channels;
         }
@@ -946,11 +946,30 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
         }
     }
 
+    /**
+     * The outcome of the handshake on a new connection.
+     *
+     * @param transportVersion the transport version to use on the connection
+     * @param zstdAvailable    whether the remote node can decompress messages compressed with {@link Compression.Scheme#ZSTD}
+     */
+    public record HandshakeResult(TransportVersion transportVersion, boolean zstdAvailable) {}
+
+    /**
+     * Resolves the scheme to compress the messages on a connection with, falling back to {@link Compression.Scheme#LZ4} if the remote
+     * node can't decompress the configured scheme.
+     */
+    static Compression.Scheme compressionScheme(Compression.Scheme scheme, HandshakeResult handshakeResult) {
+        if (scheme == Compression.Scheme.ZSTD && handshakeResult.zstdAvailable() == false) {
+            return Compression.Scheme.LZ4;
+        }
+        return scheme;
+    }
+
     public void executeHandshake(
         DiscoveryNode node,
         TcpChannel channel,
         ConnectionProfile profile,
-        ActionListener<TransportVersion> listener
+        ActionListener<HandshakeResult> listener
     ) {
         long requestId = responseHandlers.newRequestId();
         handshaker.sendHandshake(requestId, node, channel, profile.getHandshakeTimeout(), listener);
@@ -1112,10 +1131,10 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
             if (countDown.countDown()) {
                 final TcpChannel handshakeChannel = channels.get(0);
                 try {
-                    executeHandshake(node, handshakeChannel, connectionProfile, ActionListener.wrap(responseVersion -> {
+                    executeHandshake(node, handshakeChannel, connectionProfile, ActionListener.wrap(handshakeResult -> {
                         final long connectionId = outboundConnectionCount.incrementAndGet();
                         logger.debug("opened transport connection [{}] to [{}] using channels [{}]", connectionId, node, channels);
-                        NodeChannels nodeChannels = new NodeChannels(node, channels, connectionProfile, responseVersion);
+                        NodeChannels nodeChannels = new NodeChannels(node, channels, connectionProfile, handshakeResult);
                         long relativeMillisTime = threadPool.relativeTimeInMillis();
                         nodeChannels.channels.forEach(ch -> {
                             // Mark the channel init time
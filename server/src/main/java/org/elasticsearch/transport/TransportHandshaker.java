@@ -17,6 +17,7 @@ import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.metrics.CounterMetric;
+import org.elasticsearch.core.Nullable;
 import org.elasticsearch.core.TimeValue;
 import org.elasticsearch.threadpool.ThreadPool;
 
@@ -40,6 +41,11 @@ final class TransportHandshaker {
      * ignores the body of the request. After the handshake, the OutboundHandler uses the min(local,remote) protocol version for all later
      * messages.
      *
+     * If both the requesting node and the responding node are on or after TRANSPORT_COMPRESSION_ZSTD, which the responding node knows from
+     * the max acceptable protocol version in the body of the request, the response ends with a boolean that says whether the responding
+     * node can decompress zstd, which needs native access. The requesting node only compresses messages on the connection with zstd if it
+     * can.
+     *
      * This version supports two handshake protocols, v6080099 and v7170099, which respectively have the same message structure as the
      * transport protocols of v6.8.0 and v7.17.0. This node only sends v7170099 requests, but it can send a valid response to any v6080099
      * requests that it receives.
@@ -124,17 +130,20 @@ final class TransportHandshaker {
     private final CounterMetric numHandshakes = new CounterMetric();
 
     private final TransportVersion version;
+    private final boolean zstdAvailable;
     private final ThreadPool threadPool;
     private final HandshakeRequestSender handshakeRequestSender;
     private final boolean ignoreDeserializationErrors;
 
     TransportHandshaker(
         TransportVersion version,
+        boolean zstdAvailable,
         ThreadPool threadPool,
         HandshakeRequestSender handshakeRequestSender,
         boolean ignoreDeserializationErrors
     ) {
         this.version = version;
+        this.zstdAvailable = zstdAvailable;
         this.threadPool = threadPool;
         this.handshakeRequestSender = handshakeRequestSender;
         this.ignoreDeserializationErrors = ignoreDeserializationErrors;
@@ -145,7 +154,7 @@ final class TransportHandshaker {
         DiscoveryNode node,
         TcpChannel channel,
         TimeValue timeout,
-        ActionListener<TransportVersion> listener
+        ActionListener<TcpTransport.HandshakeResult> listener
     ) {
         numHandshakes.inc();
         final HandshakeResponseHandler handler = new HandshakeResponseHandler(requestId, listener);
@@ -174,9 +183,10 @@ final class TransportHandshaker {
     }
 
     void handleHandshake(TransportChannel channel, long requestId, StreamInput stream) throws IOException {
+        final HandshakeRequest request;
         try {
             // Must read the handshake request to exhaust the stream
-            new HandshakeRequest(stream);
+            request = new HandshakeRequest(stream);
         } catch (Exception e) {
             assert ignoreDeserializationErrors : e;
             throw e;
@@ -195,7 +205,10 @@ final class TransportHandshaker {
             assert ignoreDeserializationErrors : exception;
             throw exception;
         }
-        channel.sendResponse(new HandshakeResponse(this.version));
+        final boolean requestingNodeReadsZstdAvailable = version.onOrAfter(Compression.Scheme.ZSTD_VERSION)
+            && request.version != null
+            && request.version.onOrAfter(Compression.Scheme.ZSTD_VERSION);
+        channel.sendResponse(new HandshakeResponse(this.version, requestingNodeReadsZstdAvailable ? zstdAvailable : null));
     }
 
     TransportResponseHandler<HandshakeResponse> removeHandlerForHandshake(long requestId) {
@@ -213,17 +226,17 @@ final class TransportHandshaker {
     private class HandshakeResponseHandler implements TransportResponseHandler<HandshakeResponse> {
 
         private final long requestId;
-        private final ActionListener<TransportVersion> listener;
+        private final ActionListener<TcpTransport.HandshakeResult> listener;
         private final AtomicBoolean isDone = new AtomicBoolean(false);
 
-        private HandshakeResponseHandler(long requestId, ActionListener<TransportVersion> listener) {
+        private HandshakeResponseHandler(long requestId, ActionListener<TcpTransport.HandshakeResult> listener) {
             this.requestId = requestId;
             this.listener = listener;
         }
 
         @Override
         public HandshakeResponse read(StreamInput in) throws IOException {
-            return new HandshakeResponse(in);
+            return new HandshakeResponse(in, version);
         }
 
         @Override
@@ -246,7 +259,7 @@ final class TransportHandshaker {
                         )
                     );
                 } else {
-                    listener.onResponse(responseVersion);
+                    listener.onResponse(new TcpTransport.HandshakeResult(responseVersion, Boolean.TRUE.equals(response.zstdAvailable)));
                 }
             }
         }
@@ -305,25 +318,44 @@ final class TransportHandshaker {
     static final class HandshakeResponse extends TransportResponse {
 
         private final TransportVersion responseVersion;
+        /**
+         * Whether the responding node can decompress zstd, or {@code null} if the requesting node doesn't read it.
+         */
+        @Nullable
+        private final Boolean zstdAvailable;
 
-        HandshakeResponse(TransportVersion responseVersion) {
+        HandshakeResponse(TransportVersion responseVersion, @Nullable Boolean zstdAvailable) {
             this.responseVersion = responseVersion;
+            this.zstdAvailable = zstdAvailable;
         }
 
-        private HandshakeResponse(StreamInput in) throws IOException {
+        private HandshakeResponse(StreamInput in, TransportVersion localVersion) throws IOException {
             super(in);
             responseVersion = TransportVersion.readVersion(in);
+            if (localVersion.onOrAfter(Compression.Scheme.ZSTD_VERSION) && responseVersion.onOrAfter(Compression.Scheme.ZSTD_VERSION)) {
+                zstdAvailable = in.readBoolean();
+            } else {
+                zstdAvailable = null;
+            }
         }
 
         @Override
         public void writeTo(StreamOutput out) throws IOException {
             assert responseVersion != null;
             TransportVersion.writeVersion(responseVersion, out);
+            if (zstdAvailable != null) {
+                out.writeBoolean(zstdAvailable);
+            }
         }
 
         TransportVersion getResponseVersion() {
             return responseVersion;
         }
+
+        @Nullable
+        Boolean isZstdAvailable() {
+            return zstdAvailable;
+        }
     }
 
     @FunctionalInterface
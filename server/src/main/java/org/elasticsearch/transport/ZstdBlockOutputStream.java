@@ -0,0 +1,166 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.transport;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.util.ByteUtils;
+import org.elasticsearch.nativeaccess.CloseableByteBuffer;
+import org.elasticsearch.nativeaccess.NativeAccess;
+import org.elasticsearch.nativeaccess.Zstd;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+
+/**
+ * An {@link OutputStream} that compresses the bytes written to it with zstd in independent blocks of at most the given block size, so
+ * that the receiving node can decompress each block as soon as it arrived with {@link ZstdTransportDecompressor}. The native zstd binding
+ * only compresses whole buffers, hence the blocks. Each block starts with a header of the block type, the compressed length and the
+ * decompressed length. Blocks that don't compress are written as they are, and an empty block marks the end of the stream.
+ */
+final class ZstdBlockOutputStream extends FilterOutputStream {
+
+    private static class ArrayBox {
+        private byte[] uncompressed = BytesRef.EMPTY_BYTES;
+        private boolean owned = false;
+
+        private void markOwnership(int uncompressedBlockSize) {
+            assert owned == false;
+            owned = true;
+            if (uncompressedBlockSize > uncompressed.length) {
+                uncompressed = new byte[uncompressedBlockSize];
+            }
+        }
+
+        private void release() {
+            owned = false;
+        }
+    }
+
+    private static final ThreadLocal<ArrayBox> ARRAY_BOX = ThreadLocal.withInitial(ArrayBox::new);
+
+    private final int blockSize;
+    private final int level;
+    private final ArrayBox arrayBox;
+    private final byte[] buffer;
+    private final byte[] header = new byte[ZstdTransportDecompressor.HEADER_LENGTH];
+    private boolean finished;
+    private int o;
+
+    /**
+     * @param out       the {@link OutputStream} to feed
+     * @param blockSize the maximum number of bytes to compress at once, must be &lt;= {@link ZstdTransportDecompressor#MAX_BLOCK_SIZE}
+     * @param level     the zstd compression level
+     */
+    ZstdBlockOutputStream(OutputStream out, int blockSize, int level) {
+        super(out);
+        if (blockSize <= 0 || blockSize > ZstdTransportDecompressor.MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException(
+                "blockSize must be > 0 and <= " + ZstdTransportDecompressor.MAX_BLOCK_SIZE + ", got " + blockSize
+            );
+        }
+        this.blockSize = blockSize;
+        this.level = level;
+        this.arrayBox = ARRAY_BOX.get();
+        arrayBox.markOwnership(blockSize);
+        this.buffer = arrayBox.uncompressed;
+    }
+
+    private void ensureNotFinished() {
+        if (finished) {
+            throw new IllegalStateException("This stream is already closed");
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureNotFinished();
+        if (o == blockSize) {
+            flushBufferedData();
+        }
+        buffer[o++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        ensureNotFinished();
+        while (o + len > blockSize) {
+            final int l = blockSize - o;
+            System.arraycopy(b, off, buffer, o, l);
+            o = blockSize;
+            flushBufferedData();
+            off += l;
+            len -= l;
+        }
+        System.arraycopy(b, off, buffer, o, len);
+        o += len;
+    }
+
+    @Override
+    public void write(byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        // blocks are only written once they are full or the stream is closed, to keep the compression ratio up
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (finished == false) {
+                flushBufferedData();
+                writeHeader(ZstdTransportDecompressor.BLOCK_TYPE_NON_COMPRESSED, 0, 0);
+                finished = true;
+            }
+            out.close();
+        } finally {
+            arrayBox.release();
+        }
+    }
+
+    private void flushBufferedData() throws IOException {
+        if (o == 0) {
+            return;
+        }
+        final NativeAccess nativeAccess = NativeAccess.instance();
+        final Zstd zstd = nativeAccess.getZstd();
+        // NOTE: like the zstd stored fields format, we allocate native buffers per block rather than keeping them per thread, which
+        // would hold on to native memory of threads that hardly ever compress
+        try (
+            CloseableByteBuffer src = nativeAccess.newBuffer(o);
+            CloseableByteBuffer dest = nativeAccess.newBuffer(zstd.compressBound(o))
+        ) {
+            src.buffer().put(buffer, 0, o);
+            src.buffer().flip();
+            final int compressedLength = zstd.compress(dest, src, level);
+            if (compressedLength >= o) {
+                writeHeader(ZstdTransportDecompressor.BLOCK_TYPE_NON_COMPRESSED, o, o);
+                out.write(buffer, 0, o);
+            } else {
+                writeHeader(ZstdTransportDecompressor.BLOCK_TYPE_COMPRESSED, compressedLength, o);
+                // the uncompressed bytes are in native memory now, so we can copy the compressed bytes out through the buffer
+                dest.buffer().get(buffer, 0, compressedLength);
+                out.write(buffer, 0, compressedLength);
+            }
+        }
+        o = 0;
+    }
+
+    private void writeHeader(int blockType, int compressedLength, int decompressedLength) throws IOException {
+        header[0] = (byte) blockType;
+        ByteUtils.writeIntBE(compressedLength, header, 1);
+        ByteUtils.writeIntBE(decompressedLength, header, 5);
+        out.write(header);
+    }
+}
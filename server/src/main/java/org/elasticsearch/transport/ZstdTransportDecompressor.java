@@ -0,0 +1,215 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.transport;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefIterator;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.recycler.Recycler;
+import org.elasticsearch.nativeaccess.CloseableByteBuffer;
+import org.elasticsearch.nativeaccess.NativeAccess;
+import org.elasticsearch.nativeaccess.Zstd;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * Decompresses the blocks written by {@link ZstdBlockOutputStream} one by one as soon as each of them arrived in full.
+ */
+public class ZstdTransportDecompressor extends TransportDecompressor {
+
+    static final int HEADER_LENGTH = 1 +  // block type
+        4 +  // compressed length
+        4;   // decompressed length
+
+    static final int MAX_BLOCK_SIZE = 1 << 20;
+
+    static final int BLOCK_TYPE_NON_COMPRESSED = 0x10;
+    static final int BLOCK_TYPE_COMPRESSED = 0x20;
+
+    private enum State {
+        INIT_BLOCK,
+        DECOMPRESS_DATA,
+        FINISHED,
+        CORRUPTED
+    }
+
+    private State currentState = State.INIT_BLOCK;
+
+    private final NativeAccess nativeAccess;
+    private final Zstd zstd;
+
+    private int blockType;
+    private int compressedLength;
+    private int decompressedLength;
+
+    public ZstdTransportDecompressor(Recycler<BytesRef> recycler) {
+        super(recycler);
+        this.nativeAccess = NativeAccess.instance();
+        this.zstd = nativeAccess.getZstd();
+        if (zstd == null) {
+            throw new IllegalStateException("received a zstd compressed message, but zstd is not available on this node");
+        }
+    }
+
+    @Override
+    public Compression.Scheme getScheme() {
+        return Compression.Scheme.ZSTD;
+    }
+
+    @Override
+    public int decompress(BytesReference bytesReference) throws IOException {
+        int bytesConsumed = 0;
+        if (hasSkippedHeader == false) {
+            hasSkippedHeader = true;
+            int esHeaderLength = Compression.Scheme.HEADER_LENGTH;
+            bytesReference = bytesReference.slice(esHeaderLength, bytesReference.length() - esHeaderLength);
+            bytesConsumed += esHeaderLength;
+        }
+
+        while (true) {
+            int consumed = decodeBlock(bytesReference);
+            bytesConsumed += consumed;
+            int newLength = bytesReference.length() - consumed;
+            if (consumed > 0 && newLength > 0) {
+                bytesReference = bytesReference.slice(consumed, newLength);
+            } else {
+                break;
+            }
+        }
+
+        return bytesConsumed;
+    }
+
+    private int decodeBlock(BytesReference reference) throws IOException {
+        try {
+            switch (currentState) {
+                case INIT_BLOCK:
+                    if (reference.length() < HEADER_LENGTH) {
+                        return 0;
+                    }
+                    try (StreamInput in = reference.streamInput()) {
+                        final int blockType = in.readByte();
+                        final int compressedLength = in.readInt();
+                        final int decompressedLength = in.readInt();
+                        if (blockType != BLOCK_TYPE_NON_COMPRESSED && blockType != BLOCK_TYPE_COMPRESSED) {
+                            throw new IllegalStateException(
+                                String.format(
+                                    Locale.ROOT,
+                                    "unexpected blockType: %d (expected: %d or %d)",
+                                    blockType,
+                                    BLOCK_TYPE_NON_COMPRESSED,
+                                    BLOCK_TYPE_COMPRESSED
+                                )
+                            );
+                        }
+                        if (decompressedLength < 0 || decompressedLength > MAX_BLOCK_SIZE) {
+                            throw new IllegalStateException(
+                                String.format(
+                                    Locale.ROOT,
+                                    "invalid decompressedLength: %d (expected: 0-%d)",
+                                    decompressedLength,
+                                    MAX_BLOCK_SIZE
+                                )
+                            );
+                        }
+                        if (compressedLength < 0
+                            || compressedLength > decompressedLength
+                            || (compressedLength == 0) != (decompressedLength == 0)
+                            || blockType == BLOCK_TYPE_NON_COMPRESSED && decompressedLength != compressedLength) {
+                            throw new IllegalStateException(
+                                String.format(
+                                    Locale.ROOT,
+                                    "stream corrupted: compressedLength(%d) and decompressedLength(%d) mismatch",
+                                    compressedLength,
+                                    decompressedLength
+                                )
+                            );
+                        }
+                        if (decompressedLength == 0) {
+                            currentState = State.FINISHED;
+                            return HEADER_LENGTH;
+                        }
+                        this.blockType = blockType;
+                        this.compressedLength = compressedLength;
+                        this.decompressedLength = decompressedLength;
+                    }
+                    currentState = State.DECOMPRESS_DATA;
+                    return HEADER_LENGTH;
+                case DECOMPRESS_DATA:
+                    if (reference.length() < compressedLength) {
+                        return 0;
+                    }
+                    final BytesReference block = reference.slice(0, compressedLength);
+                    if (blockType == BLOCK_TYPE_NON_COMPRESSED) {
+                        final BytesRefIterator iterator = block.iterator();
+                        BytesRef ref;
+                        while ((ref = iterator.next()) != null) {
+                            copyToPages(ByteBuffer.wrap(ref.bytes, ref.offset, ref.length));
+                        }
+                    } else {
+                        decompressBlock(block);
+                    }
+                    currentState = State.INIT_BLOCK;
+                    return compressedLength;
+                case FINISHED:
+                    return 0;
+                case CORRUPTED:
+                    throw new IllegalStateException("zstd stream corrupted.");
+                default:
+                    throw new IllegalStateException();
+            }
+        } catch (IOException | RuntimeException e) {
+            currentState = State.CORRUPTED;
+            throw e;
+        }
+    }
+
+    private void decompressBlock(BytesReference block) throws IOException {
+        // NOTE: native buffers are allocated per block, see ZstdBlockOutputStream
+        try (
+            CloseableByteBuffer src = nativeAccess.newBuffer(compressedLength);
+            CloseableByteBuffer dest = nativeAccess.newBuffer(decompressedLength)
+        ) {
+            final BytesRefIterator iterator = block.iterator();
+            BytesRef ref;
+            while ((ref = iterator.next()) != null) {
+                src.buffer().put(ref.bytes, ref.offset, ref.length);
+            }
+            src.buffer().flip();
+            final int decompressed = zstd.decompress(dest, src);
+            if (decompressed != decompressedLength) {
+                throw new IllegalStateException(
+                    "stream corrupted: expected [" + decompressedLength + "] decompressed bytes, got [" + decompressed + "]"
+                );
+            }
+            copyToPages(dest.buffer());
+        }
+    }
+
+    private void copyToPages(ByteBuffer bytes) {
+        while (bytes.hasRemaining()) {
+            maybeAddNewPage();
+            final Recycler.V<BytesRef> page = pages.getLast();
+            int toCopy = Math.min(bytes.remaining(), pageLength - pageOffset);
+            bytes.get(page.v().bytes, page.v().offset + pageOffset, toCopy);
+            pageOffset += toCopy;
+        }
+    }
+
+    /**
+     * Returns {@code true} if and only if the end of the compressed stream
+     * has been reached.
+     */
+    public boolean isClosed() {
+        return currentState == State.FINISHED;
+    }
+}
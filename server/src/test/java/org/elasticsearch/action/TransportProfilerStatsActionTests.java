@@ -0,0 +1,78 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.action;
+
+import org.elasticsearch.cluster.node.DiscoveryNodeUtils;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.myprofiler.ProfilerCounters;
+import org.elasticsearch.myprofiler.ProfilerLatencies;
+import org.elasticsearch.tdigest.TDigest;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+
+public class TransportProfilerStatsActionTests extends ESTestCase {
+
+    public void testMergeRanksByTotalCount() {
+        TransportProfilerStatsAction.NodeResponse node1 = new TransportProfilerStatsAction.NodeResponse(
+            DiscoveryNodeUtils.create("node-1"),
+            List.of(new ProfilerCounters.IndexCounts("logs", 10, 0, 0), new ProfilerCounters.IndexCounts("metrics", 5, 5, 0)),
+            List.of(new ProfilerLatencies.PhaseLatencies("logs", ProfilerLatencies.Phase.QUERY, digest(1, 2, 3)))
+        );
+        TransportProfilerStatsAction.NodeResponse node2 = new TransportProfilerStatsAction.NodeResponse(
+            DiscoveryNodeUtils.create("node-2"),
+            List.of(new ProfilerCounters.IndexCounts("metrics", 0, 0, 7), new ProfilerCounters.IndexCounts("traces", 1, 0, 0)),
+            List.of(new ProfilerLatencies.PhaseLatencies("logs", ProfilerLatencies.Phase.QUERY, digest(4, 5)))
+        );
+
+        List<TransportProfilerStatsAction.HotIndex> hotIndices = TransportProfilerStatsAction.Response.merge(List.of(node1, node2), 2);
+        assertThat(hotIndices, hasSize(2));
+        assertThat(hotIndices.get(0).counts().index(), equalTo("metrics"));
+        assertThat(hotIndices.get(0).counts().totalCount(), equalTo(17L));
+        assertThat(hotIndices.get(0).counts().getRequestCount(), equalTo(7L));
+        assertThat(hotIndices.get(1).counts().index(), equalTo("logs"));
+        assertThat(hotIndices.get(1).latencies(), hasSize(1));
+        assertThat(hotIndices.get(1).latencies().get(0).count(), equalTo(5L));
+        assertThat(hotIndices.get(1).latencies().get(0).quantile(0.5), closeTo(3, 0.5));
+    }
+
+    public void testNodeResponseSerialization() throws IOException {
+        TransportProfilerStatsAction.NodeResponse nodeResponse = new TransportProfilerStatsAction.NodeResponse(
+            DiscoveryNodeUtils.create("node-1"),
+            List.of(new ProfilerCounters.IndexCounts("logs", randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong())),
+            List.of(new ProfilerLatencies.PhaseLatencies("logs", randomFrom(ProfilerLatencies.Phase.values()), digest(1, 10, 100)))
+        );
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            nodeResponse.writeTo(out);
+            try (StreamInput in = out.bytes().streamInput()) {
+                TransportProfilerStatsAction.NodeResponse read = new TransportProfilerStatsAction.NodeResponse(in);
+                assertThat(read.getCounts(), equalTo(nodeResponse.getCounts()));
+                assertThat(read.getLatencies(), hasSize(1));
+                ProfilerLatencies.PhaseLatencies latencies = read.getLatencies().get(0);
+                assertThat(latencies.phase(), equalTo(nodeResponse.getLatencies().get(0).phase()));
+                assertThat(latencies.count(), equalTo(3L));
+                assertThat(latencies.quantile(0.5), closeTo(10, 0.001));
+            }
+        }
+    }
+
+    private static TDigest digest(double... values) {
+        TDigest digest = ProfilerLatencies.newDigest();
+        for (double value : values) {
+            digest.add(value);
+        }
+        return digest;
+    }
+}
@@ -59,6 +59,7 @@ import org.elasticsearch.index.store.StoreStats;
 import org.elasticsearch.index.translog.TranslogStats;
 import org.elasticsearch.index.warmer.WarmerStats;
 import org.elasticsearch.indices.NodeIndicesStats;
+import org.elasticsearch.indices.TranslogGroupCommitStats;
 import org.elasticsearch.indices.breaker.AllCircuitBreakerStats;
 import org.elasticsearch.indices.breaker.CircuitBreakerStats;
 import org.elasticsearch.ingest.IngestStats;
@@ -468,6 +469,7 @@ public class NodeStatsTests extends ESTestCase {
                 assertTrue(repoThrottlingStats.getRepositoryThrottlingStats().containsKey("test-repository"));
                 assertEquals(100, repoThrottlingStats.getRepositoryThrottlingStats().get("test-repository").totalReadThrottledNanos());
                 assertEquals(200, repoThrottlingStats.getRepositoryThrottlingStats().get("test-repository").totalWriteThrottledNanos());
+                assertEquals(nodeStats.getTranslogGroupCommitStats(), deserializedNodeStats.getTranslogGroupCommitStats());
 
             }
         }
@@ -625,6 +627,7 @@ public class NodeStatsTests extends ESTestCase {
 
         MergeStats mergeStats = new MergeStats();
         mergeStats.add(++iota, ++iota, ++iota, ++iota, ++iota, ++iota, ++iota, ++iota, ++iota, 1.0 * ++iota);
+        mergeStats.addQueued(++iota, ++iota);
 
         indicesCommonStats.getMerge().add(mergeStats);
         indicesCommonStats.getRefresh().add(new RefreshStats(++iota, ++iota, ++iota, ++iota, ++iota));
@@ -918,6 +921,8 @@ public class NodeStatsTests extends ESTestCase {
                             randomNonNegativeLong(),
                             randomNonNegativeLong(),
                             randomNonNegativeLong(),
+                            randomNonNegativeLong(),
+                            randomNonNegativeLong(),
                             randomNonNegativeLong()
                         )
                     )
@@ -1041,7 +1046,22 @@ public class NodeStatsTests extends ESTestCase {
                 randomLongBetween(0, maxStatValue),
                 randomLongBetween(0, maxStatValue),
                 randomLongBetween(0, maxStatValue),
-                randomLongBetween(0, maxStatValue)
+                randomLongBetween(0, maxStatValue),
+                randomLongBetween(0, maxStatValue),
+                randomLongBetween(0, maxStatValue),
+                randomLongBetween(0, maxStatValue),
+                randomLongBetween(0, maxStatValue),
+                randomList(
+                    0,
+                    3,
+                    () -> new IndexingPressureStats.AdaptiveShardLimit(
+                        new ShardId(randomAlphaOfLength(5), randomUUID(), randomIntBetween(0, 10)),
+                        randomLongBetween(0, maxStatValue),
+                        randomLongBetween(0, maxStatValue),
+                        randomLongBetween(0, maxStatValue),
+                        randomLongBetween(0, maxStatValue)
+                    )
+                )
             );
         }
         RepositoriesStats repositoriesStats = new RepositoriesStats(
@@ -1054,6 +1074,16 @@ public class NodeStatsTests extends ESTestCase {
             randomNonNegativeLong(),
             randomNonNegativeLong()
         );
+        TranslogGroupCommitStats translogGroupCommitStats = frequently()
+            ? new TranslogGroupCommitStats(
+                randomNonNegativeLong(),
+                randomNonNegativeLong(),
+                randomNonNegativeLong(),
+                randomNonNegativeLong(),
+                randomNonNegativeLong(),
+                randomNonNegativeLong()
+            )
+            : null;
 
         return new NodeStats(
             node,
@@ -1074,7 +1104,8 @@ public class NodeStatsTests extends ESTestCase {
             scriptCacheStats,
             indexingPressureStats,
             repositoriesStats,
-            nodeAllocationStats
+            nodeAllocationStats,
+            translogGroupCommitStats
         );
     }
 
@@ -0,0 +1,162 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.action.bulk;
+
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.index.shard.IndexShardTestCase;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.plugins.internal.DocumentParsingProvider;
+import org.elasticsearch.xcontent.XContentType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class BulkItemPreParserTests extends IndexShardTestCase {
+
+    public void testTakesDocumentsParsedByHelpers() throws Exception {
+        final IndexShard shard = newStartedShard(true);
+        final BulkShardRequest request = randomRequest(shard.shardId());
+        final BulkItemRequest[] items = request.items();
+        assertThat(BulkItemPreParser.countParseableItems(request), equalTo(countWellFormed(items) + countMalformed(items)));
+
+        final BulkItemPreParser preParser = new BulkItemPreParser(request, shard, DocumentParsingProvider.EMPTY_INSTANCE);
+        // run the helper inline so that all documents are parsed before they are taken
+        preParser.forkHelpers(Runnable::run, 1);
+        for (int i = 0; i < items.length; i++) {
+            final BulkItemPreParser.ParsedItem parsedItem = preParser.take(i);
+            if (isWellFormed(items[i])) {
+                assertThat(parsedItem, notNullValue());
+                assertThat(parsedItem.document().documentMapper(), sameInstance(shard.mapperService().documentMapper()));
+                assertThat(parsedItem.document().parsedDocument().id(), equalTo(items[i].request().id()));
+                assertThat(parsedItem.sourceToParse().id(), equalTo(items[i].request().id()));
+            } else {
+                // malformed documents are parsed again by the caller to report the failure
+                assertThat(parsedItem, nullValue());
+            }
+            // retries of the item parse the document again
+            assertThat(preParser.take(i), nullValue());
+        }
+        closeShards(shard);
+    }
+
+    public void testHelpersSkipTakenItems() throws Exception {
+        final IndexShard shard = newStartedShard(true);
+        final BulkShardRequest request = randomRequest(shard.shardId());
+        final BulkItemPreParser preParser = new BulkItemPreParser(request, shard, DocumentParsingProvider.EMPTY_INSTANCE);
+        final int taken = between(0, request.items().length);
+        for (int i = 0; i < taken; i++) {
+            assertThat(preParser.take(i), nullValue());
+        }
+        final List<Runnable> helpers = new ArrayList<>();
+        preParser.forkHelpers(helpers::add, between(1, 4));
+        final CountDownLatch helpersDone = new CountDownLatch(helpers.size());
+        for (Runnable helper : helpers) {
+            new Thread(() -> {
+                helper.run();
+                helpersDone.countDown();
+            }).start();
+        }
+        int parsed = 0;
+        for (int i = taken; i < request.items().length; i++) {
+            if (preParser.take(i) != null) {
+                parsed++;
+            }
+        }
+        safeAwait(helpersDone);
+        assertThat(parsed, lessThanOrEqualTo(countWellFormed(request.items())));
+        closeShards(shard);
+    }
+
+    public void testHelpersOnlyParseItemsWithinWindow() throws Exception {
+        final IndexShard shard = newStartedShard(true);
+        final BulkItemRequest[] items = new BulkItemRequest[between(2, 50)];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = new BulkItemRequest(
+                i,
+                new IndexRequest("index").id("id_" + i).source(XContentType.JSON, "field", randomAlphaOfLength(10))
+            );
+        }
+        final BulkShardRequest request = new BulkShardRequest(shard.shardId(), RefreshPolicy.NONE, items);
+        final int maxItemsAhead = between(1, items.length - 1);
+        final BulkItemPreParser preParser = new BulkItemPreParser(request, shard, DocumentParsingProvider.EMPTY_INSTANCE, maxItemsAhead);
+        // run the helpers inline so that they parse as far ahead as they may before returning
+        preParser.forkHelpers(Runnable::run, 1);
+        assertThat(preParser.take(maxItemsAhead), nullValue());
+        // taking an item moves the window, and the helpers keep ahead of the executing thread
+        for (int i = maxItemsAhead + 1; i < items.length; i++) {
+            assertThat(preParser.take(i), notNullValue());
+        }
+        for (int i = 0; i < maxItemsAhead; i++) {
+            assertThat(preParser.take(i), notNullValue());
+        }
+        closeShards(shard);
+    }
+
+    public void testCancelledHelpersStopParsing() throws Exception {
+        final IndexShard shard = newStartedShard(true);
+        final BulkShardRequest request = randomRequest(shard.shardId());
+        final BulkItemPreParser preParser = new BulkItemPreParser(request, shard, DocumentParsingProvider.EMPTY_INSTANCE);
+        final List<Runnable> helpers = new ArrayList<>();
+        preParser.forkHelpers(helpers::add, between(1, 4));
+        preParser.cancel();
+        helpers.forEach(Runnable::run);
+        for (int i = 0; i < request.items().length; i++) {
+            assertThat(preParser.take(i), nullValue());
+        }
+        closeShards(shard);
+    }
+
+    private static BulkShardRequest randomRequest(ShardId shardId) {
+        final BulkItemRequest[] items = new BulkItemRequest[between(1, 50)];
+        for (int i = 0; i < items.length; i++) {
+            final String id = "id_" + i;
+            items[i] = new BulkItemRequest(i, switch (between(0, 9)) {
+                case 0 -> new DeleteRequest("index", id);
+                case 1 -> new IndexRequest("index").id(id).source(new BytesArray("{"), XContentType.JSON);
+                default -> new IndexRequest("index").id(id).source(XContentType.JSON, "field", randomAlphaOfLength(10));
+            });
+        }
+        return new BulkShardRequest(shardId, RefreshPolicy.NONE, items);
+    }
+
+    private static boolean isWellFormed(BulkItemRequest item) {
+        return item.request() instanceof IndexRequest indexRequest && indexRequest.source().length() > 1;
+    }
+
+    private static int countWellFormed(BulkItemRequest[] items) {
+        int count = 0;
+        for (BulkItemRequest item : items) {
+            if (isWellFormed(item)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int countMalformed(BulkItemRequest[] items) {
+        int count = 0;
+        for (BulkItemRequest item : items) {
+            if (item.request() instanceof IndexRequest && isWellFormed(item) == false) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
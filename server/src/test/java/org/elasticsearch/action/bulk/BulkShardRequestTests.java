@@ -13,10 +13,15 @@ import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
 import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.xcontent.XContentType;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.apache.lucene.tests.util.TestUtil.randomSimpleString;
 import static org.hamcrest.Matchers.equalTo;
@@ -59,6 +64,48 @@ public class BulkShardRequestTests extends ESTestCase {
         assertThat(bulkShardRequest.getRefreshPolicy(), equalTo(copy.getRefreshPolicy()));
     }
 
+    public void testRetainsSourcesUntilReleased() throws IOException {
+        final String index = randomAlphaOfLength(10);
+        final BulkItemRequest[] items = new BulkItemRequest[between(1, 20)];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = new BulkItemRequest(i, new IndexRequest(index).id("id_" + i).source("{\"field\":" + i + "}", XContentType.JSON));
+        }
+        final BulkShardRequest original = new BulkShardRequest(new ShardId(index, "_na_", 0), RefreshPolicy.NONE, items);
+
+        final AtomicBoolean released = new AtomicBoolean();
+        final BulkShardRequest copy;
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            original.writeTo(out);
+            final ReleasableBytesReference buffer = new ReleasableBytesReference(
+                out.bytes(),
+                () -> assertTrue(released.compareAndSet(false, true))
+            );
+            try (StreamInput in = buffer.streamInput()) {
+                copy = new BulkShardRequest(in);
+            }
+            buffer.decRef();
+        }
+        assertFalse(released.get());
+        assertTrue(copy.hasReferences());
+        for (int i = 0; i < items.length; i++) {
+            final IndexRequest indexRequest = (IndexRequest) copy.items()[i].request();
+            assertThat(indexRequest.source().utf8ToString(), equalTo("{\"field\":" + i + "}"));
+        }
+
+        copy.incRef();
+        assertFalse(copy.decRef());
+        assertFalse(released.get());
+        assertTrue(copy.decRef());
+        assertTrue(released.get());
+        assertFalse(copy.hasReferences());
+    }
+
+    public void testLocalRequestIsAlwaysReferenced() {
+        final BulkShardRequest request = randomBulkShardRequest();
+        assertFalse(request.decRef());
+        assertTrue(request.hasReferences());
+    }
+
     protected BulkShardRequest randomBulkShardRequest() {
         String indexName = randomAlphaOfLength(100);
         ShardId shardId = new ShardId(indexName, randomAlphaOfLength(50), randomInt());
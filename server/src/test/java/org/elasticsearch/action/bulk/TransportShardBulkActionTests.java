@@ -14,18 +14,22 @@ import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.DocWriteRequest;
 import org.elasticsearch.action.DocWriteResponse;
 import org.elasticsearch.action.LatchedActionListener;
+import org.elasticsearch.action.UnavailableShardsException;
 import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.support.ActionTestUtils;
+import org.elasticsearch.action.support.ActiveShardCount;
 import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.elasticsearch.action.support.replication.ReplicationResponse;
 import org.elasticsearch.action.support.replication.TransportWriteAction.WritePrimaryResult;
 import org.elasticsearch.action.update.UpdateHelper;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.action.update.UpdateResponse;
 import org.elasticsearch.client.internal.Requests;
 import org.elasticsearch.cluster.metadata.IndexMetadata;
+import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.compress.CompressedXContent;
 import org.elasticsearch.common.lucene.uid.Versions;
 import org.elasticsearch.common.settings.Settings;
@@ -48,12 +52,17 @@ import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.translog.Translog;
 import org.elasticsearch.plugins.internal.DocumentParsingProvider;
 import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.tasks.TaskId;
 import org.elasticsearch.threadpool.TestThreadPool;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.threadpool.ThreadPool.Names;
+import org.elasticsearch.xcontent.XContentType;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
@@ -66,6 +75,7 @@ import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.Matchers.arrayWithSize;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
@@ -247,6 +257,61 @@ public class TransportShardBulkActionTests extends IndexShardTestCase {
         latch.await();
     }
 
+    public void testParsesDocumentsInParallel() throws Exception {
+        IndexShard shard = newStartedShard(true);
+
+        BulkItemRequest[] items = new BulkItemRequest[randomIntBetween(2, 100)];
+        boolean[] malformed = new boolean[items.length];
+        for (int i = 0; i < items.length; i++) {
+            malformed[i] = rarely();
+            IndexRequest writeRequest = new IndexRequest("index").id("id_" + i);
+            if (malformed[i]) {
+                writeRequest.source(new BytesArray("{"), XContentType.JSON);
+            } else {
+                writeRequest.source(Requests.INDEX_CONTENT_TYPE);
+            }
+            items[i] = new BulkItemRequest(i, writeRequest);
+        }
+        BulkShardRequest bulkShardRequest = new BulkShardRequest(shardId, RefreshPolicy.NONE, items);
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        TransportShardBulkAction.performOnPrimary(
+            bulkShardRequest,
+            shard,
+            null,
+            threadPool::absoluteTimeInMillis,
+            new NoopMappingUpdatePerformer(),
+            listener -> {},
+            ActionListener.runAfter(ActionTestUtils.assertNoFailureListener(result -> {
+                assertThat(result.replicationResponse.getResponses(), arrayWithSize(items.length));
+                // the documents are applied in the order of the request, whichever thread parsed them
+                long previousSeqNo = -1;
+                for (int i = 0; i < items.length; i++) {
+                    BulkItemResponse response = result.replicationResponse.getResponses()[i];
+                    assertThat(response.getId(), equalTo("id_" + i));
+                    assertThat(response.isFailed(), equalTo(malformed[i]));
+                    if (malformed[i] == false) {
+                        assertThat(response.getResponse().getSeqNo(), greaterThan(previousSeqNo));
+                        previousSeqNo = response.getResponse().getSeqNo();
+                    }
+                }
+            }), latch::countDown),
+            threadPool.executor(Names.WRITE),
+            null,
+            null,
+            DocumentParsingProvider.EMPTY_INSTANCE,
+            randomIntBetween(1, 4)
+        );
+
+        latch.await();
+        int expectedDocs = 0;
+        for (boolean m : malformed) {
+            expectedDocs += m ? 0 : 1;
+        }
+        assertDocCount(shard, expectedDocs);
+        closeShards(shard);
+    }
+
     public void testExecuteBulkIndexRequestWithMappingUpdates() throws Exception {
 
         BulkItemRequest[] items = new BulkItemRequest[1];
@@ -263,7 +328,7 @@ public class TransportShardBulkActionTests extends IndexShardTestCase {
 
         IndexShard shard = mock(IndexShard.class);
         when(shard.shardId()).thenReturn(shardId);
-        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean())).thenReturn(
+        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean(), any())).thenReturn(
             mappingUpdate
         );
         MapperService mapperService = mock(MapperService.class);
@@ -293,9 +358,9 @@ public class TransportShardBulkActionTests extends IndexShardTestCase {
         assertThat("mappings were \"updated\" once", updateCalled.get(), equalTo(1));
 
         // Verify that the shard "executed" the operation once
-        verify(shard, times(1)).applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean());
+        verify(shard, times(1)).applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean(), any());
 
-        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean())).thenReturn(
+        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean(), any())).thenReturn(
             success
         );
 
@@ -311,7 +376,7 @@ public class TransportShardBulkActionTests extends IndexShardTestCase {
 
         // Verify that the shard "executed" the operation only once (1 for previous invocations plus
         // 1 for this execution)
-        verify(shard, times(2)).applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean());
+        verify(shard, times(2)).applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean(), any());
 
         BulkItemResponse primaryResponse = bulkShardRequest.items()[0].getPrimaryResponse();
 
@@ -540,7 +605,7 @@ public class TransportShardBulkActionTests extends IndexShardTestCase {
         Exception err = new ElasticsearchException("I'm dead <(x.x)>");
         Engine.IndexResult indexResult = new Engine.IndexResult(err, 0, 0, 0, "id");
         IndexShard shard = mock(IndexShard.class);
-        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean())).thenReturn(
+        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean(), any())).thenReturn(
             indexResult
         );
         when(shard.indexSettings()).thenReturn(indexSettings);
@@ -603,7 +668,7 @@ public class TransportShardBulkActionTests extends IndexShardTestCase {
         Exception err = new VersionConflictEngineException(shardId, "id", "I'm conflicted <(;_;)>");
         Engine.IndexResult indexResult = new Engine.IndexResult(err, 0, 0, 0, "id");
         IndexShard shard = mock(IndexShard.class);
-        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean())).thenReturn(
+        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean(), any())).thenReturn(
             indexResult
         );
         when(shard.indexSettings()).thenReturn(indexSettings);
@@ -670,7 +735,7 @@ public class TransportShardBulkActionTests extends IndexShardTestCase {
         Translog.Location resultLocation = new Translog.Location(42, 42, 42);
         Engine.IndexResult indexResult = new FakeIndexResult(1, 1, 13, created, resultLocation, "id");
         IndexShard shard = mock(IndexShard.class);
-        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean())).thenReturn(
+        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean(), any())).thenReturn(
             indexResult
         );
         when(shard.indexSettings()).thenReturn(indexSettings);
@@ -897,16 +962,18 @@ public class TransportShardBulkActionTests extends IndexShardTestCase {
         Engine.IndexResult success = new FakeIndexResult(1, 1, 13, true, resultLocation, "id");
 
         IndexShard shard = mock(IndexShard.class);
-        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean())).thenAnswer(ir -> {
-            if (randomBoolean()) {
-                return conflictedResult;
-            }
-            if (randomBoolean()) {
-                return mappingUpdate;
-            } else {
-                return success;
+        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean(), any())).thenAnswer(
+            ir -> {
+                if (randomBoolean()) {
+                    return conflictedResult;
+                }
+                if (randomBoolean()) {
+                    return mappingUpdate;
+                } else {
+                    return success;
+                }
             }
-        });
+        );
         when(shard.indexSettings()).thenReturn(indexSettings);
         when(shard.shardId()).thenReturn(shardId);
         MapperService mapperService = mock(MapperService.class);
@@ -996,11 +1063,9 @@ public class TransportShardBulkActionTests extends IndexShardTestCase {
 
             IndexShard shard = mock(IndexShard.class);
             when(shard.shardId()).thenReturn(shardId);
-            when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean())).thenReturn(
-                success1,
-                mappingUpdate,
-                success2
-            );
+            when(
+                shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean(), any())
+            ).thenReturn(success1, mappingUpdate, success2);
             when(shard.getFailedIndexResult(any(EsRejectedExecutionException.class), anyLong(), anyString())).thenCallRealMethod();
             MapperService mapperService = mock(MapperService.class);
             when(shard.mapperService()).thenReturn(mapperService);
@@ -1044,7 +1109,16 @@ public class TransportShardBulkActionTests extends IndexShardTestCase {
 
             assertThat("mappings were \"updated\" once", updateCalled.get(), equalTo(1));
 
-            verify(shard, times(2)).applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean());
+            verify(shard, times(2)).applyIndexOperationOnPrimary(
+                anyLong(),
+                any(),
+                any(),
+                anyLong(),
+                anyLong(),
+                anyLong(),
+                anyBoolean(),
+                any()
+            );
 
             BulkItemResponse primaryResponse1 = bulkShardRequest.items()[0].getPrimaryResponse();
             assertThat(primaryResponse1.getItemId(), equalTo(0));
@@ -1122,7 +1196,7 @@ public class TransportShardBulkActionTests extends IndexShardTestCase {
         );
 
         IndexShard shard = mockShard();
-        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean())).thenReturn(
+        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean(), any())).thenReturn(
             mappingUpdate
         );
         MapperService mapperService = mock(MapperService.class);
@@ -1179,7 +1253,7 @@ public class TransportShardBulkActionTests extends IndexShardTestCase {
         Engine.IndexResult successfulResult = new FakeIndexResult(1, 1, 10, true, resultLocation, "id");
 
         IndexShard shard = mockShard();
-        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean())).thenReturn(
+        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean(), any())).thenReturn(
             // on the first invocation, return a result that attempts a mapping update
             // the mapping update will be a noop and the operation is retired without contacting the master
             mappingUpdate,
@@ -1235,6 +1309,147 @@ public class TransportShardBulkActionTests extends IndexShardTestCase {
         verify(mapperService, times(2)).merge(any(), any(CompressedXContent.class), any());
     }
 
+    public void testSplitPrimaryRequestIntoChunks() {
+        final int numItems = between(2, 50);
+        final BulkItemRequest[] items = new BulkItemRequest[numItems];
+        for (int i = 0; i < numItems; i++) {
+            items[i] = new BulkItemRequest(
+                i,
+                new IndexRequest("index").id(Integer.toString(i)).source(Requests.INDEX_CONTENT_TYPE, "f", i)
+            );
+        }
+        final BulkShardRequest request = new BulkShardRequest(shardId, RefreshPolicy.NONE, items);
+        request.timeout(randomTimeValue());
+        request.waitForActiveShards(ActiveShardCount.from(between(1, 3)));
+        request.setParentTask(new TaskId("node", randomNonNegativeLong()));
+        final long chunkSize = randomLongBetween(1, items[0].ramBytesUsed() * numItems);
+
+        final List<BulkShardRequest> chunks = TransportShardBulkAction.splitPrimaryRequest(request, chunkSize);
+        final List<BulkItemRequest> chunkedItems = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            final BulkShardRequest chunk = chunks.get(i);
+            assertThat(chunk.shardId(), equalTo(shardId));
+            assertThat(chunk.getRefreshPolicy(), equalTo(RefreshPolicy.NONE));
+            assertThat(chunk.timeout(), equalTo(request.timeout()));
+            // only the first chunk waits for active shards, later chunks must not fail after earlier ones were applied
+            assertThat(chunk.waitForActiveShards(), equalTo(i == 0 ? request.waitForActiveShards() : ActiveShardCount.NONE));
+            assertThat(chunk.getParentTask(), equalTo(request.getParentTask()));
+            if (i < chunks.size() - 1) {
+                final long bytes = Arrays.stream(chunk.items()).mapToLong(BulkItemRequest::ramBytesUsed).sum();
+                assertThat(bytes, greaterThanOrEqualTo(chunkSize));
+            }
+            chunkedItems.addAll(Arrays.asList(chunk.items()));
+        }
+        assertThat(chunkedItems, equalTo(Arrays.asList(items)));
+
+        assertThat(TransportShardBulkAction.splitPrimaryRequest(request, 0), equalTo(List.of(request)));
+        assertThat(TransportShardBulkAction.splitPrimaryRequest(request, Long.MAX_VALUE), equalTo(List.of(request)));
+        final BulkShardRequest refreshingRequest = new BulkShardRequest(
+            shardId,
+            randomFrom(RefreshPolicy.IMMEDIATE, RefreshPolicy.WAIT_UNTIL),
+            items
+        );
+        assertThat(TransportShardBulkAction.splitPrimaryRequest(refreshingRequest, 1), equalTo(List.of(refreshingRequest)));
+        final BulkShardRequest simulatedRequest = new BulkShardRequest(shardId, RefreshPolicy.NONE, items, true);
+        assertThat(TransportShardBulkAction.splitPrimaryRequest(simulatedRequest, 1), equalTo(List.of(simulatedRequest)));
+    }
+
+    public void testCombineChunkResponses() {
+        final int numItems = between(2, 20);
+        final BulkItemRequest[] items = new BulkItemRequest[numItems];
+        final BulkItemResponse[] itemResponses = new BulkItemResponse[numItems];
+        for (int i = 0; i < numItems; i++) {
+            items[i] = new BulkItemRequest(
+                i,
+                new IndexRequest("index").id(Integer.toString(i)).source(Requests.INDEX_CONTENT_TYPE, "f", i)
+            );
+            itemResponses[i] = BulkItemResponse.failure(
+                i,
+                DocWriteRequest.OpType.INDEX,
+                new BulkItemResponse.Failure("index", Integer.toString(i), new ElasticsearchException("item " + i))
+            );
+        }
+        final BulkShardRequest request = new BulkShardRequest(shardId, RefreshPolicy.NONE, items);
+
+        final List<BulkShardRequest> chunks = new ArrayList<>();
+        final List<BulkShardResponse> responses = new ArrayList<>();
+        final List<ReplicationResponse.ShardInfo.Failure> failures = new ArrayList<>();
+        int from = 0;
+        while (from < numItems) {
+            final int to = randomIntBetween(from + 1, numItems);
+            chunks.add(new BulkShardRequest(shardId, RefreshPolicy.NONE, Arrays.copyOfRange(items, from, to)));
+            final BulkShardResponse response = new BulkShardResponse(shardId, Arrays.copyOfRange(itemResponses, from, to));
+            final ReplicationResponse.ShardInfo.Failure[] chunkFailures = randomBoolean()
+                ? new ReplicationResponse.ShardInfo.Failure[0]
+                : new ReplicationResponse.ShardInfo.Failure[] {
+                    new ReplicationResponse.ShardInfo.Failure(
+                        shardId,
+                        "node-" + from,
+                        new ElasticsearchException("replica failed"),
+                        RestStatus.INTERNAL_SERVER_ERROR,
+                        false
+                    ) };
+            failures.addAll(Arrays.asList(chunkFailures));
+            response.setShardInfo(ReplicationResponse.ShardInfo.of(from == 0 ? 3 : 2, from == 0 ? 3 : 1, chunkFailures));
+            responses.add(response);
+            from = to;
+        }
+
+        final BulkShardResponse combined = TransportShardBulkAction.combineChunkResponses(request, chunks, responses, null);
+        assertThat(combined.getResponses(), equalTo(itemResponses));
+        assertThat(combined.getShardInfo().getTotal(), equalTo(3));
+        assertThat(combined.getShardInfo().getSuccessful(), equalTo(responses.size() == 1 ? 3 : 1));
+        assertThat(Arrays.asList(combined.getShardInfo().getFailures()), equalTo(failures));
+    }
+
+    public void testCombineChunkResponsesAfterLaterChunkFailed() {
+        final int numItems = between(2, 20);
+        final BulkItemRequest[] items = new BulkItemRequest[numItems];
+        for (int i = 0; i < numItems; i++) {
+            items[i] = new BulkItemRequest(
+                i,
+                new IndexRequest("index").id(Integer.toString(i)).source(Requests.INDEX_CONTENT_TYPE, "f", i)
+            );
+        }
+        final BulkShardRequest request = new BulkShardRequest(shardId, RefreshPolicy.NONE, items);
+        final int split = between(1, numItems - 1);
+        final List<BulkShardRequest> chunks = List.of(
+            new BulkShardRequest(shardId, RefreshPolicy.NONE, Arrays.copyOfRange(items, 0, split)),
+            new BulkShardRequest(shardId, RefreshPolicy.NONE, Arrays.copyOfRange(items, split, numItems))
+        );
+        final BulkItemResponse[] firstChunkItemResponses = new BulkItemResponse[split];
+        for (int i = 0; i < split; i++) {
+            firstChunkItemResponses[i] = BulkItemResponse.success(
+                i,
+                DocWriteRequest.OpType.INDEX,
+                new IndexResponse(shardId, Integer.toString(i), i, 1, 1, true)
+            );
+        }
+        final BulkShardResponse firstChunkResponse = new BulkShardResponse(shardId, firstChunkItemResponses);
+        firstChunkResponse.setShardInfo(ReplicationResponse.ShardInfo.of(2, 2));
+        final List<BulkShardResponse> responses = new ArrayList<>();
+        responses.add(firstChunkResponse);
+        responses.add(null);
+        final UnavailableShardsException failure = new UnavailableShardsException(shardId, "simulated");
+
+        final BulkShardResponse combined = TransportShardBulkAction.combineChunkResponses(request, chunks, responses, failure);
+        assertThat(combined.getResponses().length, equalTo(numItems));
+        // the items of the first chunk were applied and keep their responses
+        for (int i = 0; i < split; i++) {
+            assertSame(firstChunkItemResponses[i], combined.getResponses()[i]);
+        }
+        // only the items of the chunk that failed report the failure
+        for (int i = split; i < numItems; i++) {
+            final BulkItemResponse itemResponse = combined.getResponses()[i];
+            assertThat(itemResponse.getItemId(), equalTo(i));
+            assertTrue(itemResponse.isFailed());
+            assertThat(itemResponse.getFailure().getId(), equalTo(Integer.toString(i)));
+            assertSame(failure, itemResponse.getFailure().getCause());
+        }
+        assertThat(combined.getShardInfo().getTotal(), equalTo(2));
+        assertThat(combined.getShardInfo().getSuccessful(), equalTo(2));
+    }
+
     private IndexShard mockShard() {
         IndexShard shard = mock(IndexShard.class);
         when(shard.shardId()).thenReturn(shardId);
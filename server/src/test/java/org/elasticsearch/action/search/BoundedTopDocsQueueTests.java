@@ -0,0 +1,134 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.action.search;
+
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.search.TotalHits;
+import org.elasticsearch.lucene.grouping.TopFieldGroups;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.nullValue;
+
+public class BoundedTopDocsQueueTests extends ESTestCase {
+
+    public void testNoShards() {
+        assertThat(new BoundedTopDocsQueue(randomIntBetween(1, 10)).pollTopDocs(), nullValue());
+    }
+
+    public void testSortByScore() {
+        final int topN = randomIntBetween(1, 50);
+        final List<TopDocs> shards = new ArrayList<>();
+        final int numShards = randomIntBetween(1, 20);
+        for (int shardIndex = 0; shardIndex < numShards; shardIndex++) {
+            final ScoreDoc[] hits = new ScoreDoc[randomIntBetween(0, topN)];
+            for (int i = 0; i < hits.length; i++) {
+                // few distinct scores, so that ties are broken by shard index and doc id
+                hits[i] = new ScoreDoc(i, randomIntBetween(0, 5), shardIndex);
+            }
+            Arrays.sort(hits, Comparator.comparingDouble((ScoreDoc hit) -> -hit.score).thenComparingInt(hit -> hit.doc));
+            shards.add(new TopDocs(new TotalHits(hits.length, TotalHits.Relation.EQUAL_TO), hits));
+        }
+        assertSameAsMergeTopDocs(shards, topN);
+    }
+
+    public void testSortByField() {
+        final int topN = randomIntBetween(1, 50);
+        final boolean reverse = randomBoolean();
+        final SortField[] sortFields = new SortField[] { new SortField("field", SortField.Type.LONG, reverse) };
+        final Comparator<ScoreDoc> shardOrder = Comparator.comparingLong((ScoreDoc hit) -> (long) ((FieldDoc) hit).fields[0]);
+        final List<TopDocs> shards = new ArrayList<>();
+        final int numShards = randomIntBetween(1, 20);
+        for (int shardIndex = 0; shardIndex < numShards; shardIndex++) {
+            final ScoreDoc[] hits = new ScoreDoc[randomIntBetween(0, topN)];
+            for (int i = 0; i < hits.length; i++) {
+                hits[i] = new FieldDoc(i, Float.NaN, new Object[] { randomLongBetween(0, 10) }, shardIndex);
+            }
+            Arrays.sort(hits, (reverse ? shardOrder.reversed() : shardOrder).thenComparingInt(hit -> hit.doc));
+            shards.add(new TopFieldDocs(new TotalHits(hits.length, TotalHits.Relation.EQUAL_TO), hits, sortFields));
+        }
+        TopDocs topDocs = assertSameAsMergeTopDocs(shards, topN);
+        assertThat(topDocs, instanceOf(TopFieldDocs.class));
+    }
+
+    public void testIncompatibleSortTypes() {
+        final BoundedTopDocsQueue queue = new BoundedTopDocsQueue(10);
+        queue.add(fieldDocs(0, new SortField("field", SortField.Type.LONG), 1L));
+        final IllegalArgumentException e = expectThrows(
+            IllegalArgumentException.class,
+            () -> queue.add(fieldDocs(1, new SortField("field", SortField.Type.STRING), "a"))
+        );
+        assertThat(
+            e.getMessage(),
+            equalTo("Can't sort on field [field]; the field has incompatible sort types: [LONG] and [STRING] across shards!")
+        );
+    }
+
+    public void testFieldCollapsing() {
+        final int topN = randomIntBetween(1, 50);
+        final SortField[] sortFields = new SortField[] { new SortField("field", SortField.Type.LONG) };
+        final List<TopDocs> shards = new ArrayList<>();
+        final int numShards = randomIntBetween(1, 20);
+        for (int shardIndex = 0; shardIndex < numShards; shardIndex++) {
+            // a shard returns the best hit of each group, so the number of hits is bounded by the number of groups
+            final int numHits = randomIntBetween(0, Math.min(topN, 10));
+            final List<Integer> groups = new ArrayList<>(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9));
+            Collections.shuffle(groups, random());
+            final ScoreDoc[] hits = new ScoreDoc[numHits];
+            final Object[] groupValues = new Object[numHits];
+            long value = 0;
+            for (int i = 0; i < numHits; i++) {
+                value += randomIntBetween(0, 2);
+                hits[i] = new FieldDoc(i, Float.NaN, new Object[] { value }, shardIndex);
+                groupValues[i] = groups.get(i);
+            }
+            shards.add(new TopFieldGroups("group", new TotalHits(numHits, TotalHits.Relation.EQUAL_TO), hits, sortFields, groupValues));
+        }
+        TopDocs topDocs = assertSameAsMergeTopDocs(shards, topN);
+        assertThat(topDocs, instanceOf(TopFieldGroups.class));
+    }
+
+    private static TopDocs assertSameAsMergeTopDocs(List<TopDocs> shards, int topN) {
+        final BoundedTopDocsQueue queue = new BoundedTopDocsQueue(topN);
+        for (TopDocs shard : shards) {
+            queue.add(shard);
+        }
+        final TopDocs actual = queue.pollTopDocs();
+        final TopDocs expected = SearchPhaseController.mergeTopDocs(shards, topN, 0);
+        assertThat(actual.totalHits, equalTo(expected.totalHits));
+        assertThat(hitIds(actual), equalTo(hitIds(expected)));
+        if (expected instanceof TopFieldGroups expectedGroups) {
+            assertThat(Arrays.asList(((TopFieldGroups) actual).groupValues), equalTo(Arrays.asList(expectedGroups.groupValues)));
+        }
+        return actual;
+    }
+
+    private static List<String> hitIds(TopDocs topDocs) {
+        return Arrays.stream(topDocs.scoreDocs).map(hit -> hit.shardIndex + "/" + hit.doc).toList();
+    }
+
+    private static TopFieldDocs fieldDocs(int shardIndex, SortField sortField, Object value) {
+        return new TopFieldDocs(
+            new TotalHits(1, TotalHits.Relation.EQUAL_TO),
+            new ScoreDoc[] { new FieldDoc(0, Float.NaN, new Object[] { value }, shardIndex) },
+            new SortField[] { sortField }
+        );
+    }
+}
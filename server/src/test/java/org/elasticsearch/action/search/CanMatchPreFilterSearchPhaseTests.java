@@ -19,6 +19,7 @@ import org.elasticsearch.cluster.metadata.DataStream;
 import org.elasticsearch.cluster.metadata.DataStreamTestHelper;
 import org.elasticsearch.cluster.metadata.IndexMetadata;
 import org.elasticsearch.cluster.metadata.Metadata;
+import org.elasticsearch.cluster.metadata.ShardTimestampRanges;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.node.DiscoveryNodeUtils;
 import org.elasticsearch.cluster.routing.GroupShardsIterator;
@@ -635,6 +636,51 @@ public class CanMatchPreFilterSearchPhaseTests extends ESTestCase {
         );
     }
 
+    public void testCanMatchFilteringOnCoordinatorWithShardTimestampRanges() throws Exception {
+        // a write-blocked index whose shards reported their own ranges, the last shard has not reported its range yet
+        Index index = new Index(randomAlphaOfLength(10), UUIDs.base64UUID());
+        int numberOfShards = 6;
+        Map<Integer, ShardLongFieldRange> shardRanges = new HashMap<>();
+        for (int shardId = 0; shardId < numberOfShards - 1; shardId++) {
+            shardRanges.put(shardId, ShardLongFieldRange.of(shardId * 1000L, shardId * 1000L + 999));
+        }
+        StaticCoordinatorRewriteContextProviderBuilder contextProviderBuilder = new StaticCoordinatorRewriteContextProviderBuilder();
+        contextProviderBuilder.addWriteBlockedIndexShardMinMaxTimestamps(index, numberOfShards, shardRanges);
+
+        // the query always overlaps the range of the first shard so that none of the shards has to be queried just to build a response
+        int lastMatchingShard = randomIntBetween(0, numberOfShards - 2);
+        RangeQueryBuilder rangeQueryBuilder = new RangeQueryBuilder(DataStream.TIMESTAMP_FIELD_NAME);
+        rangeQueryBuilder.from(randomLongBetween(0, 499)).to(lastMatchingShard * 1000L + randomLongBetween(500, 999));
+
+        BoolQueryBuilder queryBuilder = new BoolQueryBuilder().filter(rangeQueryBuilder);
+
+        if (randomBoolean()) {
+            // Add an additional filter that cannot be evaluated in the coordinator but shouldn't
+            // affect the end result as we're filtering
+            queryBuilder.filter(new TermQueryBuilder("fake", "value"));
+        }
+
+        assignShardsAndExecuteCanMatchPhase(
+            List.of(),
+            List.of(index),
+            contextProviderBuilder.build(),
+            queryBuilder,
+            List.of(),
+            null,
+            (updatedSearchShardIterators, requests) -> {
+                for (SearchShardIterator searchShardIterator : updatedSearchShardIterators) {
+                    int shardId = searchShardIterator.shardId().id();
+                    boolean outsideOfQueryRange = shardRanges.containsKey(shardId) && shardId > lastMatchingShard;
+                    assertThat(searchShardIterator.shardId().toString(), searchShardIterator.skip(), equalTo(outsideOfQueryRange));
+                }
+                for (ShardSearchRequest request : requests) {
+                    int shardId = request.shardId().id();
+                    assertThat(shardId <= lastMatchingShard || shardRanges.containsKey(shardId) == false, equalTo(true));
+                }
+            }
+        );
+    }
+
     public void testCanMatchFilteringOnCoordinator_withSignificantTermsAggregation_withDefaultBackgroundFilter() throws Exception {
         Index index1 = new Index("index1", UUIDs.base64UUID());
         Index index2 = new Index("index2", UUIDs.base64UUID());
@@ -1005,6 +1051,34 @@ public class CanMatchPreFilterSearchPhaseTests extends ESTestCase {
             fields.put(index, new DateFieldMapper.DateFieldType("@timestamp"));
         }
 
+        private void addWriteBlockedIndexShardMinMaxTimestamps(
+            Index index,
+            int numberOfShards,
+            Map<Integer, ShardLongFieldRange> shardRanges
+        ) {
+            if (clusterState.metadata().index(index) != null) {
+                throw new IllegalArgumentException("Min/Max timestamps for " + index + " were already defined");
+            }
+
+            Settings.Builder indexSettings = settings(IndexVersion.current()).put(IndexMetadata.SETTING_INDEX_UUID, index.getUUID())
+                .put(IndexMetadata.INDEX_BLOCKS_WRITE_SETTING.getKey(), true);
+            IndexMetadata indexMetadata = IndexMetadata.builder(index.getName())
+                .settings(indexSettings)
+                .numberOfShards(numberOfShards)
+                .numberOfReplicas(0)
+                .build();
+            for (Map.Entry<Integer, ShardLongFieldRange> entry : shardRanges.entrySet()) {
+                ShardTimestampRanges ranges = ShardTimestampRanges.withShardRange(indexMetadata, entry.getKey(), entry.getValue());
+                indexMetadata = IndexMetadata.builder(indexMetadata)
+                    .putCustom(ShardTimestampRanges.CUSTOM_KEY, ranges.toCustomData())
+                    .build();
+            }
+
+            Metadata.Builder metadataBuilder = Metadata.builder(clusterState.metadata()).put(indexMetadata, false);
+            clusterState = ClusterState.builder(clusterState).metadata(metadataBuilder).build();
+            fields.put(index, new DateFieldMapper.DateFieldType(DataStream.TIMESTAMP_FIELD_NAME));
+        }
+
         private void addIndex(Index index) {
             if (clusterState.metadata().index(index) != null) {
                 throw new IllegalArgumentException("Min/Max timestamps for " + index + " were already defined");
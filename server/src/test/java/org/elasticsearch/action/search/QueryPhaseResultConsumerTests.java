@@ -14,17 +14,24 @@ import org.apache.lucene.search.TotalHits;
 import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.breaker.NoopCircuitBreaker;
 import org.elasticsearch.common.lucene.search.TopDocsAndMaxScore;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.concurrent.EsExecutors;
 import org.elasticsearch.common.util.concurrent.EsExecutors.TaskTrackingConfig;
 import org.elasticsearch.common.util.concurrent.EsThreadPoolExecutor;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.indices.breaker.CircuitBreakerMetrics;
+import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
 import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.SearchShardTarget;
 import org.elasticsearch.search.aggregations.AggregationBuilder;
 import org.elasticsearch.search.aggregations.AggregationReduceContext;
 import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.metrics.Max;
+import org.elasticsearch.search.aggregations.metrics.MaxAggregationBuilder;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.query.QuerySearchResult;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.threadpool.TestThreadPool;
@@ -36,10 +43,14 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.mockito.Mockito.mock;
 
 public class QueryPhaseResultConsumerTests extends ESTestCase {
@@ -141,6 +152,143 @@ public class QueryPhaseResultConsumerTests extends ESTestCase {
         }
     }
 
+    public void testConcurrentPartialReduces() throws Exception {
+        final int numShards = randomIntBetween(50, 200);
+        final int maxConcurrentMerges = randomIntBetween(2, 4);
+        EsThreadPoolExecutor concurrentExecutor = EsExecutors.newFixed(
+            "test-concurrent",
+            maxConcurrentMerges,
+            numShards,
+            EsExecutors.daemonThreadFactory("test-concurrent"),
+            threadPool.getThreadContext(),
+            TaskTrackingConfig.DO_NOT_TRACK
+        );
+        AtomicInteger runningMerges = new AtomicInteger();
+        AtomicInteger maxRunningMerges = new AtomicInteger();
+        CountDownLatch overlappingMergesLatch = new CountDownLatch(2);
+        Executor trackingExecutor = command -> concurrentExecutor.execute(() -> {
+            maxRunningMerges.accumulateAndGet(runningMerges.incrementAndGet(), Math::max);
+            overlappingMergesLatch.countDown();
+            try {
+                // hold the first merge until a second one is running
+                safeAwait(overlappingMergesLatch);
+                command.run();
+            } finally {
+                runningMerges.decrementAndGet();
+            }
+        });
+        CircuitBreaker circuitBreaker = new HierarchyCircuitBreakerService(
+            CircuitBreakerMetrics.NOOP,
+            Settings.EMPTY,
+            Collections.emptyList(),
+            new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS)
+        ).getBreaker(CircuitBreaker.REQUEST);
+        try {
+            SearchRequest searchRequest = new SearchRequest("index");
+            searchRequest.source(new SearchSourceBuilder().aggregation(new MaxAggregationBuilder("test")).size(10));
+            searchRequest.setBatchedReduceSize(randomIntBetween(2, 8));
+            AtomicReference<Exception> onPartialMergeFailure = new AtomicReference<>();
+            try (
+                QueryPhaseResultConsumer queryPhaseResultConsumer = new QueryPhaseResultConsumer(
+                    searchRequest,
+                    trackingExecutor,
+                    circuitBreaker,
+                    searchPhaseController,
+                    () -> false,
+                    SearchProgressListener.NOOP,
+                    numShards,
+                    onPartialMergeFailure::set,
+                    maxConcurrentMerges
+                )
+            ) {
+                CountDownLatch partialReduceLatch = new CountDownLatch(numShards);
+                for (int i = 0; i < numShards; i++) {
+                    SearchShardTarget searchShardTarget = new SearchShardTarget("node", new ShardId("index", "uuid", i), null);
+                    QuerySearchResult querySearchResult = new QuerySearchResult();
+                    TopDocs topDocs = new TopDocs(
+                        new TotalHits(1, TotalHits.Relation.EQUAL_TO),
+                        new ScoreDoc[] { new ScoreDoc(i, (float) i) }
+                    );
+                    querySearchResult.topDocs(new TopDocsAndMaxScore(topDocs, (float) i), new DocValueFormat[0]);
+                    querySearchResult.aggregations(
+                        InternalAggregations.from(
+                            Collections.singletonList(new Max("test", (double) i, DocValueFormat.RAW, Collections.emptyMap()))
+                        )
+                    );
+                    querySearchResult.from(0);
+                    querySearchResult.size(10);
+                    querySearchResult.setSearchShardTarget(searchShardTarget);
+                    querySearchResult.setShardIndex(i);
+                    queryPhaseResultConsumer.consumeResult(querySearchResult, partialReduceLatch::countDown);
+                }
+                assertTrue(partialReduceLatch.await(10, TimeUnit.SECONDS));
+                assertNull(onPartialMergeFailure.get());
+                assertTrue(queryPhaseResultConsumer.getNumReducePhases() > 0);
+                assertThat(maxRunningMerges.get(), greaterThanOrEqualTo(2));
+                assertThat(maxRunningMerges.get(), lessThanOrEqualTo(maxConcurrentMerges));
+                // the reduced and the buffered aggregations are still accounted for
+                assertThat(circuitBreaker.getUsed(), greaterThan(0L));
+
+                SearchPhaseController.ReducedQueryPhase reducedQueryPhase = queryPhaseResultConsumer.reduce();
+                assertEquals(numShards, reducedQueryPhase.totalHits().value);
+                ScoreDoc[] scoreDocs = reducedQueryPhase.sortedTopDocs().scoreDocs();
+                assertEquals(10, scoreDocs.length);
+                for (int i = 0; i < scoreDocs.length; i++) {
+                    assertEquals(numShards - 1 - i, scoreDocs[i].shardIndex);
+                    assertEquals(numShards - 1 - i, scoreDocs[i].score, 0f);
+                }
+                Max max = (Max) reducedQueryPhase.aggregations().get("test");
+                assertEquals(numShards - 1, max.value(), 0d);
+            }
+            assertEquals(0L, circuitBreaker.getUsed());
+        } finally {
+            concurrentExecutor.shutdownNow();
+        }
+    }
+
+    public void testTopDocsAreMergedAsResultsArrive() throws Exception {
+        final int numShards = randomIntBetween(10, 50);
+        SearchRequest searchRequest = new SearchRequest("index");
+        searchRequest.source(new SearchSourceBuilder().from(2).size(3));
+        searchRequest.setBatchedReduceSize(numShards);
+        try (
+            QueryPhaseResultConsumer queryPhaseResultConsumer = new QueryPhaseResultConsumer(
+                searchRequest,
+                executor,
+                new NoopCircuitBreaker(CircuitBreaker.REQUEST),
+                searchPhaseController,
+                () -> false,
+                SearchProgressListener.NOOP,
+                numShards,
+                e -> fail("unexpected partial merge failure")
+            )
+        ) {
+            CountDownLatch latch = new CountDownLatch(numShards);
+            for (int i = 0; i < numShards; i++) {
+                SearchShardTarget searchShardTarget = new SearchShardTarget("node", new ShardId("index", "uuid", i), null);
+                QuerySearchResult querySearchResult = new QuerySearchResult();
+                TopDocs topDocs = new TopDocs(new TotalHits(1, TotalHits.Relation.EQUAL_TO), new ScoreDoc[] { new ScoreDoc(i, (float) i) });
+                querySearchResult.topDocs(new TopDocsAndMaxScore(topDocs, (float) i), new DocValueFormat[0]);
+                querySearchResult.from(2);
+                querySearchResult.size(3);
+                querySearchResult.setSearchShardTarget(searchShardTarget);
+                querySearchResult.setShardIndex(i);
+                queryPhaseResultConsumer.consumeResult(querySearchResult, latch::countDown);
+                // the shard's top docs are released as soon as they are merged
+                assertTrue(querySearchResult.hasConsumedTopDocs());
+            }
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+            SearchPhaseController.ReducedQueryPhase reducedQueryPhase = queryPhaseResultConsumer.reduce();
+            assertEquals(numShards, reducedQueryPhase.totalHits().value);
+            ScoreDoc[] scoreDocs = reducedQueryPhase.sortedTopDocs().scoreDocs();
+            assertEquals(3, scoreDocs.length);
+            for (int i = 0; i < scoreDocs.length; i++) {
+                assertEquals(numShards - 3 - i, scoreDocs[i].shardIndex);
+            }
+        }
+    }
+
     private static class ThrowingSearchProgressListener extends SearchProgressListener {
         private final AtomicInteger onQueryResult = new AtomicInteger(0);
         private final AtomicInteger onPartialReduce = new AtomicInteger(0);
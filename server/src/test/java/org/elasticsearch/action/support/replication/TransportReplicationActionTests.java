@@ -87,10 +87,15 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
@@ -107,7 +112,9 @@ import static org.elasticsearch.test.ClusterServiceUtils.createClusterService;
 import static org.elasticsearch.test.ClusterServiceUtils.setState;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.hasToString;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.notNullValue;
@@ -1035,6 +1042,107 @@ public class TransportReplicationActionTests extends ESTestCase {
         }
     }
 
+    public void testPipelinesChunksOfSplitPrimaryRequests() throws Exception {
+        final int numChunks = between(2, 5);
+        executeSplitPrimaryRequest(numChunks, randomBoolean() ? between(0, numChunks - 1) : -1);
+    }
+
+    public void testDoesNotFailSplitPrimaryRequestIfLaterChunkFails() throws Exception {
+        // the second chunk fails once the first one was applied, which must not fail the request as a whole since it could be retried
+        executeSplitPrimaryRequest(between(2, 5), 1);
+    }
+
+    private void executeSplitPrimaryRequest(int numChunks, int failingChunkIndex) throws Exception {
+        final String index = "test";
+        final ShardId shardId = new ShardId(index, "_na_", 0);
+        final ClusterState state = state(index, true, ShardRoutingState.STARTED);
+        setState(clusterService, state);
+        final ShardRouting primaryShard = state.routingTable().shardRoutingTable(shardId).primaryShard();
+        final long primaryTerm = state.metadata().index(index).primaryTerm(shardId.id());
+        final Request request = new Request(shardId);
+        final List<Request> chunks = new ArrayList<>();
+        for (int i = 0; i < numChunks; i++) {
+            chunks.add(new Request(shardId));
+        }
+        final Request failingChunk = failingChunkIndex >= 0 ? chunks.get(failingChunkIndex) : null;
+        final List<Request> executedChunks = new ArrayList<>();
+        final Deque<Runnable> chunksExecutingOnPrimary = new ArrayDeque<>();
+        final Map<Request, TestResponse> chunkResponses = new HashMap<>();
+        final TestResponse response = new TestResponse();
+        final PlainActionFuture<TestResponse> listener = new PlainActionFuture<>();
+        final ReplicationTask task = maybeTask();
+        final TransportReplicationAction.ConcreteShardRequest<Request> primaryRequest =
+            new TransportReplicationAction.ConcreteShardRequest<>(request, primaryShard.allocationId().getId(), primaryTerm);
+
+        new TestAction(Settings.EMPTY, "internal:testAction2", transportService, clusterService, shardStateAction, threadPool) {
+            @Override
+            protected PrimaryRequestChunks<Request, TestResponse> splitPrimaryRequest(Request shardRequest) {
+                assertSame(request, shardRequest);
+                return new PrimaryRequestChunks<>(chunks, (responses, failure) -> {
+                    assertThat(responses, hasSize(chunks.size()));
+                    for (int i = 0; i < chunks.size(); i++) {
+                        // chunks that failed or did not run after a failure have no response
+                        assertSame(chunkResponses.get(chunks.get(i)), responses.get(i));
+                    }
+                    if (failingChunk == null) {
+                        assertNull(failure);
+                    } else {
+                        assertThat(failure.getMessage(), containsString("simulated failure of a chunk"));
+                    }
+                    return response;
+                });
+            }
+
+            @Override
+            protected void shardOperationOnPrimary(
+                Request shardRequest,
+                IndexShard primary,
+                ActionListener<PrimaryResult<Request, TestResponse>> listener
+            ) {
+                // the chunks share the primary operation permit of the request
+                assertIndexShardCounter(1);
+                executedChunks.add(shardRequest);
+                chunksExecutingOnPrimary.add(() -> {
+                    if (shardRequest == failingChunk) {
+                        listener.onFailure(new ElasticsearchException("simulated failure of a chunk"));
+                    } else {
+                        final TestResponse chunkResponse = new TestResponse();
+                        chunkResponses.put(shardRequest, chunkResponse);
+                        listener.onResponse(new PrimaryResult<>(shardRequest, chunkResponse));
+                    }
+                });
+            }
+        }.new AsyncPrimaryAction(primaryRequest, listener, task).run();
+
+        // the chunks execute on the primary one after the other, and the permit is held until the last one completes
+        Runnable chunkExecutingOnPrimary;
+        while ((chunkExecutingOnPrimary = chunksExecutingOnPrimary.poll()) != null) {
+            assertThat(chunksExecutingOnPrimary, empty());
+            assertFalse(listener.isDone());
+            assertIndexShardCounter(1);
+            chunkExecutingOnPrimary.run();
+        }
+
+        assertIndexShardCounter(0);
+        assertTrue(listener.isDone());
+        assertPhase(task, "finished");
+        if (failingChunk == null) {
+            assertEquals(chunks, executedChunks);
+            assertSame(response, listener.get());
+        } else {
+            // no chunks execute after the one that failed
+            assertEquals(chunks.subList(0, failingChunkIndex + 1), executedChunks);
+            if (failingChunkIndex == 0) {
+                // nothing was applied, so the request fails and may be retried
+                final ElasticsearchException e = assertListenerThrows("chunk failed", listener, ElasticsearchException.class);
+                assertThat(e.getMessage(), containsString("simulated failure of a chunk"));
+            } else {
+                // the chunks before the failed one were applied, so the failure is reported through the combined response instead
+                assertSame(response, listener.get());
+            }
+        }
+    }
+
     public void testReplicasCounter() {
         final ShardId shardId = new ShardId("test", "_na_", 0);
         final ClusterState state = state(shardId.getIndexName(), true, ShardRoutingState.STARTED, ShardRoutingState.STARTED);
@@ -0,0 +1,148 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.cluster.action.shard;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.support.ActionTestUtils;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.action.shard.ShardStateAction.ShardTimestampRangeEntry;
+import org.elasticsearch.cluster.action.shard.ShardStateAction.ShardTimestampRangeUpdateTask;
+import org.elasticsearch.cluster.metadata.IndexMetadata;
+import org.elasticsearch.cluster.metadata.Metadata;
+import org.elasticsearch.cluster.metadata.ShardTimestampRanges;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.cluster.routing.ShardRoutingState;
+import org.elasticsearch.cluster.service.ClusterStateTaskExecutorUtils;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.shard.IndexLongFieldRange;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.shard.ShardLongFieldRange;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.List;
+
+import static org.elasticsearch.action.support.replication.ClusterStateCreationUtils.state;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class ShardTimestampRangeClusterStateTaskExecutorTests extends ESTestCase {
+
+    private static final String INDEX_NAME = "test";
+
+    private final ShardStateAction.ShardTimestampRangeClusterStateTaskExecutor executor =
+        new ShardStateAction.ShardTimestampRangeClusterStateTaskExecutor();
+
+    public void testRecordsRangeOfWriteBlockedIndex() throws Exception {
+        final ClusterState clusterState = setWriteBlock(state(INDEX_NAME, randomBoolean(), ShardRoutingState.STARTED), true);
+        final ShardLongFieldRange range = ShardLongFieldRange.of(1000L, 2000L);
+
+        final ClusterState resultingState = executeTasks(clusterState, List.of(task(clusterState, range)));
+        final ShardTimestampRanges ranges = ShardTimestampRanges.fromIndexMetadata(resultingState.metadata().index(INDEX_NAME));
+        assertNotNull(ranges);
+        assertThat(ranges.getShardRange(0), equalTo(range));
+
+        final IndexLongFieldRange rewriteRange = ranges.getShardRangeForRewrite(0);
+        assertTrue(rewriteRange.isComplete());
+        assertThat(rewriteRange.getMin(), equalTo(1000L));
+        assertThat(rewriteRange.getMax(), equalTo(2000L));
+
+        // reporting the same range again does not publish a new cluster state
+        assertThat(executeTasks(resultingState, List.of(task(resultingState, range))), sameInstance(resultingState));
+    }
+
+    public void testRecordsEmptyRange() throws Exception {
+        final ClusterState clusterState = setWriteBlock(state(INDEX_NAME, randomBoolean(), ShardRoutingState.STARTED), true);
+
+        final ClusterState resultingState = executeTasks(clusterState, List.of(task(clusterState, ShardLongFieldRange.EMPTY)));
+        final ShardTimestampRanges ranges = ShardTimestampRanges.fromIndexMetadata(resultingState.metadata().index(INDEX_NAME));
+        assertNotNull(ranges);
+        assertThat(ranges.getShardRange(0), sameInstance(ShardLongFieldRange.EMPTY));
+        assertThat(ranges.getShardRangeForRewrite(0), sameInstance(IndexLongFieldRange.EMPTY));
+    }
+
+    public void testIgnoresIndexWithoutWriteBlock() throws Exception {
+        final ClusterState clusterState = state(INDEX_NAME, randomBoolean(), ShardRoutingState.STARTED);
+        final var task = task(clusterState, ShardLongFieldRange.of(1000L, 2000L));
+        assertThat(executeTasks(clusterState, List.of(task)), sameInstance(clusterState));
+    }
+
+    public void testIgnoresRangeComputedBeforeBlocksChanged() throws Exception {
+        final ClusterState clusterState = setWriteBlock(state(INDEX_NAME, randomBoolean(), ShardRoutingState.STARTED), true);
+        final var task = task(clusterState, ShardLongFieldRange.of(1000L, 2000L));
+        final ClusterState changedState = setWriteBlock(setWriteBlock(clusterState, false), true);
+        assertThat(executeTasks(changedState, List.of(task)), sameInstance(changedState));
+    }
+
+    public void testIgnoresReplica() throws Exception {
+        final ClusterState clusterState = setWriteBlock(
+            state(INDEX_NAME, randomBoolean(), ShardRoutingState.STARTED, ShardRoutingState.STARTED),
+            true
+        );
+        final IndexMetadata indexMetadata = clusterState.metadata().index(INDEX_NAME);
+        final ShardId shardId = new ShardId(indexMetadata.getIndex(), 0);
+        final ShardRouting replica = clusterState.routingTable().shardRoutingTable(shardId).replicaShards().iterator().next();
+        final var task = new ShardTimestampRangeUpdateTask(
+            new ShardTimestampRangeEntry(
+                shardId,
+                replica.allocationId().getId(),
+                indexMetadata.primaryTerm(0),
+                indexMetadata.getSettingsVersion(),
+                ShardLongFieldRange.of(1000L, 2000L)
+            ),
+            createTestListener()
+        );
+        assertThat(executeTasks(clusterState, List.of(task)), sameInstance(clusterState));
+    }
+
+    public void testSummaryIsInvalidatedWhenWriteBlockIsRemoved() throws Exception {
+        final ClusterState clusterState = setWriteBlock(state(INDEX_NAME, randomBoolean(), ShardRoutingState.STARTED), true);
+        final ClusterState resultingState = executeTasks(clusterState, List.of(task(clusterState, ShardLongFieldRange.of(1L, 2L))));
+        assertNotNull(ShardTimestampRanges.fromIndexMetadata(resultingState.metadata().index(INDEX_NAME)));
+
+        final ClusterState unblockedState = setWriteBlock(resultingState, false);
+        assertThat(ShardTimestampRanges.fromIndexMetadata(unblockedState.metadata().index(INDEX_NAME)), nullValue());
+
+        // blocking the index again does not resurrect the stale summary either
+        final ClusterState reblockedState = setWriteBlock(unblockedState, true);
+        assertThat(ShardTimestampRanges.fromIndexMetadata(reblockedState.metadata().index(INDEX_NAME)), nullValue());
+    }
+
+    private static ClusterState setWriteBlock(ClusterState clusterState, boolean blocked) {
+        final IndexMetadata indexMetadata = clusterState.metadata().index(INDEX_NAME);
+        final IndexMetadata.Builder builder = IndexMetadata.builder(indexMetadata)
+            .settings(Settings.builder().put(indexMetadata.getSettings()).put(IndexMetadata.INDEX_BLOCKS_WRITE_SETTING.getKey(), blocked))
+            .settingsVersion(indexMetadata.getSettingsVersion() + 1);
+        return ClusterState.builder(clusterState).metadata(Metadata.builder(clusterState.metadata()).put(builder)).build();
+    }
+
+    private static ShardTimestampRangeUpdateTask task(ClusterState clusterState, ShardLongFieldRange range) {
+        final IndexMetadata indexMetadata = clusterState.metadata().index(INDEX_NAME);
+        final ShardId shardId = new ShardId(indexMetadata.getIndex(), 0);
+        final ShardRouting primary = clusterState.routingTable().shardRoutingTable(shardId).primaryShard();
+        return new ShardTimestampRangeUpdateTask(
+            new ShardTimestampRangeEntry(
+                shardId,
+                primary.allocationId().getId(),
+                indexMetadata.primaryTerm(0),
+                indexMetadata.getSettingsVersion(),
+                range
+            ),
+            createTestListener()
+        );
+    }
+
+    private ClusterState executeTasks(ClusterState state, List<ShardTimestampRangeUpdateTask> tasks) throws Exception {
+        return ClusterStateTaskExecutorUtils.executeAndAssertSuccessful(state, executor, tasks);
+    }
+
+    private static <T> ActionListener<T> createTestListener() {
+        return ActionTestUtils.assertNoFailureListener(t -> {});
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+package org.elasticsearch.cluster.coordination;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.core.Streams;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class PublicationCompressionDictionaryTests extends ESTestCase {
+
+    public void testTrainedDictionaryImprovesCompressionOfSimilarPublications() throws IOException {
+        final List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            samples.add(randomDiff());
+        }
+        final PublicationCompressionDictionary dictionary = PublicationCompressionDictionary.train(samples);
+        assertThat(dictionary, notNullValue());
+        assertThat(dictionary.bytes().length, lessThanOrEqualTo(PublicationCompressionDictionary.MAX_SIZE));
+
+        final byte[] diff = randomDiff();
+        final long withDictionary = PublicationCompressionDictionary.compressedLength(diff, 0, diff.length, dictionary);
+        final long withoutDictionary = PublicationCompressionDictionary.compressedLength(diff, 0, diff.length, null);
+        assertThat(withDictionary, lessThan(withoutDictionary));
+        final var estimatingStream = new PublicationCompressionDictionary.SavedBytesEstimatingStream(OutputStream.nullOutputStream());
+        estimatingStream.write(diff, 0, diff.length);
+        assertThat(estimatingStream.estimateSavedBytes(withDictionary, dictionary), equalTo(withoutDictionary - withDictionary));
+    }
+
+    public void testTrainingIsDeterministic() {
+        final List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            samples.add(randomDiff());
+        }
+        final PublicationCompressionDictionary dictionary = PublicationCompressionDictionary.train(samples);
+        assertThat(dictionary, notNullValue());
+        assertThat(PublicationCompressionDictionary.train(samples).id(), equalTo(dictionary.id()));
+        assertThat(new PublicationCompressionDictionary(dictionary.bytes().clone()).id(), equalTo(dictionary.id()));
+    }
+
+    public void testNoDictionaryWithoutCommonContent() {
+        // the content of a single sample never recurs across samples
+        assertThat(PublicationCompressionDictionary.train(List.of(randomDiff())), nullValue());
+        assertThat(PublicationCompressionDictionary.train(List.of(new byte[0], new byte[0])), nullValue());
+    }
+
+    public void testRoundTrip() throws IOException {
+        final List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            samples.add(randomDiff());
+        }
+        final PublicationCompressionDictionary dictionary = randomBoolean() ? null : PublicationCompressionDictionary.train(samples);
+        final byte[] diff = randomBoolean() ? randomDiff() : randomByteArrayOfLength(between(0, 100_000));
+
+        final BytesStreamOutput compressed = new BytesStreamOutput();
+        try (OutputStream out = PublicationCompressionDictionary.compressingStream(Streams.noCloseStream(compressed), dictionary)) {
+            out.write(diff);
+        }
+        try (InputStream in = PublicationCompressionDictionary.decompressingStream(compressed.bytes().streamInput(), dictionary)) {
+            assertArrayEquals(diff, in.readAllBytes());
+        }
+    }
+
+    public void testTrainerReplacesDictionaryOnlyIfBetter() {
+        final PublicationCompressionDictionary.Trainer trainer = new PublicationCompressionDictionary.Trainer(Runnable::run);
+        assertThat(trainer.current(), nullValue());
+        for (int i = 0; i < PublicationCompressionDictionary.Trainer.SAMPLES_PER_TRAINING - 1; i++) {
+            trainer.addSample(new BytesArray(randomDiff()));
+        }
+        assertThat(trainer.current(), nullValue());
+        trainer.addSample(new BytesArray(randomDiff()));
+        final PublicationCompressionDictionary dictionary = trainer.current();
+        assertThat(dictionary, notNullValue());
+
+        // more publications like the previous ones yield a similar dictionary, which isn't worth shipping to every node
+        for (int i = 0; i < PublicationCompressionDictionary.Trainer.SAMPLES_PER_TRAINING; i++) {
+            trainer.addSample(new BytesArray(randomDiff()));
+        }
+        assertThat(trainer.current(), sameInstance(dictionary));
+    }
+
+    public void testTrainerSlicesLargePublications() {
+        final PublicationCompressionDictionary.Trainer trainer = new PublicationCompressionDictionary.Trainer(Runnable::run);
+        for (int i = 0; i < PublicationCompressionDictionary.Trainer.SAMPLES_PER_TRAINING; i++) {
+            final BytesStreamOutput publication = new BytesStreamOutput();
+            while (publication.size() <= PublicationCompressionDictionary.Trainer.MAX_SAMPLE_SIZE * 4) {
+                publication.writeBytes(randomDiff());
+            }
+            trainer.addSample(publication.bytes());
+        }
+        assertThat(trainer.current(), notNullValue());
+    }
+
+    /**
+     * Something resembling a diff of a cluster state with some index metadata, routing and node changes.
+     */
+    private static byte[] randomDiff() {
+        final StringBuilder sb = new StringBuilder();
+        final int indices = between(1, 10);
+        for (int i = 0; i < indices; i++) {
+            sb.append(
+                String.format(
+                    Locale.ROOT,
+                    "index-metadata{name=logs-%05d,uuid=%s,version=%d,mapping_version=%d,settings_version=%d,"
+                        + "routing_num_shards=%d,state=OPEN,settings={index.number_of_shards=1,index.number_of_replicas=1,"
+                        + "index.lifecycle.name=logs,index.routing.allocation.include._tier_preference=data_hot}}"
+                        + "routing{shard=[logs-%05d][0],node=%s,primary=%b,state=STARTED,allocation_id=%s}",
+                    between(0, 99999),
+                    randomAlphaOfLength(22),
+                    randomNonNegativeInt(),
+                    randomNonNegativeInt(),
+                    randomNonNegativeInt(),
+                    between(1, 1024),
+                    between(0, 99999),
+                    randomAlphaOfLength(22),
+                    randomBoolean(),
+                    randomAlphaOfLength(22)
+                )
+            );
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -13,6 +13,7 @@ import org.elasticsearch.TransportVersion;
 import org.elasticsearch.TransportVersions;
 import org.elasticsearch.Version;
 import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.support.ActionTestUtils;
 import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.cluster.ClusterStatePublicationEvent;
 import org.elasticsearch.cluster.Diff;
@@ -25,6 +26,7 @@ import org.elasticsearch.cluster.node.DiscoveryNodeUtils;
 import org.elasticsearch.cluster.node.DiscoveryNodes;
 import org.elasticsearch.cluster.service.BatchSummary;
 import org.elasticsearch.common.UUIDs;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.compress.Compressor;
 import org.elasticsearch.common.compress.CompressorFactory;
 import org.elasticsearch.common.io.stream.RecyclerBytesStreamOutput;
@@ -90,7 +92,12 @@ public class PublicationTransportHandlerTests extends ESTestCase {
         when(transportService.getConnection(any())).thenReturn(connection);
         when(transportService.getThreadPool()).thenReturn(mock(ThreadPool.class));
 
-        final PublicationTransportHandler handler = new PublicationTransportHandler(transportService, writableRegistry(), pu -> null);
+        final PublicationTransportHandler handler = new PublicationTransportHandler(
+            Settings.EMPTY,
+            transportService,
+            writableRegistry(),
+            pu -> null
+        );
 
         final DiscoveryNode otherNode = DiscoveryNodeUtils.create("otherNode");
         final ClusterState clusterState = CoordinationStateTests.clusterState(
@@ -219,7 +226,12 @@ public class PublicationTransportHandlerTests extends ESTestCase {
                 new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS),
                 Collections.emptySet()
             );
-            final PublicationTransportHandler handler = new PublicationTransportHandler(transportService, writableRegistry(), pu -> null);
+            final PublicationTransportHandler handler = new PublicationTransportHandler(
+                Settings.EMPTY,
+                transportService,
+                writableRegistry(),
+                pu -> null
+            );
             transportService.start();
             transportService.acceptIncomingRequests();
 
@@ -409,6 +421,7 @@ public class PublicationTransportHandlerTests extends ESTestCase {
             transportServicesByNode.put(discoveryNode, transportService);
 
             final var publicationTransportHandler = new PublicationTransportHandler(
+                Settings.EMPTY,
                 transportService,
                 writableRegistry(),
                 publishRequest -> {
@@ -519,4 +532,186 @@ public class PublicationTransportHandlerTests extends ESTestCase {
         assertFalse(deterministicTaskQueue.hasRunnableTasks());
         assertFalse(deterministicTaskQueue.hasDeferredTasks());
     }
+
+    public void testPublishesDiffsCompressedWithDictionary() {
+        final var deterministicTaskQueue = new DeterministicTaskQueue();
+        final var threadPool = deterministicTaskQueue.getThreadPool();
+        final var settings = Settings.builder()
+            .put(PublicationTransportHandler.COMPRESSION_DICTIONARY_ENABLED_SETTING.getKey(), true)
+            .build();
+
+        final var transportsByNode = new HashMap<DiscoveryNode, MockTransport>();
+        final var transportHandlersByNode = new HashMap<DiscoveryNode, PublicationTransportHandler>();
+        final var sentCompressionModes = new ArrayList<String>();
+        final var receivedStateRef = new AtomicReference<ClusterState>();
+
+        final var localNode = DiscoveryNodeUtils.create("localNode");
+        final var otherNode = DiscoveryNodeUtils.create("otherNode");
+        for (final var discoveryNode : List.of(localNode, otherNode)) {
+            startNode(
+                discoveryNode,
+                settings,
+                threadPool,
+                transportsByNode,
+                transportHandlersByNode,
+                sentCompressionModes,
+                receivedStateRef
+            );
+        }
+        threadPool.getThreadContext().markAsSystemContext();
+
+        final var masterHandler = transportHandlersByNode.get(localNode);
+        masterHandler.setCompressionDictionary(new PublicationCompressionDictionary(randomByteArrayOfLength(between(1, 1024))));
+
+        final var clusterState0 = ClusterState.builder(ClusterState.EMPTY_STATE)
+            .nodes(DiscoveryNodes.builder().add(localNode).add(otherNode).localNodeId(localNode.getId()).masterNodeId(localNode.getId()))
+            .metadata(
+                Metadata.builder()
+                    .coordinationMetadata(
+                        CoordinationMetadata.builder().lastAcceptedConfiguration(VotingConfiguration.of(localNode)).build()
+                    )
+                    .generateClusterUuidIfNeeded()
+            )
+            .build();
+        final var clusterState1 = ClusterState.builder(clusterState0).incrementVersion().build();
+        final var clusterState2 = ClusterState.builder(clusterState1).incrementVersion().build();
+        final var clusterState3 = ClusterState.builder(clusterState2).incrementVersion().build();
+
+        // the node has no state yet so it rejects the diff, but it receives the dictionary along with the diff and the full state
+        publish(deterministicTaskQueue, masterHandler, otherNode, clusterState0, clusterState0, receivedStateRef);
+        assertEquals(List.of("inline_dictionary", "inline_dictionary"), sentCompressionModes);
+        assertReceivedCounts(transportHandlersByNode.get(otherNode), 1, 1, 0);
+        sentCompressionModes.clear();
+
+        // the node acknowledged the dictionary, so it only receives the diff compressed with it from now on
+        publish(deterministicTaskQueue, masterHandler, otherNode, clusterState0, clusterState1, receivedStateRef);
+        assertEquals(List.of("dictionary"), sentCompressionModes);
+        assertReceivedCounts(transportHandlersByNode.get(otherNode), 1, 1, 1);
+        assertEquals(1, masterHandler.stats().getClusterStateSerializationStats().getDictionaryCompressedCount());
+        sentCompressionModes.clear();
+
+        // a node that lost the dictionary rejects diffs compressed with it and receives the dictionary again along with the full state
+        startNode(otherNode, settings, threadPool, transportsByNode, transportHandlersByNode, sentCompressionModes, receivedStateRef);
+        publish(deterministicTaskQueue, masterHandler, otherNode, clusterState1, clusterState2, receivedStateRef);
+        assertEquals(List.of("dictionary", "inline_dictionary"), sentCompressionModes);
+        assertReceivedCounts(transportHandlersByNode.get(otherNode), 1, 1, 0);
+        sentCompressionModes.clear();
+
+        publish(deterministicTaskQueue, masterHandler, otherNode, clusterState2, clusterState3, receivedStateRef);
+        assertEquals(List.of("dictionary"), sentCompressionModes);
+        assertReceivedCounts(transportHandlersByNode.get(otherNode), 1, 1, 1);
+
+        assertFalse(deterministicTaskQueue.hasRunnableTasks());
+        assertFalse(deterministicTaskQueue.hasDeferredTasks());
+    }
+
+    private static void startNode(
+        DiscoveryNode discoveryNode,
+        Settings settings,
+        ThreadPool threadPool,
+        Map<DiscoveryNode, MockTransport> transportsByNode,
+        Map<DiscoveryNode, PublicationTransportHandler> transportHandlersByNode,
+        List<String> sentCompressionModes,
+        AtomicReference<ClusterState> receivedStateRef
+    ) {
+        final var transport = new MockTransport() {
+            @Override
+            protected void onSendRequest(long requestId, String action, TransportRequest request, DiscoveryNode node) {
+                sentCompressionModes.add(compressionMode(((BytesTransportRequest) request).bytes()));
+                @SuppressWarnings("unchecked")
+                final var context = (ResponseContext<TransportResponse>) getResponseHandlers().remove(requestId);
+                try {
+                    transportsByNode.get(node)
+                        .getRequestHandlers()
+                        .getHandler(action)
+                        .getHandler()
+                        .messageReceived(request, new TestTransportChannel(new ActionListener<>() {
+                            @Override
+                            public void onResponse(TransportResponse transportResponse) {
+                                context.handler().handleResponse(transportResponse);
+                            }
+
+                            @Override
+                            public void onFailure(Exception e) {
+                                fail(e);
+                            }
+                        }), new Task(randomNonNegativeLong(), "test", "test", "", TaskId.EMPTY_TASK_ID, Map.of()));
+                } catch (IncompatibleClusterStateVersionException e) {
+                    context.handler().handleException(new RemoteTransportException("wrapped", e));
+                } catch (Exception e) {
+                    fail(e);
+                }
+            }
+        };
+        transportsByNode.put(discoveryNode, transport);
+
+        final var transportService = transport.createTransportService(
+            Settings.EMPTY,
+            threadPool,
+            TransportService.NOOP_TRANSPORT_INTERCEPTOR,
+            ignored -> discoveryNode,
+            null,
+            Set.of()
+        );
+        transportHandlersByNode.put(
+            discoveryNode,
+            new PublicationTransportHandler(settings, transportService, writableRegistry(), publishRequest -> {
+                assertTrue(receivedStateRef.compareAndSet(null, publishRequest.getAcceptedState()));
+                return new PublishWithJoinResponse(
+                    new PublishResponse(publishRequest.getAcceptedState().term(), publishRequest.getAcceptedState().version()),
+                    Optional.empty()
+                );
+            })
+        );
+        transportService.start();
+        transportService.acceptIncomingRequests();
+    }
+
+    private static String compressionMode(BytesReference bytes) {
+        if (bytes.length() > 4 && bytes.get(0) == 'D' && bytes.get(1) == 'C' && bytes.get(2) == 'T' && bytes.get(3) == 0) {
+            return bytes.get(4) == 0 ? "inline_dictionary" : "dictionary";
+        }
+        assertNotNull(CompressorFactory.compressor(bytes));
+        return "plain";
+    }
+
+    private static void publish(
+        DeterministicTaskQueue deterministicTaskQueue,
+        PublicationTransportHandler masterHandler,
+        DiscoveryNode destination,
+        ClusterState previousState,
+        ClusterState newState,
+        AtomicReference<ClusterState> receivedStateRef
+    ) {
+        final var context = masterHandler.newPublicationContext(
+            new ClusterStatePublicationEvent(
+                new BatchSummary(() -> "test"),
+                previousState,
+                newState,
+                new Task(randomNonNegativeLong(), "test", "test", "", TaskId.EMPTY_TASK_ID, Map.of()),
+                0L,
+                0L
+            )
+        );
+        try {
+            final var completed = new AtomicBoolean();
+            context.sendPublishRequest(
+                destination,
+                new PublishRequest(newState),
+                ActionTestUtils.assertNoFailureListener(response -> assertTrue(completed.compareAndSet(false, true)))
+            );
+            deterministicTaskQueue.runAllRunnableTasks();
+            assertTrue(completed.get());
+            assertEquals(newState.stateUUID(), receivedStateRef.getAndSet(null).stateUUID());
+        } finally {
+            context.decRef();
+        }
+    }
+
+    private static void assertReceivedCounts(PublicationTransportHandler handler, long full, long incompatibleDiffs, long compatibleDiffs) {
+        final var stats = handler.stats();
+        assertEquals(full, stats.getFullClusterStateReceivedCount());
+        assertEquals(incompatibleDiffs, stats.getIncompatibleClusterStateDiffReceivedCount());
+        assertEquals(compatibleDiffs, stats.getCompatibleClusterStateDiffReceivedCount());
+    }
 }
@@ -65,6 +65,7 @@ import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static java.util.stream.Collectors.toMap;
 import static org.elasticsearch.cluster.ClusterInfo.shardIdentifierFromRouting;
@@ -81,7 +82,9 @@ import static org.hamcrest.Matchers.allOf;
 import static org.hamcrest.Matchers.anyOf;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.mockito.Mockito.mock;
@@ -1260,6 +1263,147 @@ public class DesiredBalanceComputerTests extends ESAllocationTestCase {
         }, DesiredBalanceComputer.class, expectation);
     }
 
+    public void testComputesIncrementallyIfOnlyNewIndices() {
+        final var allocateCalls = new AtomicInteger();
+        final var incrementalAllocateCalls = new AtomicInteger();
+        final var affectedIndicesRef = new AtomicReference<Set<String>>();
+        final var balancedShardsAllocator = new BalancedShardsAllocator(Settings.EMPTY);
+        final var desiredBalanceComputer = new DesiredBalanceComputer(
+            createBuiltInClusterSettings(
+                Settings.builder().put(DesiredBalanceComputer.INCREMENTAL_COMPUTATION_ENABLED_SETTING.getKey(), true).build()
+            ),
+            mock(ThreadPool.class),
+            new ShardsAllocator() {
+                @Override
+                public void allocate(RoutingAllocation allocation) {
+                    allocateCalls.incrementAndGet();
+                    balancedShardsAllocator.allocate(allocation);
+                }
+
+                @Override
+                public void allocateIncrementally(RoutingAllocation allocation, Set<String> affectedIndices) {
+                    incrementalAllocateCalls.incrementAndGet();
+                    affectedIndicesRef.set(affectedIndices);
+                    balancedShardsAllocator.allocateIncrementally(allocation, affectedIndices);
+                }
+
+                @Override
+                public ShardAllocationDecision decideShardAllocation(ShardRouting shard, RoutingAllocation allocation) {
+                    throw new AssertionError("only used for allocation explain");
+                }
+            }
+        );
+
+        final var discoveryNodes = DiscoveryNodes.builder().add(newNode("master", Set.of(DiscoveryNodeRole.MASTER_ROLE)));
+        for (int i = 0; i < 3; i++) {
+            discoveryNodes.add(newNode("node-" + i, Set.of(DiscoveryNodeRole.DATA_ROLE)));
+        }
+        final var metadataBuilder = Metadata.builder();
+        final var routingTableBuilder = RoutingTable.builder(TestShardRoutingRoleStrategies.DEFAULT_ROLE_ONLY);
+        for (int i = 0; i < 20; i++) {
+            final var indexMetadata = IndexMetadata.builder("index-" + i).settings(indexSettings(IndexVersion.current(), 2, 1)).build();
+            metadataBuilder.put(indexMetadata, true);
+            routingTableBuilder.addAsNew(indexMetadata);
+        }
+        final var clusterState = ClusterState.builder(ClusterName.DEFAULT)
+            .nodes(discoveryNodes.masterNodeId("master").localNodeId("master"))
+            .metadata(metadataBuilder)
+            .routingTable(routingTableBuilder)
+            .build();
+
+        final var initialDesiredBalance = desiredBalanceComputer.compute(
+            DesiredBalance.INITIAL,
+            createInput(clusterState),
+            queue(),
+            input -> true
+        );
+        assertThat(allocateCalls.get(), greaterThan(0));
+        assertEquals(0, incrementalAllocateCalls.get());
+        allocateCalls.set(0);
+
+        final var newIndexMetadata = IndexMetadata.builder("new-index").settings(indexSettings(IndexVersion.current(), 2, 1)).build();
+        final var clusterStateWithNewIndex = ClusterState.builder(clusterState)
+            .metadata(Metadata.builder(clusterState.metadata()).put(newIndexMetadata, true))
+            .routingTable(
+                RoutingTable.builder(TestShardRoutingRoleStrategies.DEFAULT_ROLE_ONLY, clusterState.routingTable())
+                    .addAsNew(newIndexMetadata)
+            )
+            .build();
+        final var desiredBalance = desiredBalanceComputer.compute(
+            initialDesiredBalance,
+            createInput(clusterStateWithNewIndex),
+            queue(),
+            input -> true
+        );
+        assertEquals(0, allocateCalls.get());
+        assertThat(incrementalAllocateCalls.get(), greaterThan(0));
+        assertThat(affectedIndicesRef.get(), equalTo(Set.of("new-index")));
+
+        // the existing shards stay where they were, and the new shards are allocated
+        for (final var entry : initialDesiredBalance.assignments().entrySet()) {
+            assertThat(desiredBalance.getAssignment(entry.getKey()), equalTo(entry.getValue()));
+        }
+        for (int shard = 0; shard < 2; shard++) {
+            final var assignment = desiredBalance.getAssignment(new ShardId(newIndexMetadata.getIndex(), shard));
+            assertThat(assignment, notNullValue());
+            assertThat(assignment.nodeIds(), hasSize(2));
+            assertEquals(0, assignment.unassigned());
+        }
+
+        // starting the new shards changes nothing relevant to allocation, so the follow-up computation is incremental too
+        incrementalAllocateCalls.set(0);
+        final var newIndexRoutingTable = IndexRoutingTable.builder(newIndexMetadata.getIndex());
+        for (int shard = 0; shard < 2; shard++) {
+            final var shardId = new ShardId(newIndexMetadata.getIndex(), shard);
+            final var nodeIds = List.copyOf(desiredBalance.getAssignment(shardId).nodeIds());
+            newIndexRoutingTable.addShard(newShardRouting(shardId, nodeIds.get(0), true, STARTED))
+                .addShard(newShardRouting(shardId, nodeIds.get(1), false, STARTED));
+        }
+        final var desiredBalanceAfterShardsStarted = desiredBalanceComputer.compute(
+            desiredBalance,
+            createInput(
+                ClusterState.builder(clusterStateWithNewIndex)
+                    .routingTable(
+                        RoutingTable.builder(TestShardRoutingRoleStrategies.DEFAULT_ROLE_ONLY, clusterStateWithNewIndex.routingTable())
+                            .add(newIndexRoutingTable)
+                    )
+                    .build()
+            ),
+            queue(),
+            input -> true
+        );
+        assertEquals(0, allocateCalls.get());
+        assertThat(incrementalAllocateCalls.get(), greaterThan(0));
+        assertThat(affectedIndicesRef.get(), equalTo(Set.of()));
+        assertThat(desiredBalanceAfterShardsStarted.assignments(), equalTo(desiredBalance.assignments()));
+
+        // other changes need a computation from scratch
+        incrementalAllocateCalls.set(0);
+        final var anotherIndexMetadata = IndexMetadata.builder("another-index")
+            .settings(indexSettings(IndexVersion.current(), 1, 0))
+            .build();
+        desiredBalanceComputer.compute(
+            desiredBalanceAfterShardsStarted,
+            createInput(
+                ClusterState.builder(clusterStateWithNewIndex)
+                    .metadata(
+                        Metadata.builder(clusterStateWithNewIndex.metadata())
+                            .persistentSettings(Settings.builder().put("cluster.routing.allocation.balance.shard", 0.5f).build())
+                            .put(anotherIndexMetadata, true)
+                    )
+                    .routingTable(
+                        RoutingTable.builder(TestShardRoutingRoleStrategies.DEFAULT_ROLE_ONLY, clusterStateWithNewIndex.routingTable())
+                            .addAsNew(anotherIndexMetadata)
+                    )
+                    .build()
+            ),
+            queue(),
+            input -> true
+        );
+        assertThat(allocateCalls.get(), greaterThan(0));
+        assertEquals(0, incrementalAllocateCalls.get());
+    }
+
     private static ShardId findShardId(ClusterState clusterState, String name) {
         return clusterState.getRoutingTable().index(name).shard(0).shardId();
     }
@@ -50,6 +50,9 @@ import org.elasticsearch.core.Tuple;
 import org.elasticsearch.node.Node;
 import org.elasticsearch.tasks.Task;
 import org.elasticsearch.tasks.TaskManager;
+import org.elasticsearch.telemetry.InstrumentType;
+import org.elasticsearch.telemetry.Measurement;
+import org.elasticsearch.telemetry.RecordingMeterRegistry;
 import org.elasticsearch.test.ClusterServiceUtils;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.test.MockLog;
@@ -2592,6 +2595,131 @@ public class MasterServiceTests extends ESTestCase {
         }
     }
 
+    public void testAdaptiveBatching() {
+        final var maxWindowMillis = between(20, 200);
+        final var settings = Settings.builder()
+            .put(ClusterName.CLUSTER_NAME_SETTING.getKey(), MasterServiceTests.class.getSimpleName())
+            .put(Node.NODE_NAME_SETTING.getKey(), "test_node")
+            .put(MasterService.MASTER_SERVICE_ADAPTIVE_BATCHING_MAX_WINDOW_SETTING.getKey(), TimeValue.timeValueMillis(maxWindowMillis))
+            .build();
+        final var deterministicTaskQueue = new DeterministicTaskQueue();
+        final var threadPool = deterministicTaskQueue.getThreadPool();
+        threadPool.getThreadContext().markAsSystemContext();
+        final var meterRegistry = new RecordingMeterRegistry();
+        final var adaptiveBatching = randomBoolean();
+
+        try (
+            var masterService = new MasterService(
+                settings,
+                new ClusterSettings(settings, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS),
+                threadPool,
+                new TaskManager(settings, threadPool, emptySet()),
+                meterRegistry
+            ) {
+                @Override
+                protected ExecutorService createThreadPoolExecutor() {
+                    return new StoppableExecutorServiceWrapper(threadPool.generic());
+                }
+            }
+        ) {
+            final var localNode = DiscoveryNodeUtils.builder("node1").roles(emptySet()).build();
+            final var clusterStateRef = new AtomicReference<>(
+                ClusterState.builder(new ClusterName(MasterServiceTests.class.getSimpleName()))
+                    .nodes(DiscoveryNodes.builder().add(localNode).localNodeId(localNode.getId()).masterNodeId(localNode.getId()))
+                    .blocks(ClusterBlocks.EMPTY_CLUSTER_BLOCK)
+                    .build()
+            );
+            masterService.setClusterStatePublisher((clusterStatePublicationEvent, publishListener, ackListener) -> {
+                clusterStateRef.set(clusterStatePublicationEvent.getNewState());
+                ClusterServiceUtils.setAllElapsedMillis(clusterStatePublicationEvent);
+                publishListener.onResponse(null);
+            });
+            masterService.setClusterStateSupplier(clusterStateRef::get);
+            masterService.start();
+
+            final var batchCount = new AtomicInteger();
+            final var completedTaskCount = new AtomicInteger();
+            final var queue = masterService.<ExpectSuccessTask>createTaskQueue("adaptive", Priority.NORMAL, batchExecutionContext -> {
+                batchCount.incrementAndGet();
+                for (final var taskContext : batchExecutionContext.taskContexts()) {
+                    taskContext.success(completedTaskCount::incrementAndGet);
+                }
+                return ClusterState.builder(batchExecutionContext.initialState()).build();
+            }, adaptiveBatching);
+
+            // a steady stream of tasks, each of which would otherwise be executed in its own batch
+            final var taskCount = between(200, 500);
+            final var taskIntervalMillis = between(1, 10);
+            final var startTimeMillis = deterministicTaskQueue.getCurrentTimeMillis();
+            final var submittedTaskCount = new AtomicInteger();
+            final var sawDelayedTasks = new AtomicBoolean();
+            for (int i = 0; i < taskCount; i++) {
+                deterministicTaskQueue.scheduleAt(startTimeMillis + (long) i * taskIntervalMillis, () -> {
+                    queue.submitTask("stream", new ExpectSuccessTask(), null);
+                    // the tasks of delayed batches are pending too
+                    final var pendingTaskCount = submittedTaskCount.incrementAndGet() - completedTaskCount.get();
+                    assertEquals(pendingTaskCount, masterService.numberOfPendingTasks());
+                    assertThat(masterService.pendingTasks(), hasSize(pendingTaskCount));
+                    if (pendingTaskCount > 1) {
+                        sawDelayedTasks.set(true);
+                        assertThat(masterService.getMaxTaskWaitTime().millis(), greaterThan(0L));
+                    }
+                });
+            }
+            deterministicTaskQueue.runAllTasksInTimeOrder();
+            assertEquals(taskCount, completedTaskCount.get());
+            assertEquals(adaptiveBatching, sawDelayedTasks.get());
+            if (adaptiveBatching) {
+                assertThat(batchCount.get(), lessThanOrEqualTo(taskCount / 2));
+            } else {
+                assertEquals(taskCount, batchCount.get());
+            }
+
+            final var batchSizes = meterRegistry.getRecorder()
+                .getMeasurements(InstrumentType.LONG_HISTOGRAM, MasterService.BATCH_SIZE_HISTOGRAM_NAME);
+            assertThat(batchSizes, hasSize(batchCount.get()));
+            assertEquals(taskCount, batchSizes.stream().mapToLong(Measurement::getLong).sum());
+            assertThat(batchSizes.stream().map(m -> m.attributes().get("queue")).collect(Collectors.toSet()), contains("adaptive"));
+            final var queueLatencies = meterRegistry.getRecorder()
+                .getMeasurements(InstrumentType.LONG_HISTOGRAM, MasterService.QUEUE_LATENCY_HISTOGRAM_NAME);
+            assertThat(queueLatencies, hasSize(batchCount.get()));
+            for (final var queueLatency : queueLatencies) {
+                assertThat(queueLatency.getLong(), lessThanOrEqualTo((long) maxWindowMillis));
+            }
+
+            // a delayed batch does not let lower-priority tasks overtake it
+            final var completedTaskCountBeforeLowPriorityTask = new AtomicInteger(-1);
+            final var lowPriorityQueue = masterService.<ExpectSuccessTask>createTaskQueue("low", Priority.LOW, batchExecutionContext -> {
+                completedTaskCountBeforeLowPriorityTask.set(completedTaskCount.get());
+                for (final var taskContext : batchExecutionContext.taskContexts()) {
+                    taskContext.success(() -> {});
+                }
+                return batchExecutionContext.initialState();
+            });
+            queue.submitTask("stream", new ExpectSuccessTask(), null);
+            assertEquals(1, masterService.numberOfPendingTasks());
+            lowPriorityQueue.submitTask("low", new ExpectSuccessTask(), null);
+            assertEquals(2, masterService.numberOfPendingTasks());
+            deterministicTaskQueue.runAllTasksInTimeOrder();
+            assertEquals(taskCount + 1, completedTaskCount.get());
+            assertEquals(taskCount + 1, completedTaskCountBeforeLowPriorityTask.get());
+
+            // once the stream of tasks ends, isolated tasks are soon executed without delay
+            for (int i = 0; i < 20; i++) {
+                deterministicTaskQueue.scheduleAt(
+                    deterministicTaskQueue.getCurrentTimeMillis() + maxWindowMillis * 2L,
+                    () -> queue.submitTask("isolated", new ExpectSuccessTask(), null)
+                );
+                deterministicTaskQueue.runAllTasksInTimeOrder();
+            }
+            final var submissionTimeMillis = deterministicTaskQueue.getCurrentTimeMillis();
+            queue.submitTask("isolated", new ExpectSuccessTask(), null);
+            deterministicTaskQueue.runAllRunnableTasks();
+            assertEquals(taskCount + 22, completedTaskCount.get());
+            assertEquals(submissionTimeMillis, deterministicTaskQueue.getCurrentTimeMillis());
+        }
+    }
+
     /**
      * Returns the cluster state that the master service uses (and that is provided by the discovery layer)
      */
@@ -0,0 +1,201 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.common.io.stream;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.TransportVersion;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.IndexMetadata;
+import org.elasticsearch.cluster.metadata.Metadata;
+import org.elasticsearch.cluster.routing.RoutingTable;
+import org.elasticsearch.cluster.routing.allocation.TestShardRoutingRoleStrategies;
+import org.elasticsearch.common.recycler.Recycler;
+import org.elasticsearch.common.util.PageCacheRecycler;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.index.IndexVersion;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.TransportVersionUtils;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.BytesRefRecycler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class ParallelWritingStreamOutputTests extends ESTestCase {
+
+    private final Recycler<BytesRef> recycler = new BytesRefRecycler(PageCacheRecycler.NON_RECYCLING_INSTANCE);
+
+    private ThreadPool threadPool;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        threadPool = new TestThreadPool(getTestName());
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        assertTrue(ThreadPool.terminate(threadPool, 10, TimeUnit.SECONDS));
+        super.tearDown();
+    }
+
+    public void testWritesSameBytesAsSequentialSerialization() throws IOException {
+        final List<String> values = new ArrayList<>();
+        final int valueCount = between(0, 2_000);
+        for (int i = 0; i < valueCount; i++) {
+            values.add(randomUnicodeOfLengthBetween(0, 100));
+        }
+        final TransportVersion version = TransportVersionUtils.randomVersion();
+
+        final BytesStreamOutput expected = new BytesStreamOutput();
+        expected.setTransportVersion(version);
+        expected.writeString("before");
+        ParallelWritingStreamOutput.writeAll(expected, values, StreamOutput::writeString);
+        expected.writeString("after");
+
+        final CountingBuffers buffers = new CountingBuffers();
+        final BytesStreamOutput actual = new BytesStreamOutput();
+        actual.setTransportVersion(version);
+        final StreamOutput parallel = new ParallelWritingStreamOutput(actual, threadPool.generic(), between(1, 8), buffers);
+        parallel.writeString("before");
+        ParallelWritingStreamOutput.writeAll(parallel, values, (o, v) -> {
+            assertThat(o.getTransportVersion(), equalTo(version));
+            o.writeString(v);
+        });
+        parallel.writeString("after");
+
+        assertThat(actual.bytes(), equalTo(expected.bytes()));
+        assertThat(buffers.closed.get(), equalTo(buffers.opened.get()));
+    }
+
+    public void testSerializesOnCallingThreadIfExecutorRejects() throws IOException {
+        final List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < ParallelWritingStreamOutput.VALUES_PER_CHUNK * 4; i++) {
+            values.add(i);
+        }
+        final Executor rejectingExecutor = command -> { throw new EsRejectedExecutionException("rejected", randomBoolean()); };
+        final CountingBuffers buffers = new CountingBuffers();
+        final BytesStreamOutput actual = new BytesStreamOutput();
+        final Thread callingThread = Thread.currentThread();
+        ParallelWritingStreamOutput.writeAll(new ParallelWritingStreamOutput(actual, rejectingExecutor, 4, buffers), values, (o, v) -> {
+            assertSame(callingThread, Thread.currentThread());
+            o.writeVInt(v);
+        });
+        assertThat(buffers.opened.get(), equalTo(4));
+        assertThat(buffers.closed.get(), equalTo(4));
+
+        final StreamInput in = actual.bytes().streamInput();
+        for (Integer value : values) {
+            assertThat(in.readVInt(), equalTo(value));
+        }
+        assertEquals(0, in.available());
+    }
+
+    public void testBoundsChunksInFlight() throws IOException {
+        final List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < ParallelWritingStreamOutput.VALUES_PER_CHUNK * between(20, 50); i++) {
+            values.add(i);
+        }
+        final int parallelism = between(2, 8);
+        final CountingBuffers buffers = new CountingBuffers();
+        final BytesStreamOutput actual = new BytesStreamOutput();
+        ParallelWritingStreamOutput.writeAll(
+            new ParallelWritingStreamOutput(actual, threadPool.generic(), parallelism, buffers),
+            values,
+            StreamOutput::writeVInt
+        );
+        assertThat(buffers.opened.get(), equalTo(values.size() / ParallelWritingStreamOutput.VALUES_PER_CHUNK));
+        assertThat(buffers.closed.get(), equalTo(buffers.opened.get()));
+        // at most two chunks per thread are serialized ahead of the next chunk to write, plus the chunk that is being written
+        assertThat(buffers.maxOpen.get(), lessThanOrEqualTo(2 * parallelism + 1));
+
+        final StreamInput in = actual.bytes().streamInput();
+        for (Integer value : values) {
+            assertThat(in.readVInt(), equalTo(value));
+        }
+        assertEquals(0, in.available());
+    }
+
+    public void testPropagatesFailuresAndReleasesBuffers() {
+        final List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < ParallelWritingStreamOutput.VALUES_PER_CHUNK * 8; i++) {
+            values.add(i);
+        }
+        final int failingValue = randomFrom(values);
+        final CountingBuffers buffers = new CountingBuffers();
+        final BytesStreamOutput actual = new BytesStreamOutput();
+        final StreamOutput parallel = new ParallelWritingStreamOutput(actual, threadPool.generic(), 8, buffers);
+        final IOException e = expectThrows(IOException.class, () -> ParallelWritingStreamOutput.writeAll(parallel, values, (o, v) -> {
+            o.writeString("allocate something to detect leaks");
+            if (v == failingValue) {
+                throw new IOException("simulated failure");
+            }
+        }));
+        assertThat(e.getMessage(), equalTo("simulated failure"));
+        assertThat(buffers.closed.get(), equalTo(buffers.opened.get()));
+        assertEquals(0, actual.size());
+    }
+
+    public void testClusterStateSerializationIsUnchanged() throws IOException {
+        final Metadata.Builder metadata = Metadata.builder();
+        final RoutingTable.Builder routingTable = RoutingTable.builder(TestShardRoutingRoleStrategies.DEFAULT_ROLE_ONLY);
+        final int indexCount = between(2 * ParallelWritingStreamOutput.VALUES_PER_CHUNK, 1_000);
+        for (int i = 0; i < indexCount; i++) {
+            final IndexMetadata indexMetadata = IndexMetadata.builder("index-" + i)
+                .settings(indexSettings(IndexVersion.current(), between(1, 3), between(0, 1)))
+                .build();
+            metadata.put(indexMetadata, false);
+            routingTable.addAsNew(indexMetadata);
+        }
+        final ClusterState previousState = ClusterState.builder(ClusterName.DEFAULT).build();
+        final ClusterState clusterState = ClusterState.builder(ClusterName.DEFAULT)
+            .metadata(metadata)
+            .routingTable(routingTable)
+            .version(previousState.version() + 1)
+            .build();
+
+        for (Writeable writeable : List.of(clusterState, clusterState.diff(previousState))) {
+            final BytesStreamOutput expected = new BytesStreamOutput();
+            writeable.writeTo(expected);
+
+            final BytesStreamOutput actual = new BytesStreamOutput();
+            writeable.writeTo(new ParallelWritingStreamOutput(actual, threadPool.generic(), between(2, 8), new CountingBuffers()));
+            assertThat(actual.bytes(), equalTo(expected.bytes()));
+        }
+    }
+
+    private class CountingBuffers implements Supplier<RecyclerBytesStreamOutput> {
+        final AtomicInteger opened = new AtomicInteger();
+        final AtomicInteger closed = new AtomicInteger();
+        final AtomicInteger maxOpen = new AtomicInteger();
+
+        @Override
+        public RecyclerBytesStreamOutput get() {
+            final int open = opened.incrementAndGet() - closed.get();
+            maxOpen.accumulateAndGet(open, Math::max);
+            return new RecyclerBytesStreamOutput(recycler) {
+                @Override
+                public void close() {
+                    closed.incrementAndGet();
+                    super.close();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.common.lucene.uid;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.UUIDs;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.common.lucene.uid.VersionsAndSeqNoResolver.DocIdAndSeqNo;
+import org.elasticsearch.index.mapper.IdFieldMapper;
+import org.elasticsearch.index.mapper.SeqNoFieldMapper;
+import org.elasticsearch.index.mapper.Uid;
+import org.elasticsearch.index.mapper.VersionFieldMapper;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+
+public class IdFilterCacheTests extends ESTestCase {
+
+    public void testSkipsSegmentsWithoutId() throws Exception {
+        try (
+            Directory dir = newDirectory();
+            IndexWriter writer = new IndexWriter(
+                dir,
+                new IndexWriterConfig(Lucene.STANDARD_ANALYZER).setMergePolicy(NoMergePolicy.INSTANCE)
+            )
+        ) {
+            final List<String> ids = new ArrayList<>();
+            final int numSegments = between(1, 5);
+            long seqNo = 0;
+            for (int segment = 0; segment < numSegments; segment++) {
+                final int numDocs = between(1, 1000);
+                for (int i = 0; i < numDocs; i++) {
+                    final String id = UUIDs.randomBase64UUID(random());
+                    ids.add(id);
+                    writer.addDocument(newDocument(id, seqNo++));
+                }
+                writer.flush();
+            }
+            final IdFilterCache idFilters = new IdFilterCache(IdFieldMapper.NAME, new NoopCircuitBreaker("test"));
+            try (DirectoryReader reader = DirectoryReader.open(writer)) {
+                assertThat(reader.leaves().size(), equalTo(numSegments));
+                idFilters.buildFilters(reader);
+                assertThat(idFilters.ramBytesUsed(), greaterThan(0L));
+                for (LeafReaderContext leaf : reader.leaves()) {
+                    final IdFilterCache.Filter filter = idFilters.getFilter(leaf.reader());
+                    assertNotNull(filter);
+                    // building the filters again reuses the existing ones
+                    idFilters.buildFilters(reader);
+                    assertSame(filter, idFilters.getFilter(leaf.reader()));
+                }
+
+                // all existing ids are found
+                for (int i = 0; i < ids.size(); i++) {
+                    final DocIdAndSeqNo result = VersionsAndSeqNoResolver.loadDocIdAndSeqNo(
+                        reader,
+                        new Term(IdFieldMapper.NAME, Uid.encodeId(ids.get(i))),
+                        idFilters
+                    );
+                    assertNotNull(ids.get(i), result);
+                    assertThat(result.seqNo, equalTo((long) i));
+                }
+                IdFilterCache.Stats stats = idFilters.stats();
+                assertThat(stats.hits(), equalTo((long) ids.size()));
+
+                // most segments are skipped for ids that don't exist
+                final int numMissingIds = between(1000, 2000);
+                for (int i = 0; i < numMissingIds; i++) {
+                    final BytesRef uid = Uid.encodeId(UUIDs.randomBase64UUID(random()));
+                    assertNull(VersionsAndSeqNoResolver.loadDocIdAndSeqNo(reader, new Term(IdFieldMapper.NAME, uid), idFilters));
+                }
+                final IdFilterCache.Stats previousStats = stats;
+                stats = idFilters.stats();
+                assertThat(stats.hits(), equalTo(previousStats.hits()));
+                final long missingIdLookups = stats.misses() + stats.falsePositives() - previousStats.misses()
+                    - previousStats.falsePositives();
+                assertThat(missingIdLookups, equalTo((long) numMissingIds * numSegments));
+                assertThat(stats.falsePositives() - previousStats.falsePositives(), lessThan(missingIdLookups / 10));
+            }
+        }
+    }
+
+    public void testDeletedDocumentIsNotFalsePositive() throws Exception {
+        try (
+            Directory dir = newDirectory();
+            IndexWriter writer = new IndexWriter(
+                dir,
+                new IndexWriterConfig(Lucene.STANDARD_ANALYZER).setMergePolicy(NoMergePolicy.INSTANCE)
+            )
+        ) {
+            final String id = UUIDs.randomBase64UUID(random());
+            writer.addDocument(newDocument(id, 0));
+            writer.deleteDocuments(new Term(IdFieldMapper.NAME, Uid.encodeId(id)));
+            writer.addDocument(newDocument(UUIDs.randomBase64UUID(random()), 1));
+            final IdFilterCache idFilters = new IdFilterCache(IdFieldMapper.NAME, new NoopCircuitBreaker("test"));
+            try (DirectoryReader reader = DirectoryReader.open(writer)) {
+                idFilters.buildFilters(reader);
+                assertNull(VersionsAndSeqNoResolver.loadDocIdAndSeqNo(reader, new Term(IdFieldMapper.NAME, Uid.encodeId(id)), idFilters));
+                final IdFilterCache.Stats stats = idFilters.stats();
+                assertThat(stats.hits(), equalTo(1L));
+                assertThat(stats.falsePositives(), equalTo(0L));
+            }
+        }
+    }
+
+    public void testRemovesFiltersOfClosedSegments() throws Exception {
+        final IdFilterCache idFilters = new IdFilterCache(IdFieldMapper.NAME, new NoopCircuitBreaker("test"));
+        try (Directory dir = newDirectory()) {
+            try (IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(Lucene.STANDARD_ANALYZER))) {
+                writer.addDocument(newDocument(UUIDs.randomBase64UUID(random()), 0));
+                writer.commit();
+            }
+            try (DirectoryReader reader = DirectoryReader.open(dir)) {
+                idFilters.buildFilters(reader);
+                assertThat(idFilters.ramBytesUsed(), greaterThan(0L));
+            }
+            assertThat(idFilters.ramBytesUsed(), equalTo(0L));
+        }
+    }
+
+    public void testAccountsFiltersInCircuitBreaker() throws Exception {
+        final LimitedCircuitBreaker breaker = new LimitedCircuitBreaker(Long.MAX_VALUE);
+        final IdFilterCache idFilters = new IdFilterCache(IdFieldMapper.NAME, breaker);
+        try (Directory dir = newDirectory()) {
+            try (IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(Lucene.STANDARD_ANALYZER))) {
+                writer.addDocument(newDocument(UUIDs.randomBase64UUID(random()), 0));
+                writer.commit();
+            }
+            try (DirectoryReader reader = DirectoryReader.open(dir)) {
+                idFilters.buildFilters(reader);
+                assertThat(idFilters.ramBytesUsed(), greaterThan(0L));
+                assertThat(breaker.getUsed(), equalTo(idFilters.ramBytesUsed()));
+            }
+            assertThat(breaker.getUsed(), equalTo(0L));
+
+            // a segment gets no filter if it would trip the breaker, and its lookups don't skip it
+            breaker.limit = 0;
+            try (DirectoryReader reader = DirectoryReader.open(dir)) {
+                idFilters.buildFilters(reader);
+                assertThat(idFilters.ramBytesUsed(), equalTo(0L));
+                assertThat(breaker.getUsed(), equalTo(0L));
+                assertNull(idFilters.getFilter(reader.leaves().get(0).reader()));
+                final BytesRef uid = Uid.encodeId(UUIDs.randomBase64UUID(random()));
+                assertNull(VersionsAndSeqNoResolver.loadDocIdAndSeqNo(reader, new Term(IdFieldMapper.NAME, uid), idFilters));
+                assertThat(idFilters.stats().misses(), equalTo(0L));
+            }
+        }
+    }
+
+    private static Document newDocument(String id, long seqNo) {
+        final Document doc = new Document();
+        doc.add(new StringField(IdFieldMapper.NAME, Uid.encodeId(id), Field.Store.YES));
+        doc.add(new NumericDocValuesField(VersionFieldMapper.NAME, 1));
+        doc.add(new NumericDocValuesField(SeqNoFieldMapper.NAME, seqNo));
+        doc.add(new NumericDocValuesField(SeqNoFieldMapper.PRIMARY_TERM_NAME, 1));
+        return doc;
+    }
+
+    private static class LimitedCircuitBreaker extends NoopCircuitBreaker {
+        private final AtomicLong used = new AtomicLong();
+        private volatile long limit;
+
+        LimitedCircuitBreaker(long limit) {
+            super("test");
+            this.limit = limit;
+        }
+
+        @Override
+        public void addEstimateBytesAndMaybeBreak(long bytes, String label) throws CircuitBreakingException {
+            if (used.get() + bytes > limit) {
+                throw new CircuitBreakingException("broken", getDurability());
+            }
+            used.addAndGet(bytes);
+        }
+
+        @Override
+        public void addWithoutBreaking(long bytes) {
+            used.addAndGet(bytes);
+        }
+
+        @Override
+        public long getUsed() {
+            return used.get();
+        }
+    }
+}
@@ -11,9 +11,17 @@ package org.elasticsearch.index;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.core.Releasable;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.stats.IndexingPressureStats;
 import org.elasticsearch.test.ESTestCase;
 
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+
 public class IndexingPressureTests extends ESTestCase {
 
     private final Settings settings = Settings.builder().put(IndexingPressure.MAX_INDEXING_BYTES.getKey(), "10KB").build();
@@ -153,4 +161,147 @@ public class IndexingPressureTests extends ESTestCase {
         }
         assertEquals(0, indexingPressure.stats().getCurrentCoordinatingBytes());
     }
+
+    public void testAdaptiveShardLimit() {
+        final AtomicLong relativeTimeInNanos = new AtomicLong();
+        final IndexingPressure indexingPressure = new IndexingPressure(adaptiveSettings(), relativeTimeInNanos::get);
+        final ShardId shardA = new ShardId("index", "_na_", 0);
+        final ShardId shardB = new ShardId("index", "_na_", 1);
+        final long congested = TimeValue.timeValueMillis(200).nanos();
+
+        Releasable primaryA = indexingPressure.markPrimaryOperationStarted(shardA, 1, 1024 * 4, false);
+        // queued for longer than the target, the limit of the shard is halved
+        indexingPressure.onPrimaryOperationDequeued(shardA, 1024 * 4, congested);
+        assertEquals(1024 * 5, indexingPressure.shardStats(shardA).limit());
+        IndexingPressureStats stats = indexingPressure.stats();
+        assertEquals(1, stats.getTrackedShards());
+        assertEquals(1, stats.getThrottledShards());
+        assertEquals(1, stats.getShardLimitDecreases());
+
+        // the shard is over its limit although the node is not
+        expectThrows(EsRejectedExecutionException.class, () -> indexingPressure.markPrimaryOperationStarted(shardA, 1, 1024 * 2, false));
+        stats = indexingPressure.stats();
+        assertEquals(1, stats.getShardRejections());
+        assertEquals(1, stats.getPrimaryRejections());
+        assertEquals(1, stats.getPrimaryDocumentRejections());
+        assertEquals(1024 * 4, stats.getCurrentPrimaryBytes());
+
+        // other shards are not affected, and forced operations are not rejected
+        Releasable primaryB = indexingPressure.markPrimaryOperationStarted(shardB, 1, 1024 * 2, false);
+        Releasable forcedA = indexingPressure.markPrimaryOperationStarted(shardA, 1, 1024 * 2, true);
+        assertEquals(2, indexingPressure.stats().getTrackedShards());
+        assertEquals(1024 * 6, indexingPressure.shardStats(shardA).currentBytes());
+        forcedA.close();
+
+        // the limit is decreased at most once per target latency
+        indexingPressure.onPrimaryOperationDequeued(shardA, 1024 * 4, congested);
+        assertEquals(1024 * 5, indexingPressure.shardStats(shardA).limit());
+        relativeTimeInNanos.addAndGet(TimeValue.timeValueMillis(100).nanos());
+        indexingPressure.onPrimaryOperationDequeued(shardA, 1024 * 4, congested);
+        assertEquals(1024 * 5 / 2, indexingPressure.shardStats(shardA).limit());
+        assertEquals(2, indexingPressure.stats().getShardLimitDecreases());
+
+        // and grows by the minimum limit once the moving average of the queue latency is back below the target
+        final long uncongested = TimeValue.timeValueMillis(10).nanos();
+        indexingPressure.onPrimaryOperationDequeued(shardA, 1024 * 4, uncongested);
+        indexingPressure.onPrimaryOperationDequeued(shardA, 1024 * 4, uncongested);
+        assertEquals(1024 * 5 / 2, indexingPressure.shardStats(shardA).limit());
+        indexingPressure.onPrimaryOperationDequeued(shardA, 1024 * 4, uncongested);
+        assertEquals(1024 * 5 / 2 + 1024, indexingPressure.shardStats(shardA).limit());
+        assertThat(indexingPressure.shardStats(shardA).queueLatencyNanos(), lessThan(TimeValue.timeValueMillis(100).nanos()));
+
+        primaryA.close();
+        primaryB.close();
+        // the throttled shard is still tracked while idle, the other one is not
+        assertNull(indexingPressure.shardStats(shardB));
+        assertEquals(0, indexingPressure.shardStats(shardA).currentBytes());
+        stats = indexingPressure.stats();
+        assertEquals(1, stats.getTrackedShards());
+        assertEquals(1, stats.getThrottledShards());
+        assertEquals(0, stats.getCurrentPrimaryBytes());
+        assertEquals(List.of(indexingPressure.shardStats(shardA)), stats.getAdaptiveShardLimits());
+
+        // until it has been idle for long enough to recover its limit
+        relativeTimeInNanos.addAndGet(TimeValue.timeValueMillis(700).nanos());
+        try (Releasable ignored = indexingPressure.markPrimaryOperationStarted(shardB, 1, 1024, false)) {
+            assertNull(indexingPressure.shardStats(shardA));
+            stats = indexingPressure.stats();
+            assertEquals(1, stats.getTrackedShards());
+            assertEquals(0, stats.getThrottledShards());
+        }
+        assertEquals(0, indexingPressure.stats().getTrackedShards());
+    }
+
+    public void testAdaptiveShardLimitFollowsShardThroughput() {
+        final AtomicLong relativeTimeInNanos = new AtomicLong();
+        final IndexingPressure indexingPressure = new IndexingPressure(adaptiveSettings(), relativeTimeInNanos::get);
+        final ShardId shardA = new ShardId("index", "_na_", 0);
+        final ShardId shardB = new ShardId("index", "_na_", 1);
+        final long uncongested = TimeValue.timeValueMillis(10).nanos();
+        final long congested = TimeValue.timeValueMillis(200).nanos();
+
+        try (
+            Releasable primaryA = indexingPressure.markPrimaryOperationStarted(shardA, 1, 1024 * 7, false);
+            Releasable primaryB = indexingPressure.markPrimaryOperationStarted(shardB, 1, 1024 * 2, false)
+        ) {
+            // the write threads take up 60KB of each shard per second, so each gets through 6KB within the target latency
+            for (ShardId shardId : List.of(shardA, shardB)) {
+                indexingPressure.onPrimaryOperationDequeued(shardId, 1024 * 30, uncongested);
+            }
+            relativeTimeInNanos.addAndGet(TimeValue.timeValueSeconds(1).nanos());
+            for (ShardId shardId : List.of(shardA, shardB)) {
+                indexingPressure.onPrimaryOperationDequeued(shardId, 1024 * 30, uncongested);
+                assertEquals(1024 * 60, indexingPressure.shardStats(shardId).bytesPerSecond());
+            }
+
+            // the first congested operation does not move the moving average of the queue latency above the target
+            for (ShardId shardId : List.of(shardA, shardB)) {
+                indexingPressure.onPrimaryOperationDequeued(shardId, 1024, congested);
+                assertEquals(1024 * 10, indexingPressure.shardStats(shardId).limit());
+            }
+
+            // once it does, the shard that holds more than it gets through is limited to that rather than to half of its limit, and the
+            // other shard is not throttled
+            for (ShardId shardId : List.of(shardA, shardB)) {
+                indexingPressure.onPrimaryOperationDequeued(shardId, 1024, congested);
+                assertThat(indexingPressure.shardStats(shardId).queueLatencyNanos(), greaterThan(TimeValue.timeValueMillis(100).nanos()));
+            }
+            assertEquals(1024 * 6, indexingPressure.shardStats(shardA).limit());
+            assertEquals(1024 * 10, indexingPressure.shardStats(shardB).limit());
+            assertEquals(1, indexingPressure.stats().getShardLimitDecreases());
+        }
+    }
+
+    public void testAdaptiveShardLimitAdmitsOperationsLargerThanTheLimit() {
+        final IndexingPressure indexingPressure = new IndexingPressure(adaptiveSettings(), () -> 0L);
+        final ShardId shardId = new ShardId("index", "_na_", 0);
+        try (Releasable ignored = indexingPressure.markPrimaryOperationStarted(shardId, 1, 1024, false)) {
+            indexingPressure.onPrimaryOperationDequeued(shardId, 1024, TimeValue.timeValueSeconds(1).nanos());
+        }
+        assertEquals(1024 * 5, indexingPressure.shardStats(shardId).limit());
+        try (Releasable ignored = indexingPressure.markPrimaryOperationStarted(shardId, 1, 1024 * 8, false)) {
+            assertEquals(1024 * 8, indexingPressure.stats().getCurrentPrimaryBytes());
+        }
+    }
+
+    public void testAdaptiveShardLimitDisabledByDefault() {
+        final IndexingPressure indexingPressure = new IndexingPressure(settings);
+        final ShardId shardId = new ShardId("index", "_na_", 0);
+        try (Releasable ignored = indexingPressure.markPrimaryOperationStarted(shardId, 1, 1024, false)) {
+            indexingPressure.onPrimaryOperationDequeued(shardId, 1024, TimeValue.timeValueSeconds(1).nanos());
+            assertNull(indexingPressure.shardStats(shardId));
+            assertEquals(0, indexingPressure.stats().getTrackedShards());
+        }
+        assertEquals(0, indexingPressure.stats().getShardLimitDecreases());
+    }
+
+    private Settings adaptiveSettings() {
+        return Settings.builder()
+            .put(settings)
+            .put(IndexingPressure.SHARD_ADAPTIVE_ENABLED.getKey(), true)
+            .put(IndexingPressure.SHARD_ADAPTIVE_MIN_LIMIT.getKey(), "1KB")
+            .put(IndexingPressure.SHARD_ADAPTIVE_TARGET_QUEUE_LATENCY.getKey(), "100ms")
+            .put(IndexingPressure.SHARD_ADAPTIVE_DECREASE_FACTOR.getKey(), 0.5)
+            .build();
+    }
 }
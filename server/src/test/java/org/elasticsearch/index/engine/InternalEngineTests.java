@@ -453,6 +453,39 @@ public class InternalEngineTests extends EngineTestCase {
         }
     }
 
+    public void testSegmentsStatsIncludingIdFilter() throws Exception {
+        final IndexMetadata indexMetadata = IndexMetadata.builder(defaultSettings.getIndexMetadata())
+            .settings(Settings.builder().put(defaultSettings.getSettings()).put(IndexSettings.ID_FILTER_ENABLED_SETTING.getKey(), true))
+            .build();
+        final IndexSettings indexSettings = IndexSettingsModule.newIndexSettings(indexMetadata);
+        try (Store store = createStore(); Engine engine = createEngine(indexSettings, store, createTempDir(), NoMergePolicy.INSTANCE)) {
+            assertThat(engine.segmentsStats(false, false).getIdFilterMemoryInBytes(), equalTo(0L));
+
+            final int numDocs = between(1, 100);
+            for (int i = 0; i < numDocs; i++) {
+                engine.index(indexForDoc(testParsedDocument(Integer.toString(i), null, testDocumentWithTextField(), B_1, null)));
+            }
+            engine.refresh("test");
+            // the filters are built in the background after the refresh
+            assertBusy(() -> assertThat(engine.segmentsStats(false, false).getIdFilterMemoryInBytes(), greaterThan(0L)));
+            final SegmentsStats stats1 = engine.segmentsStats(false, false);
+
+            // new ids are looked up in the flushed segment, updated ids are found there
+            final int numNewDocs = between(1, 100);
+            for (int i = 0; i < numNewDocs; i++) {
+                engine.index(indexForDoc(testParsedDocument("new_" + i, null, testDocumentWithTextField(), B_1, null)));
+            }
+            final String updatedId = Integer.toString(between(0, numDocs - 1));
+            engine.index(indexForDoc(testParsedDocument(updatedId, null, testDocumentWithTextField(), B_2, null)));
+            final SegmentsStats stats2 = engine.segmentsStats(false, false);
+            assertThat(
+                stats2.getIdFilterMisses() + stats2.getIdFilterFalsePositives(),
+                equalTo(stats1.getIdFilterMisses() + stats1.getIdFilterFalsePositives() + numNewDocs)
+            );
+            assertThat(stats2.getIdFilterHits(), equalTo(stats1.getIdFilterHits() + 1));
+        }
+    }
+
     public void testSegments() throws Exception {
         final AtomicLong globalCheckpoint = new AtomicLong(SequenceNumbers.NO_OPS_PERFORMED);
         try (
@@ -3630,7 +3663,8 @@ public class InternalEngineTests extends EngineTestCase {
             null,
             config.getRelativeTimeInNanosSupplier(),
             null,
-            true
+            true,
+            null
         );
         expectThrows(EngineCreationFailureException.class, () -> new InternalEngine(brokenConfig));
 
@@ -7288,7 +7322,8 @@ public class InternalEngineTests extends EngineTestCase {
                 config.getLeafSorter(),
                 config.getRelativeTimeInNanosSupplier(),
                 config.getIndexCommitListener(),
-                config.isPromotableToPrimary()
+                config.isPromotableToPrimary(),
+                config.getThreadPoolMergeExecutorService()
             );
             try (InternalEngine engine = createEngine(configWithWarmer)) {
                 assertThat(warmedUpReaders, empty());
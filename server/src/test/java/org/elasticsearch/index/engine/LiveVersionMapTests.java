@@ -13,6 +13,12 @@ import org.apache.lucene.tests.util.TestUtil;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefBuilder;
 import org.apache.lucene.util.Constants;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.MockBigArrays;
+import org.elasticsearch.common.util.MockPageCacheRecycler;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.core.Releasable;
 import org.elasticsearch.core.Tuple;
@@ -28,6 +34,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
@@ -37,9 +44,11 @@ import static org.elasticsearch.common.util.concurrent.ConcurrentCollections.new
 import static org.elasticsearch.core.Tuple.tuple;
 import static org.elasticsearch.index.engine.LiveVersionMapTestUtils.randomIndexVersionValue;
 import static org.elasticsearch.index.engine.LiveVersionMapTestUtils.randomTranslogLocation;
+import static org.hamcrest.Matchers.allOf;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.nullValue;
 
 public class LiveVersionMapTests extends ESTestCase {
@@ -516,4 +525,96 @@ public class LiveVersionMapTests extends ESTestCase {
         assertEquals(map.reclaimableRefreshRamBytes(), 0L);
         assertEquals(map.ramBytesUsedForRefresh(), 0L);
     }
+
+    public void testPagedVersionMap() throws IOException {
+        final MockBigArrays bigArrays = new MockBigArrays(new MockPageCacheRecycler(Settings.EMPTY), ByteSizeValue.ofMb(100));
+        final CircuitBreaker breaker = bigArrays.breakerService().getBreaker(CircuitBreaker.REQUEST);
+        final LiveVersionMap map = new LiveVersionMap(LiveVersionMapArchive.NOOP_ARCHIVE, bigArrays);
+        assertTrue(map.isPaged());
+
+        final Map<BytesRef, VersionValue> expected = new HashMap<>();
+        final List<BytesRef> uids = IntStream.range(0, randomIntBetween(10, 1000)).mapToObj(i -> uid(randomIdentifier())).toList();
+        long seqNo = 0;
+        for (int round = between(1, 5); round > 0; round--) {
+            for (int i = between(1, 2000); i > 0; i--) {
+                final BytesRef uid = randomFrom(uids);
+                try (Releasable r = map.acquireLock(uid)) {
+                    assertTrue(map.assertKeyedLockHeldByCurrentThread(uid));
+                    assertThat(map.getUnderLock(uid), equalTo(expected.get(uid)));
+                    final long version = randomNonNegativeLong();
+                    if (rarely()) {
+                        final DeleteVersionValue delete = new DeleteVersionValue(version, seqNo++, 1, randomNonNegativeLong());
+                        map.putDeleteUnderLock(uid, delete);
+                        expected.put(uid, delete);
+                    } else {
+                        final IndexVersionValue index = new IndexVersionValue(randomTranslogLocation(), version, seqNo++, 1);
+                        map.putIndexUnderLock(uid, index);
+                        expected.put(uid, index);
+                    }
+                }
+            }
+            final long ramBytesUsedForRefresh = map.ramBytesUsedForRefresh();
+            assertThat(ramBytesUsedForRefresh, greaterThan(0L));
+            // the arrays of the paged tables are accounted to the breaker, only the shallow size of the objects that hold them isn't
+            assertThat(breaker.getUsed(), allOf(greaterThan(0L), lessThanOrEqualTo(ramBytesUsedForRefresh)));
+            final Set<BytesRef> expectedCurrent = new HashSet<>();
+            expected.forEach((uid, value) -> {
+                if (value.isDelete() == false) {
+                    expectedCurrent.add(uid);
+                }
+            });
+            assertThat(map.getAllCurrent().keySet(), equalTo(expectedCurrent));
+
+            map.beforeRefresh();
+            assertThat(map.reclaimableRefreshRamBytes(), equalTo(0L));
+            assertThat(map.getRefreshingBytes(), equalTo(ramBytesUsedForRefresh));
+            for (BytesRef uid : uids) {
+                try (Releasable r = map.acquireLock(uid)) {
+                    assertThat(map.getUnderLock(uid), equalTo(expected.get(uid)));
+                }
+            }
+            map.afterRefresh(randomBoolean());
+            assertThat(map.ramBytesUsedForRefresh(), equalTo(0L));
+            assertThat(breaker.getUsed(), equalTo(0L));
+
+            // only the deletes are left in the tombstones
+            expected.values().removeIf(v -> v.isDelete() == false);
+            for (BytesRef uid : uids) {
+                try (Releasable r = map.acquireLock(uid)) {
+                    assertThat(map.getUnderLock(uid), equalTo(expected.get(uid)));
+                }
+            }
+        }
+
+        final BytesRef uid = randomFrom(uids);
+        try (Releasable r = map.acquireLock(uid)) {
+            map.putIndexUnderLock(uid, randomIndexVersionValue());
+        }
+        assertThat(breaker.getUsed(), greaterThan(0L));
+        map.clear();
+        assertThat(breaker.getUsed(), equalTo(0L));
+    }
+
+    public void testPagedVersionMapSerializesOperationsOnTheSameUid() throws Exception {
+        final LiveVersionMap map = new LiveVersionMap(LiveVersionMapArchive.NOOP_ARCHIVE, BigArrays.NON_RECYCLING_INSTANCE);
+        final BytesRef uid = uid(randomIdentifier());
+        final CountDownLatch acquired = new CountDownLatch(1);
+        final Thread thread;
+        try (Releasable r = map.acquireLock(uid)) {
+            assertTrue(map.assertKeyedLockHeldByCurrentThread(uid));
+            // the locks are reentrant
+            try (Releasable r2 = map.acquireLock(uid)) {
+                assertTrue(map.assertKeyedLockHeldByCurrentThread(uid));
+            }
+            thread = new Thread(() -> {
+                try (Releasable lock = map.acquireLock(uid)) {
+                    acquired.countDown();
+                }
+            });
+            thread.start();
+            assertFalse(acquired.await(10, TimeUnit.MILLISECONDS));
+        }
+        safeAwait(acquired);
+        thread.join();
+    }
 }
@@ -0,0 +1,301 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.index.engine;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.store.Directory;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.merge.MergeStats;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.IndexSettingsModule;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class ThreadPoolMergeExecutorServiceTests extends ESTestCase {
+
+    private final ThreadContext threadContext = new ThreadContext(Settings.EMPTY);
+    private final ShardId shardId = new ShardId("index", "_na_", 0);
+    private final ShardId otherShardId = new ShardId("index", "_na_", 1);
+    private final AtomicLong relativeTimeInNanos = new AtomicLong();
+
+    public void testStartsSmallestMergesFirst() throws Exception {
+        try (var executorService = newExecutorService(1, shardId -> false)) {
+            final List<TestMergeTask> runOrder = new CopyOnWriteArrayList<>();
+            final TestMergeTask blocker = new TestMergeTask(shardId, 0, runOrder);
+            assertTrue(executorService.submit(blocker));
+            assertBusy(() -> assertThat(runOrder.size(), equalTo(1)));
+
+            final List<TestMergeTask> tasks = new ArrayList<>();
+            final int numTasks = between(2, 20);
+            for (int i = 0; i < numTasks; i++) {
+                final TestMergeTask task = new TestMergeTask(randomFrom(shardId, otherShardId), randomLongBetween(0, 1 << 30), runOrder);
+                task.release.countDown();
+                tasks.add(task);
+                assertTrue(executorService.submit(task));
+            }
+            assertThat(executorService.queuedMerges(), equalTo(numTasks));
+            blocker.release.countDown();
+            assertBusy(() -> assertThat(runOrder.size(), equalTo(numTasks + 1)));
+
+            tasks.sort(Comparator.comparingLong(TestMergeTask::estimatedSizeInBytes));
+            for (int i = 0; i < numTasks; i++) {
+                assertThat(runOrder.get(i + 1).estimatedSizeInBytes(), equalTo(tasks.get(i).estimatedSizeInBytes()));
+            }
+        }
+    }
+
+    public void testStartsLargeMergesWhileSmallMergesKeepComing() throws Exception {
+        try (var executorService = newExecutorService(1, shardId -> false)) {
+            final List<TestMergeTask> runOrder = new CopyOnWriteArrayList<>();
+            TestMergeTask runningMerge = new TestMergeTask(shardId, 0, runOrder);
+            assertTrue(executorService.submit(runningMerge));
+            assertBusy(() -> assertThat(runOrder.size(), equalTo(1)));
+
+            final TestMergeTask largeMerge = new TestMergeTask(otherShardId, ByteSizeValue.ofGb(1).getBytes(), runOrder);
+            largeMerge.release.countDown();
+            assertTrue(executorService.submit(largeMerge));
+            // a smaller merge is queued whenever a merge finishes, yet the large merge starts once it waited long enough
+            for (int i = 0; runOrder.contains(largeMerge) == false; i++) {
+                assertThat("the large merge didn't start after [" + i + "] small merges", i, lessThan(Long.SIZE));
+                final long smallMergeSize = randomLongBetween(1, ByteSizeValue.ofMb(1).getBytes());
+                assertTrue(executorService.submit(new TestMergeTask(shardId, smallMergeSize, runOrder)));
+                relativeTimeInNanos.addAndGet(ThreadPoolMergeExecutorService.AGING_INTERVAL.nanos());
+                final int started = runOrder.size();
+                runningMerge.release.countDown();
+                assertBusy(() -> assertThat(runOrder.size(), greaterThan(started)));
+                runningMerge = runOrder.get(started);
+            }
+
+            assertBusy(() -> {
+                runOrder.forEach(task -> task.release.countDown());
+                assertThat(executorService.queuedMerges(), equalTo(0));
+                assertThat(executorService.runningMerges(), equalTo(0));
+            });
+        }
+    }
+
+    public void testPrefersMergesOfSearchActiveShards() throws Exception {
+        try (var executorService = newExecutorService(1, shardId::equals)) {
+            final List<TestMergeTask> runOrder = new CopyOnWriteArrayList<>();
+            final TestMergeTask blocker = new TestMergeTask(shardId, 0, runOrder);
+            assertTrue(executorService.submit(blocker));
+            assertBusy(() -> assertThat(runOrder.size(), equalTo(1)));
+
+            final long size = randomLongBetween(1, 1 << 20);
+            final TestMergeTask idleShardMerge = new TestMergeTask(otherShardId, size, runOrder);
+            final TestMergeTask searchActiveShardMerge = new TestMergeTask(
+                shardId,
+                size * ThreadPoolMergeExecutorService.SEARCH_ACTIVE_PRIORITY_FACTOR - 1,
+                runOrder
+            );
+            idleShardMerge.release.countDown();
+            searchActiveShardMerge.release.countDown();
+            assertTrue(executorService.submit(idleShardMerge));
+            assertTrue(executorService.submit(searchActiveShardMerge));
+            blocker.release.countDown();
+            assertBusy(() -> assertThat(runOrder.size(), equalTo(3)));
+            assertThat(runOrder.get(1), sameInstance(searchActiveShardMerge));
+            assertThat(runOrder.get(2), sameInstance(idleShardMerge));
+        }
+    }
+
+    public void testLimitsConcurrentMergesPerShard() throws Exception {
+        try (var executorService = newExecutorService(3, shardId -> false)) {
+            final List<TestMergeTask> runOrder = new CopyOnWriteArrayList<>();
+            final TestMergeTask first = new TestMergeTask(shardId, 1, runOrder);
+            final TestMergeTask second = new TestMergeTask(shardId, 2, runOrder);
+            final TestMergeTask other = new TestMergeTask(otherShardId, 3, runOrder);
+            assertTrue(executorService.submit(first));
+            assertTrue(executorService.submit(second));
+            assertTrue(executorService.submit(other));
+            assertBusy(() -> assertThat(runOrder, containsInAnyOrder(first, other)));
+            assertThat(executorService.queuedMerges(), equalTo(1));
+
+            first.release.countDown();
+            assertBusy(() -> assertThat(runOrder, containsInAnyOrder(first, other, second)));
+            second.release.countDown();
+            other.release.countDown();
+            assertBusy(() -> assertThat(executorService.runningMerges(), equalTo(0)));
+        }
+    }
+
+    public void testSplitsIORateAndBacksOffLargeMerges() throws Exception {
+        try (var executorService = newExecutorService(2, shardId -> false)) {
+            executorService.setMaxIORate(ByteSizeValue.ofMb(100));
+            executorService.setLargeMergeSize(ByteSizeValue.ofMb(1));
+            final List<TestMergeTask> runOrder = new CopyOnWriteArrayList<>();
+            final TestMergeTask smallMerge = new TestMergeTask(shardId, ByteSizeValue.ofKb(1).getBytes(), runOrder);
+            final TestMergeTask largeMerge = new TestMergeTask(otherShardId, ByteSizeValue.ofMb(10).getBytes(), runOrder);
+            assertTrue(executorService.submit(smallMerge));
+            assertTrue(executorService.submit(largeMerge));
+            assertBusy(() -> assertThat(executorService.runningMerges(), equalTo(2)));
+
+            final double share = ByteSizeValue.ofMb(50).getBytes();
+            assertThat(smallMerge.ioRate, equalTo(share));
+            assertThat(largeMerge.ioRate, equalTo(share));
+
+            executorService.onDiskUtilizationSample(0.95);
+            assertThat(smallMerge.ioRate, equalTo(share));
+            assertThat(largeMerge.ioRate, equalTo(share / 2));
+
+            for (int i = 0; i < 10; i++) {
+                executorService.onDiskUtilizationSample(1.0);
+            }
+            assertThat(executorService.largeMergeRateFactor(), equalTo(ThreadPoolMergeExecutorService.MIN_LARGE_MERGE_RATE_FACTOR));
+            assertThat(largeMerge.ioRate, equalTo(share * ThreadPoolMergeExecutorService.MIN_LARGE_MERGE_RATE_FACTOR));
+
+            // unknown utilization doesn't hold back large merges
+            for (int i = 0; i < 5; i++) {
+                executorService.onDiskUtilizationSample(randomBoolean() ? Double.NaN : 0.5);
+            }
+            assertThat(largeMerge.ioRate, equalTo(share));
+
+            // the small merge gets the whole budget once the large merge is done
+            largeMerge.release.countDown();
+            assertBusy(() -> assertThat(executorService.runningMerges(), equalTo(1)));
+            assertThat(smallMerge.ioRate, equalTo((double) ByteSizeValue.ofMb(100).getBytes()));
+            smallMerge.release.countDown();
+        }
+    }
+
+    public void testRunsAbortedMergesWithoutWaitingForAThread() throws Exception {
+        try (var executorService = newExecutorService(1, shardId -> false)) {
+            final List<TestMergeTask> runOrder = new CopyOnWriteArrayList<>();
+            final TestMergeTask blocker = new TestMergeTask(shardId, 0, runOrder);
+            assertTrue(executorService.submit(blocker));
+            assertBusy(() -> assertThat(runOrder.size(), equalTo(1)));
+
+            final TestMergeTask aborted = new TestMergeTask(otherShardId, 1, runOrder);
+            aborted.release.countDown();
+            assertTrue(executorService.submit(aborted));
+            aborted.aborted = true;
+            executorService.runAbortedTasks();
+            assertThat(runOrder, equalTo(List.of(blocker, aborted)));
+            assertThat(aborted.runThread, sameInstance(Thread.currentThread()));
+            assertThat(executorService.queuedMerges(), equalTo(0));
+            blocker.release.countDown();
+        }
+    }
+
+    public void testRejectsMergesOnceClosed() {
+        final var executorService = newExecutorService(1, shardId -> false);
+        executorService.close();
+        assertFalse(executorService.submit(new TestMergeTask(shardId, 1, new ArrayList<>())));
+    }
+
+    public void testMergesSegmentsOfIndexWriter() throws Exception {
+        final IndexSettings indexSettings = IndexSettingsModule.newIndexSettings("index", Settings.EMPTY);
+        try (var executorService = newExecutorService(between(1, 4), shardId -> false); Directory dir = newDirectory()) {
+            final ThreadPoolMergeScheduler mergeScheduler = new ThreadPoolMergeScheduler(shardId, indexSettings, executorService);
+            final IndexWriterConfig iwc = newIndexWriterConfig().setMergeScheduler(mergeScheduler)
+                .setMergePolicy(new TieredMergePolicy());
+            try (IndexWriter writer = new IndexWriter(dir, iwc)) {
+                final int numSegments = between(2, 10);
+                for (int i = 0; i < numSegments; i++) {
+                    final Document doc = new Document();
+                    doc.add(new StringField("id", Integer.toString(i), Field.Store.YES));
+                    writer.addDocument(doc);
+                    writer.flush();
+                }
+                writer.forceMerge(1);
+                try (DirectoryReader reader = DirectoryReader.open(writer)) {
+                    assertThat(reader.leaves().size(), equalTo(1));
+                    assertThat(reader.numDocs(), equalTo(numSegments));
+                }
+            }
+            final MergeStats stats = mergeScheduler.stats();
+            assertThat(stats.getTotal(), greaterThan(0L));
+            assertThat(stats.getCurrent(), equalTo(0L));
+            assertThat(stats.getCurrentQueued(), equalTo(0L));
+            assertThat(executorService.queuedMerges(), equalTo(0));
+        }
+    }
+
+    private ThreadPoolMergeExecutorService newExecutorService(int maxThreadCount, Predicate<ShardId> searchActive) {
+        return new ThreadPoolMergeExecutorService(
+            "test",
+            maxThreadCount,
+            threadContext,
+            searchActive,
+            relativeTimeInNanos::get,
+            null,
+            null
+        );
+    }
+
+    private static class TestMergeTask implements ThreadPoolMergeExecutorService.MergeTask {
+        private final ShardId shardId;
+        private final long estimatedSizeInBytes;
+        private final List<TestMergeTask> runOrder;
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile boolean aborted;
+        private volatile double ioRate = -1;
+        private volatile Thread runThread;
+
+        TestMergeTask(ShardId shardId, long estimatedSizeInBytes, List<TestMergeTask> runOrder) {
+            this.shardId = shardId;
+            this.estimatedSizeInBytes = estimatedSizeInBytes;
+            this.runOrder = runOrder;
+        }
+
+        @Override
+        public ShardId shardId() {
+            return shardId;
+        }
+
+        @Override
+        public int maxConcurrentMerges() {
+            return 1;
+        }
+
+        @Override
+        public long estimatedSizeInBytes() {
+            return estimatedSizeInBytes;
+        }
+
+        @Override
+        public boolean isAborted() {
+            return aborted;
+        }
+
+        @Override
+        public void setIORate(double bytesPerSecond) {
+            ioRate = bytesPerSecond;
+        }
+
+        @Override
+        public void run() {
+            runThread = Thread.currentThread();
+            runOrder.add(this);
+            safeAwait(release);
+        }
+    }
+}
@@ -10,6 +10,7 @@ package org.elasticsearch.index.mapper;
 
 import org.apache.lucene.index.IndexableField;
 import org.elasticsearch.cluster.metadata.IndexMetadata;
+import org.elasticsearch.common.CheckedConsumer;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.compress.CompressedXContent;
@@ -63,6 +64,132 @@ public class MapperServiceTests extends MapperServiceTestCase {
         assertThat(oldLookup.fieldTypesLookup().get("cat"), nullValue());
     }
 
+    public void testMappingLookupOfMergeMatchesLookupBuiltFromScratch() throws IOException {
+        MapperService service = createMapperService(mapping(b -> {
+            b.startObject("keyword").field("type", "keyword").endObject();
+            b.startObject("text").field("type", "text").startObject("fields");
+            b.startObject("raw").field("type", "keyword").endObject();
+            b.endObject().endObject();
+            b.startObject("object").startObject("properties");
+            b.startObject("long").field("type", "long").endObject();
+            b.endObject().endObject();
+            b.startObject("nested").field("type", "nested").startObject("properties");
+            b.startObject("keyword").field("type", "keyword").endObject();
+            b.endObject().endObject();
+        }));
+        int numUpdates = between(1, 5);
+        for (int i = 0; i < numUpdates; i++) {
+            final String suffix = Integer.toString(i);
+            merge(service, randomFrom(MergeReason.MAPPING_UPDATE, MergeReason.MAPPING_AUTO_UPDATE), mapping(b -> {
+                b.startObject("keyword_" + suffix).field("type", "keyword").endObject();
+                b.startObject("object").startObject("properties");
+                b.startObject("long_" + suffix).field("type", "long").endObject();
+                b.startObject("inner_" + suffix).startObject("properties");
+                b.startObject("text").field("type", "text").startObject("fields");
+                b.startObject("raw").field("type", "keyword").endObject();
+                b.endObject().endObject();
+                b.endObject().endObject();
+                b.endObject().endObject();
+                if (randomBoolean()) {
+                    // adding a field to a nested object builds the lookup from scratch
+                    b.startObject("nested").field("type", "nested").startObject("properties");
+                    b.startObject("keyword_" + suffix).field("type", "keyword").endObject();
+                    b.endObject().endObject();
+                }
+            }));
+            assertSameLookup(service.mappingLookup(), MappingLookup.fromMapping(service.documentMapper().mapping()));
+        }
+
+        // updating an existing field builds the lookup from scratch
+        merge(service, mapping(b -> {
+            b.startObject("keyword").field("type", "keyword").startObject("fields");
+            b.startObject("text").field("type", "text").endObject();
+            b.endObject().endObject();
+        }));
+        assertThat(service.fieldType("keyword.text"), notNullValue());
+        assertSameLookup(service.mappingLookup(), MappingLookup.fromMapping(service.documentMapper().mapping()));
+
+        // field aliases and runtime fields disable incremental updates of the lookup
+        merge(service, mapping(b -> b.startObject("alias").field("type", "alias").field("path", "keyword").endObject()));
+        merge(service, mapping(b -> b.startObject("keyword_alias").field("type", "keyword").endObject()));
+        assertThat(service.fieldType("alias"), notNullValue());
+        assertSameLookup(service.mappingLookup(), MappingLookup.fromMapping(service.documentMapper().mapping()));
+    }
+
+    public void testUpdateMappingFromClusterStateReusesCurrentMappers() throws IOException {
+        CheckedConsumer<XContentBuilder, IOException> initialFields = b -> {
+            b.startObject("keyword").field("type", "keyword").endObject();
+            b.startObject("object").startObject("properties");
+            b.startObject("long").field("type", "long").endObject();
+            b.endObject().endObject();
+        };
+        MapperService service = createMapperService(mapping(initialFields));
+        // the master merges the updates into its own mapping and publishes the merged mapping in the cluster state
+        MapperService masterService = createMapperService(mapping(initialFields));
+        long mappingVersion = 1;
+
+        merge(masterService, mapping(b -> {
+            b.startObject("keyword_1").field("type", "keyword").endObject();
+            b.startObject("object").startObject("properties");
+            b.startObject("long_1").field("type", "long").endObject();
+            b.endObject().endObject();
+        }));
+        Mapper keyword = service.mappingLookup().getMapper("keyword");
+        Mapper objectLong = service.mappingLookup().getMapper("object.long");
+        service.updateMapping(null, indexMetadata(service, masterService, ++mappingVersion));
+        assertEquals(masterService.documentMapper().mappingSource(), service.documentMapper().mappingSource());
+        assertThat(service.fieldType("keyword_1"), notNullValue());
+        assertThat(service.fieldType("object.long_1"), notNullValue());
+        // only the additions were parsed and merged into the current mapping
+        assertSame(keyword, service.mappingLookup().getMapper("keyword"));
+        assertSame(objectLong, service.mappingLookup().getMapper("object.long"));
+        assertSameLookup(service.mappingLookup(), MappingLookup.fromMapping(service.documentMapper().mapping()));
+
+        // changing a field, adding runtime fields or removing them parses the whole mapping
+        merge(masterService, randomFrom(mapping(b -> {
+            b.startObject("keyword").field("type", "keyword").startObject("fields");
+            b.startObject("text").field("type", "text").endObject();
+            b.endObject().endObject();
+        }), runtimeMapping(b -> b.startObject("runtime").field("type", "keyword").endObject())));
+        service.updateMapping(null, indexMetadata(service, masterService, ++mappingVersion));
+        assertEquals(masterService.documentMapper().mappingSource(), service.documentMapper().mappingSource());
+        assertNotSame(keyword, service.mappingLookup().getMapper("keyword"));
+        assertSameLookup(service.mappingLookup(), MappingLookup.fromMapping(service.documentMapper().mapping()));
+
+        merge(masterService, runtimeMapping(b -> b.nullField("runtime")));
+        service.updateMapping(null, indexMetadata(service, masterService, ++mappingVersion));
+        assertEquals(masterService.documentMapper().mappingSource(), service.documentMapper().mappingSource());
+        assertThat(service.fieldType("runtime"), nullValue());
+        assertSameLookup(service.mappingLookup(), MappingLookup.fromMapping(service.documentMapper().mapping()));
+    }
+
+    private static IndexMetadata indexMetadata(MapperService mapperService, MapperService masterService, long mappingVersion) {
+        return IndexMetadata.builder(mapperService.getIndexSettings().getIndexMetadata())
+            .putMapping(masterService.documentMapper().mappingSource().string())
+            .mappingVersion(mappingVersion)
+            .build();
+    }
+
+    private static void assertSameLookup(MappingLookup actual, MappingLookup expected) {
+        assertEquals(expected.objectMappers(), actual.objectMappers());
+        assertEquals(mappersByName(expected.fieldMappers()), mappersByName(actual.fieldMappers()));
+        assertEquals(expected.getFullNameToFieldType(), actual.getFullNameToFieldType());
+        assertEquals(expected.nestedLookup().getNestedMappers(), actual.nestedLookup().getNestedMappers());
+        assertEquals(expected.getTotalFieldsCount(), actual.getTotalFieldsCount());
+        assertEquals(expected.getTotalMapperCount(), actual.getTotalMapperCount());
+        assertEquals(expected.inferenceFields(), actual.inferenceFields());
+        for (String field : expected.getFullNameToFieldType().keySet()) {
+            assertEquals(field, expected.sourcePaths(field), actual.sourcePaths(field));
+            assertEquals(field, expected.parentField(field), actual.parentField(field));
+            assertEquals(field, expected.isMultiField(field), actual.isMultiField(field));
+            assertSame(field, expected.indexAnalyzer(field, f -> null), actual.indexAnalyzer(field, f -> null));
+        }
+    }
+
+    private static Map<String, Mapper> mappersByName(Iterable<Mapper> mappers) {
+        return StreamSupport.stream(mappers.spliterator(), false).collect(Collectors.toMap(Mapper::name, Function.identity()));
+    }
+
     /**
      * Test that we can have at least the number of fields in new mappings that are defined by "index.mapping.total_fields.limit".
      * Any additional field should trigger an IllegalArgumentException.
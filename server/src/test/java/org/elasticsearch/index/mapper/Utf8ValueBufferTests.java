@@ -0,0 +1,58 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.index.mapper;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class Utf8ValueBufferTests extends ESTestCase {
+
+    public void testEncodesLikeBytesRef() {
+        final Utf8ValueBuffer buffer = new Utf8ValueBuffer();
+        final List<String> values = new ArrayList<>();
+        final List<BytesRef> encoded = new ArrayList<>();
+        final int numValues = between(1, 1000);
+        for (int i = 0; i < numValues; i++) {
+            final String value = switch (between(0, 3)) {
+                case 0 -> randomAlphaOfLengthBetween(0, 20);
+                case 1 -> randomUnicodeOfLengthBetween(0, 50);
+                case 2 -> randomRealisticUnicodeOfLengthBetween(0, Utf8ValueBuffer.PAGE_SIZE);
+                default -> randomUnpairedSurrogates();
+            };
+            // encode a slice of a larger array like the parser hands out
+            final String prefix = randomAlphaOfLength(between(0, 5));
+            final char[] chars = (prefix + value + randomAlphaOfLength(between(0, 5))).toCharArray();
+            values.add(value);
+            encoded.add(buffer.encode(chars, prefix.length(), value.length()));
+        }
+        // values must not overwrite each other
+        for (int i = 0; i < numValues; i++) {
+            assertThat(encoded.get(i), equalTo(new BytesRef(values.get(i))));
+        }
+    }
+
+    private static String randomUnpairedSurrogates() {
+        final StringBuilder builder = new StringBuilder();
+        final int length = between(1, 10);
+        for (int i = 0; i < length; i++) {
+            switch (between(0, 3)) {
+                case 0 -> builder.append((char) between(0xD800, 0xDBFF));
+                case 1 -> builder.append((char) between(0xDC00, 0xDFFF));
+                case 2 -> builder.append((char) between(0xD800, 0xDBFF)).append((char) between(0xDC00, 0xDFFF));
+                default -> builder.append(randomAlphaOfLength(1));
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -15,6 +15,8 @@ import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.NoMergePolicy;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.TermQuery;
@@ -432,6 +434,90 @@ public class IndicesRequestCacheTests extends ESTestCase {
 
     }
 
+    public void testCacheSegmentLevelResults() throws Exception {
+        ShardRequestCache requestCacheStats = new ShardRequestCache();
+        IndicesRequestCache cache = new IndicesRequestCache(Settings.EMPTY);
+        MappingLookup.CacheKey mappingKey = MappingLookup.EMPTY.cacheKey();
+        AtomicBoolean indexShard = new AtomicBoolean(true);
+        Directory dir = newDirectory();
+        IndexWriter writer = new IndexWriter(dir, newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE));
+        TermQueryBuilder termQuery = new TermQueryBuilder("id", "0");
+        BytesReference termBytes = XContentHelper.toXContent(termQuery, XContentType.JSON, false);
+
+        writer.addDocument(newDoc(0, "foo"));
+        writer.commit();
+        DirectoryReader reader = DirectoryReader.open(dir);
+        assertEquals(1, reader.leaves().size());
+        LeafReader firstSegment = reader.leaves().get(0).reader();
+
+        // initial cache
+        TestEntity entity = new TestEntity(requestCacheStats, indexShard);
+        SegmentLoader loader = new SegmentLoader(firstSegment);
+        BytesReference value = cache.getOrCompute(entity, loader, mappingKey, firstSegment, termBytes);
+        assertEquals(1, value.streamInput().readVInt());
+        assertFalse(loader.loadedFromCache);
+        assertEquals(0, requestCacheStats.stats().getHitCount());
+        assertEquals(1, requestCacheStats.stats().getMissCount());
+        assertEquals(1, cache.count());
+        assertEquals(1, cache.numRegisteredCloseListeners());
+
+        // a refresh that adds a segment only computes the result of the new segment
+        writer.addDocument(newDoc(1, "bar"));
+        writer.addDocument(newDoc(2, "baz"));
+        writer.commit();
+        DirectoryReader secondReader = DirectoryReader.openIfChanged(reader);
+        assertNotNull(secondReader);
+        assertEquals(2, secondReader.leaves().size());
+        assertSame(firstSegment, secondReader.leaves().get(0).reader());
+
+        loader = new SegmentLoader(firstSegment);
+        value = cache.getOrCompute(entity, loader, mappingKey, firstSegment, termBytes);
+        assertEquals(1, value.streamInput().readVInt());
+        assertTrue(loader.loadedFromCache);
+
+        LeafReader secondSegment = secondReader.leaves().get(1).reader();
+        loader = new SegmentLoader(secondSegment);
+        value = cache.getOrCompute(entity, loader, mappingKey, secondSegment, termBytes);
+        assertEquals(2, value.streamInput().readVInt());
+        assertFalse(loader.loadedFromCache);
+        assertEquals(1, requestCacheStats.stats().getHitCount());
+        assertEquals(2, requestCacheStats.stats().getMissCount());
+        assertEquals(2, cache.count());
+        assertEquals(2, cache.numRegisteredCloseListeners());
+
+        // the first segment is still used by the second reader, so closing the first reader keeps its entry
+        reader.close();
+        cache.cleanCache();
+        assertEquals(2, cache.count());
+
+        secondReader.close();
+        cache.cleanCache();
+        assertEquals(0, cache.count());
+        assertEquals(0, cache.numRegisteredCloseListeners());
+        assertEquals(0L, requestCacheStats.stats().getMemorySize().getBytes());
+
+        IOUtils.close(writer, dir, cache);
+    }
+
+    private static class SegmentLoader implements CheckedSupplier<BytesReference, IOException> {
+
+        private final LeafReader reader;
+        public boolean loadedFromCache = true;
+
+        SegmentLoader(LeafReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public BytesReference get() throws IOException {
+            try (BytesStreamOutput out = new BytesStreamOutput()) {
+                out.writeVInt(reader.numDocs());
+                loadedFromCache = false;
+                return out.bytes();
+            }
+        }
+    }
+
     public void testInvalidate() throws Exception {
         ShardRequestCache requestCacheStats = new ShardRequestCache();
         IndicesRequestCache cache = new IndicesRequestCache(Settings.EMPTY);
@@ -0,0 +1,212 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.indices;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.index.translog.Translog;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class TranslogGroupCommitServiceTests extends ESTestCase {
+
+    private final ThreadContext threadContext = new ThreadContext(Settings.EMPTY);
+
+    public void testCoalescesSyncsOfTheSameTranslogWithinARound() throws Exception {
+        final Path dataPath = createTempDir();
+        try (var service = new TranslogGroupCommitService("test", between(1, 4), threadContext)) {
+            // block the first round so that the following requests all end up in the second round
+            final CountDownLatch firstRoundStarted = new CountDownLatch(1);
+            final CountDownLatch releaseFirstRound = new CountDownLatch(1);
+            final CountDownLatch firstSynced = new CountDownLatch(1);
+            service.sync(dataPath, "blocker", (location, listener) -> {
+                firstRoundStarted.countDown();
+                safeAwait(releaseFirstRound);
+                listener.accept(null);
+            }, location(1), e -> firstSynced.countDown());
+            safeAwait(firstRoundStarted);
+
+            final RecordingSyncer first = new RecordingSyncer(null);
+            final RecordingSyncer second = new RecordingSyncer(null);
+            final int requests = between(2, 20);
+            final CountDownLatch synced = new CountDownLatch(requests * 2);
+            final List<Exception> failures = new CopyOnWriteArrayList<>();
+            for (int i = 1; i <= requests; i++) {
+                service.sync(dataPath, "first", first, location(i), e -> {
+                    if (e != null) {
+                        failures.add(e);
+                    }
+                    synced.countDown();
+                });
+                service.sync(dataPath, "second", second, location(requests - i), e -> {
+                    if (e != null) {
+                        failures.add(e);
+                    }
+                    synced.countDown();
+                });
+            }
+            releaseFirstRound.countDown();
+            safeAwait(firstSynced);
+            safeAwait(synced);
+
+            assertThat(failures, equalTo(List.of()));
+            assertThat(first.syncedLocations, equalTo(List.of(location(requests))));
+            assertThat(second.syncedLocations, equalTo(List.of(location(requests - 1))));
+
+            final TranslogGroupCommitStats stats = service.stats();
+            assertThat(stats.rounds(), equalTo(2L));
+            assertThat(stats.syncRequests(), equalTo(1L + 2L * requests));
+            assertThat(stats.translogSyncs(), equalTo(3L));
+            assertThat(stats.maxBatchSize(), equalTo(2L * requests));
+            assertThat(stats.directSyncs(), equalTo(0L));
+        }
+    }
+
+    public void testCompletesListenersOnceTheirTranslogIsSynced() throws Exception {
+        final Path dataPath = createTempDir();
+        try (var service = new TranslogGroupCommitService("test", 2, threadContext)) {
+            // block the first round so that the slow and the fast translog are synced in the same round
+            final CountDownLatch firstRoundStarted = new CountDownLatch(1);
+            final CountDownLatch releaseFirstRound = new CountDownLatch(1);
+            service.sync(dataPath, "blocker", (location, listener) -> {
+                firstRoundStarted.countDown();
+                safeAwait(releaseFirstRound);
+                listener.accept(null);
+            }, location(1), e -> {});
+            safeAwait(firstRoundStarted);
+
+            final CountDownLatch releaseSlowSync = new CountDownLatch(1);
+            final CountDownLatch slowSynced = new CountDownLatch(1);
+            final CountDownLatch fastSynced = new CountDownLatch(1);
+            service.sync(dataPath, "slow", (location, listener) -> {
+                safeAwait(releaseSlowSync);
+                listener.accept(null);
+            }, location(1), e -> slowSynced.countDown());
+            service.sync(dataPath, "fast", new RecordingSyncer(null), location(1), e -> fastSynced.countDown());
+            releaseFirstRound.countDown();
+
+            safeAwait(fastSynced);
+            assertThat(slowSynced.getCount(), equalTo(1L));
+            releaseSlowSync.countDown();
+            safeAwait(slowSynced);
+            assertBusy(() -> assertThat(service.stats().rounds(), equalTo(2L)));
+        }
+    }
+
+    public void testSyncsDirectlyWhenTooManySyncsArePending() throws Exception {
+        final Path dataPath = createTempDir();
+        try (var service = new TranslogGroupCommitService("test", 1, threadContext)) {
+            final CountDownLatch firstRoundStarted = new CountDownLatch(1);
+            final CountDownLatch releaseFirstRound = new CountDownLatch(1);
+            service.sync(dataPath, "blocker", (location, listener) -> {
+                firstRoundStarted.countDown();
+                safeAwait(releaseFirstRound);
+                listener.accept(null);
+            }, location(1), e -> {});
+            safeAwait(firstRoundStarted);
+
+            final RecordingSyncer queued = new RecordingSyncer(null);
+            final CountDownLatch queuedSynced = new CountDownLatch(TranslogGroupCommitService.QUEUE_SIZE);
+            for (int i = 0; i < TranslogGroupCommitService.QUEUE_SIZE; i++) {
+                service.sync(dataPath, "queued", queued, location(i), e -> queuedSynced.countDown());
+            }
+
+            // the queue is full, so the request is synced on this thread instead of blocking it until the round has landed
+            final RecordingSyncer direct = new RecordingSyncer(null);
+            final AtomicReference<Thread> listenerThread = new AtomicReference<>();
+            service.sync(dataPath, "direct", direct, location(1), e -> listenerThread.set(Thread.currentThread()));
+            assertThat(listenerThread.get(), sameInstance(Thread.currentThread()));
+            assertThat(direct.syncedLocations, equalTo(List.of(location(1))));
+            assertThat(service.stats().directSyncs(), equalTo(1L));
+
+            releaseFirstRound.countDown();
+            safeAwait(queuedSynced);
+            assertThat(queued.syncedLocations, equalTo(List.of(location(TranslogGroupCommitService.QUEUE_SIZE - 1))));
+        }
+    }
+
+    public void testFailureIsOnlyPropagatedToRequestsOfTheFailedTranslog() throws Exception {
+        final Path dataPath = createTempDir();
+        final IOException failure = new IOException("simulated");
+        try (var service = new TranslogGroupCommitService("test", between(1, 4), threadContext)) {
+            final AtomicReference<Exception> failedResult = new AtomicReference<>();
+            final AtomicReference<Exception> successfulResult = new AtomicReference<>();
+            final CountDownLatch synced = new CountDownLatch(2);
+            service.sync(dataPath, "failing", new RecordingSyncer(failure), location(1), e -> {
+                failedResult.set(e);
+                synced.countDown();
+            });
+            service.sync(dataPath, "healthy", new RecordingSyncer(null), location(1), e -> {
+                successfulResult.set(e);
+                synced.countDown();
+            });
+            safeAwait(synced);
+            assertThat(failedResult.get(), sameInstance(failure));
+            assertThat(successfulResult.get(), nullValue());
+        }
+    }
+
+    public void testPreservesThreadContext() throws Exception {
+        final Path dataPath = createTempDir();
+        try (var service = new TranslogGroupCommitService("test", 1, threadContext)) {
+            final AtomicReference<String> header = new AtomicReference<>();
+            final CountDownLatch synced = new CountDownLatch(1);
+            try (ThreadContext.StoredContext ignored = threadContext.stashContext()) {
+                threadContext.putHeader("header", "value");
+                service.sync(dataPath, "translog", new RecordingSyncer(null), location(1), e -> {
+                    header.set(threadContext.getHeader("header"));
+                    synced.countDown();
+                });
+            }
+            safeAwait(synced);
+            assertThat(header.get(), equalTo("value"));
+        }
+    }
+
+    public void testSyncsDirectlyOnceClosed() {
+        final var service = new TranslogGroupCommitService("test", 1, threadContext);
+        service.close();
+        final RecordingSyncer syncer = new RecordingSyncer(null);
+        final AtomicReference<Thread> listenerThread = new AtomicReference<>();
+        service.sync(createTempDir(), "translog", syncer, location(1), e -> listenerThread.set(Thread.currentThread()));
+        assertThat(listenerThread.get(), sameInstance(Thread.currentThread()));
+        assertThat(syncer.syncedLocations, equalTo(List.of(location(1))));
+        assertThat(service.stats().rounds(), equalTo(0L));
+    }
+
+    private static Translog.Location location(int offset) {
+        return new Translog.Location(1, offset, 1);
+    }
+
+    private static class RecordingSyncer implements TranslogGroupCommitService.TranslogSyncer {
+        private final Exception failure;
+        private final List<Translog.Location> syncedLocations = new CopyOnWriteArrayList<>();
+
+        RecordingSyncer(Exception failure) {
+            this.failure = failure;
+        }
+
+        @Override
+        public void sync(Translog.Location location, Consumer<Exception> listener) {
+            syncedLocations.add(location);
+            listener.accept(failure);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.myprofiler;
+
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+
+public class ProfilerCountersTests extends ESTestCase {
+
+    public void testIncrementAndDrain() {
+        ProfilerCounters counters = new ProfilerCounters();
+        counters.increment("logs", ProfilerCounters.Operation.SEARCH_QUERY);
+        counters.increment("logs", ProfilerCounters.Operation.SEARCH_QUERY);
+        counters.increment("logs", ProfilerCounters.Operation.GET_REQUEST);
+        counters.increment("metrics", ProfilerCounters.Operation.INDEX_REQUEST);
+        counters.increment(null, ProfilerCounters.Operation.INDEX_REQUEST);
+
+        Map<String, ProfilerCounters.IndexCounts> peeked = byIndex(counters.peek());
+        assertThat(peeked.size(), equalTo(2));
+        assertThat(peeked.get("logs").searchQueryCount(), equalTo(2L));
+
+        Map<String, ProfilerCounters.IndexCounts> drained = byIndex(counters.drain());
+        assertThat(drained.get("logs").searchQueryCount(), equalTo(2L));
+        assertThat(drained.get("logs").getRequestCount(), equalTo(1L));
+        assertThat(drained.get("logs").indexRequestCount(), equalTo(0L));
+        assertThat(drained.get("metrics").count(ProfilerCounters.Operation.INDEX_REQUEST), equalTo(1L));
+
+        // indices without traffic since the last drain are not reported and get evicted
+        assertThat(counters.size(), equalTo(2));
+        assertThat(counters.drain(), empty());
+        assertThat(counters.size(), equalTo(0));
+    }
+
+    public void testMaxIndices() {
+        ProfilerCounters counters = new ProfilerCounters(2);
+        counters.increment("a", ProfilerCounters.Operation.SEARCH_QUERY);
+        counters.increment("b", ProfilerCounters.Operation.SEARCH_QUERY);
+        counters.increment("c", ProfilerCounters.Operation.SEARCH_QUERY);
+        counters.increment("a", ProfilerCounters.Operation.SEARCH_QUERY);
+        assertThat(counters.size(), equalTo(2));
+        assertThat(counters.droppedIncrements(), equalTo(1L));
+        assertThat(counters.drain(), hasSize(2));
+
+        // evicting idle indices frees up room for new ones
+        counters.drain();
+        counters.increment("c", ProfilerCounters.Operation.SEARCH_QUERY);
+        assertThat(byIndex(counters.drain()).get("c").searchQueryCount(), equalTo(1L));
+        expectThrows(IllegalArgumentException.class, () -> new ProfilerCounters(0));
+    }
+
+    public void testConcurrentIncrements() throws Exception {
+        ProfilerCounters counters = new ProfilerCounters();
+        int numThreads = randomIntBetween(2, 8);
+        int numIncrements = randomIntBetween(100, 1000);
+        CountDownLatch latch = new CountDownLatch(1);
+        Thread[] threads = new Thread[numThreads];
+        for (int t = 0; t < numThreads; t++) {
+            threads[t] = new Thread(() -> {
+                safeAwait(latch);
+                for (int i = 0; i < numIncrements; i++) {
+                    counters.increment("index-" + (i % 3), ProfilerCounters.Operation.SEARCH_QUERY);
+                }
+            });
+            threads[t].start();
+        }
+        latch.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long total = counters.drain().stream().mapToLong(ProfilerCounters.IndexCounts::searchQueryCount).sum();
+        assertThat(total, equalTo((long) numThreads * numIncrements));
+    }
+
+    private static Map<String, ProfilerCounters.IndexCounts> byIndex(List<ProfilerCounters.IndexCounts> counts) {
+        return counts.stream().collect(Collectors.toMap(ProfilerCounters.IndexCounts::index, Function.identity()));
+    }
+}
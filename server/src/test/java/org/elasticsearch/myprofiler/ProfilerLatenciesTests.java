@@ -0,0 +1,83 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.myprofiler;
+
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+
+public class ProfilerLatenciesTests extends ESTestCase {
+
+    public void testQuantiles() {
+        ProfilerLatencies latencies = new ProfilerLatencies(10, randomIntBetween(1, 8));
+        for (int i = 1; i <= 1000; i++) {
+            latencies.record("logs", ProfilerLatencies.Phase.QUERY, TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        latencies.record("logs", ProfilerLatencies.Phase.FETCH, TimeUnit.MILLISECONDS.toNanos(3));
+        latencies.record(null, ProfilerLatencies.Phase.FETCH, TimeUnit.MILLISECONDS.toNanos(3));
+
+        List<ProfilerLatencies.PhaseLatencies> peeked = latencies.peek();
+        assertThat(peeked, hasSize(2));
+
+        List<ProfilerLatencies.PhaseLatencies> drained = latencies.drain();
+        assertThat(drained, hasSize(2));
+        ProfilerLatencies.PhaseLatencies query = drained.stream()
+            .filter(l -> l.phase() == ProfilerLatencies.Phase.QUERY)
+            .findFirst()
+            .orElseThrow();
+        assertThat(query.index(), equalTo("logs"));
+        assertThat(query.count(), equalTo(1000L));
+        assertThat(query.quantile(0.5), closeTo(500, 10));
+        assertThat(query.quantile(0.99), closeTo(990, 10));
+
+        // indices without samples since the last drain are not reported and get evicted
+        assertThat(latencies.drain(), empty());
+    }
+
+    public void testMaxIndices() {
+        ProfilerLatencies latencies = new ProfilerLatencies(1, 1);
+        latencies.record("a", ProfilerLatencies.Phase.CAN_MATCH, 10);
+        latencies.record("b", ProfilerLatencies.Phase.CAN_MATCH, 10);
+        assertThat(latencies.droppedSamples(), equalTo(1L));
+        assertThat(latencies.drain(), hasSize(1));
+        expectThrows(IllegalArgumentException.class, () -> new ProfilerLatencies(0, 1));
+        expectThrows(IllegalArgumentException.class, () -> new ProfilerLatencies(1, 0));
+    }
+
+    public void testConcurrentRecording() throws Exception {
+        ProfilerLatencies latencies = new ProfilerLatencies(10, randomIntBetween(1, 4));
+        int numThreads = randomIntBetween(2, 8);
+        int numSamples = randomIntBetween(100, 1000);
+        CountDownLatch latch = new CountDownLatch(1);
+        Thread[] threads = new Thread[numThreads];
+        for (int t = 0; t < numThreads; t++) {
+            threads[t] = new Thread(() -> {
+                safeAwait(latch);
+                for (int i = 0; i < numSamples; i++) {
+                    latencies.record("logs", ProfilerLatencies.Phase.COORDINATOR_REDUCE, i * 1000L);
+                }
+            });
+            threads[t].start();
+        }
+        latch.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        List<ProfilerLatencies.PhaseLatencies> drained = latencies.drain();
+        assertThat(drained, hasSize(1));
+        assertThat(drained.get(0).count(), equalTo((long) numThreads * numSamples));
+    }
+}
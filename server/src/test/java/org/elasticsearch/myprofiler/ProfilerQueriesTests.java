@@ -0,0 +1,82 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.myprofiler;
+
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+
+public class ProfilerQueriesTests extends ESTestCase {
+
+    public void testFingerprintStripsLiterals() throws IOException {
+        String first = ProfilerQueries.fingerprint(
+            new SearchSourceBuilder().query(QueryBuilders.termQuery("user", randomAlphaOfLength(10))).size(randomIntBetween(1, 100))
+        );
+        String second = ProfilerQueries.fingerprint(
+            new SearchSourceBuilder().query(QueryBuilders.termQuery("user", randomAlphaOfLength(5))).size(randomIntBetween(1, 100))
+        );
+        assertThat(first, equalTo(second));
+        assertThat(first, containsString("user"));
+    }
+
+    public void testFingerprintCollapsesArrays() throws IOException {
+        String few = ProfilerQueries.fingerprint(new SearchSourceBuilder().query(QueryBuilders.termsQuery("tag", "a", "b")));
+        String many = ProfilerQueries.fingerprint(new SearchSourceBuilder().query(QueryBuilders.termsQuery("tag", "c", "d", "e", "f")));
+        assertThat(few, equalTo(many));
+    }
+
+    public void testFingerprintKeepsStructure() throws IOException {
+        String term = ProfilerQueries.fingerprint(new SearchSourceBuilder().query(QueryBuilders.termQuery("user", "kimchy")));
+        String otherField = ProfilerQueries.fingerprint(new SearchSourceBuilder().query(QueryBuilders.termQuery("host", "kimchy")));
+        String match = ProfilerQueries.fingerprint(new SearchSourceBuilder().query(QueryBuilders.matchQuery("user", "kimchy")));
+        assertThat(term, not(equalTo(otherField)));
+        assertThat(term, not(equalTo(match)));
+    }
+
+    public void testFingerprintIsTruncated() throws IOException {
+        BoolQueryBuilder query = QueryBuilders.boolQuery();
+        for (int i = 0; i < 500; i++) {
+            query.should(QueryBuilders.termQuery("field_" + i, i));
+        }
+        assertThat(ProfilerQueries.fingerprint(new SearchSourceBuilder().query(query)).length(), lessThanOrEqualTo(ProfilerQueries.MAX_FINGERPRINT_LENGTH + 3));
+    }
+
+    public void testSamplingRate() {
+        ProfilerQueries queries = new ProfilerQueries();
+        SearchSourceBuilder source = new SearchSourceBuilder().query(QueryBuilders.termQuery("user", "kimchy"));
+        queries.maybeRecord(source, 1_000);
+        assertThat(queries.sampledQueries(), equalTo(0L));
+
+        queries.setSamplingRate(1.0);
+        queries.maybeRecord(source, 5_000_000);
+        queries.maybeRecord(source.from(10), 1_000_000);
+        queries.maybeRecord(new SearchSourceBuilder().query(QueryBuilders.matchAllQuery()), 1_000);
+        queries.maybeRecord(null, 1_000);
+        assertThat(queries.sampledQueries(), equalTo(3L));
+
+        ProfilerQueries.Snapshot snapshot = queries.drain();
+        List<SpaceSavingSketch.Entry<String>> byCount = snapshot.byCount();
+        assertThat(byCount, hasSize(3));
+        assertThat(byCount.get(0).weight(), equalTo(1L));
+        List<SpaceSavingSketch.Entry<String>> byCost = snapshot.byCost();
+        assertThat(byCost.get(0).weight(), equalTo(5_000L));
+        assertThat(queries.topByCount(), empty());
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.myprofiler;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.ActionType;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.client.NoOpClient;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.xcontent.XContentBuilder;
+import org.elasticsearch.xcontent.XContentFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+
+public class ProfilerStatsPublisherTests extends ESTestCase {
+
+    public void testDropsWhileFlushIsInFlight() throws IOException {
+        ThreadPool threadPool = new TestThreadPool(getTestName());
+        try {
+            List<BulkRequest> requests = new ArrayList<>();
+            List<ActionListener<BulkResponse>> listeners = new ArrayList<>();
+            NoOpClient client = new NoOpClient(threadPool) {
+                @Override
+                @SuppressWarnings("unchecked")
+                protected <Request extends ActionRequest, Response extends ActionResponse> void doExecute(
+                    ActionType<Response> action,
+                    Request request,
+                    ActionListener<Response> listener
+                ) {
+                    requests.add((BulkRequest) request);
+                    listeners.add((ActionListener<BulkResponse>) listener);
+                }
+            };
+            // any buffered document exceeds the in-flight limit, so every document is flushed on its own
+            ProfilerStatsPublisher publisher = new ProfilerStatsPublisher(client, 100, ByteSizeValue.ofBytes(1), null);
+
+            publisher.publish(document());
+            assertThat(requests, hasSize(1));
+            assertThat(requests.get(0).numberOfActions(), equalTo(1));
+            assertThat(requests.get(0).requests().get(0).index(), equalTo(ProfilerStatsPublisher.INDEX_NAME));
+
+            // the first flush has not completed yet, so further documents are dropped rather than buffered
+            int dropped = randomIntBetween(1, 10);
+            for (int i = 0; i < dropped; i++) {
+                publisher.publish(document());
+            }
+            assertThat(requests, hasSize(1));
+            assertThat(publisher.stats().droppedDocs(), equalTo((long) dropped));
+
+            listeners.get(0).onResponse(new BulkResponse(new BulkItemResponse[0], 1));
+            ProfilerStatsPublisher.Stats stats = publisher.stats();
+            assertThat(stats.flushes(), equalTo(1L));
+            assertThat(stats.publishedDocs(), equalTo(1L));
+            assertThat(stats.failedDocs(), equalTo(0L));
+
+            publisher.publish(document());
+            assertThat(requests, hasSize(2));
+            listeners.get(1).onFailure(new IllegalStateException("boom"));
+            assertThat(publisher.stats().flushes(), equalTo(2L));
+            assertThat(publisher.stats().failedDocs(), equalTo(1L));
+        } finally {
+            terminate(threadPool);
+        }
+    }
+
+    private static XContentBuilder document() throws IOException {
+        return XContentFactory.jsonBuilder().startObject().field("nodeId", "node").endObject();
+    }
+}
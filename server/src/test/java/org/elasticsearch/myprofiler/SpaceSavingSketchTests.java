@@ -0,0 +1,81 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.myprofiler;
+
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class SpaceSavingSketchTests extends ESTestCase {
+
+    public void testExactBelowCapacity() {
+        SpaceSavingSketch<String> sketch = new SpaceSavingSketch<>(3);
+        sketch.offer("a", 5);
+        sketch.offer("b", 1);
+        sketch.offer("a", 2);
+        sketch.offer("c", 3);
+
+        List<SpaceSavingSketch.Entry<String>> top = sketch.top();
+        assertThat(top, hasSize(3));
+        assertThat(top.get(0), equalTo(new SpaceSavingSketch.Entry<>("a", 7, 0)));
+        assertThat(top.get(1), equalTo(new SpaceSavingSketch.Entry<>("c", 3, 0)));
+        assertThat(top.get(2), equalTo(new SpaceSavingSketch.Entry<>("b", 1, 0)));
+        assertThat(sketch.total(), equalTo(11L));
+    }
+
+    public void testEvictsSmallestEntry() {
+        SpaceSavingSketch<String> sketch = new SpaceSavingSketch<>(2);
+        sketch.offer("a", 10);
+        sketch.offer("b", 2);
+        sketch.offer("c", 1);
+
+        List<SpaceSavingSketch.Entry<String>> top = sketch.top();
+        assertThat(top, hasSize(2));
+        assertThat(top.get(0), equalTo(new SpaceSavingSketch.Entry<>("a", 10, 0)));
+        assertThat(top.get(1), equalTo(new SpaceSavingSketch.Entry<>("c", 3, 2)));
+    }
+
+    public void testHeavyHittersAreTracked() {
+        final int capacity = 10;
+        SpaceSavingSketch<Integer> sketch = new SpaceSavingSketch<>(capacity);
+        long heavyWeight = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (i % 4 == 0) {
+                sketch.offer(-1, 1);
+                heavyWeight++;
+            } else {
+                sketch.offer(randomIntBetween(0, 1000), 1);
+            }
+        }
+        SpaceSavingSketch.Entry<Integer> heaviest = sketch.top().get(0);
+        assertThat(heaviest.key(), equalTo(-1));
+        assertThat(heaviest.weight(), greaterThanOrEqualTo(heavyWeight));
+        assertThat(heaviest.weight() - heaviest.error(), lessThanOrEqualTo(heavyWeight));
+    }
+
+    public void testDrainResets() {
+        SpaceSavingSketch<String> sketch = new SpaceSavingSketch<>(randomIntBetween(1, 10));
+        sketch.offer("a", randomLongBetween(1, 100));
+        assertThat(sketch.drain(), hasSize(1));
+        assertThat(sketch.top(), empty());
+        assertThat(sketch.total(), equalTo(0L));
+    }
+
+    public void testRejectsNonPositiveWeight() {
+        SpaceSavingSketch<String> sketch = new SpaceSavingSketch<>(1);
+        expectThrows(IllegalArgumentException.class, () -> sketch.offer("a", randomLongBetween(Long.MIN_VALUE, 0)));
+        expectThrows(IllegalArgumentException.class, () -> new SpaceSavingSketch<>(0));
+    }
+}
@@ -118,6 +118,7 @@ public class RestNodesActionTests extends ESTestCase {
             null,
             null,
             null,
+            null,
             null
         );
     }
@@ -0,0 +1,237 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.search.query;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.elasticsearch.common.CheckedSupplier;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.index.mapper.IdFieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
+import org.elasticsearch.index.mapper.Uid;
+import org.elasticsearch.index.query.ParsedQuery;
+import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregationPhase;
+import org.elasticsearch.search.aggregations.AggregationReduceContext;
+import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.aggregations.AggregatorTestCase;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.SearchContextAggregations;
+import org.elasticsearch.search.aggregations.metrics.Max;
+import org.elasticsearch.search.aggregations.metrics.TopHits;
+import org.elasticsearch.search.aggregations.support.AggregationContext;
+import org.elasticsearch.search.internal.ContextIndexSearcher;
+import org.elasticsearch.test.TestSearchContext;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.junit.Before;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.elasticsearch.search.aggregations.AggregationBuilders.max;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.topHits;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Compares {@link QueryPhase#executeBySegment} with the regular query phase across refreshes.
+ */
+public class QueryPhaseBySegmentTests extends AggregatorTestCase {
+
+    private static final MappedFieldType NUMBER_FIELD_TYPE = new NumberFieldMapper.NumberFieldType(
+        "number",
+        NumberFieldMapper.NumberType.LONG
+    );
+
+    private IndexShard indexShard;
+
+    @Before
+    public void mockIndexShard() {
+        ThreadPool threadPool = mock(ThreadPool.class);
+        when(threadPool.executor(ThreadPool.Names.SEARCH)).thenReturn(EsExecutors.DIRECT_EXECUTOR_SERVICE);
+        indexShard = mock(IndexShard.class);
+        when(indexShard.shardId()).thenReturn(new ShardId("index", "_na_", 0));
+        when(indexShard.getThreadPool()).thenReturn(threadPool);
+    }
+
+    public void testReusesResultsOfUnchangedSegments() throws IOException {
+        AggregationBuilder aggregation = max("max").field("number");
+        SegmentResults segmentResults = new SegmentResults();
+        try (
+            Directory directory = newDirectory();
+            IndexWriter writer = new IndexWriter(directory, newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE))
+        ) {
+            for (int i = 0; i < 10; i++) {
+                writer.addDocument(document(i, i % 2 == 0 ? "foo" : "bar"));
+            }
+            try (DirectoryReader reader = DirectoryReader.open(writer)) {
+                assertThat(maxValue(executeBySegment(reader, aggregation, segmentResults)), equalTo(8.0));
+                assertThat(maxValue(executeBySegment(reader, aggregation, segmentResults)), equalTo(8.0));
+                assertThat(segmentResults.computed, equalTo(1));
+                assertThat(segmentResults.reused, equalTo(1));
+
+                for (int i = 10; i < 15; i++) {
+                    writer.addDocument(document(i, "foo"));
+                }
+                try (DirectoryReader refreshedReader = DirectoryReader.openIfChanged(reader)) {
+                    assertThat(refreshedReader.leaves().size(), equalTo(2));
+                    double expected = maxValue(executeQueryPhase(refreshedReader, aggregation));
+                    assertThat(expected, equalTo(14.0));
+                    assertThat(maxValue(executeBySegment(refreshedReader, aggregation, segmentResults)), equalTo(expected));
+                    // only the new segment was searched
+                    assertThat(segmentResults.computed, equalTo(2));
+                    assertThat(segmentResults.reused, equalTo(2));
+                }
+            }
+        }
+    }
+
+    public void testDoesNotReuseScoresAcrossRefreshes() throws IOException {
+        AggregationBuilder aggregation = topHits("top").size(10);
+        SegmentResults segmentResults = new SegmentResults();
+        try (
+            Directory directory = newDirectory();
+            IndexWriter writer = new IndexWriter(directory, newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE))
+        ) {
+            for (int i = 0; i < 10; i++) {
+                writer.addDocument(document(i, i % 2 == 0 ? "foo" : "bar"));
+            }
+            try (DirectoryReader reader = DirectoryReader.open(writer)) {
+                float[] scoresBeforeRefresh = scores(executeQueryPhase(reader, aggregation));
+                assertArrayEquals(scoresBeforeRefresh, scores(executeBySegment(reader, aggregation, segmentResults)), 0f);
+
+                // documents without the term make it rarer, which changes the scores of the matching documents of the first segment too
+                for (int i = 10; i < 30; i++) {
+                    writer.addDocument(document(i, "bar"));
+                }
+                try (DirectoryReader refreshedReader = DirectoryReader.openIfChanged(reader)) {
+                    assertThat(refreshedReader.leaves().size(), equalTo(2));
+                    float[] scoresAfterRefresh = scores(executeQueryPhase(refreshedReader, aggregation));
+                    assertThat(scoresAfterRefresh[0], not(equalTo(scoresBeforeRefresh[0])));
+                    assertArrayEquals(scoresAfterRefresh, scores(executeBySegment(refreshedReader, aggregation, segmentResults)), 0f);
+                }
+            }
+        }
+        assertThat(segmentResults.computed, equalTo(0));
+        assertThat(segmentResults.reused, equalTo(0));
+    }
+
+    private InternalAggregations executeQueryPhase(DirectoryReader reader, AggregationBuilder aggregation) throws IOException {
+        try (TestSearchContext context = createSearchContext(reader, aggregation)) {
+            AggregationPhase.preProcess(context);
+            QueryPhase.addCollectorsAndSearch(context);
+            return context.queryResult().aggregations().expand();
+        }
+    }
+
+    private InternalAggregations executeBySegment(DirectoryReader reader, AggregationBuilder aggregation, SegmentResults segmentResults)
+        throws IOException {
+        try (TestSearchContext context = createSearchContext(reader, aggregation)) {
+            QueryPhase.executeBySegment(context, segmentResults);
+            return context.queryResult().aggregations().expand();
+        }
+    }
+
+    private TestSearchContext createSearchContext(DirectoryReader reader, AggregationBuilder aggregation) throws IOException {
+        Query query = new TermQuery(new Term("text", "foo"));
+        AggregationContext aggregationContext = createAggregationContext(reader, query, NUMBER_FIELD_TYPE);
+        AggregatorFactories.Builder builder = new AggregatorFactories.Builder().addAggregator(aggregation);
+        ContextIndexSearcher searcher = new ContextIndexSearcher(
+            reader,
+            IndexSearcher.getDefaultSimilarity(),
+            IndexSearcher.getDefaultQueryCache(),
+            IndexSearcher.getDefaultQueryCachingPolicy(),
+            false
+        );
+        TestSearchContext context = new TestSearchContext(null, indexShard, searcher);
+        context.parsedQuery(new ParsedQuery(query));
+        context.setSize(0);
+        AggregationReduceContext.Builder reduceContextBuilder = new AggregationReduceContext.Builder() {
+            @Override
+            public AggregationReduceContext forPartialReduction() {
+                return new AggregationReduceContext.ForPartial(BigArrays.NON_RECYCLING_INSTANCE, null, () -> false, builder);
+            }
+
+            @Override
+            public AggregationReduceContext forFinalReduction() {
+                return new AggregationReduceContext.ForFinal(BigArrays.NON_RECYCLING_INSTANCE, null, () -> false, builder, b -> {});
+            }
+        };
+        context.aggregations(new SearchContextAggregations(builder.build(aggregationContext, null), () -> reduceContextBuilder));
+        return context;
+    }
+
+    private static Document document(int id, String text) {
+        Document document = new Document();
+        document.add(new StringField(IdFieldMapper.NAME, Uid.encodeId(Integer.toString(id)), Store.YES));
+        document.add(new StringField("text", text, Store.NO));
+        document.add(new SortedNumericDocValuesField("number", id));
+        return document;
+    }
+
+    private static double maxValue(InternalAggregations aggregations) {
+        return ((Max) aggregations.get("max")).value();
+    }
+
+    private static float[] scores(InternalAggregations aggregations) {
+        SearchHits hits = ((TopHits) aggregations.get("top")).getHits();
+        float[] scores = new float[hits.getHits().length];
+        for (int i = 0; i < scores.length; i++) {
+            SearchHit hit = hits.getAt(i);
+            scores[i] = hit.getScore();
+        }
+        Arrays.sort(scores);
+        return scores;
+    }
+
+    private static class SegmentResults implements QueryPhase.SegmentResultCache {
+        private final Map<IndexReader.CacheKey, QueryPhase.SegmentResult> results = new HashMap<>();
+        private int computed;
+        private int reused;
+
+        @Override
+        public QueryPhase.SegmentResult getOrCompute(
+            LeafReaderContext leaf,
+            CheckedSupplier<QueryPhase.SegmentResult, IOException> loader
+        ) throws IOException {
+            IndexReader.CacheKey key = leaf.reader().getReaderCacheHelper().getKey();
+            QueryPhase.SegmentResult result = results.get(key);
+            if (result == null) {
+                result = loader.get();
+                results.put(key, result);
+                computed++;
+            } else {
+                reused++;
+            }
+            return result;
+        }
+    }
+}
@@ -68,6 +68,7 @@ public class InboundHandlerTests extends ESTestCase {
         final boolean ignoreDeserializationErrors = true; // suppress assertions to test production error-handling
         TransportHandshaker handshaker = new TransportHandshaker(
             TransportVersion.current(),
+            randomBoolean(),
             threadPool,
             (n, c, r, v) -> {},
             ignoreDeserializationErrors
@@ -8,6 +8,7 @@
 package org.elasticsearch.transport;
 
 import org.elasticsearch.TransportVersion;
+import org.elasticsearch.TransportVersions;
 import org.elasticsearch.Version;
 import org.elasticsearch.action.support.PlainActionFuture;
 import org.elasticsearch.cluster.node.DiscoveryNode;
@@ -17,6 +18,7 @@ import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.core.TimeValue;
 import org.elasticsearch.tasks.TaskId;
 import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.TransportVersionUtils;
 import org.elasticsearch.threadpool.TestThreadPool;
 
 import java.io.IOException;
@@ -49,7 +51,7 @@ public class TransportHandshakerTests extends ESTestCase {
             .roles(Collections.emptySet())
             .build();
         threadPool = new TestThreadPool("thread-poll");
-        handshaker = new TransportHandshaker(TransportVersion.current(), threadPool, requestSender, false);
+        handshaker = new TransportHandshaker(TransportVersion.current(), true, threadPool, requestSender, false);
     }
 
     @Override
@@ -59,7 +61,7 @@ public class TransportHandshakerTests extends ESTestCase {
     }
 
     public void testHandshakeRequestAndResponse() throws IOException {
-        PlainActionFuture<TransportVersion> versionFuture = new PlainActionFuture<>();
+        PlainActionFuture<TcpTransport.HandshakeResult> versionFuture = new PlainActionFuture<>();
         long reqId = randomLongBetween(1, 10);
         handshaker.sendHandshake(reqId, node, channel, new TimeValue(30, TimeUnit.SECONDS), versionFuture);
 
@@ -79,7 +81,67 @@ public class TransportHandshakerTests extends ESTestCase {
         handler.handleResponse((TransportHandshaker.HandshakeResponse) responseFuture.actionGet());
 
         assertTrue(versionFuture.isDone());
-        assertEquals(TransportVersion.current(), versionFuture.actionGet());
+        assertEquals(TransportVersion.current(), versionFuture.actionGet().transportVersion());
+        assertTrue(versionFuture.actionGet().zstdAvailable());
+    }
+
+    public void testHandshakeResponseSaysWhetherReceiverCanDecompressZstd() throws IOException {
+        final boolean zstdAvailable = randomBoolean();
+        final TransportHandshaker respondingHandshaker = new TransportHandshaker(
+            TransportVersion.current(),
+            zstdAvailable,
+            threadPool,
+            mock(TransportHandshaker.HandshakeRequestSender.class),
+            false
+        );
+        PlainActionFuture<TcpTransport.HandshakeResult> resultFuture = new PlainActionFuture<>();
+        long reqId = randomLongBetween(1, 10);
+        handshaker.sendHandshake(reqId, node, channel, new TimeValue(30, TimeUnit.SECONDS), resultFuture);
+
+        final PlainActionFuture<TransportResponse> responseFuture = new PlainActionFuture<>();
+        respondingHandshaker.handleHandshake(
+            new TestTransportChannel(responseFuture),
+            reqId,
+            serialize(new TransportHandshaker.HandshakeRequest(TransportVersion.current()))
+        );
+        final TransportHandshaker.HandshakeResponse response = (TransportHandshaker.HandshakeResponse) responseFuture.actionGet();
+        assertEquals(zstdAvailable, response.isZstdAvailable());
+
+        TransportResponseHandler<TransportHandshaker.HandshakeResponse> handler = handshaker.removeHandlerForHandshake(reqId);
+        final StreamInput responseStream = serialize(response);
+        handler.handleResponse(handler.read(responseStream));
+        assertEquals(0, responseStream.available());
+
+        final TcpTransport.HandshakeResult result = resultFuture.actionGet();
+        assertEquals(TransportVersion.current(), result.transportVersion());
+        assertEquals(zstdAvailable, result.zstdAvailable());
+        assertEquals(
+            zstdAvailable ? Compression.Scheme.ZSTD : Compression.Scheme.LZ4,
+            TcpTransport.compressionScheme(Compression.Scheme.ZSTD, result)
+        );
+        final Compression.Scheme otherScheme = randomFrom(Compression.Scheme.LZ4, Compression.Scheme.DEFLATE);
+        assertEquals(otherScheme, TcpTransport.compressionScheme(otherScheme, result));
+    }
+
+    public void testHandshakeResponseOmitsZstdAvailabilityForNodesBeforeZstd() throws IOException {
+        final TransportVersion requestVersion = TransportVersionUtils.randomVersionBetween(
+            random(),
+            TransportVersions.MINIMUM_COMPATIBLE,
+            TransportVersionUtils.getPreviousVersion(Compression.Scheme.ZSTD_VERSION)
+        );
+        final PlainActionFuture<TransportResponse> responseFuture = new PlainActionFuture<>();
+        handshaker.handleHandshake(
+            new TestTransportChannel(responseFuture),
+            randomLongBetween(1, 10),
+            serialize(new TransportHandshaker.HandshakeRequest(requestVersion))
+        );
+        final TransportHandshaker.HandshakeResponse response = (TransportHandshaker.HandshakeResponse) responseFuture.actionGet();
+        assertNull(response.isZstdAvailable());
+
+        // a node that doesn't know about zstd reads the response fully
+        final StreamInput responseStream = serialize(response);
+        assertEquals(TransportVersion.current(), TransportVersion.readVersion(responseStream));
+        assertEquals(0, responseStream.available());
     }
 
     public void testHandshakeRequestFutureVersionsCompatibility() throws IOException {
@@ -118,7 +180,7 @@ public class TransportHandshakerTests extends ESTestCase {
     }
 
     public void testHandshakeError() throws IOException {
-        PlainActionFuture<TransportVersion> versionFuture = new PlainActionFuture<>();
+        PlainActionFuture<TcpTransport.HandshakeResult> versionFuture = new PlainActionFuture<>();
         long reqId = randomLongBetween(1, 10);
         handshaker.sendHandshake(reqId, node, channel, new TimeValue(30, TimeUnit.SECONDS), versionFuture);
 
@@ -135,7 +197,7 @@ public class TransportHandshakerTests extends ESTestCase {
     }
 
     public void testSendRequestThrowsException() throws IOException {
-        PlainActionFuture<TransportVersion> versionFuture = new PlainActionFuture<>();
+        PlainActionFuture<TcpTransport.HandshakeResult> versionFuture = new PlainActionFuture<>();
         long reqId = randomLongBetween(1, 10);
         doThrow(new IOException("boom")).when(requestSender)
             .sendRequest(node, channel, reqId, TransportHandshaker.REQUEST_HANDSHAKE_VERSION);
@@ -149,7 +211,7 @@ public class TransportHandshakerTests extends ESTestCase {
     }
 
     public void testHandshakeTimeout() throws IOException {
-        PlainActionFuture<TransportVersion> versionFuture = new PlainActionFuture<>();
+        PlainActionFuture<TcpTransport.HandshakeResult> versionFuture = new PlainActionFuture<>();
         long reqId = randomLongBetween(1, 10);
         handshaker.sendHandshake(reqId, node, channel, new TimeValue(100, TimeUnit.MILLISECONDS), versionFuture);
 
@@ -160,4 +222,10 @@ public class TransportHandshakerTests extends ESTestCase {
 
         assertNull(handshaker.removeHandlerForHandshake(reqId));
     }
+
+    private static StreamInput serialize(TransportMessage message) throws IOException {
+        BytesStreamOutput bytesStreamOutput = new BytesStreamOutput();
+        message.writeTo(bytesStreamOutput);
+        return bytesStreamOutput.bytes().streamInput();
+    }
 }
@@ -0,0 +1,205 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.transport;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.TransportVersion;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.CompositeBytesReference;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
+import org.elasticsearch.common.io.Streams;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.recycler.Recycler;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.MockPageCacheRecycler;
+import org.elasticsearch.core.Releasables;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.TransportVersionUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+
+public class ZstdTransportDecompressorTests extends ESTestCase {
+
+    private final Recycler<BytesRef> recycler = new BytesRefRecycler(new MockPageCacheRecycler(Settings.EMPTY));
+
+    public void testSimpleCompression() throws IOException {
+        assumeTrue("requires native zstd", Compression.Scheme.isZstdAvailable());
+        try (BytesStreamOutput output = new BytesStreamOutput()) {
+            byte randomByte = randomByte();
+            try (OutputStream zstdStream = Compression.Scheme.zstdOutputStream(org.elasticsearch.core.Streams.noCloseStream(output))) {
+                zstdStream.write(randomByte);
+            }
+
+            BytesReference bytes = output.bytes();
+            assertTrue(Compression.Scheme.isZstd(bytes));
+
+            ZstdTransportDecompressor decompressor = new ZstdTransportDecompressor(recycler);
+            int bytesConsumed = decompressor.decompress(bytes);
+            assertEquals(bytes.length(), bytesConsumed);
+            assertTrue(decompressor.isClosed());
+            ReleasableBytesReference releasableBytesReference = decompressor.pollDecompressedPage(true);
+            assertEquals(1, releasableBytesReference.length());
+            assertEquals(randomByte, releasableBytesReference.get(0));
+            releasableBytesReference.close();
+            decompressor.close();
+        }
+    }
+
+    public void testMultiBlockCompression() throws IOException {
+        assumeTrue("requires native zstd", Compression.Scheme.isZstdAvailable());
+        final int intsToWrite = between(50_000, 200_000);
+        final BytesReference bytes = compressInts(intsToWrite);
+        // Since 200 / 255 data is repeated, we should get a compression ratio of at least 50%
+        assertThat(bytes.length(), lessThan(intsToWrite * 4 / 2));
+
+        ZstdTransportDecompressor decompressor = new ZstdTransportDecompressor(recycler);
+        int bytesConsumed = decompressor.decompress(bytes);
+        assertEquals(bytes.length(), bytesConsumed);
+        assertTrue(decompressor.isClosed());
+        assertDecompressedInts(decompressor, intsToWrite);
+        decompressor.close();
+    }
+
+    public void testIncrementalMultiBlockCompression() throws IOException {
+        assumeTrue("requires native zstd", Compression.Scheme.isZstdAvailable());
+        final int intsToWrite = between(50_000, 200_000);
+        final BytesReference bytes = compressInts(intsToWrite);
+
+        ZstdTransportDecompressor decompressor = new ZstdTransportDecompressor(recycler);
+        BytesReference remaining = BytesArray.EMPTY;
+        int totalConsumed = 0;
+        int offset = 0;
+        while (offset < bytes.length()) {
+            final int length = Math.min(bytes.length() - offset, between(1, 64 * 1024));
+            remaining = CompositeBytesReference.of(remaining, bytes.slice(offset, length));
+            offset += length;
+            final int consumed = decompressor.decompress(remaining);
+            totalConsumed += consumed;
+            remaining = remaining.slice(consumed, remaining.length() - consumed);
+        }
+        assertEquals(bytes.length(), totalConsumed);
+        assertEquals(0, remaining.length());
+        assertTrue(decompressor.isClosed());
+        assertDecompressedInts(decompressor, intsToWrite);
+        decompressor.close();
+    }
+
+    public void testIncompressibleDataIsStoredAsIs() throws IOException {
+        assumeTrue("requires native zstd", Compression.Scheme.isZstdAvailable());
+        final byte[] data = randomByteArrayOfLength(between(1, 1 << 20));
+        try (BytesStreamOutput output = new BytesStreamOutput()) {
+            try (OutputStream zstdStream = Compression.Scheme.zstdOutputStream(org.elasticsearch.core.Streams.noCloseStream(output))) {
+                zstdStream.write(data);
+            }
+            BytesReference bytes = output.bytes();
+            // random bytes don't compress, so the stream only adds the headers
+            assertThat(bytes.length(), lessThan(data.length + 1024));
+
+            ZstdTransportDecompressor decompressor = new ZstdTransportDecompressor(recycler);
+            assertEquals(bytes.length(), decompressor.decompress(bytes));
+            final List<ReleasableBytesReference> pages = new ArrayList<>();
+            ReleasableBytesReference page;
+            while ((page = decompressor.pollDecompressedPage(true)) != null) {
+                pages.add(page);
+            }
+            assertThat(BytesReference.toBytes(CompositeBytesReference.of(pages.toArray(BytesReference[]::new))), equalTo(data));
+            Releasables.close(pages);
+            decompressor.close();
+        }
+    }
+
+    public void testCorruptedBlockHeader() throws IOException {
+        assumeTrue("requires native zstd", Compression.Scheme.isZstdAvailable());
+        final BytesReference bytes = compressInts(1000);
+        final byte[] corrupted = BytesReference.toBytes(bytes);
+        corrupted[Compression.Scheme.HEADER_LENGTH] = (byte) 0x42;
+        ZstdTransportDecompressor decompressor = new ZstdTransportDecompressor(recycler);
+        expectThrows(IllegalStateException.class, () -> decompressor.decompress(new BytesArray(corrupted)));
+        expectThrows(IllegalStateException.class, () -> decompressor.decompress(bytes));
+        decompressor.close();
+    }
+
+    public void testSchemeForVersion() {
+        final TransportVersion beforeZstd = TransportVersionUtils.randomVersionBetween(
+            random(),
+            Compression.Scheme.LZ4_VERSION,
+            TransportVersionUtils.getPreviousVersion(Compression.Scheme.ZSTD_VERSION)
+        );
+        assertThat(Compression.Scheme.forVersion(beforeZstd, Compression.Scheme.ZSTD), equalTo(Compression.Scheme.LZ4));
+        assertThat(Compression.Scheme.forVersion(beforeZstd, Compression.Scheme.DEFLATE), equalTo(Compression.Scheme.DEFLATE));
+
+        final TransportVersion beforeLz4 = TransportVersionUtils.getPreviousVersion(Compression.Scheme.LZ4_VERSION);
+        assertNull(Compression.Scheme.forVersion(beforeLz4, Compression.Scheme.ZSTD));
+        assertNull(Compression.Scheme.forVersion(beforeLz4, Compression.Scheme.LZ4));
+
+        final TransportVersion withZstd = TransportVersionUtils.randomVersionBetween(
+            random(),
+            Compression.Scheme.ZSTD_VERSION,
+            TransportVersion.current()
+        );
+        assertThat(
+            Compression.Scheme.forVersion(withZstd, Compression.Scheme.ZSTD),
+            equalTo(Compression.Scheme.isZstdAvailable() ? Compression.Scheme.ZSTD : Compression.Scheme.LZ4)
+        );
+    }
+
+    private static BytesReference compressInts(int intsToWrite) throws IOException {
+        try (BytesStreamOutput output = new BytesStreamOutput()) {
+            try (
+                StreamOutput zstdStream = new OutputStreamStreamOutput(
+                    Compression.Scheme.zstdOutputStream(Streams.flushOnCloseStream(output))
+                )
+            ) {
+                for (int i = 0; i < intsToWrite; ++i) {
+                    zstdStream.writeInt(intValue(i));
+                }
+            }
+            return output.copyBytes();
+        }
+    }
+
+    private static void assertDecompressedInts(ZstdTransportDecompressor decompressor, int intsToWrite) throws IOException {
+        final List<ReleasableBytesReference> pages = new ArrayList<>();
+        ReleasableBytesReference page;
+        while ((page = decompressor.pollDecompressedPage(false)) != null) {
+            pages.add(page);
+        }
+        pages.add(decompressor.pollDecompressedPage(true));
+        assertNull(decompressor.pollDecompressedPage(true));
+
+        BytesReference composite = CompositeBytesReference.of(pages.toArray(BytesReference[]::new));
+        assertEquals(intsToWrite * 4, composite.length());
+        StreamInput streamInput = composite.streamInput();
+        for (int i = 0; i < intsToWrite; ++i) {
+            assertEquals(intValue(i), streamInput.readInt());
+        }
+        Releasables.close(pages);
+    }
+
+    private static int intValue(int i) {
+        int lowByte = (i & 0xFF);
+        if (lowByte < 128) {
+            return 0;
+        } else if (lowByte < 200) {
+            return 1;
+        } else {
+            return i;
+        }
+    }
+}
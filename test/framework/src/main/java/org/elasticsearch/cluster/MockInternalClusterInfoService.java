@@ -90,7 +90,8 @@ public class MockInternalClusterInfoService extends InternalClusterInfoService {
                 nodeStats.getScriptCacheStats(),
                 nodeStats.getIndexingPressureStats(),
                 nodeStats.getRepositoriesStats(),
-                nodeStats.getNodeAllocationStats()
+                nodeStats.getNodeAllocationStats(),
+                null
             );
         }).collect(Collectors.toList());
     }
@@ -278,6 +278,7 @@ public class TransportGetTrainedModelsStatsActionTests extends ESTestCase {
             null,
             null,
             null,
+            null,
             null
         );
 